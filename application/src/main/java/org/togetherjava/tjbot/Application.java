@@ -3,12 +3,18 @@ package org.togetherjava.tjbot;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.commands.Features;
 import org.togetherjava.tjbot.commands.system.BotCore;
 import org.togetherjava.tjbot.config.Config;
+import org.togetherjava.tjbot.config.DatabasePerformanceConfig;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.MigrationMode;
+import org.togetherjava.tjbot.db.PerformanceProfile;
+import org.togetherjava.tjbot.db.ShardedDatabase;
+import org.togetherjava.tjbot.db.WriteBehindSettings;
 
 import javax.security.auth.login.LoginException;
 import java.io.IOException;
@@ -16,6 +22,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.SQLException;
 
+import static org.togetherjava.tjbot.db.generated.Tables.HELP_CHANNEL_MESSAGES;
+import static org.togetherjava.tjbot.db.generated.Tables.MODERATION_ACTIONS;
+import static org.togetherjava.tjbot.db.generated.Tables.MOD_AUDIT_LOG_GUILD_PROCESS;
+import static org.togetherjava.tjbot.db.generated.Tables.PENDING_REMINDERS;
+
 /**
  * Main class of the application. Use {@link #main(String[])} to start an instance of it.
  * <p>
@@ -29,6 +40,11 @@ public enum Application {
 
     private static final Logger logger = LoggerFactory.getLogger(Application.class);
     private static final String DEFAULT_CONFIG_PATH = "config.json";
+    /**
+     * Read connections per guild shard, which only hold the data of a single guild and are hence
+     * read less frequently than the main database.
+     */
+    private static final int SHARD_READ_CONNECTIONS = 2;
 
     /**
      * Starts the application.
@@ -75,16 +91,24 @@ public enum Application {
             if (parentDatabasePath != null) {
                 Files.createDirectories(parentDatabasePath);
             }
-            Database database = new Database("jdbc:sqlite:" + databasePath.toAbsolutePath());
+            PerformanceProfile performanceProfile =
+                    createPerformanceProfile(config.getDatabasePerformance());
+            Database database = new Database("jdbc:sqlite:" + databasePath.toAbsolutePath(),
+                    Database.DEFAULT_READ_CONNECTIONS, WriteBehindSettings.DEFAULT,
+                    performanceProfile, MigrationMode.IF_CHANGED);
+            ShardedDatabase guildDatabase =
+                    createGuildDatabase(config, database, performanceProfile);
 
             JDA jda = JDABuilder.createDefault(config.getToken())
                 .enableIntents(GatewayIntent.GUILD_MEMBERS)
                 .build();
-            jda.addEventListener(new BotCore(jda, database, config));
+            BotCore botCore = new BotCore(jda, database, guildDatabase, config);
+            jda.addEventListener(botCore);
             jda.awaitReady();
             logger.info("Bot is ready");
 
-            Runtime.getRuntime().addShutdownHook(new Thread(Application::onShutdown));
+            Runtime.getRuntime()
+                .addShutdownHook(new Thread(() -> onShutdown(botCore, database, guildDatabase)));
         } catch (LoginException e) {
             logger.error("Failed to login", e);
         } catch (InterruptedException e) {
@@ -98,11 +122,65 @@ public enum Application {
         }
     }
 
-    private static void onShutdown() {
+    private static @NotNull PerformanceProfile createPerformanceProfile(
+            @NotNull DatabasePerformanceConfig performanceConfig) {
+        return new PerformanceProfile(performanceConfig.getMmapSize(),
+                performanceConfig.getCacheSize(), performanceConfig.getSynchronous(),
+                performanceConfig.getTempStore(), performanceConfig.getBusyTimeout());
+    }
+
+    private static @NotNull ShardedDatabase createGuildDatabase(@NotNull Config config,
+            @NotNull Database database, @NotNull PerformanceProfile performanceProfile)
+            throws IOException, SQLException {
+        String shardDirectory = config.getDatabaseShardDirectory();
+        if (shardDirectory == null) {
+            return ShardedDatabase.shared(database);
+        }
+
+        Path shardDirectoryPath = Path.of(shardDirectory).toAbsolutePath();
+        logger.info("Storing guild-scoped data in a database per guild, located at: {}",
+                shardDirectoryPath);
+        // Shards are migrated like the main database, so they share its schema
+        ShardedDatabase guildDatabase = ShardedDatabase.perGuild(shardDirectoryPath,
+                jdbcUrl -> new Database(jdbcUrl, SHARD_READ_CONNECTIONS,
+                        WriteBehindSettings.DEFAULT, performanceProfile, MigrationMode.IF_CHANGED));
+        moveGuildDataIntoShards(database, guildDatabase);
+        return guildDatabase;
+    }
+
+    /**
+     * Moves guild-scoped data that is still stored in the main database, from before the shards
+     * were enabled, into the shards. Otherwise, it would not be seen anymore, for example pending
+     * reminders or temporary bans would never end. Does nothing once all data has been moved.
+     */
+    private static void moveGuildDataIntoShards(@NotNull Database database,
+            @NotNull ShardedDatabase guildDatabase) {
+        int movedRows = guildDatabase.moveIntoShards(database, MODERATION_ACTIONS,
+                MODERATION_ACTIONS.GUILD_ID)
+                + guildDatabase.moveIntoShards(database, PENDING_REMINDERS,
+                        PENDING_REMINDERS.GUILD_ID)
+                + guildDatabase.moveIntoShards(database, HELP_CHANNEL_MESSAGES,
+                        HELP_CHANNEL_MESSAGES.GUILD_ID)
+                + guildDatabase.moveIntoShards(database, MOD_AUDIT_LOG_GUILD_PROCESS,
+                        MOD_AUDIT_LOG_GUILD_PROCESS.GUILD_ID);
+        if (movedRows != 0) {
+            logger.info("Moved {} rows of guild-scoped data from the main database into the shards",
+                    movedRows);
+        }
+    }
+
+    private static void onShutdown(@NotNull BotCore botCore, @NotNull Database database,
+            @NotNull ShardedDatabase guildDatabase) {
         // This may be called during JVM shutdown via a hook and hence only has minimal time to
         // react.
         // There is no guarantee that this method can be executed fully - it should run as
         // fast as possible and only do the minimal necessary actions.
+
+        // Persists the state the bot still holds in memory, while the databases are still open
+        botCore.close();
+        // Commits all pending asynchronous writes
+        guildDatabase.close();
+        database.close();
         logger.info("Bot has been stopped");
     }
 
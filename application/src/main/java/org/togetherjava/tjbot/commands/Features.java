@@ -9,6 +9,7 @@ import org.togetherjava.tjbot.commands.moderation.*;
 import org.togetherjava.tjbot.commands.moderation.temp.TemporaryModerationRoutine;
 import org.togetherjava.tjbot.commands.reminder.RemindCommand;
 import org.togetherjava.tjbot.commands.reminder.RemindRoutine;
+import org.togetherjava.tjbot.commands.system.BackupCommand;
 import org.togetherjava.tjbot.commands.system.BotCore;
 import org.togetherjava.tjbot.commands.tags.TagCommand;
 import org.togetherjava.tjbot.commands.tags.TagManageCommand;
@@ -19,10 +20,15 @@ import org.togetherjava.tjbot.commands.tophelper.TopHelpersMessageListener;
 import org.togetherjava.tjbot.commands.tophelper.TopHelpersPurgeMessagesRoutine;
 import org.togetherjava.tjbot.config.Config;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
+import org.togetherjava.tjbot.routines.DatabaseBackupRoutine;
+import org.togetherjava.tjbot.routines.DatabaseMaintenanceRoutine;
+import org.togetherjava.tjbot.routines.DatabaseMetricsRoutine;
 import org.togetherjava.tjbot.routines.ModAuditLogRoutine;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Utility class that offers all features that should be registered by the system, such as commands.
@@ -30,7 +36,7 @@ import java.util.Collection;
  * it with the system.
  * <p>
  * To add a new slash command, extend the commands returned by
- * {@link #createFeatures(JDA, Database, Config)}.
+ * {@link #createFeatures(JDA, Database, ShardedDatabase, Config)}.
  */
 public enum Features {
     ;
@@ -43,13 +49,17 @@ public enum Features {
      *
      * @param jda the JDA instance commands will be registered at
      * @param database the database of the application, which features can use to persist data
+     * @param guildDatabase the database of the application for guild-scoped data, such as
+     *        moderation actions, which may be split into one database per guild
      * @param config the configuration features should use
      * @return a collection of all features
      */
     public static @NotNull Collection<Feature> createFeatures(@NotNull JDA jda,
-            @NotNull Database database, @NotNull Config config) {
+            @NotNull Database database, @NotNull ShardedDatabase guildDatabase,
+            @NotNull Config config) {
         TagSystem tagSystem = new TagSystem(database);
-        ModerationActionsStore actionsStore = new ModerationActionsStore(database);
+        ModerationActionsStore actionsStore = new ModerationActionsStore(guildDatabase);
+        DatabaseBackupRoutine backupRoutine = new DatabaseBackupRoutine(database, config);
 
         // NOTE The system can add special system relevant commands also by itself,
         // hence this list may not necessarily represent the full list of all commands actually
@@ -57,13 +67,17 @@ public enum Features {
         Collection<Feature> features = new ArrayList<>();
 
         // Routines
-        features.add(new ModAuditLogRoutine(database, config));
+        features.add(new ModAuditLogRoutine(guildDatabase, config));
         features.add(new TemporaryModerationRoutine(jda, actionsStore, config));
-        features.add(new TopHelpersPurgeMessagesRoutine(database));
-        features.add(new RemindRoutine(database));
+        features.add(new TopHelpersPurgeMessagesRoutine(guildDatabase));
+        features.add(new RemindRoutine(guildDatabase));
+        features.add(new DatabaseMetricsRoutine(database,
+                Map.of("tags", tagSystem::getCacheStatistics)));
+        features.add(new DatabaseMaintenanceRoutine(database, config));
+        features.add(backupRoutine);
 
         // Message receivers
-        features.add(new TopHelpersMessageListener(database, config));
+        features.add(new TopHelpersMessageListener(guildDatabase, config));
         features.add(new SuggestionsUpDownVoter(config));
 
         // Event receivers
@@ -83,10 +97,11 @@ public enum Features {
         features.add(new AuditCommand(actionsStore, config));
         features.add(new MuteCommand(actionsStore, config));
         features.add(new UnmuteCommand(actionsStore, config));
-        features.add(new TopHelpersCommand(database, config));
+        features.add(new TopHelpersCommand(guildDatabase, config));
         features.add(new RoleSelectCommand());
         features.add(new NoteCommand(actionsStore, config));
-        features.add(new RemindCommand(database));
+        features.add(new RemindCommand(guildDatabase));
+        features.add(new BackupCommand(backupRoutine));
 
         // Mixtures
         features.add(new FreeCommand(config));
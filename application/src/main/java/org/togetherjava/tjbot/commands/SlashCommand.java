@@ -91,6 +91,21 @@ public interface SlashCommand extends Feature {
     @NotNull
     CommandData getData();
 
+    /**
+     * Whether the core system defers interactions of this command on its behalf, if they were not
+     * acknowledged in time.
+     * <p>
+     * Discord drops interactions that are not acknowledged within 3 seconds after they were
+     * triggered, which slow commands or commands that waited for a thread under load can miss. If
+     * enabled, the core system defers such interactions automatically, see
+     * {@link org.togetherjava.tjbot.commands.system.AcknowledgementWatchdog}. The command must then
+     * respond to all its interactions through their hook, since a plain {@code event.reply(...)}
+     * fails once the interaction was deferred.
+     *
+     * @return whether interactions of this command are deferred automatically
+     */
+    boolean isAutoDeferred();
+
     /**
      * Triggered by the core system when a slash command corresponding to this implementation (based
      * on {@link #getData()}) has been triggered.
@@ -116,7 +131,9 @@ public interface SlashCommand extends Feature {
      * required {@link ComponentId} instance accepts optional extra arguments, which, if provided,
      * can be picked up during the corresponding event (see
      * {@link #onButtonClick(ButtonClickEvent, List)},
-     * {@link #onSelectionMenu(SelectionMenuEvent, List)}).
+     * {@link #onSelectionMenu(SelectionMenuEvent, List)}). Small payloads might instead be carried
+     * by a signed component ID directly, without database entry, see
+     * {@link org.togetherjava.tjbot.commands.componentids.SignedComponentIds}.
      * <p>
      * Alternatively, if {@link SlashCommandAdapter} has been extended, it also offers a handy
      * {@link SlashCommandAdapter#generateComponentId(String...)} method to ease the flow.
@@ -105,6 +105,12 @@ public abstract class SlashCommandAdapter implements SlashCommand {
         componentIdGenerator = generator;
     }
 
+    @Override
+    public boolean isAutoDeferred() {
+        // Most commands reply directly, subclasses may change this behavior
+        return false;
+    }
+
     @SuppressWarnings("NoopMethodInAbstractClass")
     @Override
     public void onButtonClick(@NotNull ButtonClickEvent event, @NotNull List<String> args) {
@@ -0,0 +1,220 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary format of component IDs, used to persist them in the {@link ComponentIdStore} and
+ * to carry them in {@link SignedComponentIds}.
+ * <p>
+ * An encoded component ID consists of:
+ * <ul>
+ * <li>a format version byte, {@value #VERSION},</li>
+ * <li>the command name, as length-prefixed UTF-8,</li>
+ * <li>the amount of elements, followed by each element, either as non-negative number, like user
+ * IDs, or as length-prefixed UTF-8.</li>
+ * </ul>
+ * Lengths and numbers are encoded as variable-length integers, 7 bits per byte.
+ * <p>
+ * Component IDs have been persisted as CSV before, which {@link #decode(byte[])} still reads. Their
+ * first byte is part of the command name and hence never equals the version byte.
+ */
+enum ComponentIdCodec {
+    ;
+
+    /**
+     * The current version of the format, always the first byte of encoded component IDs.
+     */
+    static final byte VERSION = 1;
+
+    private static final byte ELEMENT_TEXT = 0;
+    private static final byte ELEMENT_NUMBER = 1;
+    private static final String MAX_NUMBER = Long.toString(Long.MAX_VALUE);
+    private static final int MAX_NUMBER_BYTES = 10;
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    /**
+     * Readers are immutable and thread-safe, building the schema once for all legacy component IDs.
+     */
+    private static final ObjectReader LEGACY_CSV_READER;
+    static {
+        CsvMapper csv = new CsvMapper();
+        LEGACY_CSV_READER = csv.readerFor(ComponentId.class).with(csv.schemaFor(ComponentId.class));
+    }
+
+    /**
+     * Encodes the given component ID in the binary format.
+     *
+     * @param componentId the component ID to encode
+     * @return the encoded component ID
+     */
+    static byte @NotNull [] encode(@NotNull ComponentId componentId) {
+        // Heap buffers are filled without the synchronization of ByteArrayOutputStream
+        ByteBuffer content = ByteBuffer.allocate(getMaxEncodedLength(componentId));
+        content.put(VERSION);
+        writeText(content, componentId.commandName());
+        writeNumber(content, componentId.elements().size());
+        for (String element : componentId.elements()) {
+            if (isNumber(element)) {
+                content.put(ELEMENT_NUMBER);
+                writeNumber(content, Long.parseLong(element));
+            } else {
+                content.put(ELEMENT_TEXT);
+                writeText(content, element);
+            }
+        }
+        return Arrays.copyOf(content.array(), content.position());
+    }
+
+    private static int getMaxEncodedLength(@NotNull ComponentId componentId) {
+        int maxLength = 1 + getMaxTextLength(componentId.commandName()) + MAX_NUMBER_BYTES;
+        for (String element : componentId.elements()) {
+            maxLength += 1 + getMaxTextLength(element);
+        }
+        return maxLength;
+    }
+
+    private static int getMaxTextLength(@NotNull String text) {
+        return MAX_NUMBER_BYTES + text.length() * MAX_BYTES_PER_CHAR;
+    }
+
+    /**
+     * Decodes a persisted component ID, either in the binary format or in the legacy CSV format.
+     *
+     * @param content the persisted component ID
+     * @return the decoded component ID
+     * @throws InvalidComponentIdFormatException if the component ID is malformed
+     */
+    static @NotNull ComponentId decode(byte @NotNull [] content) {
+        if (!isLegacy(content)) {
+            return decodeBinary(content);
+        }
+
+        try {
+            return LEGACY_CSV_READER.readValue(content);
+        } catch (IOException e) {
+            throw new InvalidComponentIdFormatException(e);
+        }
+    }
+
+    /**
+     * Decodes a component ID in the binary format, see {@link #encode(ComponentId)}.
+     *
+     * @param content the encoded component ID
+     * @return the decoded component ID
+     * @throws InvalidComponentIdFormatException if the component ID is malformed or not in the
+     *         binary format
+     */
+    static @NotNull ComponentId decodeBinary(byte @NotNull [] content) {
+        try {
+            return readComponentId(ByteBuffer.wrap(content));
+        } catch (BufferUnderflowException | IllegalArgumentException | ArithmeticException e) {
+            throw new InvalidComponentIdFormatException(e);
+        }
+    }
+
+    /**
+     * Whether the given persisted component ID is still in the legacy CSV format.
+     *
+     * @param content the persisted component ID
+     * @return whether it has to be decoded as CSV
+     */
+    static boolean isLegacy(byte @NotNull [] content) {
+        return content.length == 0 || content[0] != VERSION;
+    }
+
+    private static @NotNull ComponentId readComponentId(@NotNull ByteBuffer content) {
+        byte version = content.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+
+        String commandName = readText(content);
+        int elementCount = Math.toIntExact(readNumber(content));
+        if (elementCount < 0) {
+            throw new IllegalArgumentException("Negative element count: " + elementCount);
+        }
+        List<String> elements = new ArrayList<>(Math.min(elementCount, content.remaining()));
+        for (int i = 0; i < elementCount; i++) {
+            byte type = content.get();
+            elements.add(switch (type) {
+                case ELEMENT_NUMBER -> Long.toString(readNumber(content));
+                case ELEMENT_TEXT -> readText(content);
+                default -> throw new IllegalArgumentException("Unsupported element type: " + type);
+            });
+        }
+        if (content.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected trailing bytes");
+        }
+        return new ComponentId(commandName, elements);
+    }
+
+    /**
+     * Whether the given element is encoded as number, which requires it to be decoded back to the
+     * same text. Hence, numbers with leading zeros or signs, or that do not fit into a long, are
+     * encoded as text.
+     */
+    private static boolean isNumber(@NotNull String element) {
+        int length = element.length();
+        if (length == 0 || length > MAX_NUMBER.length()
+                || (element.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = element.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return length < MAX_NUMBER.length() || element.compareTo(MAX_NUMBER) <= 0;
+    }
+
+    private static void writeText(@NotNull ByteBuffer content, @NotNull String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeNumber(content, bytes.length);
+        content.put(bytes);
+    }
+
+    private static void writeNumber(@NotNull ByteBuffer content, long number) {
+        long remaining = number;
+        while ((remaining & ~0x7FL) != 0) {
+            content.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        content.put((byte) remaining);
+    }
+
+    private static @NotNull String readText(@NotNull ByteBuffer content) {
+        int length = Math.toIntExact(readNumber(content));
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative text length: " + length);
+        }
+        if (length > content.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readNumber(@NotNull ByteBuffer content) {
+        long number = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte part = content.get();
+            number |= (long) (part & 0x7F) << shift;
+            if ((part & 0x80) == 0) {
+                return number;
+            }
+        }
+        throw new IllegalArgumentException("Number is too long");
+    }
+}
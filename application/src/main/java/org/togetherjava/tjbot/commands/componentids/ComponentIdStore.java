@@ -1,24 +1,28 @@
 package org.togetherjava.tjbot.commands.componentids;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import org.jetbrains.annotations.NotNull;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record2;
 import org.jooq.Result;
+import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.db.Database;
 import org.togetherjava.tjbot.db.generated.tables.ComponentIds;
 import org.togetherjava.tjbot.db.generated.tables.records.ComponentIdsRecord;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -38,28 +42,66 @@ import java.util.stream.Collectors;
  * Component IDs which have not been used for a long time, depending on their {@link Lifespan}
  * setting, might get evicted from the store after some time. The store implements a
  * <strong>LRU-cache</strong> and each call of {@link #get(UUID)} will update the usage-timestamp
- * for the component ID.
+ * for the component ID. Usages are collected in memory and written to the database in a single
+ * batch every minute, before each eviction and when the store is closed.
  * <p>
  * Users can react to eviction by adding a listener to
  * {@link #addComponentIdRemovedListener(Consumer)}.
  * <p>
- * The store is fully thread-safe, component IDs can be generated and parsed multithreaded.
+ * The store is fully thread-safe, component IDs can be generated and parsed multithreaded. Lookups
+ * of cached component IDs do not lock at all. Concurrent lookups of the same component ID that has
+ * to be read from the database are coalesced into a single read, while reads of different component
+ * IDs proceed in parallel.
+ * <p>
+ * Component IDs are persisted in the compact binary format of {@link ComponentIdCodec}. Component
+ * IDs persisted in the legacy CSV format are rewritten in the background once the store is created,
+ * and can be read in the meantime.
  */
 @SuppressWarnings("ClassWithTooManyFields")
 public final class ComponentIdStore implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ComponentIdStore.class);
-    private static final CsvMapper CSV = new CsvMapper();
 
     private static final long EVICT_DATABASE_EVERY_INITIAL_DELAY = 1;
     private static final long EVICT_DATABASE_EVERY_DELAY = 15;
     private static final ChronoUnit EVICT_DATABASE_EVERY_UNIT = ChronoUnit.MINUTES;
     private static final long EVICT_DATABASE_OLDER_THAN = 20;
     private static final ChronoUnit EVICT_DATABASE_OLDER_THAN_UNIT = ChronoUnit.DAYS;
+    /**
+     * Maximal amount of component ids evicted while holding the write lock of the database once.
+     */
+    private static final int EVICT_DATABASE_CHUNK_SIZE = 500;
+
+    /**
+     * Maximal amount of legacy component ids rewritten while holding the write lock of the database
+     * once.
+     */
+    private static final int MIGRATE_DATABASE_CHUNK_SIZE = 500;
+    /**
+     * The first byte of a persisted component ID, its format version. Matches the expression of the
+     * index created by the migrations, so that legacy component IDs are found without scanning the
+     * whole table.
+     */
+    private static final Field<byte[]> FORMAT_VERSION =
+            DSL.field("substr({0}, 1, 1)", byte[].class, ComponentIds.COMPONENT_IDS.COMPONENT_ID);
+    // NOTE The index can not be used for '<>', hence the two ranges
+    private static final Condition IS_LEGACY_COMPONENT_ID =
+            FORMAT_VERSION.lessThan(new byte[] {ComponentIdCodec.VERSION})
+                .or(FORMAT_VERSION.greaterThan(new byte[] {ComponentIdCodec.VERSION}));
+
+    private static final long FLUSH_LAST_USED_EVERY_DELAY = 1;
+    private static final ChronoUnit FLUSH_LAST_USED_EVERY_UNIT = ChronoUnit.MINUTES;
+    /**
+     * Maximal amount of component ids whose usage-timestamp is updated by a single statement.
+     */
+    private static final int FLUSH_LAST_USED_CHUNK_SIZE = 500;
 
     private static final int CACHE_SIZE = 1_000;
     private static final int EVICT_CACHE_OLDER_THAN = 2;
     private static final ChronoUnit EVICT_CACHE_OLDER_THAN_UNIT = ChronoUnit.HOURS;
 
+    /**
+     * Guards putting component IDs against each other and against eviction. Lookups do not lock.
+     */
     private final Object storeLock = new Object();
     private final Database database;
     /**
@@ -68,14 +110,29 @@ public final class ComponentIdStore implements AutoCloseable {
      * that have been created in the past hours and not days.
      */
     private final Cache<UUID, ComponentId> storeCache;
+    /**
+     * Reads from the database that are currently in progress, so that concurrent lookups of the
+     * same component ID wait for the same read instead of reading it again.
+     */
+    private final Map<UUID, CompletableFuture<Optional<ComponentId>>> uuidToPendingRead =
+            new ConcurrentHashMap<>();
+    /**
+     * Incremented by eviction before it removes a chunk of evicted component IDs from the cache,
+     * see {@link #readThroughCache(UUID)}.
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+    /**
+     * Component IDs that have been used since the last flush, see {@link #flushLastUsed()}.
+     */
+    private final Set<UUID> usedUuids = ConcurrentHashMap.newKeySet();
     private final Collection<Consumer<ComponentId>> componentIdRemovedListeners =
             Collections.synchronizedCollection(new ArrayList<>());
-    private final ExecutorService heatService = Executors.newCachedThreadPool();
     private final ExecutorService componentIdRemovedListenerService =
             Executors.newCachedThreadPool();
     private final ScheduledExecutorService evictionService =
             Executors.newSingleThreadScheduledExecutor();
     private final ScheduledFuture<?> evictionTask;
+    private final ScheduledFuture<?> flushLastUsedTask;
     private final long evictDatabaseOlderThan;
     private final TemporalUnit evictDatabaseOlderThanUnit;
 
@@ -114,8 +171,14 @@ public final class ComponentIdStore implements AutoCloseable {
             .maximumSize(CACHE_SIZE)
             .expireAfterAccess(EVICT_CACHE_OLDER_THAN, TimeUnit.of(EVICT_CACHE_OLDER_THAN_UNIT))
             .build();
+        // Runs before the first eviction, on the same thread
+        evictionService.execute(this::migrateLegacyComponentIds);
         evictionTask = evictionService.scheduleWithFixedDelay(this::evictDatabase,
                 evictEveryInitialDelay, evictEveryDelay, TimeUnit.of(evictEveryUnit));
+        // Flushes on the eviction thread, so that flushes never run concurrently to evictions
+        flushLastUsedTask = evictionService.scheduleWithFixedDelay(this::flushLastUsed,
+                FLUSH_LAST_USED_EVERY_DELAY, FLUSH_LAST_USED_EVERY_DELAY,
+                TimeUnit.of(FLUSH_LAST_USED_EVERY_UNIT));
 
         logDebugSizeStatistics();
     }
@@ -124,8 +187,10 @@ public final class ComponentIdStore implements AutoCloseable {
      * Adds a listener for component ID removal. The listener is triggered during eviction, once for
      * each component ID that has been removed from the store.
      * <p>
-     * The listener might be triggered multithreaded, there are no guarantees made regarding the
-     * executing thread. In particular, it might be a different thread each time it is triggered.
+     * Component IDs are evicted in chunks. The listener is triggered for all component IDs of a
+     * chunk one after another, on the same thread. It might be triggered multithreaded otherwise,
+     * there are no guarantees made regarding the executing thread. In particular, it might be a
+     * different thread for each chunk.
      *
      * @param listener the listener to add
      */
@@ -149,18 +214,71 @@ public final class ComponentIdStore implements AutoCloseable {
      */
     @SuppressWarnings("WeakerAccess")
     public @NotNull Optional<ComponentId> get(@NotNull UUID uuid) {
-        synchronized (storeLock) {
-            // Get it from the cache or, if not found, the database
-            return Optional.ofNullable(storeCache.getIfPresent(uuid)).or(() -> {
-                Optional<ComponentId> databaseComponentId = getFromDatabase(uuid);
-                databaseComponentId.ifPresent(id -> {
-                    // Put it back into the cache
-                    storeCache.put(uuid, id);
-
-                    heatService.execute(() -> heatRecord(uuid));
-                });
-                return databaseComponentId;
-            });
+        ComponentId cachedComponentId = storeCache.getIfPresent(uuid);
+        if (cachedComponentId != null) {
+            markUsed(uuid);
+            return Optional.of(cachedComponentId);
+        }
+
+        // Only the first lookup reads from the database, concurrent ones wait for its result
+        CompletableFuture<Optional<ComponentId>> read = new CompletableFuture<>();
+        CompletableFuture<Optional<ComponentId>> pendingRead =
+                uuidToPendingRead.putIfAbsent(uuid, read);
+        if (pendingRead != null) {
+            return awaitRead(pendingRead);
+        }
+
+        try {
+            Optional<ComponentId> componentId = readThroughCache(uuid);
+            read.complete(componentId);
+            return componentId;
+        } catch (RuntimeException e) {
+            read.completeExceptionally(e);
+            throw e;
+        } finally {
+            uuidToPendingRead.remove(uuid, read);
+        }
+    }
+
+    /**
+     * Reads the component ID associated to the given UUID from the database and puts it back into
+     * the cache, unless another lookup did so already.
+     *
+     * @param uuid the UUID to lookup
+     * @return the associated component ID, if present
+     */
+    private @NotNull Optional<ComponentId> readThroughCache(@NotNull UUID uuid) {
+        // Another read might have completed between the cache miss and registering this read
+        ComponentId cachedComponentId = storeCache.getIfPresent(uuid);
+        if (cachedComponentId != null) {
+            return Optional.of(cachedComponentId);
+        }
+
+        long evictionCountBeforeRead = evictionCount.get();
+        Optional<ComponentId> databaseComponentId = getFromDatabase(uuid);
+        databaseComponentId.ifPresent(id -> {
+            storeCache.put(uuid, id);
+            // An eviction running concurrently might have deleted the record after it was read,
+            // but removed it from the cache before it was put back. Since it is unknown which
+            // records were evicted, the entry is dropped, the next lookup reads it again.
+            if (evictionCount.get() != evictionCountBeforeRead) {
+                storeCache.invalidate(uuid);
+            }
+
+            markUsed(uuid);
+        });
+        return databaseComponentId;
+    }
+
+    private static @NotNull Optional<ComponentId> awaitRead(
+            @NotNull CompletableFuture<Optional<ComponentId>> read) {
+        try {
+            return read.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
@@ -202,7 +320,7 @@ public final class ComponentIdStore implements AutoCloseable {
                 ComponentIdsRecord componentIdsRecord =
                         context.newRecord(ComponentIds.COMPONENT_IDS)
                             .setUuid(uuid.toString())
-                            .setComponentId(serializeComponentId(componentId))
+                            .setComponentId(ComponentIdCodec.encode(componentId))
                             .setLastUsed(Instant.now())
                             .setLifespan(lifespan.name());
                 componentIdsRecord.insert();
@@ -211,98 +329,219 @@ public final class ComponentIdStore implements AutoCloseable {
     }
 
     private @NotNull Optional<ComponentId> getFromDatabase(@NotNull UUID uuid) {
-        return database.read(context -> Optional
-            .ofNullable(context.selectFrom(ComponentIds.COMPONENT_IDS)
-                .where(ComponentIds.COMPONENT_IDS.UUID.eq(uuid.toString()))
-                .fetchOne())
-            .map(ComponentIdsRecord::getComponentId)
-            .map(ComponentIdStore::deserializeComponentId));
+        return database
+            .read(context -> Optional
+                .ofNullable(context.selectFrom(ComponentIds.COMPONENT_IDS)
+                    .where(ComponentIds.COMPONENT_IDS.UUID.eq(uuid.toString()))
+                    .fetchOne())
+                .map(ComponentIdsRecord::getComponentId)
+                .map(ComponentIdCodec::decode));
     }
 
     /**
-     * Updates the <b>last_used</b> timestamp for the given UUID in the database to the current
-     * time. This effectively heats the record, so that it will not be targeted for the next
-     * evictions.
+     * Marks the given component ID as used, so that its <b>last_used</b> timestamp is updated by
+     * the next flush. This effectively heats the record, so that it will not be targeted for the
+     * next evictions.
      *
      * @param uuid the uuid to heat
-     * @throws IllegalArgumentException if there is no, or multiple, records associated to that UUID
      */
-    private void heatRecord(@NotNull UUID uuid) {
-        int updatedRecords;
-        synchronized (storeLock) {
-            updatedRecords =
-                    database.writeAndProvide(context -> context.update(ComponentIds.COMPONENT_IDS)
-                        .set(ComponentIds.COMPONENT_IDS.LAST_USED, Instant.now())
-                        .where(ComponentIds.COMPONENT_IDS.UUID.eq(uuid.toString()))
-                        .execute());
+    private void markUsed(@NotNull UUID uuid) {
+        // Most lookups hit component IDs that have been marked already, checking first does not
+        // write to the set and hence does not contend with other lookups
+        if (!usedUuids.contains(uuid)) {
+            usedUuids.add(uuid);
         }
+    }
 
-        // NOTE Case 0, where no records are updated, is ignored on purpose.
-        // This happens when the entry has been evicted before the heating was executed.
-        if (updatedRecords > 1) {
-            throw new AssertionError(
-                    "Multiple records had the UUID '%s' even though it is unique.".formatted(uuid));
+    /**
+     * Updates the <b>last_used</b> timestamp of all component IDs that have been used since the
+     * last flush to the current time, in a single batch.
+     * <p>
+     * The timestamp is taken after the used component IDs have been collected, it is hence never
+     * earlier than their actual last usage. Component IDs are marked as used again if the flush
+     * fails, so that the next flush retries them.
+     *
+     * @return a future that completes once the flush has been committed
+     */
+    private @NotNull CompletableFuture<Void> flushLastUsed() {
+        List<UUID> uuidsToFlush = new ArrayList<>();
+        for (Iterator<UUID> iterator = usedUuids.iterator(); iterator.hasNext();) {
+            uuidsToFlush.add(iterator.next());
+            iterator.remove();
+        }
+        if (uuidsToFlush.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
+        Instant lastUsed = Instant.now();
+
+        return database.writeAsync(context -> {
+            for (int from = 0; from < uuidsToFlush.size(); from += FLUSH_LAST_USED_CHUNK_SIZE) {
+                int to = Math.min(from + FLUSH_LAST_USED_CHUNK_SIZE, uuidsToFlush.size());
+                List<String> chunk =
+                        uuidsToFlush.subList(from, to).stream().map(UUID::toString).toList();
+                // NOTE Component IDs that have been evicted before the flush are ignored on purpose
+                context.update(ComponentIds.COMPONENT_IDS)
+                    .set(ComponentIds.COMPONENT_IDS.LAST_USED, lastUsed)
+                    .where(ComponentIds.COMPONENT_IDS.UUID.in(chunk))
+                    .execute();
+            }
+        }).whenComplete((result, failure) -> {
+            if (failure != null) {
+                logger.warn("Unable to flush the usage of {} component ids, retrying later",
+                        uuidsToFlush.size(), failure);
+                usedUuids.addAll(uuidsToFlush);
+            }
+        });
     }
 
-    private void evictDatabase() {
+    /**
+     * Evicts component IDs that have not been used for a long time from the database and the cache,
+     * and notifies the listeners about them.
+     * <p>
+     * Component IDs are evicted in chunks, each deleted in its own transaction, so that writes of
+     * commands are executed in between. The store lock can not be held while writing, as it would
+     * be acquired in the opposite order than in putOrThrow. Instead, each chunk is removed from the
+     * cache after it has been committed, which ensures that evicted component ids that have been
+     * read back into the cache in the meantime are removed again.
+     *
+     * @return the summary of the eviction
+     */
+    @NotNull
+    EvictionSummary evictDatabase() {
+        // Component IDs that have been used recently must not be evicted based on stale timestamps
+        try {
+            flushLastUsed().join();
+        } catch (CompletionException e) {
+            logger.warn("Skipping eviction, the usage of component ids could not be flushed", e);
+            return new EvictionSummary(0, 0, Duration.ZERO, Duration.ZERO);
+        }
+
         logger.debug("Evicting old non-permanent component ids from the database...");
-        AtomicInteger evictedCounter = new AtomicInteger(0);
-        synchronized (storeLock) {
-            database.write(context -> {
-                Result<ComponentIdsRecord> oldRecords = context
-                    .selectFrom(ComponentIds.COMPONENT_IDS)
-                    .where(ComponentIds.COMPONENT_IDS.LIFESPAN.notEqual(Lifespan.PERMANENT.name())
-                        .and(ComponentIds.COMPONENT_IDS.LAST_USED.lessOrEqual(Instant.now()
-                            .minus(evictDatabaseOlderThan, evictDatabaseOlderThanUnit))))
-                    .fetch();
-
-                oldRecords.forEach(recordToDelete -> {
-                    UUID uuid = UUID
-                        .fromString(recordToDelete.getValue(ComponentIds.COMPONENT_IDS.UUID));
-                    ComponentId componentId = deserializeComponentId(
-                            recordToDelete.getValue(ComponentIds.COMPONENT_IDS.COMPONENT_ID));
-                    Instant lastUsed = recordToDelete.getLastUsed();
-
-                    recordToDelete.delete();
-                    evictedCounter.getAndIncrement();
-                    logger.debug(
-                            "Evicted component id with uuid '{}' from command '{}', last used '{}'",
-                            uuid, componentId.commandName(), lastUsed);
-
-                    // Remove them from the cache if still in there
-                    storeCache.invalidate(uuid);
-                    // Notify all listeners, but non-blocking to not delay eviction
-                    componentIdRemovedListeners
-                        .forEach(listener -> componentIdRemovedListenerService
-                            .execute(() -> listener.accept(componentId)));
-                });
-            });
+        Instant evictUntil =
+                Instant.now().minus(evictDatabaseOlderThan, evictDatabaseOlderThanUnit);
+        int evictedCount = 0;
+        int chunks = 0;
+        Duration maxDatabaseLockHold = Duration.ZERO;
+        Duration maxStoreLockHold = Duration.ZERO;
+
+        while (true) {
+            EvictedChunk chunk =
+                    database.writeChunk(context -> deleteEvictionChunk(context, evictUntil));
+            if (chunk.records().isEmpty()) {
+                break;
+            }
+
+            Duration storeLockHold = removeEvicted(chunk.records());
+            evictedCount += chunk.records().size();
+            chunks++;
+            maxDatabaseLockHold = max(maxDatabaseLockHold, chunk.databaseLockHold());
+            maxStoreLockHold = max(maxStoreLockHold, storeLockHold);
         }
 
-        if (evictedCounter.get() != 0) {
-            logger.info("Evicted {} old non-permanent component ids from the database",
-                    evictedCounter.get());
+        EvictionSummary summary =
+                new EvictionSummary(evictedCount, chunks, maxDatabaseLockHold, maxStoreLockHold);
+        if (evictedCount != 0) {
+            logger.info("Evicted old non-permanent component ids from the database: {}",
+                    summary.describe());
         }
+        return summary;
     }
 
-    private static @NotNull String serializeComponentId(@NotNull ComponentId componentId) {
-        try {
-            return CSV.writerFor(ComponentId.class)
-                .with(CSV.schemaFor(ComponentId.class))
-                .writeValueAsString(componentId);
-        } catch (JsonProcessingException e) {
-            throw new InvalidComponentIdFormatException(e);
+    private static @NotNull EvictedChunk deleteEvictionChunk(@NotNull DSLContext context,
+            @NotNull Instant evictUntil) {
+        long start = System.nanoTime();
+        Result<Record2<String, byte[]>> oldRecords = context
+            .select(ComponentIds.COMPONENT_IDS.UUID, ComponentIds.COMPONENT_IDS.COMPONENT_ID)
+            .from(ComponentIds.COMPONENT_IDS)
+            .where(ComponentIds.COMPONENT_IDS.LIFESPAN.notEqual(Lifespan.PERMANENT.name())
+                .and(ComponentIds.COMPONENT_IDS.LAST_USED.lessOrEqual(evictUntil)))
+            .limit(EVICT_DATABASE_CHUNK_SIZE)
+            .fetch();
+
+        // jOOQ does not render DELETE ... RETURNING for SQLite, the selected chunk is hence deleted
+        // by a second statement of the same transaction
+        if (!oldRecords.isEmpty()) {
+            context.deleteFrom(ComponentIds.COMPONENT_IDS)
+                .where(ComponentIds.COMPONENT_IDS.UUID
+                    .in(oldRecords.getValues(ComponentIds.COMPONENT_IDS.UUID)))
+                .execute();
         }
+        return new EvictedChunk(oldRecords, Duration.ofNanos(System.nanoTime() - start));
     }
 
-    private static @NotNull ComponentId deserializeComponentId(@NotNull String componentId) {
-        try {
-            return CSV.readerFor(ComponentId.class)
-                .with(CSV.schemaFor(ComponentId.class))
-                .readValue(componentId);
-        } catch (JsonProcessingException e) {
-            throw new InvalidComponentIdFormatException(e);
+    /**
+     * Removes the given committed chunk of evicted component IDs from the cache and notifies the
+     * listeners about them.
+     *
+     * @param evictedRecords the evicted component IDs
+     * @return the time the store lock was held
+     */
+    private @NotNull Duration removeEvicted(
+            @NotNull Result<Record2<String, byte[]>> evictedRecords) {
+        List<UUID> evictedUuids = new ArrayList<>(evictedRecords.size());
+        List<ComponentId> evictedComponentIds = new ArrayList<>(evictedRecords.size());
+        for (Record2<String, byte[]> evictedRecord : evictedRecords) {
+            UUID uuid = UUID.fromString(evictedRecord.value1());
+            evictedUuids.add(uuid);
+            try {
+                ComponentId componentId = ComponentIdCodec.decode(evictedRecord.value2());
+                evictedComponentIds.add(componentId);
+                logger.debug("Evicted component id with uuid '{}' from command '{}'", uuid,
+                        componentId.commandName());
+            } catch (InvalidComponentIdFormatException e) {
+                logger.warn("Evicted the unreadable component id with uuid '{}'", uuid, e);
+            }
+        }
+
+        evictionCount.incrementAndGet();
+        long lockStart;
+        long lockEnd;
+        synchronized (storeLock) {
+            lockStart = System.nanoTime();
+            // Remove them from the cache if still in there
+            storeCache.invalidateAll(evictedUuids);
+            lockEnd = System.nanoTime();
+        }
+
+        // Notify all listeners in bulk, but non-blocking to not delay eviction
+        componentIdRemovedListeners.forEach(listener -> componentIdRemovedListenerService
+            .execute(() -> evictedComponentIds.forEach(listener)));
+        return Duration.ofNanos(lockEnd - lockStart);
+    }
+
+    private static @NotNull Duration max(@NotNull Duration first, @NotNull Duration second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    /**
+     * Rewrites all component IDs that are still persisted in the legacy CSV format into the binary
+     * format. Legacy component IDs that can not be read at all are deleted, they could never be
+     * looked up anyway.
+     */
+    private void migrateLegacyComponentIds() {
+        int migratedRecords = database.writeInChunks(context -> {
+            Result<ComponentIdsRecord> legacyRecords =
+                    context.selectFrom(ComponentIds.COMPONENT_IDS)
+                        .where(IS_LEGACY_COMPONENT_ID)
+                        .limit(MIGRATE_DATABASE_CHUNK_SIZE)
+                        .fetch();
+
+            for (ComponentIdsRecord legacyRecord : legacyRecords) {
+                try {
+                    ComponentId componentId =
+                            ComponentIdCodec.decode(legacyRecord.getComponentId());
+                    legacyRecord.setComponentId(ComponentIdCodec.encode(componentId)).update();
+                } catch (InvalidComponentIdFormatException e) {
+                    logger.warn("Deleting the unreadable legacy component id with uuid '{}'",
+                            legacyRecord.getUuid(), e);
+                    legacyRecord.delete();
+                }
+            }
+            return legacyRecords.size();
+        });
+
+        if (migratedRecords != 0) {
+            logger.info("Migrated {} legacy component ids to the binary format", migratedRecords);
         }
     }
 
@@ -324,11 +563,23 @@ public final class ComponentIdStore implements AutoCloseable {
 
     @Override
     public void close() {
-        heatService.shutdown();
         if (evictionTask != null) {
             evictionTask.cancel(false);
         }
+        if (flushLastUsedTask != null) {
+            flushLastUsedTask.cancel(false);
+        }
         evictionService.shutdown();
         componentIdRemovedListenerService.shutdown();
+
+        try {
+            flushLastUsed().join();
+        } catch (IllegalStateException | CompletionException e) {
+            logger.warn("Unable to flush the usage of component ids while closing the store", e);
+        }
+    }
+
+    private record EvictedChunk(@NotNull Result<Record2<String, byte[]>> records,
+            @NotNull Duration databaseLockHold) {
     }
 }
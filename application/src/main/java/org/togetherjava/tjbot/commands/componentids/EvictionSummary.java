@@ -0,0 +1,31 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Summary of a single eviction of old component IDs from the {@link ComponentIdStore}.
+ *
+ * @param evictedCount the amount of component IDs that have been evicted
+ * @param chunks the amount of chunks the component IDs have been evicted in, each deleted in its
+ *        own transaction
+ * @param maxDatabaseLockHold the longest time a single chunk held the write lock of the database,
+ *        excluding the commit
+ * @param maxStoreLockHold the longest time a single chunk held the lock of the store, which blocks
+ *        putting new component IDs
+ */
+public record EvictionSummary(int evictedCount, int chunks, @NotNull Duration maxDatabaseLockHold,
+        @NotNull Duration maxStoreLockHold) {
+
+    /**
+     * Describes this summary in a single human-readable line.
+     *
+     * @return a human-readable description of this summary
+     */
+    public @NotNull String describe() {
+        return "evicted=%d chunks=%d max-database-lock-hold=%.1fms max-store-lock-hold=%.3fms"
+            .formatted(evictedCount, chunks, maxDatabaseLockHold.toNanos() / 1_000_000.0,
+                    maxStoreLockHold.toNanos() / 1_000_000.0);
+    }
+}
@@ -16,6 +16,15 @@ public final class InvalidComponentIdFormatException extends RuntimeException {
      */
     public InvalidComponentIdFormatException() {}
 
+    /**
+     * Creates a new instance with a given message.
+     *
+     * @param message the message of this exception
+     */
+    public InvalidComponentIdFormatException(String message) {
+        super(message);
+    }
+
     /**
      * Creates a new instance with a given cause.
      *
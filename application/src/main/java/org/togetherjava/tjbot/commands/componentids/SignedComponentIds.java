@@ -0,0 +1,147 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Component ID strategy that encodes small payloads directly into the component ID, instead of
+ * persisting them in the database.
+ * <p>
+ * Discord allows component IDs of up to {@value #MAX_LENGTH} characters. Payloads that fit are
+ * encoded in a compact binary format and signed with a HMAC, so that they can neither be forged nor
+ * altered by users. Parsing them back does not require any database access. Payloads that do not
+ * fit are handed to the fallback strategy instead, typically the {@link ComponentIdStore}.
+ * <p>
+ * Encoded component IDs start with {@value #PREFIX}, which never occurs in UUIDs, followed by the
+ * URL-safe Base64 encoding of the payload in the format of {@link ComponentIdCodec}, followed by
+ * the first {@value #SIGNATURE_LENGTH} bytes of its HMAC-SHA256.
+ * <p>
+ * Encoded component IDs are not persisted, they hence never expire regardless of their
+ * {@link Lifespan} and are not reported to listeners of the store. They stay valid as long as the
+ * key does not change.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class SignedComponentIds implements ComponentIdGenerator, ComponentIdParser {
+    /**
+     * The maximal length of component IDs accepted by Discord.
+     */
+    static final int MAX_LENGTH = 100;
+    private static final String PREFIX = "~";
+    private static final int SIGNATURE_LENGTH = 12;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    /**
+     * The maximal amount of bytes whose Base64 encoding fits into a component ID.
+     */
+    private static final int MAX_ENCODED_BYTES = (MAX_LENGTH - PREFIX.length()) * 3 / 4;
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    /**
+     * Mac instances are not thread-safe, each thread signs with its own.
+     */
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::createMac);
+    private final ComponentIdGenerator fallbackGenerator;
+    private final ComponentIdParser fallbackParser;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param key the secret key to sign component IDs with, must not be empty
+     * @param fallbackGenerator the strategy to generate component IDs whose payload does not fit
+     * @param fallbackParser the strategy to parse component IDs not generated by this strategy
+     */
+    public SignedComponentIds(byte @NotNull [] key, @NotNull ComponentIdGenerator fallbackGenerator,
+            @NotNull ComponentIdParser fallbackParser) {
+        this.key = new SecretKeySpec(key, MAC_ALGORITHM);
+        this.fallbackGenerator = fallbackGenerator;
+        this.fallbackParser = fallbackParser;
+        // Fails early if the key is not accepted
+        createMac();
+    }
+
+    @Override
+    public @NotNull String generate(@NotNull ComponentId componentId, @NotNull Lifespan lifespan) {
+        return encode(componentId)
+            .orElseGet(() -> fallbackGenerator.generate(componentId, lifespan));
+    }
+
+    @Override
+    public @NotNull Optional<ComponentId> parse(@NotNull String uuid) {
+        if (!uuid.startsWith(PREFIX)) {
+            return fallbackParser.parse(uuid);
+        }
+        return Optional.of(decode(uuid));
+    }
+
+    /**
+     * Encodes and signs the given payload into a component ID, if it fits.
+     *
+     * @param componentId the payload to encode
+     * @return the component ID for the payload, empty if it does not fit
+     */
+    @NotNull
+    Optional<String> encode(@NotNull ComponentId componentId) {
+        byte[] content = ComponentIdCodec.encode(componentId);
+        if (content.length + SIGNATURE_LENGTH > MAX_ENCODED_BYTES) {
+            return Optional.empty();
+        }
+
+        byte[] bytes = Arrays.copyOf(content, content.length + SIGNATURE_LENGTH);
+        System.arraycopy(sign(content), 0, bytes, content.length, SIGNATURE_LENGTH);
+        return Optional.of(PREFIX + BASE64_ENCODER.encodeToString(bytes));
+    }
+
+    /**
+     * Verifies and decodes a component ID generated by {@link #encode(ComponentId)}.
+     *
+     * @param id the component ID to decode, starting with {@value #PREFIX}
+     * @return the payload of the component ID
+     * @throws InvalidComponentIdFormatException if the component ID is malformed or its signature
+     *         is not valid
+     */
+    @NotNull
+    ComponentId decode(@NotNull String id) {
+        byte[] bytes;
+        try {
+            bytes = BASE64_DECODER.decode(id.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidComponentIdFormatException(e);
+        }
+        if (bytes.length <= SIGNATURE_LENGTH) {
+            throw new InvalidComponentIdFormatException("The component ID is too short: " + id);
+        }
+
+        byte[] content = Arrays.copyOf(bytes, bytes.length - SIGNATURE_LENGTH);
+        byte[] signature = Arrays.copyOfRange(bytes, content.length, bytes.length);
+        if (!MessageDigest.isEqual(sign(content), signature)) {
+            throw new InvalidComponentIdFormatException(
+                    "The signature of the component ID is not valid: " + id);
+        }
+
+        return ComponentIdCodec.decodeBinary(content);
+    }
+
+    private byte @NotNull [] sign(byte @NotNull [] content) {
+        return Arrays.copyOf(mac.get().doFinal(content), SIGNATURE_LENGTH);
+    }
+
+    private @NotNull Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(MAC_ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create the " + MAC_ALGORITHM + " signer", e);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Implementation of a tex command which takes a string and renders an image corresponding to the
@@ -63,22 +64,9 @@ public class TeXCommand extends SlashCommandAdapter {
             return;
         }
         event.deferReply().queue();
-        Image image = formula.createBufferedImage(TeXConstants.STYLE_DISPLAY, DEFAULT_IMAGE_SIZE,
-                FOREGROUND_COLOR, BACKGROUND_COLOR);
-        if (image.getWidth(null) == -1 || image.getHeight(null) == -1) {
-            event.getHook().setEphemeral(true).editOriginal(RENDERING_ERROR).queue();
-            logger.warn(
-                    "Unable to render latex, image does not have an accessible width or height. Formula was {}",
-                    latex);
-            return;
-        }
-        BufferedImage renderedTextImage = new BufferedImage(image.getWidth(null),
-                image.getHeight(null), BufferedImage.TYPE_4BYTE_ABGR);
-        renderedTextImage.getGraphics().drawImage(image, 0, 0, null);
-        ByteArrayOutputStream renderedTextImageStream = new ByteArrayOutputStream();
-
+        Optional<byte[]> renderedImage;
         try {
-            ImageIO.write(renderedTextImage, "png", renderedTextImageStream);
+            renderedImage = renderAsPng(formula);
         } catch (IOException e) {
             event.getHook().setEphemeral(true).editOriginal(RENDERING_ERROR).queue();
             logger.warn(
@@ -86,12 +74,41 @@ public class TeXCommand extends SlashCommandAdapter {
                     latex, e);
             return;
         }
+        if (renderedImage.isEmpty()) {
+            event.getHook().setEphemeral(true).editOriginal(RENDERING_ERROR).queue();
+            logger.warn(
+                    "Unable to render latex, image does not have an accessible width or height. Formula was {}",
+                    latex);
+            return;
+        }
         event.getHook()
-            .editOriginal(renderedTextImageStream.toByteArray(), "tex.png")
+            .editOriginal(renderedImage.orElseThrow(), "tex.png")
             .setActionRow(Button.of(ButtonStyle.DANGER, generateComponentId(userID), "Delete"))
             .queue();
     }
 
+    /**
+     * Renders the given formula as PNG image, in the style used by this command.
+     *
+     * @param formula the formula to render
+     * @return the PNG encoded image, empty if the rendered image does not have an accessible width
+     *         or height
+     * @throws IOException if the image could not be encoded as PNG
+     */
+    static @NotNull Optional<byte[]> renderAsPng(@NotNull TeXFormula formula) throws IOException {
+        Image image = formula.createBufferedImage(TeXConstants.STYLE_DISPLAY, DEFAULT_IMAGE_SIZE,
+                FOREGROUND_COLOR, BACKGROUND_COLOR);
+        if (image.getWidth(null) == -1 || image.getHeight(null) == -1) {
+            return Optional.empty();
+        }
+        BufferedImage renderedTextImage = new BufferedImage(image.getWidth(null),
+                image.getHeight(null), BufferedImage.TYPE_4BYTE_ABGR);
+        renderedTextImage.getGraphics().drawImage(image, 0, 0, null);
+        ByteArrayOutputStream renderedTextImageStream = new ByteArrayOutputStream();
+        ImageIO.write(renderedTextImage, "png", renderedTextImageStream);
+        return Optional.of(renderedTextImageStream.toByteArray());
+    }
+
     @Override
     public void onButtonClick(@NotNull final ButtonClickEvent event,
             @NotNull final List<String> args) {
@@ -13,6 +13,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.togetherjava.tjbot.commands.SlashCommandAdapter;
 import org.togetherjava.tjbot.commands.SlashCommandVisibility;
+import org.togetherjava.tjbot.commands.system.AcknowledgementWatchdog;
 import org.togetherjava.tjbot.config.Config;
 
 import java.time.ZoneOffset;
@@ -111,6 +112,12 @@ public final class AuditCommand extends SlashCommandAdapter {
         return allElements;
     }
 
+    @Override
+    public boolean isAutoDeferred() {
+        // All responses go through the hook
+        return true;
+    }
+
     @Override
     public void onSlashCommand(@NotNull SlashCommandEvent event) {
         OptionMapping targetOption =
@@ -141,18 +148,20 @@ public final class AuditCommand extends SlashCommandAdapter {
 
     private void auditUser(@NotNull User user, @NotNull ISnowflake guild,
             @NotNull Interaction event) {
+        // Reading the actions from the database and computing messages for them, which might
+        // require asking the Discord API, can exceed the acknowledgement budget. Hence, all
+        // responses go through the hook.
+        AcknowledgementWatchdog.deferReply(event);
+
         List<ActionRecord> actions =
                 actionsStore.getActionsByTargetAscending(guild.getIdLong(), user.getIdLong());
 
         MessageEmbed summary = createSummaryMessage(user, actions);
         if (actions.isEmpty()) {
-            event.replyEmbeds(summary).queue();
+            event.getHook().sendMessageEmbeds(summary).queue();
             return;
         }
 
-        // Computing messages for actual actions is done deferred and might require asking the
-        // Discord API
-        event.deferReply().queue();
         JDA jda = event.getJDA();
 
         RestAction<List<MessageEmbed>> messagesTask = RestAction
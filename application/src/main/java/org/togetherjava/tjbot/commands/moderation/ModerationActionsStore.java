@@ -3,14 +3,19 @@ package org.togetherjava.tjbot.commands.moderation;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jooq.Condition;
-import org.togetherjava.tjbot.db.Database;
+import org.jooq.DSLContext;
+import org.jooq.ResultQuery;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 import org.togetherjava.tjbot.db.generated.tables.ModerationActions;
 import org.togetherjava.tjbot.db.generated.tables.records.ModerationActionsRecord;
 
 import java.time.Instant;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Store for moderation actions, e.g. as banning users. Can be used to retrieve information about
@@ -19,7 +24,12 @@ import java.util.Optional;
  * Actions have to be added to the store using
  * {@link #addAction(long, long, long, ModerationAction, Instant, String)} at the time they are
  * executed and can then be retrieved by methods such as
- * {@link #getActionsByTypeAscending(long, ModerationAction)} or {@link #findActionByCaseId(int)}.
+ * {@link #getActionsByTypeAscending(long, ModerationAction)} or
+ * {@link #findActionByCaseId(long, int)}.
+ * <p>
+ * Actions are stored in the database of the guild they happened in, see {@link ShardedDatabase}.
+ * Queries across all guilds, such as {@link #getExpiredActionsAscending()}, gather the actions of
+ * all guild databases.
  * <p>
  * Be aware that timestamps associated with actions, such as {@link ActionRecord#issuedAt()} are
  * slightly off the timestamps used by Discord.
@@ -28,15 +38,15 @@ import java.util.Optional;
  */
 @SuppressWarnings("ClassCanBeRecord")
 public final class ModerationActionsStore {
-    private final Database database;
+    private final ShardedDatabase guildDatabase;
 
     /**
      * Creates a new instance which writes and retrieves actions from a given database.
      *
-     * @param database the database to write and retrieve actions from
+     * @param guildDatabase the database to write and retrieve actions from
      */
-    public ModerationActionsStore(@NotNull Database database) {
-        this.database = Objects.requireNonNull(database);
+    public ModerationActionsStore(@NotNull ShardedDatabase guildDatabase) {
+        this.guildDatabase = Objects.requireNonNull(guildDatabase);
     }
 
     /**
@@ -46,10 +56,32 @@ public final class ModerationActionsStore {
      * @return a list of all expired actions, chronologically ascending
      */
     public @NotNull List<ActionRecord> getExpiredActionsAscending() {
-        return getActionsAscendingWhere(
-                ModerationActions.MODERATION_ACTIONS.ACTION_EXPIRES_AT.isNotNull()
-                    .and(ModerationActions.MODERATION_ACTIONS.ACTION_EXPIRES_AT
-                        .lessOrEqual(Instant.now())));
+        return streamExpiredActionsAscending(Stream::toList);
+    }
+
+    /**
+     * Streams all already expired actions, measured by the current time, which have been written to
+     * the store, chronologically ascending with the action issued the earliest first.
+     * <p>
+     * Unlike {@link #getExpiredActionsAscending()}, the actions are fetched lazily, so that they do
+     * not have to be held in memory all at once, also if there is a database per guild. The stream
+     * is only valid within the given handler, see
+     * {@link ShardedDatabase#readStreamAll(org.togetherjava.tjbot.db.util.CheckedFunction, Comparator, Function)}.
+     *
+     * @param actionsHandler the handler consuming the expired actions, chronologically ascending
+     * @param <T> the type returned by the handler
+     * @return the result returned by the handler
+     */
+    public <T> T streamExpiredActionsAscending(
+            @NotNull Function<? super Stream<ActionRecord>, T> actionsHandler) {
+        Objects.requireNonNull(actionsHandler);
+        Condition isExpired = ModerationActions.MODERATION_ACTIONS.ACTION_EXPIRES_AT.isNotNull()
+            .and(ModerationActions.MODERATION_ACTIONS.ACTION_EXPIRES_AT.lessOrEqual(Instant.now()));
+
+        return guildDatabase.readStreamAll(
+                context -> selectActionsAscendingWhere(context, isExpired),
+                Comparator.comparing(ModerationActionsRecord::getIssuedAt),
+                records -> actionsHandler.apply(records.map(ActionRecord::of)));
     }
 
     /**
@@ -109,7 +141,7 @@ public final class ModerationActionsStore {
      */
     public @NotNull Optional<ActionRecord> findLastActionAgainstTargetByType(long guildId,
             long targetId, @NotNull ModerationAction actionType) {
-        return database
+        return guildDatabase.forGuild(guildId)
             .read(context -> context.selectFrom(ModerationActions.MODERATION_ACTIONS)
                 .where(ModerationActions.MODERATION_ACTIONS.GUILD_ID.eq(guildId)
                     .and(ModerationActions.MODERATION_ACTIONS.TARGET_ID.eq(targetId))
@@ -123,20 +155,22 @@ public final class ModerationActionsStore {
     /**
      * Gets the action with the given case id from the store, if present.
      *
+     * @param guildId the id of the guild the action happened in
      * @param caseId the actions' case id to search for
      * @return the action with the given case id, if present
      */
-    public @NotNull Optional<ActionRecord> findActionByCaseId(int caseId) {
-        return database
+    public @NotNull Optional<ActionRecord> findActionByCaseId(long guildId, int caseId) {
+        return guildDatabase.forGuild(guildId)
             .read(context -> context.selectFrom(ModerationActions.MODERATION_ACTIONS)
-                .where(ModerationActions.MODERATION_ACTIONS.CASE_ID.eq(caseId))
+                .where(ModerationActions.MODERATION_ACTIONS.GUILD_ID.eq(guildId)
+                    .and(ModerationActions.MODERATION_ACTIONS.CASE_ID.eq(caseId)))
                 .fetchOptional())
             .map(ActionRecord::of);
     }
 
     /**
-     * Adds the given action to the store. A unique case id will be associated to the action and
-     * returned.
+     * Adds the given action to the store. A case id, unique within the guild, will be associated to
+     * the action and returned.
      * <p>
      * It is assumed that the action is issued at the point in time this method is called. It is not
      * possible to assign a different timestamp, especially not an earlier point in time.
@@ -150,7 +184,7 @@ public final class ModerationActionsStore {
      * @param actionExpiresAt the instant at which this action expires, for temporary actions;
      *        otherwise {@code null}
      * @param reason the reason why this action was executed
-     * @return the unique case id associated with the action
+     * @return the case id associated with the action
      */
     @SuppressWarnings("MethodWithTooManyParameters")
     public int addAction(long guildId, long authorId, long targetId,
@@ -159,7 +193,7 @@ public final class ModerationActionsStore {
         Objects.requireNonNull(actionType);
         Objects.requireNonNull(reason);
 
-        return database.writeAndProvide(context -> {
+        return guildDatabase.forGuild(guildId).writeAndProvide(context -> {
             ModerationActionsRecord actionRecord =
                     context.newRecord(ModerationActions.MODERATION_ACTIONS)
                         .setIssuedAt(Instant.now())
@@ -178,18 +212,17 @@ public final class ModerationActionsStore {
             @NotNull Condition condition) {
         Objects.requireNonNull(condition);
 
-        return getActionsAscendingWhere(
-                ModerationActions.MODERATION_ACTIONS.GUILD_ID.eq(guildId).and(condition));
+        Condition guildCondition =
+                ModerationActions.MODERATION_ACTIONS.GUILD_ID.eq(guildId).and(condition);
+        return guildDatabase.forGuild(guildId)
+            .read(context -> selectActionsAscendingWhere(context, guildCondition)
+                .fetch(ActionRecord::of));
     }
 
-    private @NotNull List<ActionRecord> getActionsAscendingWhere(@NotNull Condition condition) {
-        Objects.requireNonNull(condition);
-
-        return database.read(context -> context.selectFrom(ModerationActions.MODERATION_ACTIONS)
+    private static @NotNull ResultQuery<ModerationActionsRecord> selectActionsAscendingWhere(
+            @NotNull DSLContext context, @NotNull Condition condition) {
+        return context.selectFrom(ModerationActions.MODERATION_ACTIONS)
             .where(condition)
-            .orderBy(ModerationActions.MODERATION_ACTIONS.ISSUED_AT.asc())
-            .stream()
-            .map(ActionRecord::of)
-            .toList());
+            .orderBy(ModerationActions.MODERATION_ACTIONS.ISSUED_AT.asc());
     }
 }
@@ -8,6 +8,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.commands.system.AcknowledgementWatchdog;
 import org.togetherjava.tjbot.config.Config;
 
 import java.awt.*;
@@ -55,11 +56,9 @@ public enum ModerationUtils {
             return true;
         }
 
-        event
-            .reply("The reason can not be longer than %d characters (current length is %d)."
-                .formatted(REASON_MAX_LENGTH, reason.length()))
-            .setEphemeral(true)
-            .queue();
+        AcknowledgementWatchdog.replyEphemeral(event,
+                "The reason can not be longer than %d characters (current length is %d)."
+                    .formatted(REASON_MAX_LENGTH, reason.length()));
         return false;
     }
 
@@ -81,19 +80,14 @@ public enum ModerationUtils {
             @NotNull Member author, @NotNull Member target, @NotNull Interaction event) {
         String targetTag = target.getUser().getAsTag();
         if (!author.canInteract(target)) {
-            event
-                .reply("The user %s is too powerful for you to %s.".formatted(targetTag,
-                        actionVerb))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "The user %s is too powerful for you to %s.".formatted(targetTag, actionVerb));
             return false;
         }
 
         if (!bot.canInteract(target)) {
-            event
-                .reply("The user %s is too powerful for me to %s.".formatted(targetTag, actionVerb))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "The user %s is too powerful for me to %s.".formatted(targetTag, actionVerb));
             return false;
         }
         return true;
@@ -115,20 +109,16 @@ public enum ModerationUtils {
     static boolean handleCanInteractWithRole(@NotNull Member bot, @NotNull Member author,
             @NotNull Role role, @NotNull Interaction event) {
         if (!author.canInteract(role)) {
-            event
-                .reply("The role %s is too powerful for you to interact with."
-                    .formatted(role.getAsMention()))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "The role %s is too powerful for you to interact with."
+                        .formatted(role.getAsMention()));
             return false;
         }
 
         if (!bot.canInteract(role)) {
-            event
-                .reply("The role %s is too powerful for me to interact with."
-                    .formatted(role.getAsMention()))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "The role %s is too powerful for me to interact with."
+                        .formatted(role.getAsMention()));
             return false;
         }
         return true;
@@ -151,11 +141,9 @@ public enum ModerationUtils {
             @NotNull Permission permission, @NotNull IPermissionHolder bot, @NotNull Guild guild,
             @NotNull Interaction event) {
         if (!bot.hasPermission(permission)) {
-            event
-                .reply("I can not %s users in this guild since I do not have the %s permission."
-                    .formatted(actionVerb, permission))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "I can not %s users in this guild since I do not have the %s permission."
+                        .formatted(actionVerb, permission));
 
             logger.error("The bot does not have the '{}' permission on the guild '{}'.", permission,
                     guild.getName());
@@ -165,11 +153,9 @@ public enum ModerationUtils {
     }
 
     private static void handleAbsentTarget(@NotNull String actionVerb, @NotNull Interaction event) {
-        event
-            .reply("I can not %s the given user since they are not part of the guild anymore."
-                .formatted(actionVerb))
-            .setEphemeral(true)
-            .queue();
+        AcknowledgementWatchdog.replyEphemeral(event,
+                "I can not %s the given user since they are not part of the guild anymore."
+                    .formatted(actionVerb));
     }
 
     /**
@@ -208,11 +194,9 @@ public enum ModerationUtils {
             @NotNull Guild guild, @NotNull Predicate<? super String> hasRequiredRole,
             @NotNull CharSequence reason, @NotNull Interaction event) {
         if (role == null) {
-            event
-                .reply("Can not %s the user, unable to find the corresponding role on this server"
-                    .formatted(actionVerb))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "Can not %s the user, unable to find the corresponding role on this server"
+                        .formatted(actionVerb));
             logger.warn("The guild '{}' does not have a role to {} users.", guild.getName(),
                     actionVerb);
             return false;
@@ -256,11 +240,9 @@ public enum ModerationUtils {
             @NotNull Permission permission, @NotNull IPermissionHolder author, @NotNull Guild guild,
             @NotNull Interaction event) {
         if (!author.hasPermission(permission)) {
-            event
-                .reply("You can not %s users in this guild since you do not have the %s permission."
-                    .formatted(actionVerb, permission))
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "You can not %s users in this guild since you do not have the %s permission."
+                        .formatted(actionVerb, permission));
             return false;
         }
         return true;
@@ -285,11 +267,9 @@ public enum ModerationUtils {
         if (author.getRoles().stream().map(Role::getName).anyMatch(hasRequiredRole)) {
             return true;
         }
-        event
-            .reply("You can not %s users in this guild since you do not have the required role."
-                .formatted(actionVerb))
-            .setEphemeral(true)
-            .queue();
+        AcknowledgementWatchdog.replyEphemeral(event,
+                "You can not %s users in this guild since you do not have the required role."
+                    .formatted(actionVerb));
         return false;
     }
 
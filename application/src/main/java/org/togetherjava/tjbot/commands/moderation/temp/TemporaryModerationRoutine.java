@@ -67,11 +67,12 @@ public final class TemporaryModerationRoutine implements Routine {
     private void checkExpiredActions() {
         logger.debug("Checking expired temporary moderation actions to revoke...");
 
-        actionsStore.getExpiredActionsAscending()
-            .stream()
-            .filter(action -> typeToRevocableAction.containsKey(action.actionType()))
-            .map(RevocationGroupIdentifier::of)
-            .collect(Collectors.toSet())
+        // Only the groups are collected, all expired actions might not fit into memory
+        actionsStore
+            .streamExpiredActionsAscending(actions -> actions
+                .filter(action -> typeToRevocableAction.containsKey(action.actionType()))
+                .map(RevocationGroupIdentifier::of)
+                .collect(Collectors.toSet()))
             .forEach(this::processGroupedActions);
 
         logger.debug("Finished checking expired temporary moderation actions to revoke.");
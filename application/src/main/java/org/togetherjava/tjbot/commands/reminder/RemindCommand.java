@@ -9,7 +9,7 @@ import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import org.jetbrains.annotations.NotNull;
 import org.togetherjava.tjbot.commands.SlashCommandAdapter;
 import org.togetherjava.tjbot.commands.SlashCommandVisibility;
-import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 
 import java.time.*;
 import java.time.temporal.TemporalAmount;
@@ -44,14 +44,14 @@ public final class RemindCommand extends SlashCommandAdapter {
     private static final Period MAX_TIME_PERIOD = Period.ofYears(3);
     private static final int MAX_PENDING_REMINDERS_PER_USER = 100;
 
-    private final Database database;
+    private final ShardedDatabase guildDatabase;
 
     /**
      * Creates an instance of the command.
      *
-     * @param database to store and fetch the reminders from
+     * @param guildDatabase to store and fetch the reminders from
      */
-    public RemindCommand(@NotNull Database database) {
+    public RemindCommand(@NotNull ShardedDatabase guildDatabase) {
         super(COMMAND_NAME, "Reminds you after a given time period has passed (e.g. in 5 weeks)",
                 SlashCommandVisibility.GUILD);
 
@@ -67,7 +67,7 @@ public final class RemindCommand extends SlashCommandAdapter {
         getData().addOptions(timeUnit, timeAmount)
             .addOption(OptionType.STRING, CONTENT_OPTION, "what to remind you about", true);
 
-        this.database = database;
+        this.guildDatabase = guildDatabase;
     }
 
     @Override
@@ -90,14 +90,16 @@ public final class RemindCommand extends SlashCommandAdapter {
             .setEphemeral(true)
             .queue();
 
-        database.write(context -> context.newRecord(PENDING_REMINDERS)
-            .setCreatedAt(Instant.now())
-            .setGuildId(event.getGuild().getIdLong())
-            .setChannelId(event.getChannel().getIdLong())
-            .setAuthorId(author.getIdLong())
-            .setRemindAt(remindAt)
-            .setContent(content)
-            .insert());
+        long guildId = event.getGuild().getIdLong();
+        guildDatabase.forGuild(guildId)
+            .write(context -> context.newRecord(PENDING_REMINDERS)
+                .setCreatedAt(Instant.now())
+                .setGuildId(guildId)
+                .setChannelId(event.getChannel().getIdLong())
+                .setAuthorId(author.getIdLong())
+                .setRemindAt(remindAt)
+                .setContent(content)
+                .insert());
     }
 
     private static @NotNull Instant parseWhen(int whenAmount, @NotNull String whenUnit) {
@@ -134,8 +136,13 @@ public final class RemindCommand extends SlashCommandAdapter {
 
     private boolean handleIsUserBelowMaxPendingReminders(@NotNull ISnowflake author,
             @NotNull Interaction event) {
-        int pendingReminders = database.read(context -> context.fetchCount(PENDING_REMINDERS,
-                PENDING_REMINDERS.AUTHOR_ID.equal(author.getIdLong())));
+        // The limit applies across all guilds
+        int pendingReminders = guildDatabase
+            .readAll(context -> context.fetchCount(PENDING_REMINDERS,
+                    PENDING_REMINDERS.AUTHOR_ID.equal(author.getIdLong())))
+            .stream()
+            .mapToInt(Integer::intValue)
+            .sum();
 
         if (pendingReminders < MAX_PENDING_REMINDERS_PER_USER) {
             return true;
@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.commands.Routine;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 
 import java.awt.*;
 import java.time.Instant;
@@ -30,15 +31,15 @@ public final class RemindRoutine implements Routine {
     private static final Logger logger = LoggerFactory.getLogger(RemindRoutine.class);
     private static final Color AMBIENT_COLOR = Color.decode("#F7F492");
     private static final int SCHEDULE_INTERVAL_SECONDS = 30;
-    private final Database database;
+    private final ShardedDatabase guildDatabase;
 
     /**
      * Creates a new instance.
      *
-     * @param database the database that contains the pending reminders to send.
+     * @param guildDatabase the database that contains the pending reminders to send.
      */
-    public RemindRoutine(@NotNull Database database) {
-        this.database = database;
+    public RemindRoutine(@NotNull ShardedDatabase guildDatabase) {
+        this.guildDatabase = guildDatabase;
     }
 
     @Override
@@ -50,6 +51,11 @@ public final class RemindRoutine implements Routine {
     @Override
     public void runRoutine(@NotNull JDA jda) {
         Instant now = Instant.now();
+        guildDatabase.getDatabases().forEach(database -> sendPendingReminders(jda, database, now));
+    }
+
+    private static void sendPendingReminders(@NotNull JDA jda, @NotNull Database database,
+            @NotNull Instant now) {
         database.write(context -> context.selectFrom(PENDING_REMINDERS)
             .where(PENDING_REMINDERS.REMIND_AT.lessOrEqual(now))
             .stream()
@@ -0,0 +1,25 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Summary of all watched interactions of a command, see
+ * {@link AcknowledgementWatchdog#getSummaries()}.
+ *
+ * @param commandName the name of the command
+ * @param count the amount of watched interactions
+ * @param autoDeferrals the amount of interactions the watchdog deferred, since the handler did not
+ *        acknowledge them in time
+ */
+public record AcknowledgementSummary(@NotNull String commandName, long count, long autoDeferrals) {
+
+    /**
+     * Describes this summary in a single human-readable line.
+     *
+     * @return a human-readable description of this summary
+     */
+    public @NotNull String describe() {
+        return "%-20s count=%d auto-deferrals=%d (%.1f%%)".formatted(commandName, count,
+                autoDeferrals, count == 0 ? 0.0 : 100.0 * autoDeferrals / count);
+    }
+}
@@ -0,0 +1,198 @@
+package org.togetherjava.tjbot.commands.system;
+
+import net.dv8tion.jda.api.interactions.Interaction;
+import net.dv8tion.jda.api.interactions.components.ComponentInteraction;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watchdog that acknowledges interactions whose handlers take too long to do so.
+ * <p>
+ * Discord drops interactions that are not acknowledged within 3 seconds after they were triggered,
+ * the user then only sees that the interaction failed. Handlers that have to do expensive work
+ * before replying, or that waited for a thread under load, can miss that deadline. The watchdog
+ * hence checks each interaction once its budget is exceeded and defers it if it was not
+ * acknowledged yet. Slash commands are deferred with a reply, the user sees that the bot is
+ * thinking; component interactions are deferred with an edit, their message stays as it is.
+ * <p>
+ * Only interactions of commands that opt in, see
+ * {@link org.togetherjava.tjbot.commands.SlashCommand#isAutoDeferred()}, are watched. Their
+ * handlers have to respond through the hook of the interaction, for example by
+ * {@link #deferReply(Interaction)} followed by {@code event.getHook().editOriginal(...)}, which
+ * works whether the handler or the watchdog deferred the interaction. A plain
+ * {@code event.reply(...)} fails once the interaction was deferred by the watchdog, short replies
+ * can use {@link #replyEphemeral(Interaction, String)} instead. The watchdog and these methods
+ * acknowledge an interaction while holding its monitor, so that only one of them acknowledges it.
+ * <p>
+ * For each command name, it is recorded how many interactions were watched and how many of them had
+ * to be deferred, see {@link #getSummaries()}, to find slow handlers.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class AcknowledgementWatchdog {
+    private static final Logger logger = LoggerFactory.getLogger(AcknowledgementWatchdog.class);
+    private static final String THREAD_NAME = "acknowledgement-watchdog";
+
+    private final Duration budget;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, DeferralStatistics> nameToStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new watchdog.
+     *
+     * @param budget the time after an interaction was triggered after which it is deferred, if it
+     *        was not acknowledged yet. Should leave enough room to the deadline of Discord for the
+     *        deferral to reach Discord.
+     */
+    public AcknowledgementWatchdog(@NotNull Duration budget) {
+        this.budget = budget;
+
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Watches the given interaction, which was just triggered. It is deferred once the budget is
+     * exceeded, unless its handler acknowledged it until then.
+     *
+     * @param commandName the name of the command handling the interaction, used to record metrics
+     * @param interaction the interaction to watch
+     */
+    public void watch(@NotNull String commandName, @NotNull Interaction interaction) {
+        watch(commandName, interaction, System.nanoTime());
+    }
+
+    /**
+     * Watches the given interaction, which was received at the given time. It is deferred once the
+     * budget, counted from its receipt, is exceeded, unless its handler acknowledged it until then.
+     * <p>
+     * Used for interactions whose command is only known after some work, such as component
+     * interactions, which have to look up their component ID first. The time until then still
+     * counts towards the budget.
+     *
+     * @param commandName the name of the command handling the interaction, used to record metrics
+     * @param interaction the interaction to watch
+     * @param receivedNanos the time the interaction was received at, as given by
+     *        {@link System#nanoTime()}
+     */
+    public void watch(@NotNull String commandName, @NotNull Interaction interaction,
+            long receivedNanos) {
+        DeferralStatistics statistics =
+                nameToStatistics.computeIfAbsent(commandName, name -> new DeferralStatistics());
+        statistics.count.increment();
+        long remainingNanos = receivedNanos + budget.toNanos() - System.nanoTime();
+        scheduler.schedule(() -> deferIfUnacknowledged(commandName, interaction, statistics),
+                Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+    }
+
+    private static void deferIfUnacknowledged(@NotNull String commandName,
+            @NotNull Interaction interaction, @NotNull DeferralStatistics statistics) {
+        synchronized (interaction) {
+            if (interaction.isAcknowledged()) {
+                return;
+            }
+
+            logger.debug("Command '{}' did not acknowledge interaction (#{}) in time, deferring it",
+                    commandName, interaction.getId());
+            statistics.autoDeferrals.increment();
+            if (interaction instanceof ComponentInteraction componentInteraction) {
+                componentInteraction.deferEdit().queue();
+            } else {
+                interaction.deferReply().queue();
+            }
+        }
+    }
+
+    /**
+     * Defers the given interaction with a reply, unless it was acknowledged already, for example by
+     * the watchdog. Either way, the handler can respond through the hook of the interaction
+     * afterwards.
+     *
+     * @param interaction the interaction to defer
+     */
+    public static void deferReply(@NotNull Interaction interaction) {
+        synchronized (interaction) {
+            if (!interaction.isAcknowledged()) {
+                interaction.deferReply().queue();
+            }
+        }
+    }
+
+    /**
+     * Replies to the given interaction with an ephemeral message. If the interaction was
+     * acknowledged already, for example by the watchdog, the message is sent through its hook
+     * instead.
+     *
+     * @param interaction the interaction to reply to
+     * @param message the message to reply with
+     */
+    public static void replyEphemeral(@NotNull Interaction interaction, @NotNull String message) {
+        synchronized (interaction) {
+            if (interaction.isAcknowledged()) {
+                interaction.getHook().sendMessage(message).setEphemeral(true).queue();
+            } else {
+                interaction.reply(message).setEphemeral(true).queue();
+            }
+        }
+    }
+
+    /**
+     * Gets summaries of all interactions watched so far, one per command name. Sorted by the amount
+     * of deferrals, descending, so that the slowest handlers come first.
+     *
+     * @return summaries of all watched interactions
+     */
+    public @NotNull List<AcknowledgementSummary> getSummaries() {
+        return nameToStatistics.entrySet()
+            .stream()
+            .map(nameAndStatistics -> nameAndStatistics.getValue()
+                .summarize(nameAndStatistics.getKey()))
+            .sorted(Comparator.comparingLong(AcknowledgementSummary::autoDeferrals).reversed())
+            .toList();
+    }
+
+    /**
+     * Describes all interactions watched so far in a human-readable table, one line per command
+     * name. See {@link #getSummaries()}.
+     *
+     * @return a human-readable description of the watchdog
+     */
+    public @NotNull String describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("acknowledgement budget=%dms".formatted(budget.toMillis()));
+        getSummaries().stream().map(AcknowledgementSummary::describe).forEach(lines::add);
+        return String.join(System.lineSeparator(), lines);
+    }
+
+    /**
+     * Forgets all interactions recorded so far. Interactions that are currently watched are still
+     * deferred if necessary.
+     */
+    public void reset() {
+        nameToStatistics.clear();
+    }
+
+    private static final class DeferralStatistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder autoDeferrals = new LongAdder();
+
+        @NotNull
+        AcknowledgementSummary summarize(@NotNull String commandName) {
+            return new AcknowledgementSummary(commandName, count.sum(), autoDeferrals.sum());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.togetherjava.tjbot.commands.system;
+
+import net.dv8tion.jda.api.entities.ApplicationInfo;
+import net.dv8tion.jda.api.entities.ApplicationTeam;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.commands.SlashCommandAdapter;
+import org.togetherjava.tjbot.commands.SlashCommandVisibility;
+import org.togetherjava.tjbot.db.BackupResult;
+import org.togetherjava.tjbot.routines.DatabaseBackupRoutine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Implementation of the backup command, which backs up the database on demand, while the bot keeps
+ * running.
+ * <p>
+ * The command is {@code /backup} and can only be used by the owner of the bot. The reply, visible
+ * only to the owner, reports size, duration and throughput of the backup.
+ */
+public final class BackupCommand extends SlashCommandAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(BackupCommand.class);
+
+    private final DatabaseBackupRoutine backupRoutine;
+    private final ExecutorService backupService = Executors.newSingleThreadExecutor();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param backupRoutine the routine to create backups with
+     */
+    public BackupCommand(@NotNull DatabaseBackupRoutine backupRoutine) {
+        super("backup", "Backs up the database of the bot. Only usable by the owner of the bot.",
+                SlashCommandVisibility.GUILD);
+        this.backupRoutine = backupRoutine;
+    }
+
+    @Override
+    public void onSlashCommand(@NotNull SlashCommandEvent event) {
+        User user = event.getUser();
+        event.deferReply(true).queue();
+
+        event.getJDA().retrieveApplicationInfo().queue(applicationInfo -> {
+            if (!isOwner(user, applicationInfo)) {
+                logger.debug("Attempted backup but is not the owner, triggered by user '{}'",
+                        user.getId());
+                event.getHook()
+                    .editOriginal("Only the owner of the bot can use this command.")
+                    .queue();
+                return;
+            }
+
+            logger.info("Backing up the database, triggered by user '{}'", user.getId());
+            // Not on the thread of JDA, backups of large databases take a while
+            CompletableFuture.supplyAsync(backupRoutine::createBackup, backupService)
+                .whenComplete((result, failure) -> reportBackup(event.getHook(), result, failure));
+        });
+    }
+
+    private static boolean isOwner(@NotNull User user, @NotNull ApplicationInfo applicationInfo) {
+        ApplicationTeam team = applicationInfo.getTeam();
+        if (team != null) {
+            return team.isMember(user);
+        }
+        return applicationInfo.getOwner().getIdLong() == user.getIdLong();
+    }
+
+    private static void reportBackup(@NotNull InteractionHook hook, BackupResult result,
+            Throwable failure) {
+        if (failure != null) {
+            logger.error("Failed to back up the database", failure);
+            hook.editOriginal("Sorry, the backup failed. See the logs for details.").queue();
+            return;
+        }
+
+        hook.editOriginal("Backed up the database, " + DatabaseBackupRoutine.describe(result))
+            .queue();
+    }
+}
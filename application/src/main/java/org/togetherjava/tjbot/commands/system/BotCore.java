@@ -2,10 +2,13 @@ package org.togetherjava.tjbot.commands.system;
 
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
-import net.dv8tion.jda.api.entities.AbstractChannel;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.events.ReadyEvent;
+import net.dv8tion.jda.api.events.channel.text.TextChannelCreateEvent;
+import net.dv8tion.jda.api.events.channel.text.TextChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.text.update.TextChannelUpdateNameEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
 import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
 import net.dv8tion.jda.api.events.interaction.SelectionMenuEvent;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
@@ -13,6 +16,7 @@ import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageUpdateEvent;
 import net.dv8tion.jda.api.exceptions.ErrorHandler;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.Interaction;
 import net.dv8tion.jda.api.interactions.commands.Command;
 import net.dv8tion.jda.api.interactions.components.ComponentInteraction;
 import net.dv8tion.jda.api.requests.ErrorResponse;
@@ -21,20 +25,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.commands.*;
 import org.togetherjava.tjbot.commands.componentids.ComponentId;
+import org.togetherjava.tjbot.commands.componentids.ComponentIdGenerator;
 import org.togetherjava.tjbot.commands.componentids.ComponentIdParser;
 import org.togetherjava.tjbot.commands.componentids.ComponentIdStore;
 import org.togetherjava.tjbot.commands.componentids.InvalidComponentIdFormatException;
+import org.togetherjava.tjbot.commands.componentids.SignedComponentIds;
+import org.togetherjava.tjbot.config.CommandExecutorConfig;
 import org.togetherjava.tjbot.config.Config;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
+import org.togetherjava.tjbot.routines.CommandMetricsRoutine;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * The bot core is the core of command handling in this application.
@@ -48,17 +56,29 @@ import java.util.stream.Stream;
  * event listener, using {@link net.dv8tion.jda.api.JDA#addEventListener(Object...)}. Afterwards,
  * the system is ready and will correctly forward events to all commands.
  */
-public final class BotCore extends ListenerAdapter implements SlashCommandProvider {
+public final class BotCore extends ListenerAdapter implements SlashCommandProvider, AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(BotCore.class);
     private static final String RELOAD_COMMAND = "reload";
-    private static final ExecutorService COMMAND_SERVICE = Executors.newCachedThreadPool();
+    /**
+     * The signing key shipped by previous versions of the config template.
+     */
+    private static final String SIGNING_KEY_PLACEHOLDER = "<put_a_random_secret_here>";
+    /**
+     * The minimal length of the key to sign component IDs with, in bytes. Matches the output size
+     * of the used MAC, shorter keys make it easier to forge component IDs.
+     */
+    private static final int MIN_SIGNING_KEY_BYTES = 32;
+    private static final String BUSY_MESSAGE =
+            "Sorry, but I am very busy right now. Please try again in a moment.";
     private static final ScheduledExecutorService ROUTINE_SERVICE =
             Executors.newScheduledThreadPool(5);
     private final Config config;
+    private final CommandExecutor commandExecutor;
+    private final AcknowledgementWatchdog acknowledgementWatchdog;
     private final Map<String, SlashCommand> nameToSlashCommands;
     private final ComponentIdParser componentIdParser;
     private final ComponentIdStore componentIdStore;
-    private final Map<Pattern, MessageReceiver> channelNameToMessageReceiver = new HashMap<>();
+    private final MessageReceiverRouter messageReceiverRouter;
 
     /**
      * Creates a new command system which uses the given database to allow commands to persist data.
@@ -67,19 +87,29 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
      *
      * @param jda the JDA instance that this command system will be used with
      * @param database the database that commands may use to persist data
+     * @param guildDatabase the database that commands may use to persist guild-scoped data
      * @param config the configuration to use for this system
      */
     @SuppressWarnings("ThisEscapedInObjectConstruction")
-    public BotCore(@NotNull JDA jda, @NotNull Database database, @NotNull Config config) {
+    public BotCore(@NotNull JDA jda, @NotNull Database database,
+            @NotNull ShardedDatabase guildDatabase, @NotNull Config config) {
         this.config = config;
-        Collection<Feature> features = Features.createFeatures(jda, database, config);
+        CommandExecutorConfig commandExecutorConfig = config.getCommandExecutor();
+        commandExecutor = new CommandExecutor(commandExecutorConfig.getThreads(),
+                commandExecutorConfig.getQueueCapacity(),
+                commandExecutorConfig.getGuildConcurrency(),
+                commandExecutorConfig.getOverloadPolicy(),
+                commandExecutorConfig.getExecutionMode());
+        acknowledgementWatchdog = new AcknowledgementWatchdog(
+                Duration.ofMillis(commandExecutorConfig.getAcknowledgementBudgetMillis()));
+        Collection<Feature> features =
+                Features.createFeatures(jda, database, guildDatabase, config);
 
         // Message receivers
-        features.stream()
+        messageReceiverRouter = new MessageReceiverRouter(features.stream()
             .filter(MessageReceiver.class::isInstance)
             .map(MessageReceiver.class::cast)
-            .forEach(messageReceiver -> channelNameToMessageReceiver
-                .put(messageReceiver.getChannelNamePattern(), messageReceiver));
+            .toList());
 
         // Event receivers
         features.stream()
@@ -91,18 +121,8 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
         features.stream()
             .filter(Routine.class::isInstance)
             .map(Routine.class::cast)
-            .forEach(routine -> {
-                Routine.Schedule schedule = routine.createSchedule();
-                switch (schedule.mode()) {
-                    case FIXED_RATE -> ROUTINE_SERVICE.scheduleAtFixedRate(
-                            () -> routine.runRoutine(jda), schedule.initialDuration(),
-                            schedule.duration(), schedule.unit());
-                    case FIXED_DELAY -> ROUTINE_SERVICE.scheduleWithFixedDelay(
-                            () -> routine.runRoutine(jda), schedule.initialDuration(),
-                            schedule.duration(), schedule.unit());
-                    default -> throw new AssertionError("Unsupported schedule mode");
-                }
-            });
+            .forEach(routine -> scheduleRoutine(routine, jda));
+        scheduleRoutine(new CommandMetricsRoutine(commandExecutor, acknowledgementWatchdog), jda);
 
         // Slash commands
         nameToSlashCommands = features.stream()
@@ -118,20 +138,43 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
 
         componentIdStore = new ComponentIdStore(database);
         componentIdStore.addComponentIdRemovedListener(BotCore::onComponentIdRemoved);
-        componentIdParser = uuid -> componentIdStore.get(UUID.fromString(uuid));
+        ComponentIdParser storeParser = uuid -> componentIdStore.get(UUID.fromString(uuid));
+        ComponentIdGenerator storeGenerator = (componentId, lifespan) -> {
+            UUID uuid = UUID.randomUUID();
+            componentIdStore.putOrThrow(uuid, componentId, lifespan);
+            return uuid.toString();
+        };
+        ComponentIdGenerator componentIdGenerator;
+        String componentIdSigningKey = config.getComponentIdSigningKey();
+        if (componentIdSigningKey == null || componentIdSigningKey.isBlank()) {
+            logger.info(
+                    "No signing key for component ids configured, all component ids are persisted in the database");
+            componentIdGenerator = storeGenerator;
+            componentIdParser = storeParser;
+        } else {
+            // Small payloads are carried by the component ids themselves
+            SignedComponentIds signedComponentIds = new SignedComponentIds(
+                    requireStrongSigningKey(componentIdSigningKey), storeGenerator, storeParser);
+            componentIdGenerator = signedComponentIds;
+            componentIdParser = signedComponentIds;
+        }
         nameToSlashCommands.values()
-            .forEach(slashCommand -> slashCommand
-                .acceptComponentIdGenerator(((componentId, lifespan) -> {
-                    UUID uuid = UUID.randomUUID();
-                    componentIdStore.putOrThrow(uuid, componentId, lifespan);
-                    return uuid.toString();
-                })));
+            .forEach(slashCommand -> slashCommand.acceptComponentIdGenerator(componentIdGenerator));
 
         if (logger.isInfoEnabled()) {
             logger.info("Available commands: {}", nameToSlashCommands.keySet());
         }
     }
 
+    /**
+     * Closes the system, persisting state that has not been written to the database yet, such as
+     * the usage of component IDs. The database must still be open.
+     */
+    @Override
+    public void close() {
+        componentIdStore.close();
+    }
+
     @Override
     public @NotNull Collection<SlashCommand> getSlashCommands() {
         return Collections.unmodifiableCollection(nameToSlashCommands.values());
@@ -148,7 +191,10 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
         logger.debug("JDA is ready, registering reload command");
         event.getJDA()
             .getGuildCache()
-            .forEach(guild -> COMMAND_SERVICE.execute(() -> registerReloadCommand(guild)));
+            .forEach(guild -> commandExecutor.execute(guild.getIdLong(), RELOAD_COMMAND,
+                    () -> registerReloadCommand(guild),
+                    () -> logger.warn("Unable to register '{}' for guild '{}', bot is busy",
+                            RELOAD_COMMAND, guild.getName())));
         // NOTE We do not have to wait for reload to complete for the command system to be ready
         // itself
         logger.debug("Bot core is now ready");
@@ -166,37 +212,111 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
             .forEach(messageReceiver -> messageReceiver.onMessageUpdated(event));
     }
 
-    private @NotNull Stream<MessageReceiver> getMessageReceiversSubscribedTo(
-            @NotNull AbstractChannel channel) {
-        String channelName = channel.getName();
-        return channelNameToMessageReceiver.entrySet()
-            .stream()
-            .filter(patternAndReceiver -> patternAndReceiver.getKey()
-                .matcher(channelName)
-                .matches())
-            .map(Map.Entry::getValue);
+    private @NotNull List<MessageReceiver> getMessageReceiversSubscribedTo(
+            @NotNull TextChannel channel) {
+        return messageReceiverRouter.getReceivers(channel.getIdLong(), channel.getName());
+    }
+
+    // NOTE Message receivers are routed by channel name, so the routes of channels whose name
+    // changes have to be invalidated. JDA dispatches events sequentially, so an invalidation can
+    // not race with a message of the same channel.
+    @Override
+    public void onTextChannelCreate(@NotNull TextChannelCreateEvent event) {
+        messageReceiverRouter.invalidate(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onTextChannelUpdateName(@NotNull TextChannelUpdateNameEvent event) {
+        messageReceiverRouter.invalidate(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onTextChannelDelete(@NotNull TextChannelDeleteEvent event) {
+        messageReceiverRouter.invalidate(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onGuildLeave(@NotNull GuildLeaveEvent event) {
+        event.getGuild()
+            .getTextChannelCache()
+            .forEach(channel -> messageReceiverRouter.invalidate(channel.getIdLong()));
     }
 
     @Override
     public void onSlashCommand(@NotNull SlashCommandEvent event) {
         logger.debug("Received slash command '{}' (#{}) on guild '{}'", event.getName(),
                 event.getId(), event.getGuild());
-        COMMAND_SERVICE.execute(() -> requireSlashCommand(event.getName()).onSlashCommand(event));
+        watchIfAutoDeferred(requireSlashCommand(event.getName()), event, System.nanoTime());
+        commandExecutor.execute(getGuildId(event), event.getName(),
+                () -> requireSlashCommand(event.getName()).onSlashCommand(event),
+                () -> replyBusy(event));
     }
 
     @Override
     public void onButtonClick(@NotNull ButtonClickEvent event) {
         logger.debug("Received button click '{}' (#{}) on guild '{}'", event.getComponentId(),
                 event.getId(), event.getGuild());
-        COMMAND_SERVICE.execute(() -> forwardComponentCommand(event, SlashCommand::onButtonClick));
+        // The command is only known once the component ID was parsed, which is done by the executor
+        long receivedNanos = System.nanoTime();
+        commandExecutor.execute(getGuildId(event), "button click",
+                () -> forwardComponentCommand(event, receivedNanos, SlashCommand::onButtonClick),
+                () -> replyBusy(event));
     }
 
     @Override
     public void onSelectionMenu(@NotNull SelectionMenuEvent event) {
         logger.debug("Received selection menu event '{}' (#{}) on guild '{}'",
                 event.getComponentId(), event.getId(), event.getGuild());
-        COMMAND_SERVICE
-            .execute(() -> forwardComponentCommand(event, SlashCommand::onSelectionMenu));
+        long receivedNanos = System.nanoTime();
+        commandExecutor.execute(getGuildId(event), "selection menu",
+                () -> forwardComponentCommand(event, receivedNanos, SlashCommand::onSelectionMenu),
+                () -> replyBusy(event));
+    }
+
+    /**
+     * Requires that the given key to sign component IDs with is not the placeholder of the config
+     * template and long enough.
+     *
+     * @param signingKey the configured signing key
+     * @return the bytes of the signing key
+     * @throws IllegalStateException if the signing key is the placeholder or too short
+     */
+    private static byte @NotNull [] requireStrongSigningKey(@NotNull String signingKey) {
+        if (SIGNING_KEY_PLACEHOLDER.equals(signingKey)) {
+            throw new IllegalStateException(
+                    "The 'componentIdSigningKey' in the config is still the placeholder of the template. Set it to a random secret of at least %d bytes, or leave it empty to persist all component ids in the database."
+                        .formatted(MIN_SIGNING_KEY_BYTES));
+        }
+
+        byte[] key = signingKey.getBytes(StandardCharsets.UTF_8);
+        if (key.length < MIN_SIGNING_KEY_BYTES) {
+            throw new IllegalStateException(
+                    "The 'componentIdSigningKey' in the config has only %d bytes, but must have at least %d bytes. Set it to a longer random secret, or leave it empty to persist all component ids in the database."
+                        .formatted(key.length, MIN_SIGNING_KEY_BYTES));
+        }
+        return key;
+    }
+
+    private static void scheduleRoutine(@NotNull Routine routine, @NotNull JDA jda) {
+        Routine.Schedule schedule = routine.createSchedule();
+        switch (schedule.mode()) {
+            case FIXED_RATE -> ROUTINE_SERVICE.scheduleAtFixedRate(() -> routine.runRoutine(jda),
+                    schedule.initialDuration(), schedule.duration(), schedule.unit());
+            case FIXED_DELAY -> ROUTINE_SERVICE.scheduleWithFixedDelay(
+                    () -> routine.runRoutine(jda), schedule.initialDuration(), schedule.duration(),
+                    schedule.unit());
+            default -> throw new AssertionError("Unsupported schedule mode");
+        }
+    }
+
+    private static long getGuildId(@NotNull Interaction event) {
+        Guild guild = event.getGuild();
+        return guild == null ? CommandExecutor.NO_GUILD_ID : guild.getIdLong();
+    }
+
+    private static void replyBusy(@NotNull Interaction event) {
+        // The watchdog might have deferred the interaction already while it was waiting
+        AcknowledgementWatchdog.replyEphemeral(event, BUSY_MESSAGE);
     }
 
     private void registerReloadCommand(@NotNull Guild guild) {
@@ -224,16 +344,19 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
      *
      * <pre>
      * {@code
-     * forwardComponentCommand(event, SlashCommand::onSelectionMenu);
+     * forwardComponentCommand(event, receivedNanos, SlashCommand::onSelectionMenu);
      * }
      * </pre>
      *
      * @param event the component event that should be forwarded
+     * @param receivedNanos the time the event was received at, as given by
+     *        {@link System#nanoTime()}, used to defer it in time if the command opted in
      * @param commandArgumentConsumer the action to trigger on the associated slash command,
      *        providing the event and list of arguments for consumption
      * @param <T> the type of the component interaction that should be forwarded
      */
     private <T extends ComponentInteraction> void forwardComponentCommand(@NotNull T event,
+            long receivedNanos,
             @NotNull TriConsumer<? super SlashCommand, ? super T, ? super List<String>> commandArgumentConsumer) {
         Optional<ComponentId> componentIdOpt;
         try {
@@ -250,9 +373,8 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
         if (componentIdOpt.isEmpty()) {
             logger.warn("The event (#{}) has an expired component ID, which was: {}.",
                     event.getId(), event.getComponentId());
-            event.reply("Sorry, but this event has expired. You can not use it anymore.")
-                .setEphemeral(true)
-                .queue();
+            AcknowledgementWatchdog.replyEphemeral(event,
+                    "Sorry, but this event has expired. You can not use it anymore.");
             return;
         }
         ComponentId componentId = componentIdOpt.orElseThrow();
@@ -260,9 +382,27 @@ public final class BotCore extends ListenerAdapter implements SlashCommandProvid
         SlashCommand command = requireSlashCommand(componentId.commandName());
         logger.trace("Routing a component event with id '{}' back to command '{}'",
                 event.getComponentId(), command.getName());
+        watchIfAutoDeferred(command, event, receivedNanos);
         commandArgumentConsumer.accept(command, event, componentId.elements());
     }
 
+    /**
+     * Watches the given interaction with the acknowledgement watchdog, if its command opted in to
+     * be deferred automatically, see {@link SlashCommand#isAutoDeferred()}. Interactions of other
+     * commands are acknowledged by their handlers only.
+     *
+     * @param command the command handling the interaction
+     * @param event the interaction to watch
+     * @param receivedNanos the time the interaction was received at, as given by
+     *        {@link System#nanoTime()}
+     */
+    private void watchIfAutoDeferred(@NotNull SlashCommand command, @NotNull Interaction event,
+            long receivedNanos) {
+        if (command.isAutoDeferred()) {
+            acknowledgementWatchdog.watch(command.getName(), event, receivedNanos);
+        }
+    }
+
     /**
      * Gets the given slash command by its name and requires that it exists.
      *
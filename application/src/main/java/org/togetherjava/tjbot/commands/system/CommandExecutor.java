@@ -0,0 +1,611 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.metrics.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for slash commands and component events, which serves guilds fairly.
+ * <p>
+ * Commands are executed by a fixed amount of threads. If all of them are busy, commands wait in a
+ * queue of their guild. Guilds with waiting commands are served round-robin, one command at a time,
+ * so a guild flooding the bot with commands does not delay the commands of other guilds by more
+ * than one command each. Additionally, each guild may only execute a limited amount of commands
+ * concurrently, so that a single guild can not occupy all threads.
+ * <p>
+ * The queues of all guilds together have a limited capacity. Once it is reached, the executor is
+ * overloaded and rejects a command of the guild with the most waiting commands, according to its
+ * {@link OverloadPolicy}. Rejected commands are not executed, their rejection handler is called
+ * instead, typically to tell the user that the bot is busy. This way, a spam wave of commands does
+ * neither spawn an unbounded amount of threads, nor pile up commands that would only be answered
+ * once the user gave up on them, nor push the commands of other guilds past their deadline.
+ * <p>
+ * Commands run either on platform threads or on virtual threads, see {@link ExecutionMode}. Most
+ * commands spend their time blocked on the database or on Discord, which virtual threads handle
+ * without occupying an OS thread each. With virtual threads, the amount of threads can hence be set
+ * much higher.
+ * <p>
+ * For each command name, the time spent waiting in the queue and executing is recorded, see
+ * {@link #getSummaries()}. For each guild, the depth of its queue and the time its commands waited
+ * is recorded, see {@link #getGuildSummaries()}. Both are described by {@link #describe()}.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class CommandExecutor {
+    /**
+     * The guild id to use for commands that were not triggered in a guild, for example in direct
+     * messages. Such commands are all served as if they came from the same guild.
+     */
+    public static final long NO_GUILD_ID = 0;
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandExecutor.class);
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+    private static final String THREAD_NAME_PREFIX = "command-";
+    /**
+     * The amount of guilds listed by {@link #describe()}, the ones whose commands waited the
+     * longest.
+     */
+    private static final int DESCRIBED_GUILDS = 10;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int queueCapacity;
+    private final int guildConcurrency;
+    private final OverloadPolicy overloadPolicy;
+    private final ExecutionMode executionMode;
+    private final Map<String, CommandStatistics> nameToStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the queues of all guilds, the rotation and the counters below.
+     */
+    private final Object queueLock = new Object();
+    private final Map<Long, GuildQueue> guildIdToQueue = new HashMap<>();
+    /**
+     * Guilds that have waiting commands and may execute another one, in the order they are served.
+     */
+    private final Deque<GuildQueue> rotation = new ArrayDeque<>();
+    private int queueDepth;
+    private int peakQueueDepth;
+    private int executingCommands;
+    /**
+     * The amount of threads taking commands from the queues, see {@link #drainQueues()}.
+     */
+    private int drainers;
+
+    /**
+     * Creates a new executor.
+     *
+     * @param threads the maximal amount of commands executed concurrently, must be positive
+     * @param queueCapacity the maximal amount of commands waiting for a thread, over all guilds,
+     *        must be positive
+     * @param guildConcurrency the maximal amount of commands of a single guild executed
+     *        concurrently, must be positive
+     * @param overloadPolicy which command to reject when the executor is overloaded
+     * @param executionMode the kind of threads to execute commands on. Falls back to platform
+     *        threads if virtual threads are requested but not supported by the JVM.
+     */
+    public CommandExecutor(int threads, int queueCapacity, int guildConcurrency,
+            @NotNull OverloadPolicy overloadPolicy, @NotNull ExecutionMode executionMode) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.guildConcurrency = guildConcurrency;
+        this.overloadPolicy = overloadPolicy;
+
+        Optional<ThreadFactory> virtualThreadFactory =
+                executionMode == ExecutionMode.VIRTUAL ? createVirtualThreadFactory()
+                        : Optional.empty();
+        if (executionMode == ExecutionMode.VIRTUAL && virtualThreadFactory.isEmpty()) {
+            logger.warn(
+                    "Virtual threads are not supported by this JVM ({}), executing commands on platform threads instead",
+                    Runtime.version());
+        }
+        this.executionMode =
+                virtualThreadFactory.isPresent() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+
+        // Commands wait in the queues of their guilds, there are never more drainers than threads
+        executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                virtualThreadFactory.orElseGet(CommandExecutor::createPlatformThreadFactory));
+        // Threads are only kept alive while there is something to do
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Executes the given command asynchronously, or rejects it if the executor is overloaded.
+     * <p>
+     * The rejection handler is called either right away, or later, when another command caused this
+     * command to be rejected. In both cases, it is called on the thread that submitted a command.
+     * It should hence return quickly, for example by queuing a reply instead of waiting for it.
+     *
+     * @param guildId the id of the guild the command was triggered in, or {@link #NO_GUILD_ID}
+     * @param commandName the name of the command, used to record metrics
+     * @param command the command to execute
+     * @param rejectionHandler the handler to call instead of the command, if it is rejected
+     */
+    public void execute(long guildId, @NotNull String commandName, @NotNull Runnable command,
+            @NotNull Runnable rejectionHandler) {
+        CommandTask rejectedTask = null;
+        boolean startDrainer = false;
+        synchronized (queueLock) {
+            GuildQueue guildQueue = guildIdToQueue.computeIfAbsent(guildId, GuildQueue::new);
+            CommandTask task = new CommandTask(guildQueue, getStatistics(commandName), commandName,
+                    command, rejectionHandler, System.nanoTime());
+
+            if (queueDepth >= queueCapacity) {
+                rejectedTask = removeOnOverload(guildQueue).orElse(task);
+            }
+            if (rejectedTask != task) {
+                enqueue(task);
+            }
+
+            if (drainers < threads && !rotation.isEmpty()) {
+                drainers++;
+                startDrainer = true;
+            }
+        }
+
+        if (rejectedTask != null) {
+            reject(rejectedTask);
+        }
+        if (startDrainer) {
+            executor.execute(this::drainQueues);
+        }
+    }
+
+    /**
+     * Gets the kind of threads commands are executed on. Differs from the requested mode if the JVM
+     * does not support virtual threads.
+     *
+     * @return the kind of threads commands are executed on
+     */
+    public @NotNull ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Gets the amount of threads that are currently executing a command.
+     *
+     * @return the amount of active threads
+     */
+    public int getActiveThreads() {
+        synchronized (queueLock) {
+            return executingCommands;
+        }
+    }
+
+    /**
+     * Gets the maximal amount of commands executed concurrently.
+     *
+     * @return the amount of threads executing commands
+     */
+    public int getMaximalThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the amount of commands that currently wait for a thread, over all guilds.
+     *
+     * @return the current depth of the queue
+     */
+    public int getQueueDepth() {
+        synchronized (queueLock) {
+            return queueDepth;
+        }
+    }
+
+    /**
+     * Gets the largest amount of commands that waited for a thread at once, over all guilds, since
+     * the last {@link #reset()}.
+     *
+     * @return the peak depth of the queue
+     */
+    public int getPeakQueueDepth() {
+        synchronized (queueLock) {
+            return peakQueueDepth;
+        }
+    }
+
+    /**
+     * Gets the maximal amount of commands that can wait for a thread, over all guilds.
+     *
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets summaries of all commands executed or rejected so far, one per command name. Sorted by
+     * the total time spent executing the command, descending.
+     *
+     * @return summaries of all recorded commands
+     */
+    public @NotNull List<CommandSummary> getSummaries() {
+        return nameToStatistics.entrySet()
+            .stream()
+            .map(nameAndStatistics -> nameAndStatistics.getValue()
+                .summarize(nameAndStatistics.getKey()))
+            .sorted(Comparator.comparing(CommandSummary::totalDuration).reversed())
+            .toList();
+    }
+
+    /**
+     * Gets summaries of the queues of all guilds that submitted commands so far. Sorted by the 99th
+     * percentile of the time their commands waited, descending, so that guilds at risk of missing
+     * the deadline of Discord come first.
+     *
+     * @return summaries of the queues of all guilds
+     */
+    public @NotNull List<GuildQueueSummary> getGuildSummaries() {
+        List<GuildQueueSummary> summaries;
+        synchronized (queueLock) {
+            summaries = guildIdToQueue.values().stream().map(GuildQueue::summarize).toList();
+        }
+        return summaries.stream()
+            .sorted(Comparator.comparing(GuildQueueSummary::waitP99).reversed())
+            .toList();
+    }
+
+    /**
+     * Describes the state of the executor and all commands recorded so far in a human-readable
+     * table, one line per command name, followed by the guilds whose commands waited the longest.
+     * See {@link #getSummaries()} and {@link #getGuildSummaries()}.
+     *
+     * @return a human-readable description of the executor
+     */
+    public @NotNull String describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(
+                "%s threads active=%d/%d | queue depth=%d peak=%d capacity=%d | guild concurrency=%d"
+                    .formatted(executionMode, getActiveThreads(), threads, getQueueDepth(),
+                            getPeakQueueDepth(), queueCapacity, guildConcurrency));
+        getSummaries().stream().map(CommandSummary::describe).forEach(lines::add);
+        getGuildSummaries().stream()
+            .limit(DESCRIBED_GUILDS)
+            .map(GuildQueueSummary::describe)
+            .forEach(lines::add);
+        return String.join(System.lineSeparator(), lines);
+    }
+
+    /**
+     * Forgets all commands recorded so far and resets the peak depth of the queues.
+     */
+    public void reset() {
+        nameToStatistics.clear();
+        synchronized (queueLock) {
+            peakQueueDepth = queueDepth;
+            // Forgets idle guilds, so that guilds the bot left do not pile up
+            guildIdToQueue.values().removeIf(GuildQueue::isIdle);
+            guildIdToQueue.values().forEach(GuildQueue::reset);
+        }
+    }
+
+    private @NotNull CommandStatistics getStatistics(@NotNull String commandName) {
+        return nameToStatistics.computeIfAbsent(commandName, name -> new CommandStatistics());
+    }
+
+    /**
+     * Takes commands from the queues and executes them, until no guild has a command that may be
+     * executed anymore. Executed by at most {@link #threads} threads at once.
+     */
+    private void drainQueues() {
+        CommandTask task = takeNext(null);
+        while (task != null) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // The thread dies, the command and the drainer slot must still be returned, or
+                // the guild and the executor stay blocked
+                abandon(task);
+                throw e;
+            }
+            task = takeNext(task);
+        }
+    }
+
+    /**
+     * Takes the next command to execute, from the guild whose turn it is.
+     *
+     * @param executedTask the command the calling thread executed before, if any
+     * @return the next command to execute, or {@code null} if the calling thread should stop
+     *         draining, since no guild has a command that may be executed
+     */
+    private @Nullable CommandTask takeNext(@Nullable CommandTask executedTask) {
+        synchronized (queueLock) {
+            if (executedTask != null) {
+                complete(executedTask);
+            }
+
+            GuildQueue guildQueue = rotation.pollFirst();
+            if (guildQueue == null) {
+                drainers--;
+                return null;
+            }
+            guildQueue.inRotation = false;
+
+            CommandTask task = guildQueue.waiting.removeFirst();
+            queueDepth--;
+            guildQueue.executing++;
+            executingCommands++;
+            // Puts the guild at the end of the rotation, if it may execute more commands
+            updateRotation(guildQueue);
+            return task;
+        }
+    }
+
+    /**
+     * Gives up draining after the given command failed with an error that ends the calling thread.
+     * Another thread takes over, if commands are still waiting.
+     *
+     * @param executedTask the command the calling thread executed
+     */
+    private void abandon(@NotNull CommandTask executedTask) {
+        boolean startDrainer;
+        synchronized (queueLock) {
+            complete(executedTask);
+            // The slot of the calling thread is handed over to the new drainer
+            startDrainer = !rotation.isEmpty();
+            if (!startDrainer) {
+                drainers--;
+            }
+        }
+
+        if (startDrainer) {
+            executor.execute(this::drainQueues);
+        }
+    }
+
+    /**
+     * Marks the given command as no longer executing. Must be called while holding
+     * {@link #queueLock}.
+     *
+     * @param executedTask the command that was executed
+     */
+    private void complete(@NotNull CommandTask executedTask) {
+        GuildQueue executedGuild = executedTask.guildQueue();
+        executedGuild.executing--;
+        executingCommands--;
+        updateRotation(executedGuild);
+    }
+
+    /**
+     * Adds the given command to the queue of its guild. Must be called while holding
+     * {@link #queueLock}.
+     *
+     * @param task the command to add
+     */
+    private void enqueue(@NotNull CommandTask task) {
+        GuildQueue guildQueue = task.guildQueue();
+        guildQueue.waiting.addLast(task);
+        guildQueue.peakDepth = Math.max(guildQueue.peakDepth, guildQueue.waiting.size());
+        queueDepth++;
+        peakQueueDepth = Math.max(peakQueueDepth, queueDepth);
+        updateRotation(guildQueue);
+    }
+
+    /**
+     * Removes a command to make room for a submitted command, since the executor is overloaded. The
+     * command is taken from the guild with the most waiting commands, preferring the guild of the
+     * submitted command on ties. Must be called while holding {@link #queueLock}.
+     *
+     * @param submittingGuild the guild of the submitted command
+     * @return the removed command to reject, empty if the submitted command itself should be
+     *         rejected instead
+     */
+    private @NotNull Optional<CommandTask> removeOnOverload(@NotNull GuildQueue submittingGuild) {
+        GuildQueue noisiestGuild = submittingGuild;
+        for (GuildQueue guildQueue : guildIdToQueue.values()) {
+            if (guildQueue.waiting.size() > noisiestGuild.waiting.size()) {
+                noisiestGuild = guildQueue;
+            }
+        }
+
+        if (noisiestGuild == submittingGuild && overloadPolicy == OverloadPolicy.REJECT_NEWEST) {
+            return Optional.empty();
+        }
+        CommandTask removedTask =
+                overloadPolicy == OverloadPolicy.REJECT_OLDEST ? noisiestGuild.waiting.removeFirst()
+                        : noisiestGuild.waiting.removeLast();
+        queueDepth--;
+        updateRotation(noisiestGuild);
+        return Optional.of(removedTask);
+    }
+
+    /**
+     * Adds the given guild to the end of the rotation if it may execute a command now, or removes
+     * it from the rotation otherwise. Must be called while holding {@link #queueLock}.
+     *
+     * @param guildQueue the guild to update
+     */
+    private void updateRotation(@NotNull GuildQueue guildQueue) {
+        boolean mayExecute =
+                !guildQueue.waiting.isEmpty() && guildQueue.executing < guildConcurrency;
+        if (mayExecute && !guildQueue.inRotation) {
+            rotation.addLast(guildQueue);
+            guildQueue.inRotation = true;
+        } else if (!mayExecute && guildQueue.inRotation) {
+            rotation.remove(guildQueue);
+            guildQueue.inRotation = false;
+        }
+    }
+
+    private static @NotNull ThreadFactory createPlatformThreadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+    }
+
+    /**
+     * Creates a factory for virtual threads, if supported by the JVM. Virtual threads are only
+     * available as of Java 21, they are hence created reflectively so that the bot still runs on
+     * older versions.
+     *
+     * @return the factory for virtual threads, if supported by the JVM
+     */
+    private static @NotNull Optional<ThreadFactory> createVirtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class)
+                .invoke(builder, THREAD_NAME_PREFIX, 1L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            // Either not available or a preview feature that is not enabled
+            logger.debug("Unable to create virtual threads", e);
+            return Optional.empty();
+        }
+    }
+
+    private static void reject(@NotNull CommandTask task) {
+        task.statistics().rejections.increment();
+        task.guildQueue().statistics.rejections.increment();
+        logger.debug("Rejected command '{}' of guild '{}' since the command executor is overloaded",
+                task.commandName(), task.guildQueue().guildId);
+        try {
+            task.rejectionHandler().run();
+        } catch (RuntimeException e) {
+            logger.error("Unable to handle the rejection of command '{}'", task.commandName(), e);
+        }
+    }
+
+    /**
+     * The kind of threads commands are executed on.
+     */
+    public enum ExecutionMode {
+        /**
+         * Executes commands on platform threads, each backed by an OS thread.
+         */
+        PLATFORM,
+        /**
+         * Executes commands on virtual threads, which release their OS thread while blocked. Only
+         * supported as of Java 21.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * Which command to reject when the executor is overloaded, that is, when all threads are busy
+     * and the queues are full. The command is always taken from the guild with the most waiting
+     * commands, so that other guilds are not affected by a single noisy guild.
+     */
+    public enum OverloadPolicy {
+        /**
+         * Rejects the newest command of the guild, which is the submitted command if it belongs to
+         * that guild. Favors fairness, but users wait the longest during an overload.
+         */
+        REJECT_NEWEST,
+        /**
+         * Rejects the command of the guild that waited the longest. Favors fresh commands, which
+         * are more likely to still be awaited by their user.
+         */
+        REJECT_OLDEST
+    }
+
+    private record CommandTask(@NotNull GuildQueue guildQueue,
+            @NotNull CommandStatistics statistics, @NotNull String commandName,
+            @NotNull Runnable command, @NotNull Runnable rejectionHandler,
+            long submittedNanos) implements Runnable {
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            long waitNanos = startNanos - submittedNanos;
+            statistics.waits.record(waitNanos);
+            guildQueue.statistics.waits.record(waitNanos);
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                statistics.failures.increment();
+                logger.error("Command '{}' failed", commandName, e);
+            } catch (Error e) {
+                statistics.failures.increment();
+                logger.error("Command '{}' failed with an error", commandName, e);
+                throw e;
+            } finally {
+                statistics.durations.record(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private static final class CommandStatistics {
+        private final Histogram waits = new Histogram();
+        private final Histogram durations = new Histogram();
+        private final LongAdder rejections = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        @NotNull
+        CommandSummary summarize(@NotNull String commandName) {
+            return new CommandSummary(commandName, durations.getCount(), rejections.sum(),
+                    failures.sum(), Duration.ofNanos(durations.getSum()),
+                    Duration.ofNanos(durations.getValueAtPercentile(50)),
+                    Duration.ofNanos(durations.getValueAtPercentile(99)),
+                    Duration.ofNanos(durations.getMax()),
+                    Duration.ofNanos(waits.getValueAtPercentile(50)),
+                    Duration.ofNanos(waits.getValueAtPercentile(99)),
+                    Duration.ofNanos(waits.getMax()));
+        }
+    }
+
+    /**
+     * The commands of a single guild. All fields, except for the statistics, are guarded by
+     * {@link #queueLock}.
+     */
+    private static final class GuildQueue {
+        private final long guildId;
+        private final Deque<CommandTask> waiting = new ArrayDeque<>();
+        private int executing;
+        private boolean inRotation;
+        private int peakDepth;
+        /**
+         * Replaced as a whole on {@link #reset()}, so that commands recording concurrently do not
+         * need the lock.
+         */
+        private volatile GuildStatistics statistics = new GuildStatistics();
+
+        GuildQueue(long guildId) {
+            this.guildId = guildId;
+        }
+
+        boolean isIdle() {
+            return waiting.isEmpty() && executing == 0;
+        }
+
+        void reset() {
+            peakDepth = waiting.size();
+            statistics = new GuildStatistics();
+        }
+
+        @NotNull
+        GuildQueueSummary summarize() {
+            GuildStatistics currentStatistics = statistics;
+            Histogram waits = currentStatistics.waits;
+            return new GuildQueueSummary(guildId, waiting.size(), peakDepth, executing,
+                    waits.getCount(), currentStatistics.rejections.sum(),
+                    Duration.ofNanos(waits.getValueAtPercentile(50)),
+                    Duration.ofNanos(waits.getValueAtPercentile(99)),
+                    Duration.ofNanos(waits.getMax()));
+        }
+    }
+
+    private static final class GuildStatistics {
+        private final Histogram waits = new Histogram();
+        private final LongAdder rejections = new LongAdder();
+    }
+}
@@ -0,0 +1,44 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Summary of all executed and rejected commands of a name, see
+ * {@link CommandExecutor#getSummaries()}.
+ *
+ * @param commandName the name of the commands
+ * @param count the amount of executed commands
+ * @param rejections the amount of commands rejected since the executor was overloaded
+ * @param failures the amount of executed commands that threw an exception
+ * @param totalDuration the time spent executing all commands together
+ * @param durationP50 the median time spent executing a command
+ * @param durationP99 the 99th percentile of the time spent executing a command
+ * @param durationMax the longest time spent executing a command
+ * @param waitP50 the median time a command waited in the queue
+ * @param waitP99 the 99th percentile of the time a command waited in the queue
+ * @param waitMax the longest time a command waited in the queue
+ */
+@SuppressWarnings("ConstructorWithTooManyParameters")
+public record CommandSummary(@NotNull String commandName, long count, long rejections,
+        long failures, @NotNull Duration totalDuration, @NotNull Duration durationP50,
+        @NotNull Duration durationP99, @NotNull Duration durationMax, @NotNull Duration waitP50,
+        @NotNull Duration waitP99, @NotNull Duration waitMax) {
+
+    /**
+     * Describes this summary in a single human-readable line.
+     *
+     * @return a human-readable description of this summary
+     */
+    public @NotNull String describe() {
+        return "%-20s count=%d rejections=%d failures=%d total=%s | duration p50=%s p99=%s max=%s | wait p50=%s p99=%s max=%s"
+            .formatted(commandName, count, rejections, failures, toMillis(totalDuration),
+                    toMillis(durationP50), toMillis(durationP99), toMillis(durationMax),
+                    toMillis(waitP50), toMillis(waitP99), toMillis(waitMax));
+    }
+
+    private static @NotNull String toMillis(@NotNull Duration duration) {
+        return "%.3fms".formatted(duration.toNanos() / 1_000_000.0);
+    }
+}
@@ -0,0 +1,39 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Summary of the commands of a guild, see {@link CommandExecutor#getGuildSummaries()}.
+ *
+ * @param guildId the id of the guild, or {@link CommandExecutor#NO_GUILD_ID}
+ * @param depth the amount of commands of the guild currently waiting for a thread
+ * @param peakDepth the largest amount of commands of the guild that waited for a thread at once
+ * @param executing the amount of commands of the guild currently executed
+ * @param count the amount of commands of the guild that started executing
+ * @param rejections the amount of commands of the guild rejected since the executor was overloaded
+ * @param waitP50 the median time a command of the guild waited in the queue
+ * @param waitP99 the 99th percentile of the time a command of the guild waited in the queue
+ * @param waitMax the longest time a command of the guild waited in the queue
+ */
+@SuppressWarnings("ConstructorWithTooManyParameters")
+public record GuildQueueSummary(long guildId, int depth, int peakDepth, int executing, long count,
+        long rejections, @NotNull Duration waitP50, @NotNull Duration waitP99,
+        @NotNull Duration waitMax) {
+
+    /**
+     * Describes this summary in a single human-readable line.
+     *
+     * @return a human-readable description of this summary
+     */
+    public @NotNull String describe() {
+        return "guild %-20d count=%d rejections=%d executing=%d | queue depth=%d peak=%d | wait p50=%s p99=%s max=%s"
+            .formatted(guildId, count, rejections, executing, depth, peakDepth, toMillis(waitP50),
+                    toMillis(waitP99), toMillis(waitMax));
+    }
+
+    private static @NotNull String toMillis(@NotNull Duration duration) {
+        return "%.3fms".formatted(duration.toNanos() / 1_000_000.0);
+    }
+}
@@ -0,0 +1,91 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.jetbrains.annotations.NotNull;
+import org.togetherjava.tjbot.commands.MessageReceiver;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes guild messages to the {@link MessageReceiver}s subscribed to their channel.
+ * <p>
+ * Receivers subscribe to channels by a pattern matching the channel name. Matching all patterns
+ * against the name of the channel of each message and edit is comparatively expensive, so the
+ * receivers of a channel are determined once, when the first message of the channel is routed, and
+ * looked up by channel id afterwards.
+ * <p>
+ * Since the receivers depend on the name of the channel, the route of a channel should be
+ * invalidated once it is renamed or deleted, see {@link #invalidate(long)}. Routes also remember
+ * the channel name they were determined for, so a rename that was missed is still picked up by the
+ * next message, at the cost of comparing the names.
+ * <p>
+ * Instances are thread-safe.
+ */
+final class MessageReceiverRouter {
+    private final List<MessageReceiver> receivers;
+    private final Map<Long, Route> channelIdToRoute = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new router.
+     *
+     * @param receivers all message receivers to route messages to
+     */
+    MessageReceiverRouter(@NotNull Collection<? extends MessageReceiver> receivers) {
+        this.receivers = List.copyOf(receivers);
+    }
+
+    /**
+     * Gets all receivers subscribed to the given channel.
+     *
+     * @param channelId the id of the channel
+     * @param channelName the current name of the channel
+     * @return the receivers subscribed to the channel, unmodifiable. Empty if none is subscribed.
+     */
+    @NotNull
+    List<MessageReceiver> getReceivers(long channelId, @NotNull String channelName) {
+        Route route = channelIdToRoute.get(channelId);
+        if (route == null || !route.channelName().equals(channelName)) {
+            route = new Route(channelName, matchReceivers(channelName));
+            channelIdToRoute.put(channelId, route);
+        }
+        return route.receivers();
+    }
+
+    /**
+     * Forgets the route of the given channel, for example since it was renamed or deleted. The
+     * receivers are determined again on the next message of the channel.
+     *
+     * @param channelId the id of the channel
+     */
+    void invalidate(long channelId) {
+        channelIdToRoute.remove(channelId);
+    }
+
+    /**
+     * Gets the amount of channels whose route is known.
+     *
+     * @return the amount of routed channels
+     */
+    int getRoutedChannels() {
+        return channelIdToRoute.size();
+    }
+
+    /**
+     * Determines the receivers subscribed to a channel with the given name, by matching the name
+     * against the pattern of each receiver.
+     *
+     * @param channelName the name of the channel
+     * @return the receivers subscribed to the channel
+     */
+    @NotNull
+    List<MessageReceiver> matchReceivers(@NotNull CharSequence channelName) {
+        return receivers.stream()
+            .filter(receiver -> receiver.getChannelNamePattern().matcher(channelName).matches())
+            .toList();
+    }
+
+    private record Route(@NotNull String channelName, @NotNull List<MessageReceiver> receivers) {
+    }
+}
@@ -7,17 +7,22 @@ import net.dv8tion.jda.api.interactions.components.ButtonStyle;
 import org.jetbrains.annotations.NotNull;
 import org.togetherjava.tjbot.commands.utils.StringDistances;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.cache.CacheStatistics;
+import org.togetherjava.tjbot.db.cache.CachedTable;
 import org.togetherjava.tjbot.db.generated.tables.Tags;
 import org.togetherjava.tjbot.db.generated.tables.records.TagsRecord;
 
 import java.awt.*;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * The core of the tag system. Provides methods to read and create tags, directly tied to the
  * underlying database.
+ * <p>
+ * Tags are read on every use of a tag command, but rarely change. The table is hence kept in
+ * memory, see {@link CachedTable}.
  */
 public final class TagSystem {
     /**
@@ -25,7 +30,7 @@ public final class TagSystem {
      */
     static final Color AMBIENT_COLOR = Color.decode("#FA8072");
 
-    private final Database database;
+    private final CachedTable<TagsRecord, String> tags;
 
     /**
      * Creates an instance.
@@ -33,7 +38,7 @@ public final class TagSystem {
      * @param database the database to store and retrieve tags from
      */
     public TagSystem(Database database) {
-        this.database = database;
+        tags = new CachedTable<>(database, Tags.TAGS, Tags.TAGS.ID);
     }
 
     /**
@@ -80,9 +85,7 @@ public final class TagSystem {
      * @return whether the tag is known to the tag system
      */
     boolean hasTag(String id) {
-        return database.readTransaction(context -> context.selectFrom(Tags.TAGS)
-            .where(Tags.TAGS.ID.eq(id))
-            .fetchOne() != null);
+        return tags.contains(id);
     }
 
     /**
@@ -93,9 +96,7 @@ public final class TagSystem {
      *         {@link #hasTag(String)}
      */
     void deleteTag(String id) {
-        int deletedRecords = database.writeAndProvide(
-                context -> context.deleteFrom(Tags.TAGS).where(Tags.TAGS.ID.eq(id)).execute());
-        if (deletedRecords == 0) {
+        if (!tags.delete(id)) {
             throw new IllegalArgumentException(
                     "Unable to delete the tag '%s', it is unknown to the system".formatted(id));
         }
@@ -108,12 +109,7 @@ public final class TagSystem {
      * @param content the content of the tag to put
      */
     void putTag(String id, String content) {
-        database.writeTransaction(
-                context -> context.insertInto(Tags.TAGS, Tags.TAGS.ID, Tags.TAGS.CONTENT)
-                    .values(id, content)
-                    .onDuplicateKeyUpdate()
-                    .set(Tags.TAGS.CONTENT, content)
-                    .execute());
+        tags.put(new TagsRecord(id, content));
     }
 
     /**
@@ -124,9 +120,7 @@ public final class TagSystem {
      * @return the content of the tag, if the tag is known to the system
      */
     Optional<String> getTag(String id) {
-        return database.readTransaction(context -> Optional
-            .ofNullable(context.selectFrom(Tags.TAGS).where(Tags.TAGS.ID.eq(id)).fetchOne())
-            .map(TagsRecord::getContent));
+        return tags.get(id).map(TagsRecord::getContent);
     }
 
     /**
@@ -135,11 +129,16 @@ public final class TagSystem {
      * @return a set of all ids known to the system, not backed
      */
     Set<String> getAllIds() {
-        return database.readTransaction(context -> context.select(Tags.TAGS.ID)
-            .from(Tags.TAGS)
-            .fetch()
-            .stream()
-            .map(dbRecord -> dbRecord.getValue(Tags.TAGS.ID))
-            .collect(Collectors.toSet()));
+        return new HashSet<>(tags.getKeys());
+    }
+
+    /**
+     * Gets statistics about the lookups of tags, for example to tell how often the tags had to be
+     * reloaded from the database.
+     *
+     * @return a snapshot of the statistics of the tag cache
+     */
+    public @NotNull CacheStatistics getCacheStatistics() {
+        return tags.getStatistics();
     }
 }
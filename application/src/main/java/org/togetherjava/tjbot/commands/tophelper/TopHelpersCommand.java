@@ -16,8 +16,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.commands.SlashCommandAdapter;
 import org.togetherjava.tjbot.commands.SlashCommandVisibility;
+import org.togetherjava.tjbot.commands.system.AcknowledgementWatchdog;
 import org.togetherjava.tjbot.config.Config;
-import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -48,20 +49,26 @@ public final class TopHelpersCommand extends SlashCommandAdapter {
     private static final String COMMAND_NAME = "top-helpers";
     private static final int TOP_HELPER_LIMIT = 20;
 
-    private final Database database;
+    private final ShardedDatabase guildDatabase;
     private final Predicate<String> hasRequiredRole;
 
     /**
      * Creates a new instance.
      *
-     * @param database the database containing the message counts of top helpers
+     * @param guildDatabase the database containing the message counts of top helpers
      * @param config the config to use for this
      */
-    public TopHelpersCommand(@NotNull Database database, @NotNull Config config) {
+    public TopHelpersCommand(@NotNull ShardedDatabase guildDatabase, @NotNull Config config) {
         super(COMMAND_NAME, "Lists top helpers for the last month", SlashCommandVisibility.GUILD);
         // TODO Add options to optionally pick a time range once JDA/Discord offers a date-picker
         hasRequiredRole = Pattern.compile(config.getSoftModerationRolePattern()).asMatchPredicate();
-        this.database = database;
+        this.guildDatabase = guildDatabase;
+    }
+
+    @Override
+    public boolean isAutoDeferred() {
+        // All responses go through the hook
+        return true;
     }
 
     @Override
@@ -70,18 +77,21 @@ public final class TopHelpersCommand extends SlashCommandAdapter {
             return;
         }
 
+        // Computing the top helpers queries the database, which might exceed the acknowledgement
+        // budget. Hence, all responses go through the hook.
+        AcknowledgementWatchdog.deferReply(event);
+
         TimeRange timeRange = computeDefaultTimeRange();
         List<TopHelperResult> topHelpers =
                 computeTopHelpersDescending(event.getGuild().getIdLong(), timeRange);
 
         if (topHelpers.isEmpty()) {
-            event
-                .reply("No entries for the selected time range (%s)."
+            event.getHook()
+                .editOriginal("No entries for the selected time range (%s)."
                     .formatted(timeRange.description()))
                 .queue();
             return;
         }
-        event.deferReply().queue();
 
         List<Long> topHelperIds = topHelpers.stream().map(TopHelperResult::authorId).toList();
         event.getGuild()
@@ -95,9 +105,8 @@ public final class TopHelpersCommand extends SlashCommandAdapter {
         if (author.getRoles().stream().map(Role::getName).anyMatch(hasRequiredRole)) {
             return true;
         }
-        event.reply("You can not compute the top-helpers since you do not have the required role.")
-            .setEphemeral(true)
-            .queue();
+        AcknowledgementWatchdog.replyEphemeral(event,
+                "You can not compute the top-helpers since you do not have the required role.");
         return false;
     }
 
@@ -115,14 +124,15 @@ public final class TopHelpersCommand extends SlashCommandAdapter {
 
     private @NotNull List<TopHelperResult> computeTopHelpersDescending(long guildId,
             @NotNull TimeRange timeRange) {
-        return database.read(context -> context.select(HELP_CHANNEL_MESSAGES.AUTHOR_ID, DSL.count())
-            .from(HELP_CHANNEL_MESSAGES)
-            .where(HELP_CHANNEL_MESSAGES.GUILD_ID.eq(guildId)
-                .and(HELP_CHANNEL_MESSAGES.SENT_AT.between(timeRange.start(), timeRange.end())))
-            .groupBy(HELP_CHANNEL_MESSAGES.AUTHOR_ID)
-            .orderBy(DSL.count().desc())
-            .limit(TOP_HELPER_LIMIT)
-            .fetch(Records.mapping(TopHelperResult::new)));
+        return guildDatabase.forGuild(guildId)
+            .read(context -> context.select(HELP_CHANNEL_MESSAGES.AUTHOR_ID, DSL.count())
+                .from(HELP_CHANNEL_MESSAGES)
+                .where(HELP_CHANNEL_MESSAGES.GUILD_ID.eq(guildId)
+                    .and(HELP_CHANNEL_MESSAGES.SENT_AT.between(timeRange.start(), timeRange.end())))
+                .groupBy(HELP_CHANNEL_MESSAGES.AUTHOR_ID)
+                .orderBy(DSL.count().desc())
+                .limit(TOP_HELPER_LIMIT)
+                .fetch(Records.mapping(TopHelperResult::new)));
     }
 
     private static void handleError(@NotNull Throwable error, @NotNull Interaction event) {
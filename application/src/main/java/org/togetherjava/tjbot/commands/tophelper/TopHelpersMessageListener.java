@@ -2,10 +2,13 @@ package org.togetherjava.tjbot.commands.tophelper;
 
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.commands.MessageReceiverAdapter;
 import org.togetherjava.tjbot.config.Config;
-import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 
+import java.time.Instant;
 import java.util.regex.Pattern;
 
 import static org.togetherjava.tjbot.db.generated.tables.HelpChannelMessages.HELP_CHANNEL_MESSAGES;
@@ -15,17 +18,20 @@ import static org.togetherjava.tjbot.db.generated.tables.HelpChannelMessages.HEL
  * {@link TopHelpersCommand} to pick them up.
  */
 public final class TopHelpersMessageListener extends MessageReceiverAdapter {
-    private final Database database;
+    private static final Logger logger = LoggerFactory.getLogger(TopHelpersMessageListener.class);
+
+    private final ShardedDatabase guildDatabase;
 
     /**
      * Creates a new listener to receive all message sent in help channels.
      *
-     * @param database to store message meta-data in
+     * @param guildDatabase to store message meta-data in
      * @param config the config to use for this
      */
-    public TopHelpersMessageListener(@NotNull Database database, @NotNull Config config) {
+    public TopHelpersMessageListener(@NotNull ShardedDatabase guildDatabase,
+            @NotNull Config config) {
         super(Pattern.compile(config.getHelpChannelPattern()));
-        this.database = database;
+        this.guildDatabase = guildDatabase;
     }
 
     @Override
@@ -38,12 +44,25 @@ public final class TopHelpersMessageListener extends MessageReceiverAdapter {
     }
 
     private void addMessageRecord(@NotNull GuildMessageReceivedEvent event) {
-        database.write(context -> context.newRecord(HELP_CHANNEL_MESSAGES)
-            .setMessageId(event.getMessage().getIdLong())
-            .setGuildId(event.getGuild().getIdLong())
-            .setChannelId(event.getChannel().getIdLong())
-            .setAuthorId(event.getAuthor().getIdLong())
-            .setSentAt(event.getMessage().getTimeCreated().toInstant())
-            .insert());
+        long messageId = event.getMessage().getIdLong();
+        long guildId = event.getGuild().getIdLong();
+        long channelId = event.getChannel().getIdLong();
+        long authorId = event.getAuthor().getIdLong();
+        Instant sentAt = event.getMessage().getTimeCreated().toInstant();
+
+        // NOTE Help messages arrive frequently and are not needed right away,
+        // hence they are committed in batches instead of one transaction each
+        guildDatabase.forGuild(guildId)
+            .writeAsync(context -> context.newRecord(HELP_CHANNEL_MESSAGES)
+                .setMessageId(messageId)
+                .setGuildId(guildId)
+                .setChannelId(channelId)
+                .setAuthorId(authorId)
+                .setSentAt(sentAt)
+                .insert())
+            .exceptionally(failure -> {
+                logger.warn("Unable to record the help message (#{})", messageId, failure);
+                return null;
+            });
     }
 }
@@ -5,31 +5,38 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.togetherjava.tjbot.commands.Routine;
-import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 
 import java.time.Instant;
 import java.time.Period;
 import java.util.concurrent.TimeUnit;
 
+import static org.jooq.impl.DSL.select;
 import static org.togetherjava.tjbot.db.generated.tables.HelpChannelMessages.HELP_CHANNEL_MESSAGES;
 
 /**
  * Cleanup routine to get rid of old database top-helper message entries.
+ * <p>
+ * Messages are deleted in chunks, so that writes of commands are not blocked by the purge.
  */
 public final class TopHelpersPurgeMessagesRoutine implements Routine {
     private static final Logger logger =
             LoggerFactory.getLogger(TopHelpersPurgeMessagesRoutine.class);
     private static final Period DELETE_MESSAGE_RECORDS_AFTER = Period.ofDays(90);
+    /**
+     * Maximal amount of messages deleted while holding the write lock once.
+     */
+    private static final int DELETE_CHUNK_SIZE = 1_000;
 
-    private final Database database;
+    private final ShardedDatabase guildDatabase;
 
     /**
      * Creates a new cleanup routine.
      *
-     * @param database the database that contains the messages to purge
+     * @param guildDatabase the database that contains the messages to purge
      */
-    public TopHelpersPurgeMessagesRoutine(@NotNull Database database) {
-        this.database = database;
+    public TopHelpersPurgeMessagesRoutine(@NotNull ShardedDatabase guildDatabase) {
+        this.guildDatabase = guildDatabase;
     }
 
     @Override
@@ -39,11 +46,18 @@ public final class TopHelpersPurgeMessagesRoutine implements Routine {
 
     @Override
     public void runRoutine(@NotNull JDA jda) {
+        Instant deleteUntil = Instant.now().minus(DELETE_MESSAGE_RECORDS_AFTER);
         int recordsDeleted =
-                database.writeAndProvide(context -> context.deleteFrom(HELP_CHANNEL_MESSAGES)
-                    .where(HELP_CHANNEL_MESSAGES.SENT_AT
-                        .lessOrEqual(Instant.now().minus(DELETE_MESSAGE_RECORDS_AFTER)))
-                    .execute());
+                guildDatabase.getDatabases()
+                    .stream()
+                    .mapToInt(database -> database.writeInChunks(context -> context
+                        .deleteFrom(HELP_CHANNEL_MESSAGES)
+                        .where(HELP_CHANNEL_MESSAGES.MESSAGE_ID
+                            .in(select(HELP_CHANNEL_MESSAGES.MESSAGE_ID).from(HELP_CHANNEL_MESSAGES)
+                                .where(HELP_CHANNEL_MESSAGES.SENT_AT.lessOrEqual(deleteUntil))
+                                .limit(DELETE_CHUNK_SIZE)))
+                        .execute()))
+                    .sum();
 
         if (recordsDeleted > 0) {
             logger.debug(
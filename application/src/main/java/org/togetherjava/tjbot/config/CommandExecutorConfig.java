@@ -0,0 +1,111 @@
+package org.togetherjava.tjbot.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import org.togetherjava.tjbot.commands.system.AcknowledgementWatchdog;
+import org.togetherjava.tjbot.commands.system.CommandExecutor;
+
+/**
+ * Configuration for the executor that runs slash commands and component events, see
+ * {@link CommandExecutor} for details on each setting, and for the {@link AcknowledgementWatchdog}
+ * that defers their interactions if they are too slow.
+ * <p>
+ * The Json looks as follows:
+ *
+ * <pre>
+ * "commandExecutor": {
+ *   "threads": 16,
+ *   "queueCapacity": 100,
+ *   "guildConcurrency": 4,
+ *   "overloadPolicy": "REJECT_OLDEST",
+ *   "executionMode": "PLATFORM",
+ *   "acknowledgementBudgetMillis": 2000
+ * }
+ * </pre>
+ */
+@SuppressWarnings("ClassCanBeRecord")
+@JsonRootName("commandExecutor")
+public final class CommandExecutorConfig {
+    private final int threads;
+    private final int queueCapacity;
+    private final int guildConcurrency;
+    private final CommandExecutor.OverloadPolicy overloadPolicy;
+    private final CommandExecutor.ExecutionMode executionMode;
+    private final long acknowledgementBudgetMillis;
+
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    private CommandExecutorConfig(@JsonProperty("threads") int threads,
+            @JsonProperty("queueCapacity") int queueCapacity,
+            @JsonProperty("guildConcurrency") int guildConcurrency,
+            @JsonProperty("overloadPolicy") CommandExecutor.OverloadPolicy overloadPolicy,
+            @JsonProperty("executionMode") CommandExecutor.ExecutionMode executionMode,
+            @JsonProperty("acknowledgementBudgetMillis") long acknowledgementBudgetMillis) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.guildConcurrency = guildConcurrency;
+        this.overloadPolicy = overloadPolicy;
+        this.executionMode = executionMode;
+        this.acknowledgementBudgetMillis = acknowledgementBudgetMillis;
+    }
+
+    /**
+     * Gets the maximal amount of commands that are executed concurrently.
+     *
+     * @return the amount of threads executing commands
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the maximal amount of commands that wait for a thread to become available, over all
+     * guilds, before the executor is considered overloaded.
+     *
+     * @return the capacity of the queue
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the maximal amount of commands of a single guild that are executed concurrently, so that
+     * a single guild can not occupy all threads.
+     *
+     * @return the concurrency limit per guild
+     */
+    public int getGuildConcurrency() {
+        return guildConcurrency;
+    }
+
+    /**
+     * Gets which command is rejected when the executor is overloaded.
+     *
+     * @return the overload policy
+     */
+    public CommandExecutor.OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * Gets the kind of threads commands are executed on. Virtual threads fall back to platform
+     * threads if the JVM does not support them.
+     *
+     * @return the execution mode
+     */
+    public CommandExecutor.ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Gets the time in milliseconds after an interaction was triggered after which it is deferred,
+     * if its handler did not acknowledge it yet. Discord drops interactions that are not
+     * acknowledged within 3 seconds. Only applies to commands that opt in, see
+     * {@link org.togetherjava.tjbot.commands.SlashCommand#isAutoDeferred()}.
+     *
+     * @return the budget of a handler to acknowledge its interaction, in milliseconds
+     */
+    public long getAcknowledgementBudgetMillis() {
+        return acknowledgementBudgetMillis;
+    }
+}
@@ -17,6 +17,10 @@ import java.util.List;
 public final class Config {
     private final String token;
     private final String databasePath;
+    private final DatabasePerformanceConfig databasePerformance;
+    private final String databaseBackupDirectory;
+    private final String databaseShardDirectory;
+    private final boolean convertDatabaseToIncrementalVacuum;
     private final String projectWebsite;
     private final String discordGuildInvite;
     private final String modAuditLogChannelPattern;
@@ -27,11 +31,17 @@ public final class Config {
     private final List<FreeCommandConfig> freeCommand;
     private final String helpChannelPattern;
     private final SuggestionsConfig suggestions;
+    private final CommandExecutorConfig commandExecutor;
+    private final String componentIdSigningKey;
 
     @SuppressWarnings("ConstructorWithTooManyParameters")
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     private Config(@JsonProperty("token") String token,
             @JsonProperty("databasePath") String databasePath,
+            @JsonProperty("databasePerformance") DatabasePerformanceConfig databasePerformance,
+            @JsonProperty("databaseBackupDirectory") String databaseBackupDirectory,
+            @JsonProperty("databaseShardDirectory") String databaseShardDirectory,
+            @JsonProperty("convertDatabaseToIncrementalVacuum") boolean convertDatabaseToIncrementalVacuum,
             @JsonProperty("projectWebsite") String projectWebsite,
             @JsonProperty("discordGuildInvite") String discordGuildInvite,
             @JsonProperty("modAuditLogChannelPattern") String modAuditLogChannelPattern,
@@ -41,9 +51,15 @@ public final class Config {
             @JsonProperty("tagManageRolePattern") String tagManageRolePattern,
             @JsonProperty("freeCommand") List<FreeCommandConfig> freeCommand,
             @JsonProperty("helpChannelPattern") String helpChannelPattern,
-            @JsonProperty("suggestions") SuggestionsConfig suggestions) {
+            @JsonProperty("suggestions") SuggestionsConfig suggestions,
+            @JsonProperty("commandExecutor") CommandExecutorConfig commandExecutor,
+            @JsonProperty("componentIdSigningKey") String componentIdSigningKey) {
         this.token = token;
         this.databasePath = databasePath;
+        this.databasePerformance = databasePerformance;
+        this.databaseBackupDirectory = databaseBackupDirectory;
+        this.databaseShardDirectory = databaseShardDirectory;
+        this.convertDatabaseToIncrementalVacuum = convertDatabaseToIncrementalVacuum;
         this.projectWebsite = projectWebsite;
         this.discordGuildInvite = discordGuildInvite;
         this.modAuditLogChannelPattern = modAuditLogChannelPattern;
@@ -54,6 +70,8 @@ public final class Config {
         this.freeCommand = Collections.unmodifiableList(freeCommand);
         this.helpChannelPattern = helpChannelPattern;
         this.suggestions = suggestions;
+        this.commandExecutor = commandExecutor;
+        this.componentIdSigningKey = componentIdSigningKey;
     }
 
     /**
@@ -104,6 +122,50 @@ public final class Config {
         return databasePath;
     }
 
+    /**
+     * Gets the config for the performance settings of the database.
+     *
+     * @return the database performance config
+     */
+    public DatabasePerformanceConfig getDatabasePerformance() {
+        return databasePerformance;
+    }
+
+    /**
+     * Gets the path of the directory where backups of the database are stored.
+     *
+     * @return the path of the backup directory
+     */
+    public String getDatabaseBackupDirectory() {
+        return databaseBackupDirectory;
+    }
+
+    /**
+     * Gets the path of the directory where guild-scoped data, such as moderation actions, is stored
+     * in a separate database per guild. If not set, all guilds share the main database.
+     * <p>
+     * When enabled on an existing deployment, guild-scoped data already stored in the main database
+     * is moved into the databases of the guilds on startup. Disabling it again is not supported,
+     * the data would stay in the databases of the guilds.
+     *
+     * @return the path of the shard directory, or {@code null} if guilds share the main database
+     */
+    public String getDatabaseShardDirectory() {
+        return databaseShardDirectory;
+    }
+
+    /**
+     * Gets whether the database is converted to incremental auto vacuum by the next maintenance, if
+     * it does not use it yet. Only then, pages freed by deleted rows are returned to the file
+     * system regularly. The conversion rewrites the whole database file once, all writes wait for
+     * it.
+     *
+     * @return whether to convert the database to incremental auto vacuum
+     */
+    public boolean shouldConvertDatabaseToIncrementalVacuum() {
+        return convertDatabaseToIncrementalVacuum;
+    }
+
     /**
      * Gets a URL of the project's website, for example to tell the user where he can contribute.
      *
@@ -181,4 +243,24 @@ public final class Config {
     public SuggestionsConfig getSuggestions() {
         return suggestions;
     }
+
+    /**
+     * Gets the config for the executor that runs slash commands and component events.
+     *
+     * @return the command executor config
+     */
+    public CommandExecutorConfig getCommandExecutor() {
+        return commandExecutor;
+    }
+
+    /**
+     * Gets the secret key used to sign component IDs that carry their payload themselves, instead
+     * of persisting it in the database. Changing it invalidates all such component IDs. Must be a
+     * random secret of at least 32 bytes, otherwise the bot refuses to start.
+     *
+     * @return the secret signing key, or {@code null} or blank if all component IDs are persisted
+     */
+    public String getComponentIdSigningKey() {
+        return componentIdSigningKey;
+    }
 }
@@ -0,0 +1,93 @@
+package org.togetherjava.tjbot.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRootName;
+import org.togetherjava.tjbot.db.PerformanceProfile;
+
+/**
+ * Configuration for the performance settings of the database, see
+ * {@link org.togetherjava.tjbot.db.PerformanceProfile} for details on each setting.
+ * <p>
+ * The Json looks as follows:
+ *
+ * <pre>
+ * "databasePerformance": {
+ *   "mmapSize": 268435456,
+ *   "cacheSize": -16000,
+ *   "synchronous": "NORMAL",
+ *   "tempStore": "MEMORY",
+ *   "busyTimeout": 5000
+ * }
+ * </pre>
+ */
+@SuppressWarnings("ClassCanBeRecord")
+@JsonRootName("databasePerformance")
+public final class DatabasePerformanceConfig {
+    private final long mmapSize;
+    private final int cacheSize;
+    private final PerformanceProfile.Synchronous synchronous;
+    private final PerformanceProfile.TempStore tempStore;
+    private final int busyTimeout;
+
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    private DatabasePerformanceConfig(@JsonProperty("mmapSize") long mmapSize,
+            @JsonProperty("cacheSize") int cacheSize,
+            @JsonProperty("synchronous") PerformanceProfile.Synchronous synchronous,
+            @JsonProperty("tempStore") PerformanceProfile.TempStore tempStore,
+            @JsonProperty("busyTimeout") int busyTimeout) {
+        this.mmapSize = mmapSize;
+        this.cacheSize = cacheSize;
+        this.synchronous = synchronous;
+        this.tempStore = tempStore;
+        this.busyTimeout = busyTimeout;
+    }
+
+    /**
+     * Gets the maximal amount of bytes of the database file that are memory-mapped, 0 disables
+     * memory-mapping.
+     *
+     * @return the maximal amount of memory-mapped bytes
+     */
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /**
+     * Gets the size of the page cache of each connection, either as amount of pages if positive or
+     * as amount of kibibytes if negative.
+     *
+     * @return the size of the page cache
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Gets how often the database waits for data to be written to disk.
+     *
+     * @return the synchronous mode
+     */
+    public PerformanceProfile.Synchronous getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Gets where temporary tables and indices are stored.
+     *
+     * @return the temp store
+     */
+    public PerformanceProfile.TempStore getTempStore() {
+        return tempStore;
+    }
+
+    /**
+     * Gets the time, in milliseconds, a connection waits for a lock held by another connection
+     * before failing.
+     *
+     * @return the busy timeout in milliseconds
+     */
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+}
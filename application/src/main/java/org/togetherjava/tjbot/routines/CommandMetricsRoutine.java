@@ -0,0 +1,59 @@
+package org.togetherjava.tjbot.routines;
+
+import net.dv8tion.jda.api.JDA;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.commands.Routine;
+import org.togetherjava.tjbot.commands.system.AcknowledgementWatchdog;
+import org.togetherjava.tjbot.commands.system.CommandExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routine that periodically logs the state of the {@link CommandExecutor}, such as active threads
+ * and queue depth, as well as wait time, run time and rejections per command and the queues of the
+ * guilds whose commands waited the longest. Also logs how often the {@link AcknowledgementWatchdog}
+ * had to defer the interactions of each command, since their handlers were too slow.
+ * <p>
+ * Statistics are reset after each report, so every report covers the period since the previous one.
+ */
+public final class CommandMetricsRoutine implements Routine {
+    private static final Logger logger = LoggerFactory.getLogger(CommandMetricsRoutine.class);
+    private static final long REPORT_PERIOD_HOURS = 1;
+
+    private final CommandExecutor commandExecutor;
+    private final AcknowledgementWatchdog acknowledgementWatchdog;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param commandExecutor the executor to report
+     * @param acknowledgementWatchdog the watchdog to report
+     */
+    public CommandMetricsRoutine(@NotNull CommandExecutor commandExecutor,
+            @NotNull AcknowledgementWatchdog acknowledgementWatchdog) {
+        this.commandExecutor = commandExecutor;
+        this.acknowledgementWatchdog = acknowledgementWatchdog;
+    }
+
+    @Override
+    public @NotNull Schedule createSchedule() {
+        return new Schedule(ScheduleMode.FIXED_RATE, REPORT_PERIOD_HOURS, REPORT_PERIOD_HOURS,
+                TimeUnit.HOURS);
+    }
+
+    @Override
+    public void runRoutine(@NotNull JDA jda) {
+        if (commandExecutor.getSummaries().isEmpty()) {
+            return;
+        }
+
+        logger.info("Commands of the last {} hour(s):{}{}", REPORT_PERIOD_HOURS,
+                System.lineSeparator(), commandExecutor.describe());
+        logger.info("Acknowledgements of the last {} hour(s):{}{}", REPORT_PERIOD_HOURS,
+                System.lineSeparator(), acknowledgementWatchdog.describe());
+        commandExecutor.reset();
+        acknowledgementWatchdog.reset();
+    }
+}
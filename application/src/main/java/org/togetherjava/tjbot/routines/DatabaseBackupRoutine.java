@@ -0,0 +1,147 @@
+package org.togetherjava.tjbot.routines;
+
+import net.dv8tion.jda.api.JDA;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.commands.Routine;
+import org.togetherjava.tjbot.config.Config;
+import org.togetherjava.tjbot.db.BackupResult;
+import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.DatabaseException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Routine that backs up the database daily, while the bot keeps running.
+ * <p>
+ * Backups are consistent snapshots written to the backup directory given by the config, see
+ * {@link Database#backup(Path)}. Only the latest {@value BACKUPS_TO_KEEP} backups are kept, older
+ * ones are deleted.
+ * <p>
+ * Backups can also be created on demand with {@link #createBackup()}.
+ */
+public final class DatabaseBackupRoutine implements Routine {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseBackupRoutine.class);
+    /**
+     * Hour of the day, in UTC, at which the backup is created. Before the maintenance, see
+     * {@link DatabaseMaintenanceRoutine}.
+     */
+    private static final int BACKUP_HOUR = 3;
+    private static final int BACKUPS_TO_KEEP = 7;
+    private static final String BACKUP_PREFIX = "database-";
+    private static final String BACKUP_SUFFIX = ".db";
+    /**
+     * Format of the creation time in the name of backups, sorting chronologically by name.
+     */
+    private static final DateTimeFormatter BACKUP_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss'Z'").withZone(ZoneOffset.UTC);
+    private static final double BYTES_PER_MEBIBYTE = 1024 * 1024;
+
+    private final Database database;
+    private final Path backupDirectory;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param database the database to back up
+     * @param config the config to use, to locate the backup directory
+     */
+    public DatabaseBackupRoutine(@NotNull Database database, @NotNull Config config) {
+        this.database = database;
+        backupDirectory = Path.of(config.getDatabaseBackupDirectory());
+    }
+
+    @Override
+    public @NotNull Schedule createSchedule() {
+        Instant now = Instant.now();
+        OffsetDateTime nextBackup = now.atOffset(ZoneOffset.UTC).with(LocalTime.of(BACKUP_HOUR, 0));
+        if (!nextBackup.toInstant().isAfter(now)) {
+            nextBackup = nextBackup.plusDays(1);
+        }
+
+        return new Schedule(ScheduleMode.FIXED_RATE, ChronoUnit.SECONDS.between(now, nextBackup),
+                TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void runRoutine(@NotNull JDA jda) {
+        try {
+            createBackup();
+        } catch (DatabaseException | UncheckedIOException e) {
+            logger.error("Failed to back up the database", e);
+        }
+    }
+
+    /**
+     * Creates a backup of the database now, deleting the oldest backups afterwards.
+     *
+     * @return the result of the backup
+     * @throws DatabaseException if the backup could not be created
+     * @throws UncheckedIOException if the backup directory could not be accessed
+     */
+    public synchronized @NotNull BackupResult createBackup() {
+        Path target = backupDirectory
+            .resolve(BACKUP_PREFIX + BACKUP_TIME_FORMAT.format(Instant.now()) + BACKUP_SUFFIX);
+        try {
+            Files.createDirectories(backupDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        BackupResult result = database.backup(target);
+        logger.info("Backed up the database, {}", describe(result));
+
+        deleteOldBackups();
+        return result;
+    }
+
+    /**
+     * Describes the given result in a human-readable way, including size, duration and throughput.
+     *
+     * @param result the result to describe
+     * @return the description
+     */
+    public static @NotNull String describe(@NotNull BackupResult result) {
+        return "wrote %.1f MiB to '%s' in %d ms (%.1f MiB/s)".formatted(
+                result.size() / BYTES_PER_MEBIBYTE, result.target(), result.duration().toMillis(),
+                result.bytesPerSecond() / BYTES_PER_MEBIBYTE);
+    }
+
+    private void deleteOldBackups() {
+        List<Path> backups;
+        try (Stream<Path> files = Files.list(backupDirectory)) {
+            backups = files.filter(DatabaseBackupRoutine::isBackup).sorted().toList();
+        } catch (IOException e) {
+            logger.warn("Unable to list the backups in '{}' to delete old ones", backupDirectory,
+                    e);
+            return;
+        }
+
+        for (Path oldBackup : backups.subList(0, Math.max(backups.size() - BACKUPS_TO_KEEP, 0))) {
+            try {
+                Files.delete(oldBackup);
+                logger.debug("Deleted the old database backup '{}'", oldBackup);
+            } catch (IOException e) {
+                logger.warn("Unable to delete the old database backup '{}'", oldBackup, e);
+            }
+        }
+    }
+
+    private static boolean isBackup(@NotNull Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(BACKUP_PREFIX) && name.endsWith(BACKUP_SUFFIX);
+    }
+}
@@ -0,0 +1,193 @@
+package org.togetherjava.tjbot.routines;
+
+import net.dv8tion.jda.api.JDA;
+import org.jetbrains.annotations.NotNull;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.commands.Routine;
+import org.togetherjava.tjbot.config.Config;
+import org.togetherjava.tjbot.db.Database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Routine that maintains the database daily during low-traffic hours, keeping its files small and
+ * its query plans up to date.
+ * <p>
+ * The routine
+ * <ul>
+ * <li>updates the statistics used by the query planner ({@code ANALYZE}),</li>
+ * <li>returns pages freed by deleted rows, such as purged messages or evicted component ids, to the
+ * file system ({@code incremental_vacuum}) and</li>
+ * <li>checkpoints the write-ahead log and truncates it.</li>
+ * </ul>
+ * Each step acquires the write lock separately, with background priority, and vacuuming is split
+ * into chunks, so that other writes can proceed in between. The bytes reclaimed and the time the
+ * steps took are logged.
+ * <p>
+ * Incremental vacuuming requires a database that uses {@code auto_vacuum = INCREMENTAL}. Older
+ * databases are only converted, by a full {@code VACUUM}, if enabled by
+ * {@link Config#shouldConvertDatabaseToIncrementalVacuum()}, since the conversion rewrites the
+ * whole database file while all writes wait for it.
+ */
+public final class DatabaseMaintenanceRoutine implements Routine {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMaintenanceRoutine.class);
+    /**
+     * Hour of the day, in UTC, at which the maintenance is executed.
+     */
+    private static final int MAINTENANCE_HOUR = 4;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    /**
+     * Maximal amount of pages freed while holding the write lock once.
+     */
+    private static final int VACUUM_PAGES_PER_STEP = 1_000;
+    /**
+     * Conservative estimate of how fast a full {@code VACUUM} rewrites the database file, used to
+     * announce how long a conversion takes.
+     */
+    private static final long VACUUM_BYTES_PER_SECOND = 50_000_000;
+
+    private final Database database;
+    private final Path databaseFile;
+    private final Path walFile;
+    private final boolean shouldConvertToIncrementalVacuum;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param database the database to maintain
+     * @param config the config to use, to locate the files of the database and to decide whether it
+     *        is converted to incremental auto vacuum
+     */
+    public DatabaseMaintenanceRoutine(@NotNull Database database, @NotNull Config config) {
+        this.database = database;
+        databaseFile = Path.of(config.getDatabasePath());
+        walFile = Path.of(config.getDatabasePath() + "-wal");
+        shouldConvertToIncrementalVacuum = config.shouldConvertDatabaseToIncrementalVacuum();
+    }
+
+    @Override
+    public @NotNull Schedule createSchedule() {
+        Instant now = Instant.now();
+        OffsetDateTime nextMaintenance =
+                now.atOffset(ZoneOffset.UTC).with(LocalTime.of(MAINTENANCE_HOUR, 0));
+        if (!nextMaintenance.toInstant().isAfter(now)) {
+            nextMaintenance = nextMaintenance.plusDays(1);
+        }
+
+        return new Schedule(ScheduleMode.FIXED_RATE,
+                ChronoUnit.SECONDS.between(now, nextMaintenance), TimeUnit.DAYS.toSeconds(1),
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void runRoutine(@NotNull JDA jda) {
+        logger.debug("Maintaining the database...");
+        long databaseSizeBefore = sizeOf(databaseFile);
+        long walSizeBefore = sizeOf(walFile);
+
+        // Read with the write connection, read connections may not see a changed mode
+        Step<Integer> autoVacuum = executeStep(context -> fetchPragma(context, "auto_vacuum"));
+        boolean isIncrementalVacuum = autoVacuum.result() == AUTO_VACUUM_INCREMENTAL;
+        if (!isIncrementalVacuum && shouldConvertToIncrementalVacuum) {
+            convertToIncrementalVacuum(databaseSizeBefore);
+            isIncrementalVacuum = true;
+        }
+
+        Step<Integer> analyze = executeStep(context -> context.execute("ANALYZE"));
+
+        Duration vacuumDuration = Duration.ZERO;
+        if (isIncrementalVacuum) {
+            long vacuumStart = System.nanoTime();
+            int pagesReturned;
+            do {
+                pagesReturned = database.vacuumIncrementally(VACUUM_PAGES_PER_STEP);
+            } while (pagesReturned == VACUUM_PAGES_PER_STEP);
+            vacuumDuration = Duration.ofNanos(System.nanoTime() - vacuumStart);
+        } else {
+            logger
+                .info("The database does not use incremental auto vacuum, pages freed by deleted rows are not returned to the file system."
+                        + " Enable 'convertDatabaseToIncrementalVacuum' in the config to convert it once.");
+        }
+
+        // Last, since all other steps write to the log
+        Step<Record> checkpoint =
+                executeStep(context -> context.fetchOne("PRAGMA wal_checkpoint(TRUNCATE)"));
+        // Columns are: busy, amount of frames in the log, amount of frames checkpointed
+        boolean isCheckpointComplete = checkpoint.result().get(0, Integer.class) == 0;
+
+        logger.info(
+                "Maintained the database, reclaimed {} bytes from the write-ahead log ({}, held the write lock for {}) and {} bytes from the database file (vacuuming took {}), analyzing took {}",
+                walSizeBefore - sizeOf(walFile),
+                isCheckpointComplete ? "checkpoint complete"
+                        : "checkpoint incomplete due to active readers",
+                checkpoint.lockHeld(), databaseSizeBefore - sizeOf(databaseFile), vacuumDuration,
+                analyze.lockHeld());
+    }
+
+    private <T> @NotNull Step<T> executeStep(@NotNull Function<? super DSLContext, T> action) {
+        // Neither VACUUM nor checkpoints may run within a transaction
+        return database.writeBackgroundAndProvide(context -> {
+            long start = System.nanoTime();
+            T result = action.apply(context);
+            return new Step<>(result, Duration.ofNanos(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Converts the database to incremental auto vacuum by a full {@code VACUUM}, which rewrites the
+     * whole database file. All writes wait for it.
+     *
+     * @param databaseSize the size of the database file, in bytes
+     */
+    private void convertToIncrementalVacuum(long databaseSize) {
+        Duration expectedDuration = Duration.ofSeconds(databaseSize / VACUUM_BYTES_PER_SECOND + 1);
+        logger.warn(
+                "Converting the database to incremental auto vacuum, which rewrites the whole database file of {} bytes."
+                        + " All writes wait for it, which is expected to take about {}",
+                databaseSize, expectedDuration);
+
+        Step<Integer> conversion = executeStep(context -> {
+            context.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            return context.execute("VACUUM");
+        });
+        logger.info(
+                "Converted the database to incremental auto vacuum, holding the write lock for {}",
+                conversion.lockHeld());
+    }
+
+    private static int fetchPragma(@NotNull DSLContext context, @NotNull String pragma) {
+        return context.fetchOne("PRAGMA " + pragma).get(0, Integer.class);
+    }
+
+    private static long sizeOf(@NotNull Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            logger.warn("Unable to determine the size of the database file '{}'", file, e);
+            return 0;
+        }
+    }
+
+    /**
+     * A maintenance step that has been executed.
+     *
+     * @param result the result of the step
+     * @param lockHeld the time the write lock was held for the step
+     * @param <T> the type of the result
+     */
+    private record Step<T> (T result, @NotNull Duration lockHeld) {
+    }
+}
@@ -0,0 +1,74 @@
+package org.togetherjava.tjbot.routines;
+
+import net.dv8tion.jda.api.JDA;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.togetherjava.tjbot.commands.Routine;
+import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.cache.CacheStatistics;
+import org.togetherjava.tjbot.db.metrics.OperationHistograms;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Routine that periodically logs latency statistics of all database operations, such as p50, p99
+ * and maximal latency per feature, as well as how long each feature waited for and held the write
+ * lock.
+ * <p>
+ * Statistics are reset after each report, so every report covers the period since the previous one.
+ * Additionally, the statistics of table caches, such as their hit rates, are logged. Those are not
+ * reset and cover the period since the cache was created.
+ */
+public final class DatabaseMetricsRoutine implements Routine {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMetricsRoutine.class);
+    private static final long REPORT_PERIOD_HOURS = 1;
+
+    private final OperationHistograms histograms = new OperationHistograms();
+    private final Map<String, Supplier<CacheStatistics>> cacheNameToStatistics;
+
+    /**
+     * Creates a new instance and starts measuring the operations of the given database.
+     *
+     * @param database the database to measure
+     * @param cacheNameToStatistics the table caches to report, by a human-readable name
+     */
+    public DatabaseMetricsRoutine(@NotNull Database database,
+            @NotNull Map<String, Supplier<CacheStatistics>> cacheNameToStatistics) {
+        this.cacheNameToStatistics = Map.copyOf(cacheNameToStatistics);
+        database.addOperationListener(histograms);
+    }
+
+    @Override
+    public @NotNull Schedule createSchedule() {
+        return new Schedule(ScheduleMode.FIXED_RATE, REPORT_PERIOD_HOURS, REPORT_PERIOD_HOURS,
+                TimeUnit.HOURS);
+    }
+
+    @Override
+    public void runRoutine(@NotNull JDA jda) {
+        if (!cacheNameToStatistics.isEmpty()) {
+            logger.info("Database table caches:{}{}", System.lineSeparator(), describeCaches());
+        }
+
+        if (histograms.getSummaries().isEmpty()) {
+            return;
+        }
+
+        logger.info("Database operations of the last {} hour(s):{}{}", REPORT_PERIOD_HOURS,
+                System.lineSeparator(), histograms.describe());
+        histograms.reset();
+    }
+
+    private @NotNull String describeCaches() {
+        return cacheNameToStatistics.entrySet()
+            .stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(nameAndStatistics -> "%-20s %s".formatted(nameAndStatistics.getKey(),
+                    nameAndStatistics.getValue().get().describe()))
+            .collect(Collectors.joining(System.lineSeparator()));
+    }
+}
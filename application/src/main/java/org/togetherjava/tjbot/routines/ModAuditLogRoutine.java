@@ -19,6 +19,7 @@ import org.togetherjava.tjbot.commands.Routine;
 import org.togetherjava.tjbot.commands.moderation.ModerationUtils;
 import org.togetherjava.tjbot.config.Config;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
 import org.togetherjava.tjbot.db.generated.tables.ModAuditLogGuildProcess;
 
 import java.awt.*;
@@ -51,23 +52,23 @@ public final class ModAuditLogRoutine implements Routine {
 
     private final String modAuditLogChannelPattern;
     private final Predicate<TextChannel> isAuditLogChannel;
-    private final Database database;
+    private final ShardedDatabase guildDatabase;
     private final Config config;
 
     /**
      * Creates a new instance.
      *
-     * @param database the database for memorizing audit log dates
+     * @param guildDatabase the database for memorizing audit log dates
      * @param config the config to use for this
      */
-    public ModAuditLogRoutine(@NotNull Database database, @NotNull Config config) {
+    public ModAuditLogRoutine(@NotNull ShardedDatabase guildDatabase, @NotNull Config config) {
         modAuditLogChannelPattern = config.getModAuditLogChannelPattern();
         Predicate<String> isAuditLogChannelName =
                 Pattern.compile(modAuditLogChannelPattern).asMatchPredicate();
         isAuditLogChannel = channel -> isAuditLogChannelName.test(channel.getName());
 
         this.config = config;
-        this.database = database;
+        this.guildDatabase = guildDatabase;
     }
 
     private static @NotNull RestAction<AuditLogMessage> handleAction(@NotNull Action action,
@@ -242,6 +243,7 @@ public final class ModAuditLogRoutine implements Routine {
     private void handleAuditLogs(@NotNull MessageChannel auditLogChannel,
             @NotNull PaginationAction<? extends AuditLogEntry, AuditLogPaginationAction> auditLogAction,
             long guildId) {
+        Database database = guildDatabase.forGuild(guildId);
         Instant lastAuditLogEntryTimestamp =
                 database.read(context -> Optional
                     .ofNullable(context.fetchOne(
@@ -0,0 +1,20 @@
+-- Component ids are stored in a compact binary format instead of CSV. SQLite can not change the
+-- type of a column, the table is hence recreated. Existing CSV payloads are kept as their UTF-8
+-- bytes, the application rewrites them into the binary format.
+CREATE TABLE component_ids_binary
+(
+    uuid         TEXT      NOT NULL UNIQUE PRIMARY KEY,
+    component_id BLOB      NOT NULL,
+    last_used    TIMESTAMP NOT NULL,
+    lifespan     TEXT      NOT NULL
+);
+
+INSERT INTO component_ids_binary (uuid, component_id, last_used, lifespan)
+SELECT uuid, CAST(component_id AS BLOB), last_used, lifespan
+FROM component_ids;
+
+DROP TABLE component_ids;
+ALTER TABLE component_ids_binary RENAME TO component_ids;
+
+CREATE INDEX component_ids_by_last_used ON component_ids (last_used);
+CREATE INDEX component_ids_by_lifespan ON component_ids (lifespan);
@@ -0,0 +1,3 @@
+-- The application rewrites component ids persisted in the legacy CSV format on every start. It finds
+-- them by their first byte, which is the format version for binary component ids.
+CREATE INDEX component_ids_by_format ON component_ids (substr(component_id, 1, 1));
@@ -0,0 +1,13 @@
+CREATE INDEX moderation_actions_by_target ON moderation_actions (guild_id, target_id, action_type, issued_at);
+CREATE INDEX moderation_actions_by_type ON moderation_actions (guild_id, action_type, issued_at);
+CREATE INDEX moderation_actions_by_author ON moderation_actions (guild_id, author_id, issued_at);
+CREATE INDEX moderation_actions_by_expiration ON moderation_actions (action_expires_at);
+
+CREATE INDEX help_channel_messages_by_guild_and_time ON help_channel_messages (guild_id, sent_at, author_id);
+CREATE INDEX help_channel_messages_by_time ON help_channel_messages (sent_at);
+
+CREATE INDEX pending_reminders_by_time ON pending_reminders (remind_at);
+CREATE INDEX pending_reminders_by_author ON pending_reminders (author_id);
+
+CREATE INDEX component_ids_by_last_used ON component_ids (last_used);
+CREATE INDEX component_ids_by_lifespan ON component_ids (lifespan);
@@ -0,0 +1,71 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class ComponentIdCodecTest {
+    private static final List<ComponentId> COMPONENT_IDS =
+            List.of(new ComponentId("tex", List.of()),
+                    new ComponentId("ping", List.of("123456789012345678", "foo")),
+                    new ComponentId("reload",
+                            List.of("9223372036854775807", "9223372036854775808")),
+                    new ComponentId("tags", List.of("0", "007", "-1", "", "a;b,\"c\"", "föö 🙂")));
+
+    @Test
+    void decodesEncodedComponentIds() {
+        for (ComponentId componentId : COMPONENT_IDS) {
+            byte[] content = ComponentIdCodec.encode(componentId);
+
+            assertFalse(ComponentIdCodec.isLegacy(content));
+            assertEquals(componentId, ComponentIdCodec.decode(content));
+            assertEquals(componentId, ComponentIdCodec.decodeBinary(content));
+        }
+    }
+
+    @Test
+    void decodesLegacyCsvComponentIds() throws Exception {
+        CsvMapper csv = new CsvMapper();
+        ComponentId componentId = COMPONENT_IDS.get(1);
+        byte[] content = csv.writerFor(ComponentId.class)
+            .with(csv.schemaFor(ComponentId.class))
+            .writeValueAsString(componentId)
+            .getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(ComponentIdCodec.isLegacy(content));
+        assertEquals(componentId, ComponentIdCodec.decode(content));
+        assertThrows(InvalidComponentIdFormatException.class,
+                () -> ComponentIdCodec.decodeBinary(content));
+    }
+
+    @Test
+    void rejectsMalformedComponentIds() {
+        // Variable-length encoding of -1, which does not fit a length or count
+        byte[] minusOne = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        byte[] commandName = {3, 'f', 'o', 'o'};
+        List<byte[]> malformedContents = List.of(new byte[] {ComponentIdCodec.VERSION},
+                concat(new byte[] {ComponentIdCodec.VERSION}, minusOne),
+                concat(new byte[] {ComponentIdCodec.VERSION}, commandName, minusOne),
+                new byte[] {ComponentIdCodec.VERSION, 10, 'f'},
+                concat(new byte[] {ComponentIdCodec.VERSION}, commandName, new byte[] {1, 7}));
+
+        for (byte[] content : malformedContents) {
+            assertThrows(InvalidComponentIdFormatException.class,
+                    () -> ComponentIdCodec.decodeBinary(content));
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            content.writeBytes(part);
+        }
+        return content.toByteArray();
+    }
+}
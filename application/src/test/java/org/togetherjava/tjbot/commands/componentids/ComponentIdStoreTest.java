@@ -0,0 +1,185 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.generated.tables.ComponentIds;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class ComponentIdStoreTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final int LOOKUP_THREADS = 16;
+    private static final ComponentId COMPONENT_ID =
+            new ComponentId("ping", List.of("123456789012345678", "foo"));
+
+    @TempDir
+    Path directory;
+    private Database database;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Migrations are only applied to databases persisted in a file
+        database = new Database("jdbc:sqlite:" + directory.resolve("database.db"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void getsComponentIdsBackFromTheDatabase() {
+        UUID uuid = UUID.randomUUID();
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            store.putOrThrow(uuid, COMPONENT_ID, Lifespan.REGULAR);
+            assertEquals(Optional.of(COMPONENT_ID), store.get(uuid));
+        }
+
+        // A new store starts with an empty cache
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            assertEquals(Optional.of(COMPONENT_ID), store.get(uuid));
+            assertEquals(Optional.of(COMPONENT_ID), store.get(uuid));
+            assertTrue(store.get(UUID.randomUUID()).isEmpty());
+        }
+    }
+
+    @Test
+    void concurrentLookupsOfTheSameComponentIdAllSucceed() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            store.putOrThrow(uuid, COMPONENT_ID, Lifespan.REGULAR);
+        }
+
+        ExecutorService lookupService = Executors.newFixedThreadPool(LOOKUP_THREADS);
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<ComponentId>>> lookups = new ArrayList<>();
+            for (int i = 0; i < LOOKUP_THREADS; i++) {
+                lookups.add(lookupService.submit(() -> {
+                    start.await();
+                    return store.get(uuid);
+                }));
+            }
+            start.countDown();
+
+            for (Future<Optional<ComponentId>> lookup : lookups) {
+                assertEquals(Optional.of(COMPONENT_ID),
+                        lookup.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+        } finally {
+            lookupService.shutdown();
+        }
+    }
+
+    @Test
+    void updatesTheLastUsageOfComponentIdsOnClose() {
+        UUID uuid = UUID.randomUUID();
+        Instant longAgo = Instant.now().minus(Duration.ofDays(10));
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            store.putOrThrow(uuid, COMPONENT_ID, Lifespan.REGULAR);
+            database.write(context -> context.update(ComponentIds.COMPONENT_IDS)
+                .set(ComponentIds.COMPONENT_IDS.LAST_USED, longAgo)
+                .execute());
+
+            // Hits the cache
+            store.get(uuid);
+            assertEquals(longAgo, readLastUsed(uuid));
+        }
+
+        assertTrue(readLastUsed(uuid).isAfter(longAgo));
+    }
+
+    @Test
+    void evictsOldComponentIdsInBulk() throws InterruptedException {
+        Instant longAgo = Instant.now().minus(Duration.ofDays(30));
+        UUID permanentUuid = UUID.randomUUID();
+        List<UUID> regularUuids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        List<ComponentId> removedComponentIds = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch removed = new CountDownLatch(regularUuids.size());
+
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            store.addComponentIdRemovedListener(componentId -> {
+                removedComponentIds.add(componentId);
+                removed.countDown();
+            });
+            store.putOrThrow(permanentUuid, COMPONENT_ID, Lifespan.PERMANENT);
+            for (UUID uuid : regularUuids) {
+                store.putOrThrow(uuid, COMPONENT_ID, Lifespan.REGULAR);
+            }
+            database.write(context -> context.update(ComponentIds.COMPONENT_IDS)
+                .set(ComponentIds.COMPONENT_IDS.LAST_USED, longAgo)
+                .execute());
+
+            EvictionSummary summary = store.evictDatabase();
+
+            assertEquals(regularUuids.size(), summary.evictedCount());
+            assertEquals(1, summary.chunks());
+            assertTrue(removed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(Collections.nCopies(regularUuids.size(), COMPONENT_ID),
+                    removedComponentIds);
+            // Evicted component ids are removed from the cache as well
+            assertTrue(store.get(regularUuids.get(0)).isEmpty());
+            assertEquals(Optional.of(COMPONENT_ID), store.get(permanentUuid));
+            assertEquals(0, store.evictDatabase().evictedCount());
+        }
+    }
+
+    @Test
+    void migratesLegacyComponentIds() throws Exception {
+        CsvMapper csv = new CsvMapper();
+        byte[] legacyComponentId = csv.writerFor(ComponentId.class)
+            .with(csv.schemaFor(ComponentId.class))
+            .writeValueAsString(COMPONENT_ID)
+            .getBytes(StandardCharsets.UTF_8);
+        UUID uuid = UUID.randomUUID();
+        database.write(context -> context.newRecord(ComponentIds.COMPONENT_IDS)
+            .setUuid(uuid.toString())
+            .setComponentId(legacyComponentId)
+            .setLastUsed(Instant.now())
+            .setLifespan(Lifespan.REGULAR.name())
+            .insert());
+
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            assertEquals(Optional.of(COMPONENT_ID), store.get(uuid));
+
+            Instant deadline = Instant.now().plusSeconds(TIMEOUT_SECONDS);
+            while (ComponentIdCodec.isLegacy(readComponentId(uuid))) {
+                assertTrue(Instant.now().isBefore(deadline), "Legacy component id not migrated");
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(COMPONENT_ID, ComponentIdCodec.decodeBinary(readComponentId(uuid)));
+        }
+    }
+
+    private Instant readLastUsed(UUID uuid) {
+        return database.read(context -> context.selectFrom(ComponentIds.COMPONENT_IDS)
+            .where(ComponentIds.COMPONENT_IDS.UUID.eq(uuid.toString()))
+            .fetchOne(ComponentIds.COMPONENT_IDS.LAST_USED));
+    }
+
+    private byte[] readComponentId(UUID uuid) {
+        return database.read(context -> context.selectFrom(ComponentIds.COMPONENT_IDS)
+            .where(ComponentIds.COMPONENT_IDS.UUID.eq(uuid.toString()))
+            .fetchOne(ComponentIds.COMPONENT_IDS.COMPONENT_ID));
+    }
+}
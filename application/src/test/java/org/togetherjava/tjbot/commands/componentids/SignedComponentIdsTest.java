@@ -0,0 +1,65 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class SignedComponentIdsTest {
+    private static final String FALLBACK_ID = UUID.randomUUID().toString();
+    private static final ComponentId FALLBACK_COMPONENT_ID = new ComponentId("fallback", List.of());
+
+    private final SignedComponentIds signedComponentIds = createSignedComponentIds("secret");
+
+    @Test
+    void carriesSmallPayloadsInTheComponentId() {
+        List<ComponentId> componentIds = List.of(new ComponentId("tex", List.of()),
+                new ComponentId("tex", List.of("123456789012345678")),
+                new ComponentId("reload", List.of("9223372036854775807", "9223372036854775808")),
+                new ComponentId("tags", List.of("0", "007", "-1", "", "föö 🙂")));
+
+        for (ComponentId componentId : componentIds) {
+            String id = signedComponentIds.generate(componentId, Lifespan.REGULAR);
+            assertNotEquals(FALLBACK_ID, id);
+            assertTrue(id.length() <= SignedComponentIds.MAX_LENGTH, id);
+            assertEquals(Optional.of(componentId), signedComponentIds.parse(id));
+        }
+    }
+
+    @Test
+    void fallsBackIfThePayloadDoesNotFit() {
+        ComponentId componentId = new ComponentId("tags", List.of("x".repeat(80)));
+
+        assertEquals(FALLBACK_ID, signedComponentIds.generate(componentId, Lifespan.REGULAR));
+        assertEquals(Optional.of(FALLBACK_COMPONENT_ID), signedComponentIds.parse(FALLBACK_ID));
+    }
+
+    @Test
+    void rejectsTamperedComponentIds() {
+        String id = signedComponentIds
+            .generate(new ComponentId("tex", List.of("123456789012345678")), Lifespan.REGULAR);
+        // The last character might only carry padding bits, a character in between never does
+        int tamperedIndex = id.length() / 2;
+        char tamperedChar = id.charAt(tamperedIndex) == 'A' ? 'B' : 'A';
+        String tamperedId =
+                id.substring(0, tamperedIndex) + tamperedChar + id.substring(tamperedIndex + 1);
+
+        assertThrows(InvalidComponentIdFormatException.class,
+                () -> signedComponentIds.parse(tamperedId));
+        assertThrows(InvalidComponentIdFormatException.class,
+                () -> signedComponentIds.parse("~not base64!"));
+        assertThrows(InvalidComponentIdFormatException.class,
+                () -> createSignedComponentIds("other secret").parse(id));
+    }
+
+    private static SignedComponentIds createSignedComponentIds(String key) {
+        return new SignedComponentIds(key.getBytes(StandardCharsets.UTF_8),
+                (componentId, lifespan) -> FALLBACK_ID,
+                uuid -> uuid.equals(FALLBACK_ID) ? Optional.of(FALLBACK_COMPONENT_ID)
+                        : Optional.empty());
+    }
+}
@@ -0,0 +1,109 @@
+package org.togetherjava.tjbot.commands.system;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.interactions.Interaction;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.ComponentInteraction;
+import net.dv8tion.jda.api.requests.restaction.WebhookMessageAction;
+import net.dv8tion.jda.api.requests.restaction.interactions.ReplyAction;
+import net.dv8tion.jda.api.requests.restaction.interactions.UpdateInteractionAction;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+final class AcknowledgementWatchdogTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final String COMMAND_NAME = "foo";
+
+    private final AcknowledgementWatchdog watchdog =
+            new AcknowledgementWatchdog(Duration.ofMillis(10));
+
+    @Test
+    void defersUnacknowledgedInteractions() {
+        Interaction interaction = mock(Interaction.class);
+        ReplyAction deferReply = mock(ReplyAction.class);
+        when(interaction.deferReply()).thenReturn(deferReply);
+
+        watchdog.watch(COMMAND_NAME, interaction);
+
+        verify(deferReply, timeout(TIMEOUT_MILLIS)).queue();
+        assertEquals(new AcknowledgementSummary(COMMAND_NAME, 1, 1),
+                watchdog.getSummaries().get(0));
+    }
+
+    @Test
+    void defersComponentInteractionsWithoutReplying() {
+        ComponentInteraction interaction = mock(ComponentInteraction.class);
+        UpdateInteractionAction deferEdit = mock(UpdateInteractionAction.class);
+        when(interaction.deferEdit()).thenReturn(deferEdit);
+
+        watchdog.watch(COMMAND_NAME, interaction);
+
+        verify(deferEdit, timeout(TIMEOUT_MILLIS)).queue();
+        verify(interaction, never()).deferReply();
+    }
+
+    @Test
+    void countsBudgetFromReceipt() {
+        AcknowledgementWatchdog slowWatchdog = new AcknowledgementWatchdog(Duration.ofMinutes(1));
+        Interaction interaction = mock(Interaction.class);
+        ReplyAction deferReply = mock(ReplyAction.class);
+        when(interaction.deferReply()).thenReturn(deferReply);
+
+        // The interaction was received long ago, but its command was only resolved now
+        long receivedNanos = System.nanoTime() - Duration.ofMinutes(2).toNanos();
+        slowWatchdog.watch(COMMAND_NAME, interaction, receivedNanos);
+
+        verify(deferReply, timeout(TIMEOUT_MILLIS)).queue();
+    }
+
+    @Test
+    void ignoresAcknowledgedInteractions() {
+        Interaction interaction = mock(Interaction.class);
+        when(interaction.isAcknowledged()).thenReturn(true);
+
+        watchdog.watch(COMMAND_NAME, interaction);
+
+        verify(interaction, timeout(TIMEOUT_MILLIS)).isAcknowledged();
+        verify(interaction, never()).deferReply();
+        assertEquals(new AcknowledgementSummary(COMMAND_NAME, 1, 0),
+                watchdog.getSummaries().get(0));
+    }
+
+    @Test
+    void repliesThroughHookAfterBudget() {
+        // The interaction counts as acknowledged once the watchdog deferred it
+        Interaction interaction = mock(Interaction.class);
+        AtomicBoolean acknowledged = new AtomicBoolean();
+        when(interaction.isAcknowledged()).thenAnswer(invocation -> acknowledged.get());
+        ReplyAction deferReply = mock(ReplyAction.class);
+        when(interaction.deferReply()).thenReturn(deferReply);
+        doAnswer(invocation -> {
+            acknowledged.set(true);
+            return null;
+        }).when(deferReply).queue();
+
+        InteractionHook hook = mock(InteractionHook.class);
+        @SuppressWarnings("unchecked")
+        WebhookMessageAction<Message> message = mock(WebhookMessageAction.class);
+        when(interaction.getHook()).thenReturn(hook);
+        when(hook.sendMessage(anyString())).thenReturn(message);
+        when(message.setEphemeral(anyBoolean())).thenReturn(message);
+
+        watchdog.watch(COMMAND_NAME, interaction);
+        verify(deferReply, timeout(TIMEOUT_MILLIS)).queue();
+
+        // A handler that exceeded the budget responds
+        AcknowledgementWatchdog.deferReply(interaction);
+        AcknowledgementWatchdog.replyEphemeral(interaction, "foo");
+
+        verify(interaction).deferReply();
+        verify(interaction, never()).reply(anyString());
+        verify(hook).sendMessage("foo");
+        verify(message).queue();
+    }
+}
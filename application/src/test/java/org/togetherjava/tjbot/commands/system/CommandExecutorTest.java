@@ -0,0 +1,241 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class CommandExecutorTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final long GUILD_ID = 1;
+    private static final long OTHER_GUILD_ID = 2;
+
+    @Test
+    void executesCommandsAndRecordsThem() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(2, 10, 2, CommandExecutor.OverloadPolicy.REJECT_NEWEST);
+
+        CountDownLatch executed = new CountDownLatch(3);
+        executor.execute(GUILD_ID, "foo", executed::countDown, () -> fail("Must not be rejected"));
+        executor.execute(GUILD_ID, "foo", executed::countDown, () -> fail("Must not be rejected"));
+        executor.execute(OTHER_GUILD_ID, "bar", () -> {
+            executed.countDown();
+            throw new IllegalStateException("Failing on purpose");
+        }, () -> fail("Must not be rejected"));
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(executor);
+
+        CommandSummary foo = getSummary(executor, "foo");
+        assertEquals(2, foo.count());
+        assertEquals(0, foo.failures());
+        CommandSummary bar = getSummary(executor, "bar");
+        assertEquals(1, bar.count());
+        assertEquals(1, bar.failures());
+        assertEquals(2, getGuildSummary(executor, GUILD_ID).count());
+        assertEquals(1, getGuildSummary(executor, OTHER_GUILD_ID).count());
+
+        executor.reset();
+        assertTrue(executor.getSummaries().isEmpty());
+        assertTrue(executor.getGuildSummaries().isEmpty());
+    }
+
+    @Test
+    void rejectsNewestCommandWhenOverloaded() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(1, 1, 1, CommandExecutor.OverloadPolicy.REJECT_NEWEST);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        CountDownLatch release = blockSingleThread(executor);
+
+        CountDownLatch executed = new CountDownLatch(1);
+        executor.execute(GUILD_ID, "queued", executed::countDown, () -> rejected.add("queued"));
+        executor.execute(GUILD_ID, "newest", () -> {
+        }, () -> rejected.add("newest"));
+        assertEquals(List.of("newest"), rejected);
+        assertEquals(1, executor.getQueueDepth());
+
+        release.countDown();
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(executor);
+        assertEquals(1, getSummary(executor, "queued").count());
+        assertEquals(1, getSummary(executor, "newest").rejections());
+    }
+
+    @Test
+    void rejectsOldestCommandWhenOverloaded() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(1, 1, 1, CommandExecutor.OverloadPolicy.REJECT_OLDEST);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        CountDownLatch release = blockSingleThread(executor);
+
+        executor.execute(GUILD_ID, "oldest", () -> {
+        }, () -> rejected.add("oldest"));
+        CountDownLatch executed = new CountDownLatch(1);
+        executor.execute(GUILD_ID, "newest", executed::countDown, () -> rejected.add("newest"));
+        assertEquals(List.of("oldest"), rejected);
+        assertEquals(1, executor.getPeakQueueDepth());
+
+        release.countDown();
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(executor);
+        assertEquals(1, getSummary(executor, "newest").count());
+        assertEquals(1, getSummary(executor, "oldest").rejections());
+    }
+
+    @Test
+    void overloadRejectsCommandsOfTheNoisiestGuild() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(1, 2, 1, CommandExecutor.OverloadPolicy.REJECT_NEWEST);
+        List<String> rejected = new CopyOnWriteArrayList<>();
+        CountDownLatch release = blockSingleThread(executor);
+
+        executor.execute(GUILD_ID, "first", () -> {
+        }, () -> rejected.add("first"));
+        executor.execute(GUILD_ID, "second", () -> {
+        }, () -> rejected.add("second"));
+        CountDownLatch executed = new CountDownLatch(1);
+        executor.execute(OTHER_GUILD_ID, "other", executed::countDown, () -> rejected.add("other"));
+        assertEquals(List.of("second"), rejected);
+
+        release.countDown();
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(executor);
+        assertEquals(1, getGuildSummary(executor, GUILD_ID).rejections());
+        assertEquals(0, getGuildSummary(executor, OTHER_GUILD_ID).rejections());
+    }
+
+    @Test
+    void servesGuildsRoundRobin() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(1, 10, 2, CommandExecutor.OverloadPolicy.REJECT_NEWEST);
+        List<String> executionOrder = new CopyOnWriteArrayList<>();
+        CountDownLatch release = blockSingleThread(executor);
+
+        CountDownLatch executed = new CountDownLatch(5);
+        List<String> commands = List.of("a1", "a2", "a3", "b1", "b2");
+        for (String command : commands) {
+            long guildId = command.startsWith("a") ? GUILD_ID : OTHER_GUILD_ID;
+            executor.execute(guildId, command, () -> {
+                executionOrder.add(command);
+                executed.countDown();
+            }, () -> fail("Must not be rejected"));
+        }
+
+        release.countDown();
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // The other guild only waits for a single command of the busy guild at a time
+        assertEquals(List.of("a1", "b1", "a2", "b2", "a3"), executionOrder);
+    }
+
+    @Test
+    void limitsConcurrencyPerGuild() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(2, 10, 1, CommandExecutor.OverloadPolicy.REJECT_NEWEST);
+        CountDownLatch release = blockSingleThread(executor);
+
+        CountDownLatch sameGuildExecuted = new CountDownLatch(1);
+        executor.execute(GUILD_ID, "same guild", sameGuildExecuted::countDown,
+                () -> fail("Must not be rejected"));
+        CountDownLatch otherGuildExecuted = new CountDownLatch(1);
+        executor.execute(OTHER_GUILD_ID, "other guild", otherGuildExecuted::countDown,
+                () -> fail("Must not be rejected"));
+
+        // A thread is free, but the guild already executes as many commands as it may
+        assertTrue(otherGuildExecuted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, sameGuildExecuted.getCount());
+        assertEquals(1, getGuildSummary(executor, GUILD_ID).depth());
+
+        release.countDown();
+        assertTrue(sameGuildExecuted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void keepsExecutingAfterCommandFailedWithError() throws InterruptedException {
+        CommandExecutor executor =
+                createExecutor(1, 10, 1, CommandExecutor.OverloadPolicy.REJECT_NEWEST);
+
+        executor.execute(GUILD_ID, "error", () -> {
+            throw new StackOverflowError("Failing on purpose");
+        }, () -> fail("Must not be rejected"));
+        CountDownLatch executed = new CountDownLatch(1);
+        executor.execute(GUILD_ID, "foo", executed::countDown, () -> fail("Must not be rejected"));
+
+        // Neither the thread nor the guild stays occupied by the failed command
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitIdle(executor);
+        assertEquals(1, getSummary(executor, "error").failures());
+        assertEquals(0, getGuildSummary(executor, GUILD_ID).executing());
+    }
+
+    @Test
+    void fallsBackToPlatformThreadsIfVirtualThreadsAreNotSupported() throws InterruptedException {
+        CommandExecutor executor =
+                new CommandExecutor(1, 1, 1, CommandExecutor.OverloadPolicy.REJECT_NEWEST,
+                        CommandExecutor.ExecutionMode.VIRTUAL);
+        CommandExecutor.ExecutionMode expectedMode =
+                Runtime.version().feature() >= 21 ? CommandExecutor.ExecutionMode.VIRTUAL
+                        : CommandExecutor.ExecutionMode.PLATFORM;
+        assertEquals(expectedMode, executor.getExecutionMode());
+
+        CountDownLatch executed = new CountDownLatch(1);
+        executor.execute(GUILD_ID, "foo", executed::countDown, () -> fail("Must not be rejected"));
+        assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static CommandExecutor createExecutor(int threads, int queueCapacity,
+            int guildConcurrency, CommandExecutor.OverloadPolicy overloadPolicy) {
+        return new CommandExecutor(threads, queueCapacity, guildConcurrency, overloadPolicy,
+                CommandExecutor.ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Occupies a thread of the given executor with a command of {@link #GUILD_ID}, until the
+     * returned latch is released.
+     */
+    private static CountDownLatch blockSingleThread(CommandExecutor executor)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(GUILD_ID, "blocking", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> fail("Must not be rejected"));
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return release;
+    }
+
+    /**
+     * Waits until the given executor neither executes nor queues commands anymore. Commands that
+     * were observed to run are recorded afterwards.
+     */
+    private static void awaitIdle(CommandExecutor executor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (executor.getActiveThreads() != 0 || executor.getQueueDepth() != 0) {
+            assertTrue(System.nanoTime() < deadline, "Executor did not become idle in time");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static CommandSummary getSummary(CommandExecutor executor, String commandName) {
+        return executor.getSummaries()
+            .stream()
+            .filter(summary -> summary.commandName().equals(commandName))
+            .findAny()
+            .orElseThrow();
+    }
+
+    private static GuildQueueSummary getGuildSummary(CommandExecutor executor, long guildId) {
+        return executor.getGuildSummaries()
+            .stream()
+            .filter(summary -> summary.guildId() == guildId)
+            .findAny()
+            .orElseThrow();
+    }
+}
@@ -0,0 +1,50 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.junit.jupiter.api.Test;
+import org.togetherjava.tjbot.commands.MessageReceiver;
+import org.togetherjava.tjbot.commands.MessageReceiverAdapter;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+final class MessageReceiverRouterTest {
+    private static final long CHANNEL_ID = 1;
+    private static final long OTHER_CHANNEL_ID = 2;
+
+    private final MessageReceiver helpReceiver = createReceiver("help.*");
+    private final MessageReceiver everyReceiver = createReceiver(".*");
+    private final MessageReceiverRouter router =
+            new MessageReceiverRouter(List.of(helpReceiver, everyReceiver));
+
+    @Test
+    void routesByChannelName() {
+        assertEquals(List.of(helpReceiver, everyReceiver),
+                router.getReceivers(CHANNEL_ID, "help-java"));
+        assertEquals(List.of(everyReceiver), router.getReceivers(OTHER_CHANNEL_ID, "general"));
+        assertEquals(2, router.getRoutedChannels());
+    }
+
+    @Test
+    void reroutesInvalidatedChannels() {
+        router.getReceivers(CHANNEL_ID, "help-java");
+        router.invalidate(CHANNEL_ID);
+        assertEquals(0, router.getRoutedChannels());
+
+        assertEquals(List.of(everyReceiver), router.getReceivers(CHANNEL_ID, "general"));
+    }
+
+    @Test
+    void reroutesRenamedChannelsEvenIfNotInvalidated() {
+        router.getReceivers(CHANNEL_ID, "general");
+
+        assertEquals(List.of(helpReceiver, everyReceiver),
+                router.getReceivers(CHANNEL_ID, "help-java"));
+        assertEquals(1, router.getRoutedChannels());
+    }
+
+    private static MessageReceiver createReceiver(String channelNamePattern) {
+        return new MessageReceiverAdapter(Pattern.compile(channelNamePattern)) {};
+    }
+}
@@ -0,0 +1,261 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.impl.DSL;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.togetherjava.tjbot.db.generated.tables.ComponentIds.COMPONENT_IDS;
+import static org.togetherjava.tjbot.db.generated.tables.HelpChannelMessages.HELP_CHANNEL_MESSAGES;
+import static org.togetherjava.tjbot.db.generated.tables.ModerationActions.MODERATION_ACTIONS;
+import static org.togetherjava.tjbot.db.generated.tables.PendingReminders.PENDING_REMINDERS;
+
+/**
+ * Benchmark comparing {@link PerformanceProfile}s on the query mix issued by the bot, to choose the
+ * settings in the config from data.
+ * <p>
+ * Each setting is measured on its own, changed from {@link PerformanceProfile#DEFAULT}, and all of
+ * them combined. Every profile runs on a fresh, migrated database seeded with the same data. The
+ * mix resembles the features using the database: recording help channel messages, looking up and
+ * heating component ids, moderation lookups, due reminders and the top-helpers aggregation.
+ * <p>
+ * Run the main method, optionally passing the amount of rounds per worker and the amount of
+ * workers. Results are printed as table, relative to the default profile.
+ */
+final class PerformanceProfileBenchmark {
+    private static final int DEFAULT_ROUNDS = 2_000;
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int SEED_MESSAGES = 100_000;
+    private static final int SEED_COMPONENT_IDS = 20_000;
+    private static final int SEED_ACTIONS = 5_000;
+    private static final int GUILDS = 3;
+    private static final int USERS = 2_000;
+    /**
+     * Every how many rounds the top-helpers aggregation is executed.
+     */
+    private static final int TOP_HELPERS_EVERY_ROUNDS = 100;
+    /**
+     * Operations executed per round, see {@link #runRound(Database, List, int, List)}.
+     */
+    private static final int OPERATIONS_PER_ROUND = 20;
+
+    private PerformanceProfileBenchmark() {
+        throw new UnsupportedOperationException("Utility class, construction not supported");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the amount of rounds per worker and the amount of workers
+     * @throws Exception if the benchmark failed
+     */
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WORKERS;
+
+        PerformanceProfile defaults = PerformanceProfile.DEFAULT;
+        Map<String, PerformanceProfile> nameToProfile = new LinkedHashMap<>();
+        nameToProfile.put("default", defaults);
+        nameToProfile.put("mmap_size=256MiB",
+                new PerformanceProfile(256L * 1024 * 1024, defaults.cacheSize(),
+                        defaults.synchronous(), defaults.tempStore(), defaults.busyTimeout()));
+        nameToProfile.put("cache_size=16MB", new PerformanceProfile(defaults.mmapSize(), -16_000,
+                defaults.synchronous(), defaults.tempStore(), defaults.busyTimeout()));
+        nameToProfile.put("synchronous=NORMAL",
+                new PerformanceProfile(defaults.mmapSize(), defaults.cacheSize(),
+                        PerformanceProfile.Synchronous.NORMAL, defaults.tempStore(),
+                        defaults.busyTimeout()));
+        nameToProfile.put("temp_store=MEMORY",
+                new PerformanceProfile(defaults.mmapSize(), defaults.cacheSize(),
+                        defaults.synchronous(), PerformanceProfile.TempStore.MEMORY,
+                        defaults.busyTimeout()));
+        nameToProfile.put("busy_timeout=5s", new PerformanceProfile(defaults.mmapSize(),
+                defaults.cacheSize(), defaults.synchronous(), defaults.tempStore(), 5_000));
+        nameToProfile.put("combined", new PerformanceProfile(256L * 1024 * 1024, -16_000,
+                PerformanceProfile.Synchronous.NORMAL, PerformanceProfile.TempStore.MEMORY, 5_000));
+
+        System.out.printf("Running %d rounds of %d operations on %d workers per profile%n", rounds,
+                OPERATIONS_PER_ROUND, workers);
+        // Warms up the JIT, so that the first measured profile is not at a disadvantage
+        measure(defaults, rounds, workers);
+
+        Map<String, Double> nameToThroughput = new LinkedHashMap<>();
+        for (Map.Entry<String, PerformanceProfile> nameAndProfile : nameToProfile.entrySet()) {
+            double throughput = measure(nameAndProfile.getValue(), rounds, workers);
+            nameToThroughput.put(nameAndProfile.getKey(), throughput);
+            System.out.printf("Measured %s%n", nameAndProfile.getKey());
+        }
+
+        double defaultThroughput = nameToThroughput.get("default");
+        System.out.printf("%n%-20s %14s %10s%n", "profile", "operations/s", "relative");
+        nameToThroughput.entrySet()
+            .stream()
+            .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+            .forEach(nameAndThroughput -> System.out.printf("%-20s %14.0f %9.2fx%n",
+                    nameAndThroughput.getKey(), nameAndThroughput.getValue(),
+                    nameAndThroughput.getValue() / defaultThroughput));
+    }
+
+    private static double measure(PerformanceProfile profile, int rounds, int workers)
+            throws IOException, SQLException, InterruptedException {
+        Path directory = Files.createTempDirectory("tjbot-benchmark");
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try (Database database = new Database("jdbc:sqlite:" + directory.resolve("database.db"),
+                Database.DEFAULT_READ_CONNECTIONS, WriteBehindSettings.DEFAULT, profile)) {
+            List<String> uuids = seed(database);
+
+            List<Future<?>> tasks = new ArrayList<>(workers);
+            long start = System.nanoTime();
+            for (int i = 0; i < workers; i++) {
+                tasks.add(executor.submit(() -> {
+                    List<CompletableFuture<Void>> asyncWrites = new ArrayList<>();
+                    for (int round = 0; round < rounds; round++) {
+                        runRound(database, uuids, round, asyncWrites);
+                    }
+                    CompletableFuture.allOf(asyncWrites.toArray(CompletableFuture[]::new)).join();
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            return (double) rounds * workers * OPERATIONS_PER_ROUND / seconds;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static List<String> seed(Database database) {
+        Instant now = Instant.now();
+        List<String> uuids = new ArrayList<>(SEED_COMPONENT_IDS);
+        for (int i = 0; i < SEED_COMPONENT_IDS; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+
+        database.writeTransaction(context -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < SEED_MESSAGES; i++) {
+                context.newRecord(HELP_CHANNEL_MESSAGES)
+                    .setMessageId((long) i)
+                    .setGuildId((long) random.nextInt(GUILDS))
+                    .setChannelId(1L)
+                    .setAuthorId((long) random.nextInt(USERS))
+                    .setSentAt(now.minusSeconds(random.nextInt(90 * 24 * 60 * 60)))
+                    .insert();
+            }
+            for (String uuid : uuids) {
+                context.newRecord(COMPONENT_IDS)
+                    .setUuid(uuid)
+                    .setComponentId("ping,foo;bar".getBytes(StandardCharsets.UTF_8))
+                    .setLastUsed(now)
+                    .setLifespan("REGULAR")
+                    .insert();
+            }
+            for (int i = 0; i < SEED_ACTIONS; i++) {
+                context.newRecord(MODERATION_ACTIONS)
+                    .setIssuedAt(now.minusSeconds(random.nextInt(365 * 24 * 60 * 60)))
+                    .setGuildId((long) random.nextInt(GUILDS))
+                    .setAuthorId((long) random.nextInt(USERS))
+                    .setTargetId((long) random.nextInt(USERS))
+                    .setActionType(random.nextBoolean() ? "WARN" : "MUTE")
+                    .setReason("benchmark")
+                    .insert();
+            }
+        });
+        return uuids;
+    }
+
+    /**
+     * Executes {@link #OPERATIONS_PER_ROUND} operations, resembling the load of the bot. Like in
+     * the bot, asynchronous writes are not waited for but added to the given list.
+     */
+    private static void runRound(Database database, List<String> uuids, int round,
+            List<? super CompletableFuture<Void>> asyncWrites) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long guildId = random.nextInt(GUILDS);
+        long userId = random.nextInt(USERS);
+
+        // TopHelpersMessageListener, 8 operations
+        for (int i = 0; i < 8; i++) {
+            long messageId = random.nextLong(SEED_MESSAGES, Long.MAX_VALUE);
+            asyncWrites.add(database.writeAsync(context -> context.newRecord(HELP_CHANNEL_MESSAGES)
+                .setMessageId(messageId)
+                .setGuildId(guildId)
+                .setChannelId(1L)
+                .setAuthorId(userId)
+                .setSentAt(Instant.now())
+                .insert()));
+        }
+
+        // ComponentIdStore, 8 lookups and 2 heats
+        for (int i = 0; i < 8; i++) {
+            String uuid = uuids.get(random.nextInt(uuids.size()));
+            database.read(context -> context.selectFrom(COMPONENT_IDS)
+                .where(COMPONENT_IDS.UUID.eq(uuid))
+                .fetchOne());
+        }
+        for (int i = 0; i < 2; i++) {
+            String uuid = uuids.get(random.nextInt(uuids.size()));
+            database.write(context -> context.update(COMPONENT_IDS)
+                .set(COMPONENT_IDS.LAST_USED, Instant.now())
+                .where(COMPONENT_IDS.UUID.eq(uuid))
+                .execute());
+        }
+
+        // ModerationActionsStore, RejoinMuteListener
+        database.read(context -> context.selectFrom(MODERATION_ACTIONS)
+            .where(MODERATION_ACTIONS.GUILD_ID.eq(guildId)
+                .and(MODERATION_ACTIONS.TARGET_ID.eq(userId))
+                .and(MODERATION_ACTIONS.ACTION_TYPE.eq("MUTE")))
+            .orderBy(MODERATION_ACTIONS.ISSUED_AT.desc())
+            .limit(1)
+            .fetchOptional());
+
+        // RemindRoutine
+        database.write(context -> context.selectFrom(PENDING_REMINDERS)
+            .where(PENDING_REMINDERS.REMIND_AT.lessOrEqual(Instant.now()))
+            .fetch());
+
+        // TopHelpersCommand
+        if (round % TOP_HELPERS_EVERY_ROUNDS == 0) {
+            Instant now = Instant.now();
+            database.read(context -> context.select(HELP_CHANNEL_MESSAGES.AUTHOR_ID, DSL.count())
+                .from(HELP_CHANNEL_MESSAGES)
+                .where(HELP_CHANNEL_MESSAGES.GUILD_ID.eq(guildId)
+                    .and(HELP_CHANNEL_MESSAGES.SENT_AT.between(now.minus(Duration.ofDays(30)),
+                            now)))
+                .groupBy(HELP_CHANNEL_MESSAGES.AUTHOR_ID)
+                .orderBy(DSL.count().desc())
+                .limit(20)
+                .fetch());
+        }
+    }
+}
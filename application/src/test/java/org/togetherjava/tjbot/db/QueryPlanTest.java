@@ -0,0 +1,177 @@
+package org.togetherjava.tjbot.db;
+
+import net.dv8tion.jda.api.JDA;
+import org.jooq.DSLContext;
+import org.jooq.Query;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.togetherjava.tjbot.commands.componentids.ComponentId;
+import org.togetherjava.tjbot.commands.componentids.ComponentIdStore;
+import org.togetherjava.tjbot.commands.componentids.Lifespan;
+import org.togetherjava.tjbot.commands.moderation.ModerationAction;
+import org.togetherjava.tjbot.commands.moderation.ModerationActionsStore;
+import org.togetherjava.tjbot.commands.tophelper.TopHelpersPurgeMessagesRoutine;
+import org.togetherjava.tjbot.db.metrics.StatementListener;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.togetherjava.tjbot.db.generated.tables.HelpChannelMessages.HELP_CHANNEL_MESSAGES;
+import static org.togetherjava.tjbot.db.generated.tables.PendingReminders.PENDING_REMINDERS;
+
+/**
+ * Ensures that the queries issued on the frequently used tables are backed by an index, as created
+ * by the migrations, instead of scanning the full table.
+ * <p>
+ * Wherever possible, the stores and routines using the tables are run against the database and the
+ * statements they actually execute are checked. Queries issued by handlers of Discord events can
+ * not be run without Discord, they are mirrored here instead. If such a feature changes its query,
+ * the corresponding query here should be updated as well.
+ */
+final class QueryPlanTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final long GUILD_ID = 1;
+    private static final long USER_ID = 2;
+
+    @TempDir
+    Path directory;
+    private Database database;
+    private final List<ExecutedStatement> executedStatements = new CopyOnWriteArrayList<>();
+    private final StatementListener statementRecorder =
+            (sql, bindValues) -> executedStatements.add(new ExecutedStatement(sql, bindValues));
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Migrations are only applied to databases persisted in a file
+        database = new Database("jdbc:sqlite:" + directory.resolve("database.db"));
+        database.addStatementListener(statementRecorder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void moderationActionsQueriesUseIndexes() {
+        ModerationActionsStore store = new ModerationActionsStore(ShardedDatabase.shared(database));
+
+        int caseId = store.addAction(GUILD_ID, USER_ID, USER_ID, ModerationAction.BAN,
+                Instant.now(), "foo");
+        store.getExpiredActionsAscending();
+        store.getActionsByTypeAscending(GUILD_ID, ModerationAction.BAN);
+        store.getActionsByTargetAscending(GUILD_ID, USER_ID);
+        store.getActionsByAuthorAscending(GUILD_ID, USER_ID);
+        store.findLastActionAgainstTargetByType(GUILD_ID, USER_ID, ModerationAction.BAN);
+        store.findActionByCaseId(GUILD_ID, caseId);
+
+        assertExecutedStatementsUseIndexes("select", "insert");
+    }
+
+    @Test
+    void helpChannelMessagesQueriesUseIndexes() {
+        new TopHelpersPurgeMessagesRoutine(ShardedDatabase.shared(database))
+            .runRoutine(mock(JDA.class));
+        assertExecutedStatementsUseIndexes("delete");
+
+        // TopHelpersCommand
+        Instant now = Instant.now();
+        assertNoScan(context -> context.select(HELP_CHANNEL_MESSAGES.AUTHOR_ID, DSL.count())
+            .from(HELP_CHANNEL_MESSAGES)
+            .where(HELP_CHANNEL_MESSAGES.GUILD_ID.eq(GUILD_ID)
+                .and(HELP_CHANNEL_MESSAGES.SENT_AT.between(now.minusSeconds(60), now)))
+            .groupBy(HELP_CHANNEL_MESSAGES.AUTHOR_ID)
+            .orderBy(DSL.count().desc())
+            .limit(20));
+    }
+
+    @Test
+    void pendingRemindersQueriesUseIndexes() {
+        // RemindRoutine
+        assertNoScan(context -> context.selectFrom(PENDING_REMINDERS)
+            .where(PENDING_REMINDERS.REMIND_AT.lessOrEqual(Instant.now())));
+        // RemindCommand
+        assertNoScan(context -> context.selectCount()
+            .from(PENDING_REMINDERS)
+            .where(PENDING_REMINDERS.AUTHOR_ID.equal(USER_ID)));
+    }
+
+    @Test
+    void componentIdsQueriesUseIndexes() throws InterruptedException {
+        UUID uuid = UUID.randomUUID();
+        ComponentId componentId = new ComponentId("foo", List.of("bar"));
+        // Each store migrates legacy component ids first
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            store.putOrThrow(uuid, componentId, Lifespan.REGULAR);
+        }
+        // A new store starts with an empty cache, its usage is flushed on close
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            store.get(uuid);
+        }
+        // Evicts all component ids right away
+        CountDownLatch evicted = new CountDownLatch(1);
+        try (ComponentIdStore store =
+                new ComponentIdStore(database, 0, 1, ChronoUnit.DAYS, 0, ChronoUnit.DAYS)) {
+            store.addComponentIdRemovedListener(removedComponentId -> evicted.countDown());
+            assertTrue(evicted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        assertExecutedStatementsUseIndexes("select", "insert", "update", "delete");
+    }
+
+    /**
+     * Asserts that none of the statements executed so far scans a full table, and that statements
+     * of each of the given kinds were executed.
+     *
+     * @param expectedKinds the kinds of statements that must have been executed, such as
+     *        {@code "select"}
+     */
+    private void assertExecutedStatementsUseIndexes(String... expectedKinds) {
+        database.removeStatementListener(statementRecorder);
+        List<ExecutedStatement> statements = List.copyOf(executedStatements);
+
+        for (String expectedKind : expectedKinds) {
+            assertTrue(statements.stream().anyMatch(statement -> statement.isKind(expectedKind)),
+                    () -> "No '%s' statement was executed, only %s".formatted(expectedKind,
+                            statements));
+        }
+        statements.forEach(statement -> assertNoScan(statement.sql(), statement.bindValues()));
+    }
+
+    private void assertNoScan(Function<? super DSLContext, ? extends Query> queryCreator) {
+        Query query = database.read(queryCreator::apply);
+        assertNoScan(query.getSQL(), query.getBindValues());
+    }
+
+    private void assertNoScan(String sql, List<Object> bindValues) {
+        List<String> steps = database
+            .read(context -> context.fetch("EXPLAIN QUERY PLAN " + sql, bindValues.toArray())
+                .getValues("detail", String.class));
+
+        // Selecting a value without any table, like last_insert_rowid(), scans a constant row
+        assertFalse(
+                steps.stream()
+                    .anyMatch(step -> step.startsWith("SCAN") && !"SCAN CONSTANT ROW".equals(step)),
+                () -> "The query '%s' scans a full table, its plan is %s".formatted(sql, steps));
+    }
+
+    private record ExecutedStatement(String sql, List<Object> bindValues) {
+        boolean isKind(String kind) {
+            return sql.regionMatches(true, 0, kind, 0, kind.length());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.togetherjava.tjbot.db;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark comparing the cold-start time of {@link Database} per {@link MigrationMode}, that is
+ * the time it takes to create an instance for an already migrated database in a fresh JVM.
+ * <p>
+ * Each sample is measured in a new JVM, started with the class path of this one, alternating
+ * between the modes. The reported time includes loading the classes of Flyway, jOOQ and SQLite, but
+ * not the startup of the JVM itself.
+ * <p>
+ * Run the main method, optionally passing the amount of samples per mode. Results are printed as
+ * table.
+ */
+final class StartupBenchmark {
+    private static final int DEFAULT_SAMPLES = 10;
+    private static final String RESULT_PREFIX = "startup-nanos=";
+
+    private StartupBenchmark() {
+        throw new UnsupportedOperationException("Utility class, construction not supported");
+    }
+
+    /**
+     * Runs the benchmark, or measures a single sample if started by the benchmark itself.
+     *
+     * @param args optionally the amount of samples per mode; or, for a single sample, the path to
+     *        the database and the mode to measure
+     * @throws Exception if the benchmark failed
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2) {
+            measureSample(Path.of(args[0]), MigrationMode.valueOf(args[1]));
+            return;
+        }
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SAMPLES;
+
+        Path directory = Files.createTempDirectory("tjbot-benchmark");
+        Path databaseFile = directory.resolve("database.db");
+        try {
+            // Migrates the database once, so that all samples start from the same state
+            new Database("jdbc:sqlite:" + databaseFile, Database.DEFAULT_READ_CONNECTIONS,
+                    WriteBehindSettings.DEFAULT, PerformanceProfile.DEFAULT,
+                    MigrationMode.IF_CHANGED).close();
+
+            System.out.printf("Measuring %d cold starts per mode%n", samples);
+            Map<MigrationMode, List<Double>> modeToMillis = new EnumMap<>(MigrationMode.class);
+            for (int i = 0; i < samples; i++) {
+                for (MigrationMode mode : MigrationMode.values()) {
+                    modeToMillis.computeIfAbsent(mode, any -> new ArrayList<>())
+                        .add(forkSample(databaseFile, mode));
+                }
+            }
+
+            System.out.printf("%n%-12s %10s %10s %10s%n", "mode", "min ms", "median ms", "max ms");
+            modeToMillis.forEach((mode, millis) -> {
+                List<Double> sorted = millis.stream().sorted().toList();
+                System.out.printf("%-12s %10.0f %10.0f %10.0f%n", mode, sorted.get(0),
+                        sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1));
+            });
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void measureSample(Path databaseFile, MigrationMode mode) throws SQLException {
+        long start = System.nanoTime();
+        Database database =
+                new Database("jdbc:sqlite:" + databaseFile, Database.DEFAULT_READ_CONNECTIONS,
+                        WriteBehindSettings.DEFAULT, PerformanceProfile.DEFAULT, mode);
+        long startupNanos = System.nanoTime() - start;
+        database.close();
+
+        System.out.println(RESULT_PREFIX + startupNanos);
+    }
+
+    private static double forkSample(Path databaseFile, MigrationMode mode)
+            throws IOException, InterruptedException {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Process process =
+                new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                        StartupBenchmark.class.getName(), databaseFile.toString(), mode.name())
+                            .redirectErrorStream(true)
+                            .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Measuring a sample failed:%n%s".formatted(output));
+        }
+
+        return output.lines()
+            .filter(line -> line.startsWith(RESULT_PREFIX))
+            .mapToLong(line -> Long.parseLong(line.substring(RESULT_PREFIX.length())))
+            .findAny()
+            .orElseThrow(() -> new IllegalStateException(
+                    "The sample did not report a result:%n%s".formatted(output)))
+                / 1_000_000.0;
+    }
+}
@@ -1,6 +1,7 @@
 package org.togetherjava.tjbot.jda;
 
 import net.dv8tion.jda.api.AccountType;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
@@ -236,6 +237,18 @@ public final class JdaTester {
         return spy(new MemberImpl(guild, user));
     }
 
+    /**
+     * Gets the JDA mock used by all mocks created by this tester instance.
+     * <p>
+     * For example to create a {@link org.togetherjava.tjbot.commands.system.BotCore} that the
+     * events created by this tester can be passed to.
+     *
+     * @return the JDA mock used by this tester
+     */
+    public @NotNull JDA getJdaMock() {
+        return jda;
+    }
+
     /**
      * Gets the Mockito mock used as universal reply action by all mocks created by this tester
      * instance.
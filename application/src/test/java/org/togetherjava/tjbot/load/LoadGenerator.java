@@ -0,0 +1,475 @@
+package org.togetherjava.tjbot.load;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.ButtonClickEvent;
+import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.api.interactions.Interaction;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.Button;
+import net.dv8tion.jda.api.interactions.components.ButtonStyle;
+import net.dv8tion.jda.api.requests.restaction.AuditableRestAction;
+import net.dv8tion.jda.api.requests.restaction.interactions.ReplyAction;
+import net.dv8tion.jda.api.requests.restaction.interactions.UpdateInteractionAction;
+import org.jetbrains.annotations.NotNull;
+import org.mockito.ArgumentMatchers;
+import org.mockito.stubbing.Answer;
+import org.togetherjava.tjbot.commands.SlashCommand;
+import org.togetherjava.tjbot.commands.componentids.ComponentId;
+import org.togetherjava.tjbot.commands.componentids.ComponentIdStore;
+import org.togetherjava.tjbot.commands.componentids.Lifespan;
+import org.togetherjava.tjbot.commands.system.BotCore;
+import org.togetherjava.tjbot.commands.system.CommandExecutor;
+import org.togetherjava.tjbot.config.CommandExecutorConfig;
+import org.togetherjava.tjbot.config.Config;
+import org.togetherjava.tjbot.config.SuggestionsConfig;
+import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.ShardedDatabase;
+import org.togetherjava.tjbot.db.metrics.OperationHistograms;
+import org.togetherjava.tjbot.jda.JdaTester;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.*;
+import static org.togetherjava.tjbot.db.generated.tables.Tags.TAGS;
+
+/**
+ * Synthetic load generator that replays a mix of slash commands, button clicks and help channel
+ * messages into {@link BotCore}, to find the throughput ceiling of the event dispatch.
+ * <p>
+ * The bot runs against the mocked JDA of a {@link JdaTester} and a fresh database, seeded with tags
+ * and component ids. Events are replayed in stages, each at a fixed rate for a fixed time. Within a
+ * stage, events are dispatched on a single thread, like JDA does, in an open loop: each event is
+ * due at a fixed time and its latency is measured from that time, so that a dispatch falling behind
+ * shows up in the latencies. The latency of a command or button click ends with its first response,
+ * for example a reply or deferring it. The latency of a message ends once the message receivers
+ * returned.
+ * <p>
+ * The rate doubles every stage, starting at the initial rate, until a stage fails or the maximal
+ * rate is reached. A stage fails if an event was not responded to in time, the 99th percentile
+ * latency of a feature exceeds {@link #LATENCY_DEADLINE} or less than
+ * {@value #MIN_ACHIEVED_RATE_RATIO} of the target rate was achieved. The rate of the last passed
+ * stage is the throughput ceiling. Every stage reports latency percentiles per feature, the amount
+ * of platform threads, the peak heap usage and the time spent in the database per feature.
+ * <p>
+ * Run the main method, optionally passing the initial rate, the maximal rate, the seconds per
+ * stage, the traffic mix, see {@link TrafficMix}, and the execution mode and amount of threads of
+ * the command executor, see {@link CommandExecutor}. Running it once per execution mode compares
+ * their tail latencies, threads and heap footprint under the same load, for example:
+ *
+ * <pre>
+ * {@code
+ * LoadGenerator 50 12800 10 ping=1,tag=3,button=2,message=4 PLATFORM 16
+ * LoadGenerator 50 12800 10 ping=1,tag=3,button=2,message=4 VIRTUAL 1000
+ * }
+ * </pre>
+ */
+public final class LoadGenerator {
+    private static final int DEFAULT_INITIAL_RATE = 50;
+    private static final int DEFAULT_MAX_RATE = 12_800;
+    private static final int DEFAULT_STAGE_SECONDS = 10;
+    private static final CommandExecutor.ExecutionMode DEFAULT_EXECUTION_MODE =
+            CommandExecutor.ExecutionMode.PLATFORM;
+    private static final int DEFAULT_COMMAND_THREADS = 16;
+    private static final int COMMAND_QUEUE_CAPACITY = 100;
+    private static final long ACKNOWLEDGEMENT_BUDGET_MILLIS = 2_000;
+    /**
+     * Discord discards interactions that were not responded to within 3 seconds.
+     */
+    private static final Duration LATENCY_DEADLINE = Duration.ofSeconds(3);
+    private static final double MIN_ACHIEVED_RATE_RATIO = 0.95;
+    /**
+     * How long to wait for outstanding responses after the last event of a stage was dispatched.
+     */
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final int USERS = 1_000;
+    private static final int TAGS_COUNT = 200;
+    /**
+     * The probability that {@code /tag} is used with an unknown tag, which suggests the closest
+     * known tag instead.
+     */
+    private static final double UNKNOWN_TAG_PROBABILITY = 0.1;
+    /**
+     * The amount of component ids available to click on, more than the component id store keeps in
+     * memory.
+     */
+    private static final int BUTTONS = 5_000;
+    private static final String HELP_CHANNEL_NAME = "java_help_1";
+    private static final long GUILD_ID = 1;
+    private static final long HELP_CHANNEL_ID = 2;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final List<MemoryPoolMXBean> HEAP_POOLS =
+            ManagementFactory.getMemoryPoolMXBeans()
+                .stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+
+    private final Random random = new Random();
+    private final JdaTester jdaTester = new JdaTester();
+    private final OperationHistograms databaseOperations = new OperationHistograms();
+    private final ReplyAction replyAction =
+            mock(ReplyAction.class, withSettings().stubOnly().defaultAnswer(RETURNS_SELF));
+    private final UpdateInteractionAction updateAction = mock(UpdateInteractionAction.class,
+            withSettings().stubOnly().defaultAnswer(RETURNS_SELF));
+    @SuppressWarnings("unchecked")
+    private final AuditableRestAction<Void> deleteAction =
+            mock(AuditableRestAction.class, withSettings().stubOnly());
+    private final BotCore botCore;
+    private final SlashCommand pingCommand;
+    private final SlashCommand tagCommand;
+    private final List<String> tagIds = new ArrayList<>(TAGS_COUNT);
+    private final List<SeededButton> buttons = new ArrayList<>(BUTTONS);
+    private final Guild guild = mock(Guild.class, withSettings().stubOnly());
+    private final TextChannel helpChannel = mock(TextChannel.class, withSettings().stubOnly());
+    private long nextMessageId;
+
+    private LoadGenerator(@NotNull Database database, @NotNull ShardedDatabase guildDatabase,
+            @NotNull Path directory, @NotNull CommandExecutor.ExecutionMode executionMode,
+            int commandThreads) {
+        seedTags(database);
+        seedButtons(database);
+        database.addOperationListener(databaseOperations);
+
+        when(guild.getIdLong()).thenReturn(GUILD_ID);
+        when(helpChannel.getName()).thenReturn(HELP_CHANNEL_NAME);
+        when(helpChannel.getIdLong()).thenReturn(HELP_CHANNEL_ID);
+
+        botCore = new BotCore(jdaTester.getJdaMock(), database, guildDatabase,
+                createConfig(directory, executionMode, commandThreads));
+        pingCommand = botCore.getSlashCommand("ping").orElseThrow();
+        tagCommand = botCore.getSlashCommand("tag").orElseThrow();
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args optionally the initial rate, the maximal rate, the seconds per stage, the traffic
+     *        mix, the execution mode of commands and the amount of command threads
+     * @throws Exception if the load generator failed
+     */
+    public static void main(String[] args) throws Exception {
+        int initialRate = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_INITIAL_RATE;
+        int maxRate = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_RATE;
+        int stageSeconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_STAGE_SECONDS;
+        TrafficMix mix = args.length > 3 ? TrafficMix.parse(args[3]) : TrafficMix.DEFAULT;
+        CommandExecutor.ExecutionMode executionMode =
+                args.length > 4 ? CommandExecutor.ExecutionMode.valueOf(args[4])
+                        : DEFAULT_EXECUTION_MODE;
+        int commandThreads = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_COMMAND_THREADS;
+
+        Path directory = Files.createTempDirectory("tjbot-load");
+        try (Database database = new Database("jdbc:sqlite:" + directory.resolve("database.db"));
+                ShardedDatabase guildDatabase = ShardedDatabase.shared(database)) {
+            LoadGenerator generator = new LoadGenerator(database, guildDatabase, directory,
+                    executionMode, commandThreads);
+
+            System.out.printf(
+                    "Replaying '%s' in stages of %ds, from %d/s up to %d/s, on %d %s command threads%n",
+                    mix, stageSeconds, initialRate, maxRate, commandThreads, executionMode);
+            // Warms up the JIT and the caches, so that the first stage is not at a disadvantage
+            generator.runStage(initialRate, stageSeconds, mix);
+
+            List<StageReport> reports = new ArrayList<>();
+            for (int rate = initialRate; rate <= maxRate; rate *= 2) {
+                StageReport report = generator.runStage(rate, stageSeconds, mix);
+                reports.add(report);
+                System.out.printf("%n%s", report.describe());
+                if (!passes(report)) {
+                    break;
+                }
+            }
+
+            System.out.printf("%n%10s %12s %10s %12s %12s%n", "target/s", "achieved/s", "timeouts",
+                    "worst p99", "peak heap");
+            reports.forEach(report -> System.out.printf("%10d %12.0f %10d %10.0fms %10dMB%n",
+                    report.getTargetRate(), report.getAchievedRate(), report.getTimeouts(),
+                    report.getWorstP99().toNanos() / 1_000_000.0,
+                    report.getPeakHeapBytes() / (1024 * 1024)));
+            OptionalInt ceiling = reports.stream()
+                .filter(LoadGenerator::passes)
+                .mapToInt(StageReport::getTargetRate)
+                .max();
+            System.out.printf("%nThroughput ceiling: %s%n",
+                    ceiling.isPresent() ? ceiling.getAsInt() + " events/s"
+                            : "below the initial rate");
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        // The bot runs commands and routines on thread pools that are never shut down
+        System.exit(0);
+    }
+
+    private @NotNull StageReport runStage(int rate, int stageSeconds, @NotNull TrafficMix mix)
+            throws InterruptedException {
+        int eventCount = rate * stageSeconds;
+        StageReport report = new StageReport(rate);
+        CountDownLatch pendingResponses = new CountDownLatch(eventCount);
+
+        // Events are created upfront, creating the mocks would otherwise slow down the dispatch
+        List<PendingEvent> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            PendingEvent event = new PendingEvent(mix.pick(random), report, pendingResponses);
+            event.dispatch = createDispatch(event);
+            events.add(event);
+        }
+        // Mocks shared by all events record their invocations, which would pile up otherwise
+        clearInvocations(jdaTester.getReplyActionMock(), jdaTester.getTextChannelSpy());
+        databaseOperations.reset();
+        THREADS.resetPeakThreadCount();
+        HEAP_POOLS.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < eventCount; i++) {
+            long dueNanos = start + i * periodNanos;
+            long waitNanos;
+            while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            events.get(i).dispatch(dueNanos);
+        }
+        pendingResponses.await(RESPONSE_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        events.forEach(PendingEvent::timeOutIfPending);
+        // Only approximates the peak of the whole heap, since the pools peak at different times
+        long peakHeapBytes =
+                HEAP_POOLS.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        report.complete(elapsed, THREADS.getThreadCount(), THREADS.getPeakThreadCount(),
+                peakHeapBytes, databaseOperations.getSummaries());
+        return report;
+    }
+
+    private static boolean passes(@NotNull StageReport report) {
+        return report.getTimeouts() == 0 && report.getWorstP99().compareTo(LATENCY_DEADLINE) <= 0
+                && report.getAchievedRate() >= report.getTargetRate() * MIN_ACHIEVED_RATE_RATIO;
+    }
+
+    private @NotNull Runnable createDispatch(@NotNull PendingEvent pendingEvent) {
+        return switch (pendingEvent.kind) {
+            case PING -> {
+                SlashCommandEvent event = jdaTester.createSlashCommandEvent(pingCommand)
+                    .setUserWhoTriggered(createRandomMember())
+                    .build();
+                observeResponses(event, pendingEvent);
+                yield () -> botCore.onSlashCommand(event);
+            }
+            case TAG -> {
+                String tagId = random.nextDouble() < UNKNOWN_TAG_PROBABILITY ? "unknown-tag"
+                        : tagIds.get(random.nextInt(tagIds.size()));
+                SlashCommandEvent event = jdaTester.createSlashCommandEvent(tagCommand)
+                    .setOption("id", tagId)
+                    .setUserWhoTriggered(createRandomMember())
+                    .build();
+                observeResponses(event, pendingEvent);
+                yield () -> botCore.onSlashCommand(event);
+            }
+            case BUTTON -> {
+                SeededButton button = buttons.get(random.nextInt(buttons.size()));
+                ButtonClickEvent event = jdaTester.createButtonClickEvent()
+                    .setUserWhoClicked(jdaTester.createMemberSpy(button.ownerId()))
+                    .setActionRows(ActionRow
+                        .of(Button.of(ButtonStyle.DANGER, button.uuid().toString(), "Delete")))
+                    .buildWithSingleButton();
+                observeResponses(event, pendingEvent);
+                doAnswer(respondWith(pendingEvent, updateAction)).when(event).deferEdit();
+                // The owner of the image clicked on delete, the message is deleted without a reply
+                doAnswer(respondWith(pendingEvent, deleteAction)).when(event.getMessage())
+                    .delete();
+                yield () -> botCore.onButtonClick(event);
+            }
+            case MESSAGE -> {
+                GuildMessageReceivedEvent event = createHelpMessageEvent();
+                // Message receivers run on the dispatching thread, they are done once it returns
+                yield () -> {
+                    botCore.onGuildMessageReceived(event);
+                    pendingEvent.respond();
+                };
+            }
+        };
+    }
+
+    private void observeResponses(@NotNull Interaction event, @NotNull PendingEvent pendingEvent) {
+        Answer<ReplyAction> respond = respondWith(pendingEvent, replyAction);
+
+        doAnswer(respond).when(event).reply(anyString());
+        doAnswer(respond).when(event).replyEmbeds(ArgumentMatchers.<MessageEmbed>any());
+        doAnswer(respond).when(event).replyEmbeds(anyCollection());
+        doAnswer(respond).when(event).deferReply();
+        doAnswer(respond).when(event).deferReply(anyBoolean());
+        // Deferred by the watchdog of the bot, unless responded to in time
+        doAnswer(invocation -> pendingEvent.isDone()).when(event).isAcknowledged();
+    }
+
+    private static <T> @NotNull Answer<T> respondWith(@NotNull PendingEvent pendingEvent,
+            @NotNull T action) {
+        return invocation -> {
+            pendingEvent.respond();
+            return action;
+        };
+    }
+
+    private @NotNull Member createRandomMember() {
+        return jdaTester.createMemberSpy(random.nextInt(USERS));
+    }
+
+    private @NotNull GuildMessageReceivedEvent createHelpMessageEvent() {
+        User author = mock(User.class, withSettings().stubOnly());
+        when(author.getIdLong()).thenReturn((long) random.nextInt(USERS));
+
+        Message message = mock(Message.class, withSettings().stubOnly());
+        when(message.getIdLong()).thenReturn(nextMessageId);
+        when(message.getTimeCreated()).thenReturn(OffsetDateTime.now());
+        nextMessageId++;
+
+        GuildMessageReceivedEvent event =
+                mock(GuildMessageReceivedEvent.class, withSettings().stubOnly());
+        when(event.getGuild()).thenReturn(guild);
+        when(event.getChannel()).thenReturn(helpChannel);
+        when(event.getAuthor()).thenReturn(author);
+        when(event.getMessage()).thenReturn(message);
+        return event;
+    }
+
+    private void seedTags(@NotNull Database database) {
+        for (int i = 0; i < TAGS_COUNT; i++) {
+            tagIds.add("tag-" + i);
+        }
+        database.writeTransaction(context -> tagIds.forEach(tagId -> context.newRecord(TAGS)
+            .setId(tagId)
+            .setContent("Content of " + tagId)
+            .insert()));
+    }
+
+    private void seedButtons(@NotNull Database database) {
+        // Component ids are created like the bot does, the store of the bot reads them back
+        try (ComponentIdStore store = new ComponentIdStore(database)) {
+            for (int i = 0; i < BUTTONS; i++) {
+                SeededButton button = new SeededButton(UUID.randomUUID(), random.nextInt(USERS));
+                store.putOrThrow(button.uuid(),
+                        new ComponentId("tex", List.of(String.valueOf(button.ownerId()))),
+                        Lifespan.REGULAR);
+                buttons.add(button);
+            }
+        }
+    }
+
+    private static @NotNull Config createConfig(@NotNull Path directory,
+            @NotNull CommandExecutor.ExecutionMode executionMode, int commandThreads) {
+        SuggestionsConfig suggestions = mock(SuggestionsConfig.class);
+        when(suggestions.getChannelPattern()).thenReturn("tj_suggestions");
+        when(suggestions.getUpVoteEmoteName()).thenReturn("peepo_yes");
+        when(suggestions.getDownVoteEmoteName()).thenReturn("peepo_no");
+
+        CommandExecutorConfig commandExecutor = mock(CommandExecutorConfig.class);
+        when(commandExecutor.getThreads()).thenReturn(commandThreads);
+        when(commandExecutor.getQueueCapacity()).thenReturn(COMMAND_QUEUE_CAPACITY);
+        // All events come from the same guild, which may hence use all threads
+        when(commandExecutor.getGuildConcurrency()).thenReturn(commandThreads);
+        when(commandExecutor.getOverloadPolicy())
+            .thenReturn(CommandExecutor.OverloadPolicy.REJECT_OLDEST);
+        when(commandExecutor.getExecutionMode()).thenReturn(executionMode);
+        when(commandExecutor.getAcknowledgementBudgetMillis())
+            .thenReturn(ACKNOWLEDGEMENT_BUDGET_MILLIS);
+
+        Config config = mock(Config.class);
+        when(config.getDatabasePath()).thenReturn(directory.resolve("database.db").toString());
+        when(config.getDatabaseBackupDirectory())
+            .thenReturn(directory.resolve("backups").toString());
+        when(config.getProjectWebsite()).thenReturn("https://github.com/Together-Java/TJ-Bot");
+        when(config.getDiscordGuildInvite()).thenReturn("https://discord.com/invite/XXFUXzK");
+        when(config.getComponentIdSigningKey())
+            .thenReturn("load-generator-secret-of-sufficient-length");
+        when(config.getModAuditLogChannelPattern()).thenReturn("mod_audit_log");
+        when(config.getMutedRolePattern()).thenReturn("Muted");
+        when(config.getHeavyModerationRolePattern()).thenReturn("Moderator");
+        when(config.getSoftModerationRolePattern()).thenReturn("Moderator|Staff Assistant");
+        when(config.getTagManageRolePattern()).thenReturn("Moderator|Staff Assistant");
+        when(config.getFreeCommandConfig()).thenReturn(List.of());
+        when(config.getHelpChannelPattern()).thenReturn("([a-zA-Z_]+_)?help(_\\d+)?");
+        when(config.getSuggestions()).thenReturn(suggestions);
+        when(config.getCommandExecutor()).thenReturn(commandExecutor);
+        return config;
+    }
+
+    private static void deleteRecursively(@NotNull Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * A component id seeded into the database, created for a {@code /tex} image of the given user.
+     */
+    private record SeededButton(@NotNull UUID uuid, long ownerId) {
+    }
+
+    /**
+     * An event of a stage, waiting to be dispatched and responded to.
+     */
+    private static final class PendingEvent {
+        private final TrafficMix.Kind kind;
+        private final StageReport report;
+        private final CountDownLatch pendingResponses;
+        private final AtomicBoolean isDone = new AtomicBoolean();
+        private Runnable dispatch;
+        private volatile long dueNanos;
+
+        PendingEvent(@NotNull TrafficMix.Kind kind, @NotNull StageReport report,
+                @NotNull CountDownLatch pendingResponses) {
+            this.kind = kind;
+            this.report = report;
+            this.pendingResponses = pendingResponses;
+        }
+
+        void dispatch(long dueNanos) {
+            this.dueNanos = dueNanos;
+            dispatch.run();
+        }
+
+        void respond() {
+            if (isDone.compareAndSet(false, true)) {
+                report.recordLatency(kind.getFeature(), System.nanoTime() - dueNanos);
+                pendingResponses.countDown();
+            }
+        }
+
+        boolean isDone() {
+            return isDone.get();
+        }
+
+        void timeOutIfPending() {
+            if (isDone.compareAndSet(false, true)) {
+                report.recordTimeout(kind.getFeature());
+            }
+        }
+    }
+}
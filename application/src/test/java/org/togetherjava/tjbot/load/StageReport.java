@@ -0,0 +1,179 @@
+package org.togetherjava.tjbot.load;
+
+import org.jetbrains.annotations.NotNull;
+import org.togetherjava.tjbot.db.metrics.OperationSummary;
+import org.togetherjava.tjbot.metrics.Histogram;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of a single stage of the {@link LoadGenerator}, that is a fixed amount of time in which
+ * events were replayed at a fixed rate.
+ * <p>
+ * Latencies are recorded per feature while the stage runs and are thread-safe. The remaining
+ * results are set once the stage is done.
+ */
+final class StageReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final int targetRate;
+    private final Map<String, Histogram> featureToLatencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> featureToTimeouts = new ConcurrentHashMap<>();
+    private Duration elapsed = Duration.ZERO;
+    private int liveThreads;
+    private int peakThreads;
+    private long peakHeapBytes;
+    private List<OperationSummary> databaseOperations = List.of();
+
+    /**
+     * Creates an empty report for a stage.
+     *
+     * @param targetRate the amount of events per second the stage attempted to replay
+     */
+    StageReport(int targetRate) {
+        this.targetRate = targetRate;
+    }
+
+    /**
+     * Records the latency of an event, from the moment it was due until it was responded to.
+     *
+     * @param feature the feature that handled the event
+     * @param latencyNanos the latency of the event, in nanoseconds
+     */
+    void recordLatency(@NotNull String feature, long latencyNanos) {
+        featureToLatencies.computeIfAbsent(feature, any -> new Histogram()).record(latencyNanos);
+    }
+
+    /**
+     * Records an event that was not responded to before the stage ended.
+     *
+     * @param feature the feature that should have handled the event
+     */
+    void recordTimeout(@NotNull String feature) {
+        featureToTimeouts.computeIfAbsent(feature, any -> new LongAdder()).increment();
+    }
+
+    /**
+     * Sets the results that are known once the stage is done.
+     *
+     * @param elapsed the time from the start of the stage until the last event was responded to, or
+     *        the stage timed out
+     * @param liveThreads the amount of live threads at the end of the stage
+     * @param peakThreads the largest amount of live threads during the stage
+     * @param peakHeapBytes the largest amount of heap used during the stage, in bytes
+     * @param databaseOperations the database operations executed during the stage
+     */
+    void complete(@NotNull Duration elapsed, int liveThreads, int peakThreads, long peakHeapBytes,
+            @NotNull List<OperationSummary> databaseOperations) {
+        this.elapsed = elapsed;
+        this.liveThreads = liveThreads;
+        this.peakThreads = peakThreads;
+        this.peakHeapBytes = peakHeapBytes;
+        this.databaseOperations = List.copyOf(databaseOperations);
+    }
+
+    /**
+     * Gets the amount of events per second the stage attempted to replay.
+     *
+     * @return the target rate
+     */
+    int getTargetRate() {
+        return targetRate;
+    }
+
+    /**
+     * Gets the amount of events per second that were actually responded to.
+     *
+     * @return the achieved rate
+     */
+    double getAchievedRate() {
+        long responded = featureToLatencies.values().stream().mapToLong(Histogram::getCount).sum();
+        return elapsed.isZero() ? 0 : responded / (elapsed.toNanos() / 1_000_000_000.0);
+    }
+
+    /**
+     * Gets the amount of events that were not responded to before the stage ended.
+     *
+     * @return the amount of timed out events
+     */
+    long getTimeouts() {
+        return featureToTimeouts.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Gets the largest amount of heap used during the stage.
+     *
+     * @return the peak heap usage, in bytes
+     */
+    long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * Gets the largest 99th percentile of the latencies over all features.
+     *
+     * @return the worst 99th percentile latency
+     */
+    @NotNull
+    Duration getWorstP99() {
+        return Duration.ofNanos(featureToLatencies.values()
+            .stream()
+            .mapToLong(latencies -> latencies.getValueAtPercentile(99))
+            .max()
+            .orElse(0));
+    }
+
+    /**
+     * Describes the results of this stage in a human-readable table.
+     *
+     * @return a human-readable description of the results
+     */
+    @NotNull
+    String describe() {
+        StringBuilder description = new StringBuilder();
+        description.append(
+                "target=%d/s achieved=%.0f/s timeouts=%d threads live=%d peak=%d heap peak=%dMB%n"
+                    .formatted(targetRate, getAchievedRate(), getTimeouts(), liveThreads,
+                            peakThreads, peakHeapBytes / (1024 * 1024)));
+
+        description.append("  %-14s %8s %8s".formatted("feature", "count", "timeouts"));
+        for (double percentile : PERCENTILES) {
+            description.append(" %10s".formatted("p" + formatPercentile(percentile)));
+        }
+        description.append(" %10s%n".formatted("max"));
+
+        Map<String, Histogram> sortedFeatureToLatencies = new TreeMap<>(featureToLatencies);
+        featureToTimeouts.keySet()
+            .forEach(feature -> sortedFeatureToLatencies.putIfAbsent(feature, new Histogram()));
+        sortedFeatureToLatencies.forEach((feature, latencies) -> {
+            LongAdder timeouts = featureToTimeouts.get(feature);
+            description.append("  %-14s %8d %8d".formatted(feature, latencies.getCount(),
+                    timeouts == null ? 0 : timeouts.sum()));
+            for (double percentile : PERCENTILES) {
+                description.append(
+                        " %10s".formatted(toMillis(latencies.getValueAtPercentile(percentile))));
+            }
+            description.append(" %10s%n".formatted(toMillis(latencies.getMax())));
+        });
+
+        description.append("  database time per feature:").append(System.lineSeparator());
+        databaseOperations.forEach(operation -> description.append("    ")
+            .append(operation.describe())
+            .append(System.lineSeparator()));
+        return description.toString();
+    }
+
+    private static @NotNull String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile)
+                : String.valueOf(percentile);
+    }
+
+    private static @NotNull String toMillis(long nanos) {
+        return "%.2fms".formatted(nanos / 1_000_000.0);
+    }
+}
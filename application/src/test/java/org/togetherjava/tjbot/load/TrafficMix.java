@@ -0,0 +1,150 @@
+package org.togetherjava.tjbot.load;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Mix of the traffic replayed by {@link LoadGenerator}, given as relative weight per kind of event.
+ * <p>
+ * The mix is written as comma-separated list of {@code kind=weight} pairs, for example
+ * {@code "ping=2,tag=3,button=2,message=3"}. Kinds not listed are not replayed.
+ */
+final class TrafficMix {
+    /**
+     * The mix used if none is given, resembling the traffic observed on the server. Help channel
+     * messages dominate, followed by tag lookups.
+     */
+    static final TrafficMix DEFAULT = parse("ping=1,tag=3,button=2,message=4");
+
+    private final Map<Kind, Integer> kindToWeight;
+    private final int totalWeight;
+
+    private TrafficMix(@NotNull Map<Kind, Integer> kindToWeight) {
+        this.kindToWeight = kindToWeight;
+        totalWeight = kindToWeight.values().stream().mapToInt(Integer::intValue).sum();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The mix must contain at least one kind of event");
+        }
+    }
+
+    /**
+     * Parses a mix from its textual representation, see {@link TrafficMix}.
+     *
+     * @param text the mix to parse, e.g. {@code "ping=2,tag=3"}
+     * @return the parsed mix
+     * @throws IllegalArgumentException if the text is not a valid mix
+     */
+    static @NotNull TrafficMix parse(@NotNull String text) {
+        Map<Kind, Integer> kindToWeight = new EnumMap<>(Kind.class);
+        for (String kindAndWeight : text.split(",")) {
+            String[] parts = kindAndWeight.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(
+                        "Expected 'kind=weight', but got '%s'".formatted(kindAndWeight));
+            }
+            Kind kind = Kind.ofName(parts[0].strip());
+            int weight = Integer.parseInt(parts[1].strip());
+            if (weight < 0) {
+                throw new IllegalArgumentException(
+                        "The weight of '%s' must not be negative".formatted(kind.getName()));
+            }
+            kindToWeight.put(kind, weight);
+        }
+        return new TrafficMix(kindToWeight);
+    }
+
+    /**
+     * Picks a kind of event at random, according to the weights of this mix.
+     *
+     * @param random the source of randomness to use
+     * @return the picked kind of event
+     */
+    @NotNull
+    Kind pick(@NotNull Random random) {
+        int remaining = random.nextInt(totalWeight);
+        for (Map.Entry<Kind, Integer> kindAndWeight : kindToWeight.entrySet()) {
+            remaining -= kindAndWeight.getValue();
+            if (remaining < 0) {
+                return kindAndWeight.getKey();
+            }
+        }
+        throw new AssertionError("The weights do not add up to the total weight");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        kindToWeight.forEach((kind, weight) -> {
+            if (!text.isEmpty()) {
+                text.append(',');
+            }
+            text.append(kind.getName()).append('=').append(weight);
+        });
+        return text.toString();
+    }
+
+    /**
+     * Kind of event replayed into the bot.
+     */
+    enum Kind {
+        /**
+         * The {@code /ping} command, the cheapest command, measuring the dispatch itself.
+         */
+        PING("ping", "slash:ping"),
+        /**
+         * The {@code /tag} command, for known and unknown tags, reading the tag cache.
+         */
+        TAG("tag", "slash:tag"),
+        /**
+         * A click on the delete button of a {@code /tex} image, looking up its component id.
+         */
+        BUTTON("button", "button:tex"),
+        /**
+         * A message in a help channel, recorded by the top helpers feature.
+         */
+        MESSAGE("message", "message:help");
+
+        private final String name;
+        private final String feature;
+
+        Kind(@NotNull String name, @NotNull String feature) {
+            this.name = name;
+            this.feature = feature;
+        }
+
+        /**
+         * Gets the name of the kind, as used in the textual representation of a mix.
+         *
+         * @return the name of the kind
+         */
+        @NotNull
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the feature that handles events of this kind, as reported by the load generator.
+         *
+         * @return the feature handling events of this kind
+         */
+        @NotNull
+        String getFeature() {
+            return feature;
+        }
+
+        private static @NotNull Kind ofName(@NotNull String name) {
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            return Arrays.stream(values())
+                .filter(kind -> kind.name.equals(lowerCaseName))
+                .findAny()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Unknown kind of event '%s', expected one of %s".formatted(name,
+                                Arrays.stream(values()).map(Kind::getName).toList())));
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * Provides a synthetic load generator for {@link org.togetherjava.tjbot.commands.system.BotCore},
+ * to measure latencies and find the throughput ceiling of the event dispatch. See
+ * {@link org.togetherjava.tjbot.load.LoadGenerator} as entry point.
+ */
+package org.togetherjava.tjbot.load;
@@ -0,0 +1,51 @@
+package org.togetherjava.tjbot.benchmarks;
+
+import org.togetherjava.tjbot.db.Database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+/**
+ * A migrated {@link Database} in a temporary directory, for benchmarks. Closing it closes the
+ * database and deletes the directory.
+ */
+public final class TemporaryDatabase implements AutoCloseable {
+    private final Path directory;
+    private final Database database;
+
+    /**
+     * Creates and migrates a new database in a new temporary directory.
+     *
+     * @param readConnections the amount of connections used for reading, see
+     *        {@link Database#Database(String, int)}
+     * @throws IOException if the directory could not be created
+     * @throws SQLException if the database could not be created
+     */
+    public TemporaryDatabase(int readConnections) throws IOException, SQLException {
+        directory = Files.createTempDirectory("tjbot-benchmark");
+        database = new Database("jdbc:sqlite:" + directory.resolve("database.db"), readConnections);
+    }
+
+    /**
+     * Gets the database.
+     *
+     * @return the database
+     */
+    public Database getDatabase() {
+        return database;
+    }
+
+    @Override
+    public void close() throws IOException {
+        database.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
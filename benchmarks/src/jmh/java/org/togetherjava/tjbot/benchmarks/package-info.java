@@ -0,0 +1,6 @@
+/**
+ * This packages offers utilities shared by the JMH benchmarks of the bot. The benchmarks themselves
+ * are located in the packages of the code they measure, so that they can access package-private
+ * entry points.
+ */
+package org.togetherjava.tjbot.benchmarks;
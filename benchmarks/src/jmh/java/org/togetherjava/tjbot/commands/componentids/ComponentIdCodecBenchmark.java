@@ -0,0 +1,126 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the format component IDs are persisted in by the {@link ComponentIdStore}, which is
+ * encoded for every created button and decoded for every button click that misses the cache.
+ * <p>
+ * The binary format of {@link ComponentIdCodec} is compared to the CSV format, which was previously
+ * used and built its schema, reader and writer on every call. The amount of bytes stored per
+ * component ID in either format is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentIdCodecBenchmark {
+    private static final CsvMapper CSV = new CsvMapper();
+    private static final List<ComponentId> COMPONENT_IDS =
+            List.of(new ComponentId("ping", List.of("123456789012345678", "foo")),
+                    new ComponentId("reload", List.of("123456789012345678")),
+                    new ComponentId("tag", List.of("123456789012345678", "java-streams", "2")),
+                    new ComponentId("vote", List.of("123456789012345678", "876543210987654321",
+                            "Should we add a dark mode?")));
+
+    private ComponentId[] componentIds;
+    private String[] csvComponentIds;
+    private byte[][] binaryComponentIds;
+    private int next;
+
+    /**
+     * Encodes the component IDs in both formats and prints the amount of stored bytes.
+     *
+     * @throws JsonProcessingException if a component ID could not be encoded as CSV
+     */
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        int size = COMPONENT_IDS.size();
+        componentIds = COMPONENT_IDS.toArray(ComponentId[]::new);
+        csvComponentIds = new String[size];
+        binaryComponentIds = new byte[size][];
+
+        int csvBytes = 0;
+        int binaryBytes = 0;
+        for (int i = 0; i < size; i++) {
+            csvComponentIds[i] = encodeCsv(componentIds[i]);
+            binaryComponentIds[i] = ComponentIdCodec.encode(componentIds[i]);
+            csvBytes += csvComponentIds[i].getBytes(StandardCharsets.UTF_8).length;
+            binaryBytes += binaryComponentIds[i].length;
+        }
+        System.out.printf("Stored bytes per component id: CSV %.1f, binary %.1f%n",
+                (double) csvBytes / size, (double) binaryBytes / size);
+    }
+
+    /**
+     * Encodes a component ID as CSV, as previously persisted.
+     *
+     * @return the encoded component ID
+     * @throws JsonProcessingException if the component ID could not be encoded
+     */
+    @Benchmark
+    public String encodeCsv() throws JsonProcessingException {
+        return encodeCsv(componentIds[nextIndex()]);
+    }
+
+    /**
+     * Decodes a component ID from CSV, as previously persisted.
+     *
+     * @return the decoded component ID
+     * @throws JsonProcessingException if the component ID could not be decoded
+     */
+    @Benchmark
+    public ComponentId decodeCsv() throws JsonProcessingException {
+        return CSV.readerFor(ComponentId.class)
+            .with(CSV.schemaFor(ComponentId.class))
+            .readValue(csvComponentIds[nextIndex()]);
+    }
+
+    /**
+     * Encodes a component ID in the binary format.
+     *
+     * @return the encoded component ID
+     */
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ComponentIdCodec.encode(componentIds[nextIndex()]);
+    }
+
+    /**
+     * Decodes a component ID from the binary format.
+     *
+     * @return the decoded component ID
+     */
+    @Benchmark
+    public ComponentId decodeBinary() {
+        return ComponentIdCodec.decode(binaryComponentIds[nextIndex()]);
+    }
+
+    private static String encodeCsv(ComponentId componentId) throws JsonProcessingException {
+        return CSV.writerFor(ComponentId.class)
+            .with(CSV.schemaFor(ComponentId.class))
+            .writeValueAsString(componentId);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % componentIds.length;
+        return next;
+    }
+}
@@ -0,0 +1,128 @@
+package org.togetherjava.tjbot.commands.componentids;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.togetherjava.tjbot.benchmarks.TemporaryDatabase;
+import org.togetherjava.tjbot.db.Database;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ComponentIdStore#get(UUID)} and
+ * {@link ComponentIdStore#putOrThrow(UUID, ComponentId, Lifespan)}, which are called for every
+ * button click and every created button respectively.
+ * <p>
+ * Lookups are spread over a varying amount of component ids. Few of them fit into the in-memory
+ * cache of the store, many of them mostly hit the database. Lookups are measured on a single thread
+ * and on a growing amount of threads, to show contention within the store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComponentIdStoreBenchmark {
+    private static final ComponentId COMPONENT_ID =
+            new ComponentId("ping", List.of("123456789012345678", "foo"));
+
+    @Param({"100", "10000"})
+    public int distinctComponentIds;
+
+    private TemporaryDatabase temporaryDatabase;
+    private ComponentIdStore store;
+    private final List<UUID> uuids = new ArrayList<>();
+
+    /**
+     * Creates the store and fills it with component ids.
+     *
+     * @throws IOException if the database could not be created
+     * @throws SQLException if the database could not be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        temporaryDatabase = new TemporaryDatabase(Database.DEFAULT_READ_CONNECTIONS);
+        store = new ComponentIdStore(temporaryDatabase.getDatabase());
+
+        for (int i = 0; i < distinctComponentIds; i++) {
+            UUID uuid = UUID.randomUUID();
+            store.putOrThrow(uuid, COMPONENT_ID, Lifespan.REGULAR);
+            uuids.add(uuid);
+        }
+    }
+
+    /**
+     * Closes the store and deletes the database.
+     *
+     * @throws IOException if the database could not be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        temporaryDatabase.close();
+    }
+
+    /**
+     * Looks up a random component id.
+     *
+     * @return the found component id
+     */
+    @Benchmark
+    public Optional<ComponentId> get() {
+        return getRandom();
+    }
+
+    /**
+     * Looks up a random component id, while other threads do the same.
+     *
+     * @return the found component id
+     */
+    @Benchmark
+    @Threads(4)
+    public Optional<ComponentId> contendedGet() {
+        return getRandom();
+    }
+
+    /**
+     * Looks up a random component id, while many other threads do the same, as during a spike of
+     * button clicks.
+     *
+     * @return the found component id
+     */
+    @Benchmark
+    @Threads(16)
+    public Optional<ComponentId> heavilyContendedGet() {
+        return getRandom();
+    }
+
+    /**
+     * Adds a new component id.
+     */
+    @Benchmark
+    public void putOrThrow() {
+        store.putOrThrow(UUID.randomUUID(), COMPONENT_ID, Lifespan.REGULAR);
+    }
+
+    private Optional<ComponentId> getRandom() {
+        return store.get(uuids.get(ThreadLocalRandom.current().nextInt(uuids.size())));
+    }
+}
@@ -0,0 +1,76 @@
+package org.togetherjava.tjbot.commands.mathcommands;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scilab.forge.jlatexmath.TeXFormula;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the render path of {@link TeXCommand}, that is parsing the latex and rendering it as
+ * PNG image, see {@link TeXCommand#renderAsPng(TeXFormula)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TeXCommandBenchmark {
+    @Param({"x^2 + y^2 = z^2", "\\frac{-b \\pm \\sqrt{b^2 - 4ac}}{2a}",
+            "\\sum_{n=1}^{\\infty} \\frac{1}{n^2} = \\int_0^1 \\frac{\\ln x}{x - 1} \\, dx = \\frac{\\pi^2}{6}"})
+    public String latex;
+
+    private TeXFormula formula;
+
+    /**
+     * Parses the latex.
+     */
+    @Setup
+    public void setUp() {
+        formula = new TeXFormula(latex);
+    }
+
+    /**
+     * Parses the latex.
+     *
+     * @return the parsed formula
+     */
+    @Benchmark
+    public TeXFormula parse() {
+        return new TeXFormula(latex);
+    }
+
+    /**
+     * Renders the already parsed formula as PNG image.
+     *
+     * @return the PNG encoded image
+     * @throws IOException if the image could not be encoded
+     */
+    @Benchmark
+    public Optional<byte[]> render() throws IOException {
+        return TeXCommand.renderAsPng(formula);
+    }
+
+    /**
+     * Parses the latex and renders it as PNG image, as done by the command.
+     *
+     * @return the PNG encoded image
+     * @throws IOException if the image could not be encoded
+     */
+    @Benchmark
+    public Optional<byte[]> parseAndRender() throws IOException {
+        return TeXCommand.renderAsPng(new TeXFormula(latex));
+    }
+}
@@ -0,0 +1,106 @@
+package org.togetherjava.tjbot.commands.system;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.togetherjava.tjbot.commands.MessageReceiver;
+import org.togetherjava.tjbot.commands.MessageReceiverAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of {@link MessageReceiverRouter#getReceivers(long, String)}, which is called for every
+ * guild message and edit.
+ * <p>
+ * Messages are spread over a varying amount of channels, as found on a large server, and routed to
+ * receivers using patterns like the ones from the configuration. Routing by channel id is compared
+ * to matching the channel name against the pattern of every receiver, which was previously done for
+ * every message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageReceiverRouterBenchmark {
+    private static final List<String> CHANNEL_NAME_PATTERNS = List.of("([a-zA-Z_]+_)?help(_\\d+)?",
+            "tj_suggestions", "mod_audit_log", "(java|python|web)_(news|showcase)", "bot_.*",
+            "announcements", "staff_.+", "(event|contest)_\\d+", "introductions", "memes");
+    private static final List<String> CHANNEL_NAMES = List.of("general", "java_help",
+            "python_help_2", "help_3", "tj_suggestions", "off_topic", "java_news", "bot_commands",
+            "memes", "staff_chat", "event_12", "code_review", "voice_text");
+
+    @Param({"2", "10"})
+    public int receiverCount;
+
+    @Param({"100", "1000"})
+    public int channelCount;
+
+    private MessageReceiverRouter router;
+    private long[] channelIds;
+    private String[] channelNames;
+    private int nextChannel;
+
+    /**
+     * Creates the receivers and the channels, and routes every channel once.
+     */
+    @Setup
+    public void setUp() {
+        List<MessageReceiver> receivers = new ArrayList<>(receiverCount);
+        for (int i = 0; i < receiverCount; i++) {
+            String pattern = CHANNEL_NAME_PATTERNS.get(i % CHANNEL_NAME_PATTERNS.size());
+            receivers.add(new MessageReceiverAdapter(Pattern.compile(pattern)) {});
+        }
+        router = new MessageReceiverRouter(receivers);
+
+        channelIds = new long[channelCount];
+        channelNames = new String[channelCount];
+        for (int i = 0; i < channelCount; i++) {
+            // Snowflake-like ids, names are repeated with a numbered suffix like on large servers
+            channelIds[i] = 900_000_000_000_000_000L + i * 4_194_304L;
+            String name = CHANNEL_NAMES.get(i % CHANNEL_NAMES.size());
+            channelNames[i] = i < CHANNEL_NAMES.size() ? name : name + "_" + i;
+            router.getReceivers(channelIds[i], channelNames[i]);
+        }
+    }
+
+    /**
+     * Routes a message by the id of its channel.
+     *
+     * @return the receivers of the channel
+     */
+    @Benchmark
+    public List<MessageReceiver> routeByChannelId() {
+        int channel = nextChannel();
+        return router.getReceivers(channelIds[channel], channelNames[channel]);
+    }
+
+    /**
+     * Routes a message by matching the name of its channel against all patterns, as done when a
+     * channel is seen for the first time.
+     *
+     * @return the receivers of the channel
+     */
+    @Benchmark
+    public List<MessageReceiver> matchChannelName() {
+        return router.matchReceivers(channelNames[nextChannel()]);
+    }
+
+    private int nextChannel() {
+        int channel = nextChannel;
+        nextChannel = channel + 1 == channelCount ? 0 : channel + 1;
+        return channel;
+    }
+}
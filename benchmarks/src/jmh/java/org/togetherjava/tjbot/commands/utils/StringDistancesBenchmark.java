@@ -0,0 +1,84 @@
+package org.togetherjava.tjbot.commands.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark of {@link StringDistances}, used for example to suggest the closest tag when a tag
+ * could not be found.
+ * <p>
+ * The candidates resemble tag ids, the amount of them varies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringDistancesBenchmark {
+    private static final List<String> TAG_NAMES = List.of("java", "jdk", "maven", "gradle",
+            "intellij", "eclipse", "stream", "optional", "record", "generics", "lambda",
+            "interface", "inheritance", "exception", "nullpointerexception", "classpath");
+    private static final String QUERY = "nullpointerexeption";
+    private static final String TAG_NAME = "nullpointerexception";
+    private static final String PREFIX = "nullpoi";
+
+    @Param({"16", "256"})
+    public int candidateCount;
+
+    private List<String> candidates;
+
+    /**
+     * Creates the candidates.
+     */
+    @Setup
+    public void setUp() {
+        candidates = IntStream.range(0, candidateCount)
+            .mapToObj(i -> TAG_NAMES.get(i % TAG_NAMES.size()) + (i / TAG_NAMES.size()))
+            .toList();
+    }
+
+    /**
+     * Finds the closest candidate to a misspelled query.
+     *
+     * @return the closest candidate
+     */
+    @Benchmark
+    public Optional<String> closestMatch() {
+        return StringDistances.closestMatch(QUERY, candidates);
+    }
+
+    /**
+     * Autocompletes a prefix to the best matching candidate.
+     *
+     * @return the best matching candidate
+     */
+    @Benchmark
+    public Optional<String> autocomplete() {
+        return StringDistances.autocomplete(PREFIX, candidates);
+    }
+
+    /**
+     * Computes the edit distance of two words.
+     *
+     * @return the edit distance
+     */
+    @Benchmark
+    public int editDistance() {
+        return StringDistances.editDistance(QUERY, TAG_NAME);
+    }
+}
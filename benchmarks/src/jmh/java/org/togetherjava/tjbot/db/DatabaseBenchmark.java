@@ -0,0 +1,149 @@
+package org.togetherjava.tjbot.db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.togetherjava.tjbot.benchmarks.TemporaryDatabase;
+import org.togetherjava.tjbot.db.generated.tables.records.ComponentIdsRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.togetherjava.tjbot.db.generated.tables.ComponentIds.COMPONENT_IDS;
+import static org.togetherjava.tjbot.db.generated.tables.HelpChannelMessages.HELP_CHANNEL_MESSAGES;
+
+/**
+ * Benchmark of {@link Database} reads and writes, alone and under contention.
+ * <p>
+ * Reads look up component ids by their UUID, as done on every button click. Writes record help
+ * channel messages, as done for every message sent in a help channel. The contended groups run
+ * readers and a writer at the same time, to show how writes delay reads and vice versa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBenchmark {
+    private static final int SEED_COMPONENT_IDS = 10_000;
+
+    @Param({"1", "4"})
+    public int readConnections;
+
+    private TemporaryDatabase temporaryDatabase;
+    private Database database;
+    private final List<String> uuids = new ArrayList<>(SEED_COMPONENT_IDS);
+    private final AtomicLong nextMessageId = new AtomicLong();
+
+    /**
+     * Creates the database and seeds it with component ids.
+     *
+     * @throws IOException if the database could not be created
+     * @throws SQLException if the database could not be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        temporaryDatabase = new TemporaryDatabase(readConnections);
+        database = temporaryDatabase.getDatabase();
+
+        for (int i = 0; i < SEED_COMPONENT_IDS; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+        Instant now = Instant.now();
+        database.writeTransaction(context -> uuids.forEach(uuid -> context.newRecord(COMPONENT_IDS)
+            .setUuid(uuid)
+            .setComponentId("ping,foo;bar".getBytes(StandardCharsets.UTF_8))
+            .setLastUsed(now)
+            .setLifespan("REGULAR")
+            .insert()));
+    }
+
+    /**
+     * Closes and deletes the database.
+     *
+     * @throws IOException if the database could not be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        temporaryDatabase.close();
+    }
+
+    /**
+     * Looks up a random component id, without concurrent writes.
+     *
+     * @return the found record
+     */
+    @Benchmark
+    public ComponentIdsRecord read() {
+        return readComponentId();
+    }
+
+    /**
+     * Records a help channel message, without concurrent reads.
+     */
+    @Benchmark
+    public void write() {
+        writeMessage();
+    }
+
+    /**
+     * Looks up a random component id, while other threads read and write.
+     *
+     * @return the found record
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public ComponentIdsRecord contendedRead() {
+        return readComponentId();
+    }
+
+    /**
+     * Records a help channel message, while other threads read.
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedWrite() {
+        writeMessage();
+    }
+
+    private ComponentIdsRecord readComponentId() {
+        String uuid = uuids.get(ThreadLocalRandom.current().nextInt(uuids.size()));
+        return database.read(context -> context.selectFrom(COMPONENT_IDS)
+            .where(COMPONENT_IDS.UUID.eq(uuid))
+            .fetchOne());
+    }
+
+    private void writeMessage() {
+        long messageId = nextMessageId.getAndIncrement();
+        database.write(context -> context.newRecord(HELP_CHANNEL_MESSAGES)
+            .setMessageId(messageId)
+            .setGuildId(1L)
+            .setChannelId(1L)
+            .setAuthorId(messageId % 1_000)
+            .setSentAt(Instant.now())
+            .insert());
+    }
+}
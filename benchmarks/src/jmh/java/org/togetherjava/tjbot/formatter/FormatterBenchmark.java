@@ -0,0 +1,92 @@
+package org.togetherjava.tjbot.formatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.togetherjava.tjbot.formatter.tokenizer.Lexer;
+import org.togetherjava.tjbot.formatter.tokenizer.Token;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link Lexer#tokenize(String)} and {@link Formatter#format(List)}, which format code
+ * posted by users.
+ * <p>
+ * The input is a typical unformatted snippet, repeated to vary its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+    private static final String SNIPPET =
+            """
+                    public class Main{public static void main(String[]args){
+                    List<String>names=new ArrayList<>();for(int i=0;i<10;i++){names.add("name"+i);}
+                    Map<String,Integer>lengths=new HashMap<>();
+                    for(String name:names){if(name.length()>4){lengths.put(name,name.length());}
+                    else{System.out.println("short: "+name);}}
+                    // Prints all names with their lengths
+                    lengths.forEach((name,length)->System.out.println(name+" = "+length));
+                    try{Thread.sleep(100);}catch(InterruptedException e){Thread.currentThread().interrupt();}
+                    }}
+                    """;
+
+    @Param({"1", "20"})
+    public int snippetCount;
+
+    private final Lexer lexer = new Lexer();
+    private final Formatter formatter = new Formatter();
+    private String input;
+    private List<Token> tokens;
+
+    /**
+     * Creates the input and tokenizes it.
+     */
+    @Setup
+    public void setUp() {
+        input = SNIPPET.repeat(snippetCount);
+        tokens = lexer.tokenize(input);
+    }
+
+    /**
+     * Tokenizes the input.
+     *
+     * @return the tokens
+     */
+    @Benchmark
+    public List<Token> tokenize() {
+        return lexer.tokenize(input);
+    }
+
+    /**
+     * Formats the already tokenized input.
+     *
+     * @return the formatted input
+     */
+    @Benchmark
+    public String format() {
+        return formatter.format(tokens);
+    }
+
+    /**
+     * Tokenizes and formats the input, as done for user code.
+     *
+     * @return the formatted input
+     */
+    @Benchmark
+    public String tokenizeAndFormat() {
+        return formatter.format(input, lexer);
+    }
+}
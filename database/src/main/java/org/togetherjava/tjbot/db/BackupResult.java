@@ -0,0 +1,23 @@
+package org.togetherjava.tjbot.db;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Result of a backup created by {@link Database#backup(Path)}.
+ *
+ * @param target the file the backup has been written to
+ * @param size the size of the backup, in bytes
+ * @param duration the time it took to create the backup
+ */
+public record BackupResult(Path target, long size, Duration duration) {
+    /**
+     * Gets the average amount of bytes written per second.
+     *
+     * @return the throughput of the backup, in bytes per second
+     */
+    public double bytesPerSecond() {
+        long nanos = Math.max(duration.toNanos(), 1);
+        return size * 1_000_000_000.0 / nanos;
+    }
+}
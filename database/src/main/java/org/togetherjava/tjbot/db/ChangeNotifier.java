@@ -0,0 +1,156 @@
+package org.togetherjava.tjbot.db;
+
+import org.sqlite.SQLiteCommitListener;
+import org.sqlite.SQLiteUpdateListener;
+import org.togetherjava.tjbot.db.changes.ChangeType;
+import org.togetherjava.tjbot.db.changes.RowChange;
+import org.togetherjava.tjbot.db.changes.TableChangeListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the rows changed on the write connection of a {@link Database} using the update and
+ * commit hooks of SQLite, and delivers them to {@link TableChangeListener}s after commit.
+ * <p>
+ * The hooks are called on the thread executing a write, which holds the write lock. Changes are
+ * buffered until the transaction commits and dropped if it rolls back. The database calls
+ * {@link #publishCommitted()} after each write, still holding the write lock, which hands the
+ * committed changes over to a dedicated thread. That thread delivers them in batches, combining all
+ * changes that have been committed since its last delivery.
+ */
+final class ChangeNotifier implements SQLiteUpdateListener, SQLiteCommitListener, AutoCloseable {
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final Collection<TableListener> listeners = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<List<RowChange>> committedBatches = new LinkedBlockingQueue<>();
+    private final ExecutorService notifyService =
+            Executors.newSingleThreadExecutor(ChangeNotifier::createNotifyThread);
+
+    // Only accessed by the thread holding the write lock
+    private final List<RowChange> uncommitted = new ArrayList<>();
+    private List<RowChange> committed = new ArrayList<>();
+
+    /**
+     * Adds a listener for changes of the given table.
+     *
+     * @param table the name of the table, case-insensitive
+     * @param listener the listener to add
+     */
+    void addListener(String table, TableChangeListener listener) {
+        listeners.add(new TableListener(table.toLowerCase(Locale.ROOT), listener));
+    }
+
+    /**
+     * Removes all registrations of the given listener.
+     *
+     * @param listener the listener to remove
+     */
+    void removeListener(TableChangeListener listener) {
+        listeners.removeIf(tableListener -> tableListener.listener() == listener);
+    }
+
+    @Override
+    public void onUpdate(Type type, String database, String table, long rowId) {
+        uncommitted.add(new RowChange(table, ChangeType.valueOf(type.name()), rowId));
+    }
+
+    @Override
+    public void onCommit() {
+        committed.addAll(uncommitted);
+        uncommitted.clear();
+    }
+
+    @Override
+    public void onRollback() {
+        uncommitted.clear();
+    }
+
+    /**
+     * Hands all changes committed since the last call over to the listeners. Must be called by the
+     * thread holding the write lock, after a write finished.
+     */
+    void publishCommitted() {
+        // A write that did not commit, for example since it failed, has been rolled back already
+        uncommitted.clear();
+        if (committed.isEmpty()) {
+            return;
+        }
+        if (listeners.isEmpty()) {
+            committed.clear();
+            return;
+        }
+
+        committedBatches.add(committed);
+        committed = new ArrayList<>();
+        notifyService.execute(this::notifyListeners);
+    }
+
+    private void notifyListeners() {
+        List<List<RowChange>> batches = new ArrayList<>();
+        committedBatches.drainTo(batches);
+        if (batches.isEmpty()) {
+            // Delivered by a previous run already
+            return;
+        }
+        List<RowChange> changes = batches.stream().flatMap(List::stream).toList();
+
+        for (TableListener tableListener : listeners) {
+            List<RowChange> tableChanges = changes.stream()
+                .filter(change -> change.table().equalsIgnoreCase(tableListener.table()))
+                .toList();
+            if (tableChanges.isEmpty()) {
+                continue;
+            }
+
+            try {
+                tableListener.listener().onChanges(tableChanges);
+            } catch (RuntimeException e) {
+                // Other listeners must still be notified
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Delivers all changes that have been handed over already and stops the notifying thread.
+     */
+    @Override
+    public void close() {
+        notifyService.shutdown();
+        try {
+            if (!notifyService.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                notifyService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            notifyService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread createNotifyThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "database-change-notifier");
+        // Closing the database delivers pending changes, the thread must not prevent the JVM from
+        // exiting
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A listener registered for the changes of a single table.
+     *
+     * @param table the name of the table, in lower case
+     * @param listener the listener
+     */
+    private record TableListener(String table, TableChangeListener listener) {
+    }
+}
@@ -1,19 +1,36 @@
 package org.togetherjava.tjbot.db;
 
-import org.flywaydb.core.Flyway;
 import org.jooq.DSLContext;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.Record;
+import org.jooq.ResultQuery;
 import org.jooq.SQLDialect;
 import org.jooq.Table;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
 import org.sqlite.SQLiteDataSource;
+import org.sqlite.SQLiteErrorCode;
+import org.togetherjava.tjbot.db.changes.TableChangeListener;
+import org.togetherjava.tjbot.db.metrics.DatabaseOperationListener;
+import org.togetherjava.tjbot.db.metrics.OperationType;
+import org.togetherjava.tjbot.db.metrics.StatementListener;
 import org.togetherjava.tjbot.db.util.CheckedConsumer;
 import org.togetherjava.tjbot.db.util.CheckedFunction;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * The main database class used by the application.
@@ -22,24 +39,155 @@ import java.util.concurrent.locks.ReentrantLock;
  * connections are handled automatically by the system.
  * <p>
  * Instances of this class are thread-safe and can be used to concurrently write to the database.
+ * <p>
+ * Writes are executed on a single dedicated connection, one at a time. Reads are executed on a pool
+ * of read-only connections instead, so that they can run concurrently to each other and do not have
+ * to wait for a running write. See {@link #Database(String, int)} to configure the size of the
+ * pool.
+ * <p>
+ * The schema is migrated with Flyway when an instance is created. Applications that start often can
+ * skip it if the migrations did not change, see {@link MigrationMode#IF_CHANGED}.
+ * <p>
+ * Large result sets can be streamed lazily using {@link #readStream(CheckedFunction, Function)}.
+ * <p>
+ * Writes that do not need to be committed immediately, for example high-frequency inserts, can be
+ * queued with {@link #writeAsync(CheckedConsumer)} instead. Queued writes are committed together in
+ * batches, see {@link WriteBehindSettings}.
+ * <p>
+ * Writes waiting for the connection are granted by priority. Direct writes, typically issued by
+ * commands a user waits for, go before queued background work, such as batches of asynchronous
+ * writes. Long-running background jobs, such as purging old rows, must be split into short
+ * transactions with {@link #writeInChunks(CheckedFunction)}, so that direct writes can be executed
+ * in between.
+ * <p>
+ * Consistent snapshots of the database can be written with {@link #backup(Path)}, while it is in
+ * use.
+ * <p>
+ * Features can be notified about committed changes of tables, for example to keep in-memory caches
+ * coherent, see {@link #addChangeListener(Table, TableChangeListener)}.
+ * <p>
+ * All operations can be instrumented, for example to measure their latency, by registering a
+ * listener with {@link #addOperationListener(DatabaseOperationListener)}. The individual SQL
+ * statements can be inspected with {@link #addStatementListener(StatementListener)}.
  */
-public final class Database {
+public final class Database implements AutoCloseable {
+    /**
+     * The default amount of read-only connections used by {@link #Database(String)}.
+     */
+    public static final int DEFAULT_READ_CONNECTIONS = 4;
+    /**
+     * The amount of rows fetched at once by {@link #readStream(CheckedFunction, Function)}.
+     */
+    public static final int STREAM_FETCH_SIZE = 500;
 
-    private final DSLContext dslContext;
+    private final Connection writeConnection;
+    private final DSLContext writeContext;
+    private final ReadConnectionPool readPool;
+    private final WriteBehindQueue writeBehindQueue;
+    private final OperationRecorder recorder = new OperationRecorder();
+    private final ChangeNotifier changeNotifier = new ChangeNotifier();
+    /**
+     * Whether the change notifier has been registered with the write connection already. Guarded by
+     * {@link #writeLock}.
+     */
+    private boolean isChangeNotifierRegistered;
     /**
      * Lock used to implement thread-safety across this class. Any database modifying method must
      * use this lock.
      */
-    private final Lock writeLock = new ReentrantLock();
+    private final PriorityWriteLock writeLock = new PriorityWriteLock();
 
     /**
-     * Creates an instance of a new database.
+     * Creates an instance of a new database, using {@link #DEFAULT_READ_CONNECTIONS} connections
+     * for reading.
      *
      * @param jdbcUrl the url to the database in the format expected by JDBC
      * @throws SQLException if no connection could be established
      */
     public Database(String jdbcUrl) throws SQLException {
+        this(jdbcUrl, DEFAULT_READ_CONNECTIONS);
+    }
+
+    /**
+     * Creates an instance of a new database, using {@link WriteBehindSettings#DEFAULT} for
+     * asynchronous writes.
+     * <p>
+     * In-memory databases can not be opened by more than one connection, reads will hence share the
+     * connection used for writing, regardless of the given amount.
+     *
+     * @param jdbcUrl the url to the database in the format expected by JDBC
+     * @param readConnections the amount of read-only connections to open, at least 1. Limits how
+     *        many reads can be executed concurrently.
+     * @throws SQLException if no connection could be established
+     */
+    public Database(String jdbcUrl, int readConnections) throws SQLException {
+        this(jdbcUrl, readConnections, WriteBehindSettings.DEFAULT);
+    }
+
+    /**
+     * Creates an instance of a new database, using {@link PerformanceProfile#DEFAULT}.
+     * <p>
+     * In-memory databases can not be opened by more than one connection, reads will hence share the
+     * connection used for writing, regardless of the given amount.
+     *
+     * @param jdbcUrl the url to the database in the format expected by JDBC
+     * @param readConnections the amount of read-only connections to open, at least 1. Limits how
+     *        many reads can be executed concurrently.
+     * @param writeBehindSettings the settings for batching asynchronous writes, see
+     *        {@link #writeAsync(CheckedConsumer)}
+     * @throws SQLException if no connection could be established
+     */
+    public Database(String jdbcUrl, int readConnections, WriteBehindSettings writeBehindSettings)
+            throws SQLException {
+        this(jdbcUrl, readConnections, writeBehindSettings, PerformanceProfile.DEFAULT);
+    }
+
+    /**
+     * Creates an instance of a new database, using {@link MigrationMode#ALWAYS}.
+     * <p>
+     * In-memory databases can not be opened by more than one connection, reads will hence share the
+     * connection used for writing, regardless of the given amount.
+     *
+     * @param jdbcUrl the url to the database in the format expected by JDBC
+     * @param readConnections the amount of read-only connections to open, at least 1. Limits how
+     *        many reads can be executed concurrently.
+     * @param writeBehindSettings the settings for batching asynchronous writes, see
+     *        {@link #writeAsync(CheckedConsumer)}
+     * @param performanceProfile the settings of SQLite to apply to all connections
+     * @throws SQLException if no connection could be established
+     */
+    public Database(String jdbcUrl, int readConnections, WriteBehindSettings writeBehindSettings,
+            PerformanceProfile performanceProfile) throws SQLException {
+        this(jdbcUrl, readConnections, writeBehindSettings, performanceProfile,
+                MigrationMode.ALWAYS);
+    }
+
+    /**
+     * Creates an instance of a new database.
+     * <p>
+     * In-memory databases can not be opened by more than one connection, reads will hence share the
+     * connection used for writing, regardless of the given amount.
+     *
+     * @param jdbcUrl the url to the database in the format expected by JDBC
+     * @param readConnections the amount of read-only connections to open, at least 1. Limits how
+     *        many reads can be executed concurrently.
+     * @param writeBehindSettings the settings for batching asynchronous writes, see
+     *        {@link #writeAsync(CheckedConsumer)}
+     * @param performanceProfile the settings of SQLite to apply to all connections
+     * @param migrationMode whether the schema is migrated on every start or only if the migrations
+     *        changed
+     * @throws SQLException if no connection could be established
+     */
+    public Database(String jdbcUrl, int readConnections, WriteBehindSettings writeBehindSettings,
+            PerformanceProfile performanceProfile, MigrationMode migrationMode)
+            throws SQLException {
+        if (readConnections < 1) {
+            throw new IllegalArgumentException(
+                    "At least one read connection is required, but was " + readConnections);
+        }
+
         SQLiteConfig sqliteConfig = new SQLiteConfig();
+        performanceProfile.applyTo(sqliteConfig);
         sqliteConfig.enforceForeignKeys(true);
         // In WAL mode only concurrent writes pose a problem, so we synchronize those
         sqliteConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
@@ -47,11 +195,31 @@ public final class Database {
         SQLiteDataSource dataSource = new SQLiteDataSource(sqliteConfig);
         dataSource.setUrl(jdbcUrl);
 
-        Flyway flyway =
-                Flyway.configure().dataSource(dataSource).locations("classpath:/db/").load();
-        flyway.migrate();
+        SchemaMigrator.migrate(dataSource, migrationMode);
 
-        dslContext = DSL.using(dataSource.getConnection(), SQLDialect.SQLITE);
+        ExecuteListenerProvider recorderProvider = new DefaultExecuteListenerProvider(recorder);
+        writeConnection = dataSource.getConnection();
+        writeContext = DSL.using(new DefaultConfiguration().set(writeConnection)
+            .set(SQLDialect.SQLITE)
+            .set(recorderProvider));
+
+        if (isMemoryDatabase(jdbcUrl)) {
+            readPool = ReadConnectionPool.sharing(writeContext);
+        } else {
+            try {
+                readPool = ReadConnectionPool.open(jdbcUrl, readConnections, performanceProfile,
+                        recorderProvider);
+            } catch (SQLException e) {
+                writeConnection.close();
+                throw e;
+            }
+        }
+        writeBehindQueue = new WriteBehindQueue(this, writeBehindSettings);
+    }
+
+    private static boolean isMemoryDatabase(String jdbcUrl) {
+        return "jdbc:sqlite:".equals(jdbcUrl) || jdbcUrl.contains(":memory:")
+                || jdbcUrl.contains("mode=memory");
     }
 
     /**
@@ -80,10 +248,19 @@ public final class Database {
      */
     public <T> T read(
             CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
+        OperationRecorder.Measurement measurement = recorder.start(OperationType.READ);
         try {
-            return action.accept(getDslContext());
+            T result = readPool.apply(context -> {
+                measurement.started();
+                return action.accept(context);
+            });
+            measurement.succeeded();
+            return result;
         } catch (DataAccessException e) {
             throw new DatabaseException(e);
+        } finally {
+            measurement.finish();
+            measurement.report();
         }
     }
 
@@ -102,6 +279,36 @@ public final class Database {
         });
     }
 
+    /**
+     * Acquires read-only access to the database and streams the results of the given query,
+     * fetching them lazily instead of loading all of them into memory at once.
+     * <p>
+     * The stream is only valid within the given handler. The underlying cursor, and with it the
+     * connection, is held until the handler returns and is closed afterwards in any case, also if
+     * the handler fails or does not consume the whole stream. Handlers should hence neither keep
+     * the stream nor take long to consume it.
+     * <p>
+     * Rows are fetched in chunks of {@link #STREAM_FETCH_SIZE}, so memory stays constant as long as
+     * the handler does not collect the rows itself.
+     *
+     * @param query the query to execute, created with the given DSL context
+     * @param streamHandler the handler consuming the results of the query
+     * @param <R> the type of the records returned by the query
+     * @param <T> the type returned by the given handler
+     * @return the result returned by the given handler
+     * @throws DatabaseException if an error occurs while executing the query or consuming its
+     *         results
+     */
+    public <R extends Record, T> T readStream(
+            CheckedFunction<? super DSLContext, ? extends ResultQuery<R>, ? extends DataAccessException> query,
+            Function<? super Stream<R>, T> streamHandler) {
+        return read(context -> {
+            try (Stream<R> results = query.accept(context).fetchSize(STREAM_FETCH_SIZE).stream()) {
+                return streamHandler.apply(results);
+            }
+        });
+    }
+
     /**
      * Acquires read and write access to the database and provides the computed result.
      *
@@ -112,13 +319,76 @@ public final class Database {
      */
     public <T> T writeAndProvide(
             CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
-        writeLock.lock();
+        return writeAndProvide(PriorityWriteLock.Priority.INTERACTIVE, action);
+    }
+
+    /**
+     * Acquires read and write access to the database with background priority and provides the
+     * computed result. Unlike {@link #writeChunk(CheckedFunction)}, the action is not executed
+     * within a transaction, for maintenance that cannot run in one, such as {@code VACUUM} or
+     * checkpoints of the write-ahead log. Direct writes waiting for the lock are executed first.
+     *
+     * @param action the action to apply to the DSL context, e.g. a query
+     * @param <T> the type returned by the given action
+     * @return the result returned by the given action
+     * @throws DatabaseException if an error occurs in the given action
+     */
+    public <T> T writeBackgroundAndProvide(
+            CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
+        return writeAndProvide(PriorityWriteLock.Priority.BACKGROUND, action);
+    }
+
+    /**
+     * Returns up to the given amount of free pages of the database file to the file system, with a
+     * single statement. Only has an effect if the database uses {@code auto_vacuum = INCREMENTAL},
+     * otherwise pages are only returned by a full {@code VACUUM}.
+     * <p>
+     * Executed with background priority and outside of a transaction, like
+     * {@link #writeBackgroundAndProvide(CheckedFunction)}. The write lock is held for the whole
+     * statement, so the amount of pages should be limited.
+     *
+     * @param maxPages the maximal amount of pages to return
+     * @return the amount of pages returned
+     * @throws DatabaseException if the pages could not be returned
+     */
+    public int vacuumIncrementally(int maxPages) {
+        return writeBackgroundAndProvide(context -> {
+            int freePagesBefore = fetchFreePages(context);
+            // NOTE The statement returns one page per step, but JDBC only steps once for
+            // statements that do not return columns. Executed natively, it steps until it is done.
+            context.connection(connection -> {
+                int resultCode = connection.unwrap(SQLiteConnection.class)
+                    .getDatabase()
+                    ._exec("PRAGMA incremental_vacuum(%d)".formatted(maxPages));
+                if (resultCode != SQLiteErrorCode.SQLITE_OK.code) {
+                    throw new SQLException("Unable to vacuum the database incrementally", null,
+                            resultCode);
+                }
+            });
+            return freePagesBefore - fetchFreePages(context);
+        });
+    }
+
+    private static int fetchFreePages(DSLContext context) {
+        return context.fetchSingle("PRAGMA freelist_count").get(0, Integer.class);
+    }
+
+    private <T> T writeAndProvide(PriorityWriteLock.Priority priority,
+            CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
+        OperationRecorder.Measurement measurement = recorder.start(OperationType.WRITE);
+        writeLock.lock(priority);
         try {
-            return action.accept(getDslContext());
+            measurement.started();
+            T result = action.accept(writeContext);
+            measurement.succeeded();
+            return result;
         } catch (DataAccessException e) {
             throw new DatabaseException(e);
         } finally {
+            measurement.finish();
+            changeNotifier.publishCommitted();
             writeLock.unlock();
+            measurement.report();
         }
     }
 
@@ -149,10 +419,20 @@ public final class Database {
             CheckedFunction<? super DSLContext, T, DataAccessException> handler) {
         var holder = new ResultHolder<T>();
 
+        OperationRecorder.Measurement measurement = recorder.start(OperationType.READ_TRANSACTION);
         try {
-            getDslContext().transaction(config -> holder.result = handler.accept(config.dsl()));
+            readPool.apply(context -> {
+                measurement.started();
+                context.transaction(config -> holder.result = handler.accept(config.dsl()));
+                // noinspection ReturnOfNull
+                return null;
+            });
+            measurement.succeeded();
         } catch (DataAccessException e) {
             throw new DatabaseException(e);
+        } finally {
+            measurement.finish();
+            measurement.report();
         }
 
         return holder.result;
@@ -186,15 +466,92 @@ public final class Database {
      */
     public <T> T writeTransactionAndProvide(
             CheckedFunction<? super DSLContext, T, DataAccessException> handler) {
+        return writeTransactionAndProvide(recorder.start(OperationType.WRITE_TRANSACTION),
+                PriorityWriteLock.Priority.INTERACTIVE, handler);
+    }
+
+    /**
+     * Executes a long-running background write, such as purging old rows, split into chunks.
+     * <p>
+     * The given chunk is executed repeatedly, each time in its own transaction, until it reports
+     * that it did not change anything anymore. The write lock is released between chunks and
+     * re-acquired with background priority, so that direct writes waiting in the meantime are
+     * executed first. Chunks should hence be limited to a small amount of rows, for example by
+     * deleting with {@code LIMIT} in a sub-query.
+     * <p>
+     * A failing chunk aborts the job, chunks that have been committed before are kept.
+     *
+     * @param chunk the chunk to execute repeatedly, returning the amount of rows it changed, 0 if
+     *        there is nothing left to do
+     * @return the total amount of rows changed by all chunks
+     * @throws DatabaseException if an error occurs in the given chunk
+     */
+    public int writeInChunks(
+            CheckedFunction<? super DSLContext, Integer, DataAccessException> chunk) {
+        int totalRowsChanged = 0;
+        while (true) {
+            int rowsChanged = writeChunk(chunk);
+            if (rowsChanged == 0) {
+                return totalRowsChanged;
+            }
+            totalRowsChanged += rowsChanged;
+        }
+    }
+
+    /**
+     * Executes a single chunk of a long-running background write in its own transaction, with
+     * background priority, see {@link #writeInChunks(CheckedFunction)}.
+     * <p>
+     * Used by jobs that have to act on the result of each chunk once it has been committed, for
+     * example to remove deleted rows from an in-memory cache. Such jobs call this method
+     * repeatedly, until the chunk reports that there is nothing left to do.
+     *
+     * @param chunk the chunk to execute
+     * @param <T> the type returned by the given chunk
+     * @return the object that is returned by the given chunk
+     * @throws DatabaseException if an error occurs in the given chunk
+     */
+    public <T> T writeChunk(CheckedFunction<? super DSLContext, T, DataAccessException> chunk) {
+        return writeTransactionAndProvide(recorder.start(OperationType.WRITE_TRANSACTION),
+                PriorityWriteLock.Priority.BACKGROUND, chunk);
+    }
+
+    /**
+     * Acquires a transaction that can read and write to the database with background priority,
+     * measured with the given label instead of its caller. Used for writes that are executed on
+     * behalf of others, such as batches of asynchronous writes.
+     *
+     * @param label the label to measure the transaction with
+     * @param handler the handler that is executed within the context of the transaction
+     * @throws DatabaseException if an error occurs in the given handler function
+     */
+    void writeBackgroundTransactionLabeled(String label,
+            CheckedConsumer<? super DSLContext, ? extends DataAccessException> handler) {
+        writeTransactionAndProvide(recorder.start(OperationType.WRITE_TRANSACTION, label),
+                PriorityWriteLock.Priority.BACKGROUND, dsl -> {
+                    handler.accept(dsl);
+                    // noinspection ReturnOfNull
+                    return null;
+                });
+    }
+
+    private <T> T writeTransactionAndProvide(OperationRecorder.Measurement measurement,
+            PriorityWriteLock.Priority priority,
+            CheckedFunction<? super DSLContext, T, DataAccessException> handler) {
         var holder = new ResultHolder<T>();
 
-        writeLock.lock();
+        writeLock.lock(priority);
         try {
-            getDslContext().transaction(config -> holder.result = handler.accept(config.dsl()));
+            measurement.started();
+            writeContext.transaction(config -> holder.result = handler.accept(config.dsl()));
+            measurement.succeeded();
         } catch (DataAccessException e) {
             throw new DatabaseException(e);
         } finally {
+            measurement.finish();
+            changeNotifier.publishCommitted();
             writeLock.unlock();
+            measurement.report();
         }
 
         return holder.result;
@@ -216,8 +573,203 @@ public final class Database {
         });
     }
 
-    private DSLContext getDslContext() {
-        return dslContext;
+    /**
+     * Queues a write to the database and provides its computed result asynchronously.
+     * <p>
+     * The write is committed together with other queued writes in a single transaction, once the
+     * batch is full or the oldest write waited long enough, see {@link WriteBehindSettings}. This
+     * is considerably cheaper than committing each write on its own, at the cost of latency.
+     * <p>
+     * The write runs within its own savepoint. If it fails, only its own changes are rolled back
+     * and the returned future completes exceptionally, other writes of the batch are unaffected.
+     *
+     * @param action the action to apply to the DSL context, e.g. a query
+     * @param <T> the type returned by the given action
+     * @return a future that completes with the result returned by the given action once it has been
+     *         committed. Completes exceptionally with a {@link DatabaseException} if an error
+     *         occurs in the given action.
+     * @throws IllegalStateException if the database has been closed already
+     */
+    public <T> CompletableFuture<T> writeAsyncAndProvide(
+            CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
+        return writeBehindQueue.submit(action);
+    }
+
+    /**
+     * Queues a write to the database, see {@link #writeAsyncAndProvide(CheckedFunction)}.
+     *
+     * @param action the action to apply to the DSL context, e.g. a query
+     * @return a future that completes once the write has been committed. Completes exceptionally
+     *         with a {@link DatabaseException} if an error occurs in the given action.
+     * @throws IllegalStateException if the database has been closed already
+     */
+    public CompletableFuture<Void> writeAsync(
+            CheckedConsumer<? super DSLContext, ? extends DataAccessException> action) {
+        return writeAsyncAndProvide(context -> {
+            action.accept(context);
+            // noinspection ReturnOfNull
+            return null;
+        });
+    }
+
+    /**
+     * Writes a consistent snapshot of the database to the given file, while the database stays
+     * online.
+     * <p>
+     * The snapshot is written with {@code VACUUM INTO} by one of the read-only connections, within
+     * a single read transaction. It hence neither acquires the write lock nor blocks writes, which
+     * proceed concurrently but are not part of the snapshot. As a side effect, the snapshot is
+     * compacted, free pages are not copied.
+     * <p>
+     * The snapshot is written to a temporary file next to the target first and moved to the target
+     * once complete, so that a failed backup does not leave an incomplete file behind.
+     *
+     * @param target the file to write the snapshot to, must not exist yet
+     * @return the result of the backup, such as its size and duration
+     * @throws IllegalArgumentException if the target exists already
+     * @throws DatabaseException if the snapshot could not be written
+     */
+    public BackupResult backup(Path target) {
+        if (Files.exists(target)) {
+            throw new IllegalArgumentException(
+                    "The backup target '%s' exists already".formatted(target));
+        }
+        Path incompleteTarget = target.resolveSibling(target.getFileName() + ".incomplete");
+
+        long start = System.nanoTime();
+        try {
+            Files.deleteIfExists(incompleteTarget);
+            readAndConsume(context -> context.execute("VACUUM INTO ?",
+                    incompleteTarget.toAbsolutePath().toString()));
+            Files.move(incompleteTarget, target, StandardCopyOption.ATOMIC_MOVE);
+
+            return new BackupResult(target, Files.size(target),
+                    Duration.ofNanos(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new DatabaseException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(incompleteTarget);
+            } catch (IOException e) {
+                // Nothing we can do, the incomplete file is deleted again with the next attempt
+            }
+        }
+    }
+
+    /**
+     * Gets statistics about the writes queued by {@link #writeAsync(CheckedConsumer)}, such as the
+     * current queue depth and the sizes of committed batches.
+     *
+     * @return a snapshot of the current statistics
+     */
+    public WriteBehindStatistics getWriteBehindStatistics() {
+        return writeBehindQueue.getStatistics();
+    }
+
+    /**
+     * Adds a listener that is triggered after changes to rows of the given table have been
+     * committed, for example to keep an in-memory cache of the table coherent.
+     * <p>
+     * Changes are delivered in batches on a dedicated thread, see {@link TableChangeListener} for
+     * details and limitations. Observing changes is only enabled once the first listener is added,
+     * until then writes do not pay for it.
+     *
+     * @param table the table to listen to
+     * @param listener the listener to add
+     */
+    public void addChangeListener(Table<?> table, TableChangeListener listener) {
+        writeLock.lock(PriorityWriteLock.Priority.INTERACTIVE);
+        try {
+            if (!isChangeNotifierRegistered) {
+                SQLiteConnection connection = writeConnection.unwrap(SQLiteConnection.class);
+                connection.addUpdateListener(changeNotifier);
+                connection.addCommitListener(changeNotifier);
+                isChangeNotifierRegistered = true;
+            }
+            changeNotifier.addListener(table.getName(), listener);
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a listener previously added by
+     * {@link #addChangeListener(Table, TableChangeListener)}, for all tables it was added for.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(TableChangeListener listener) {
+        changeNotifier.removeListener(listener);
+    }
+
+    /**
+     * Adds a listener that is triggered after each operation executed on this database, for example
+     * to collect metrics such as latencies. See
+     * {@link org.togetherjava.tjbot.db.metrics.OperationHistograms} for a ready-to-use
+     * implementation.
+     * <p>
+     * Operations are only measured while at least one listener is registered.
+     *
+     * @param listener the listener to add
+     */
+    public void addOperationListener(DatabaseOperationListener listener) {
+        recorder.addListener(listener);
+    }
+
+    /**
+     * Removes a listener previously added by
+     * {@link #addOperationListener(DatabaseOperationListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeOperationListener(DatabaseOperationListener listener) {
+        recorder.removeListener(listener);
+    }
+
+    /**
+     * Adds a listener that is triggered before each SQL statement executed on this database, with
+     * the SQL as rendered by jOOQ. Used to inspect the statements that features actually issue, for
+     * example to check their query plans.
+     *
+     * @param listener the listener to add
+     */
+    public void addStatementListener(StatementListener listener) {
+        recorder.addStatementListener(listener);
+    }
+
+    /**
+     * Removes a listener previously added by {@link #addStatementListener(StatementListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeStatementListener(StatementListener listener) {
+        recorder.removeStatementListener(listener);
+    }
+
+    /**
+     * Closes all connections to the database. Commits all queued asynchronous writes and waits for
+     * a currently running write to finish first. Committed changes are still delivered to the
+     * change listeners, which can not use the database anymore though.
+     * <p>
+     * The instance must not be used anymore afterwards.
+     *
+     * @throws DatabaseException if a connection could not be closed
+     */
+    @Override
+    public void close() {
+        writeBehindQueue.close();
+
+        writeLock.lock(PriorityWriteLock.Priority.INTERACTIVE);
+        try (writeConnection) {
+            readPool.close();
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        } finally {
+            writeLock.unlock();
+            changeNotifier.close();
+        }
     }
 
     /**
@@ -0,0 +1,22 @@
+package org.togetherjava.tjbot.db;
+
+/**
+ * How a {@link Database} migrates its schema when it is created.
+ */
+public enum MigrationMode {
+    /**
+     * Lets Flyway scan, validate and apply the migrations on every start.
+     */
+    ALWAYS,
+    /**
+     * Only lets Flyway run if the migrations changed since they were applied last.
+     * <p>
+     * A checksum of all migrations is stored in the database after migrating. On the next start,
+     * the migrations are only read and checksummed again, which is considerably faster than letting
+     * Flyway validate them. If the checksums match, Flyway is skipped.
+     * <p>
+     * Changes made to the database bypassing the migrations, such as manually altering the schema
+     * history, are not detected.
+     */
+    IF_CHANGED
+}
@@ -0,0 +1,200 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+import org.togetherjava.tjbot.db.metrics.DatabaseOperation;
+import org.togetherjava.tjbot.db.metrics.DatabaseOperationListener;
+import org.togetherjava.tjbot.db.metrics.OperationType;
+import org.togetherjava.tjbot.db.metrics.StatementListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Measures operations executed by a {@link Database} and reports them to registered
+ * {@link DatabaseOperationListener}s.
+ * <p>
+ * If no listener is registered, measuring is skipped entirely, so that instrumentation has no
+ * overhead unless it is used.
+ * <p>
+ * The recorder also serves as jOOQ execute listener on all connections, counting the rows affected
+ * by each write and reporting executed statements to registered {@link StatementListener}s.
+ */
+final class OperationRecorder extends DefaultExecuteListener {
+    private static final long serialVersionUID = -3675176177330653058L;
+    /**
+     * Classes whose frames are skipped when searching for the caller of an operation.
+     */
+    private static final Set<Class<?>> INTERNAL_CLASSES =
+            Set.of(Database.class, OperationRecorder.class, ReadConnectionPool.class);
+    private static final StackWalker STACK_WALKER =
+            StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    // jOOQ listeners are serializable, but the recorder is never serialized
+    private final transient Collection<DatabaseOperationListener> listeners =
+            new CopyOnWriteArrayList<>();
+    private final transient Collection<StatementListener> statementListeners =
+            new CopyOnWriteArrayList<>();
+    /**
+     * Rows affected by the current write. Writes are executed one at a time, so there is only one
+     * measurement active at any time.
+     */
+    private volatile int rowsAffected;
+
+    void addListener(DatabaseOperationListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(DatabaseOperationListener listener) {
+        listeners.remove(listener);
+    }
+
+    void addStatementListener(StatementListener listener) {
+        statementListeners.add(listener);
+    }
+
+    void removeStatementListener(StatementListener listener) {
+        statementListeners.remove(listener);
+    }
+
+    /**
+     * Starts the measurement of an operation, labeled with the code that called the database.
+     *
+     * @param type the type of the operation
+     * @return the started measurement
+     */
+    Measurement start(OperationType type) {
+        if (listeners.isEmpty()) {
+            return Measurement.NONE;
+        }
+        return new Measurement(this, type, findCallerLabel());
+    }
+
+    /**
+     * Starts the measurement of an operation with a given label.
+     *
+     * @param type the type of the operation
+     * @param label the label to identify the operation with
+     * @return the started measurement
+     */
+    Measurement start(OperationType type, String label) {
+        if (listeners.isEmpty()) {
+            return Measurement.NONE;
+        }
+        return new Measurement(this, type, label);
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        if (statementListeners.isEmpty()) {
+            return;
+        }
+        String sql = ctx.sql();
+        List<Object> bindValues = ctx.query() == null ? List.of() : ctx.query().getBindValues();
+        statementListeners.forEach(listener -> listener.onStatement(sql, bindValues));
+    }
+
+    @Override
+    public void executeEnd(ExecuteContext ctx) {
+        // Negative for queries that do not modify rows
+        if (ctx.rows() > 0) {
+            rowsAffected += ctx.rows();
+        }
+    }
+
+    private static String findCallerLabel() {
+        Optional<StackWalker.StackFrame> caller = STACK_WALKER.walk(frames -> frames
+            .filter(frame -> !INTERNAL_CLASSES.contains(frame.getDeclaringClass().getNestHost()))
+            .findFirst());
+
+        return caller.map(frame -> {
+            String className = frame.getClassName();
+            String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
+            return simpleClassName + "#" + frame.getMethodName();
+        }).orElse("unknown");
+    }
+
+    /**
+     * Measurement of a single operation.
+     * <p>
+     * Call {@link #started()} once the operation acquired its lock or connection,
+     * {@link #succeeded()} if it did not fail, {@link #finish()} once it is done and finally
+     * {@link #report()} after all locks have been released.
+     */
+    static final class Measurement {
+        /**
+         * Measurement that does nothing, used when nobody is listening.
+         */
+        private static final Measurement NONE = new Measurement(null, null, null);
+
+        private final OperationRecorder recorder;
+        private final OperationType type;
+        private final String label;
+        private final long createdAt;
+        private long startedAt;
+        private boolean succeeded;
+        private DatabaseOperation operation;
+
+        private Measurement(OperationRecorder recorder, OperationType type, String label) {
+            this.recorder = recorder;
+            this.type = type;
+            this.label = label;
+            createdAt = recorder == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Marks the end of waiting and the start of the actual operation. For writes, this must be
+         * called while holding the write lock.
+         */
+        void started() {
+            if (recorder == null) {
+                return;
+            }
+            startedAt = System.nanoTime();
+            if (isWrite()) {
+                recorder.rowsAffected = 0;
+            }
+        }
+
+        /**
+         * Marks the operation as successful, otherwise it is considered failed.
+         */
+        void succeeded() {
+            succeeded = true;
+        }
+
+        /**
+         * Marks the end of the operation. For writes, this must be called while still holding the
+         * write lock.
+         */
+        void finish() {
+            if (recorder == null) {
+                return;
+            }
+            long finishedAt = System.nanoTime();
+            // Not started if waiting failed
+            long start = startedAt == 0 ? finishedAt : startedAt;
+            int rows = isWrite() ? recorder.rowsAffected : 0;
+
+            operation = new DatabaseOperation(type, label, start - createdAt, finishedAt - start,
+                    rows, !succeeded);
+        }
+
+        /**
+         * Reports the finished measurement to all listeners.
+         */
+        void report() {
+            if (operation == null) {
+                return;
+            }
+            recorder.listeners.forEach(listener -> listener.onOperation(operation));
+        }
+
+        private boolean isWrite() {
+            return type == OperationType.WRITE || type == OperationType.WRITE_TRANSACTION;
+        }
+    }
+}
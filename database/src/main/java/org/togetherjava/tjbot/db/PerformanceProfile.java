@@ -0,0 +1,107 @@
+package org.togetherjava.tjbot.db;
+
+import org.sqlite.SQLiteConfig;
+
+import java.util.Objects;
+
+/**
+ * Settings of SQLite that trade durability and memory for performance, applied to every connection
+ * of a {@link Database}.
+ * <p>
+ * See the <a href="https://www.sqlite.org/pragma.html">SQLite documentation</a> for details on each
+ * setting.
+ *
+ * @param mmapSize the maximal amount of bytes of the database file that are memory-mapped instead
+ *        of read with system calls, 0 disables memory-mapping ({@code mmap_size}). Not negative.
+ * @param cacheSize the size of the page cache of each connection, either as amount of pages if
+ *        positive or as amount of kibibytes if negative ({@code cache_size})
+ * @param synchronous how often SQLite waits for data to be written to disk ({@code synchronous})
+ * @param tempStore where temporary tables and indices, for example for sorting, are stored
+ *        ({@code temp_store})
+ * @param busyTimeout the time, in milliseconds, a connection waits for a lock held by another
+ *        connection before failing ({@code busy_timeout}). Not negative.
+ */
+public record PerformanceProfile(long mmapSize, int cacheSize, Synchronous synchronous,
+        TempStore tempStore, int busyTimeout) {
+
+    /**
+     * The defaults of SQLite, used if not specified otherwise.
+     */
+    public static final PerformanceProfile DEFAULT =
+            new PerformanceProfile(0, -2_000, Synchronous.FULL, TempStore.DEFAULT, 3_000);
+
+    /**
+     * Creates a new profile.
+     *
+     * @param mmapSize the maximal amount of bytes of the database file that are memory-mapped, 0
+     *        disables memory-mapping. Not negative.
+     * @param cacheSize the size of the page cache of each connection, either as amount of pages if
+     *        positive or as amount of kibibytes if negative
+     * @param synchronous how often SQLite waits for data to be written to disk
+     * @param tempStore where temporary tables and indices are stored
+     * @param busyTimeout the time, in milliseconds, a connection waits for a lock held by another
+     *        connection before failing. Not negative.
+     */
+    public PerformanceProfile {
+        if (mmapSize < 0) {
+            throw new IllegalArgumentException(
+                    "The mmap size must not be negative, but was " + mmapSize);
+        }
+        Objects.requireNonNull(synchronous);
+        Objects.requireNonNull(tempStore);
+        if (busyTimeout < 0) {
+            throw new IllegalArgumentException(
+                    "The busy timeout must not be negative, but was " + busyTimeout);
+        }
+    }
+
+    /**
+     * Applies this profile to the given configuration.
+     *
+     * @param sqliteConfig the configuration to apply this profile to
+     */
+    void applyTo(SQLiteConfig sqliteConfig) {
+        sqliteConfig.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(mmapSize));
+        sqliteConfig.setCacheSize(cacheSize);
+        sqliteConfig.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(synchronous.name()));
+        sqliteConfig.setTempStore(SQLiteConfig.TempStore.valueOf(tempStore.name()));
+        sqliteConfig.setBusyTimeout(busyTimeout);
+    }
+
+    /**
+     * How often SQLite waits for data to be written to disk. In WAL mode, {@link #NORMAL} can not
+     * corrupt the database, but the latest transactions might be lost on power loss.
+     */
+    public enum Synchronous {
+        /**
+         * Never waits, the database might get corrupted on power loss.
+         */
+        OFF,
+        /**
+         * Waits at critical moments only. In WAL mode, only when checkpointing.
+         */
+        NORMAL,
+        /**
+         * Waits for every transaction to be written.
+         */
+        FULL
+    }
+
+    /**
+     * Where temporary tables and indices are stored.
+     */
+    public enum TempStore {
+        /**
+         * As chosen when SQLite was compiled, usually in files.
+         */
+        DEFAULT,
+        /**
+         * In temporary files.
+         */
+        FILE,
+        /**
+         * In memory.
+         */
+        MEMORY
+    }
+}
@@ -0,0 +1,110 @@
+package org.togetherjava.tjbot.db;
+
+import org.togetherjava.tjbot.db.util.CheckedFunction;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reentrant lock guarding the single write connection of a {@link Database}, granting waiting
+ * writers by {@link Priority} instead of by arrival.
+ * <p>
+ * Whenever the lock is released, a waiting {@link Priority#INTERACTIVE} writer is granted before
+ * any {@link Priority#BACKGROUND} writer, regardless of how long the latter has been waiting. A
+ * running writer is never interrupted though, so long background jobs must release the lock
+ * regularly for this to have an effect, see {@link Database#writeInChunks(CheckedFunction)}.
+ * <p>
+ * Background writers may starve while interactive writers keep coming, which is acceptable since
+ * interactive writes are short and rare compared to the pauses in between.
+ */
+final class PriorityWriteLock {
+    private final ReentrantLock monitor = new ReentrantLock();
+    private final Condition interactiveTurn = monitor.newCondition();
+    private final Condition backgroundTurn = monitor.newCondition();
+
+    private Thread owner;
+    private int holdCount;
+    private int waitingInteractive;
+    private int waitingBackground;
+
+    /**
+     * Acquires the lock, waiting until it is granted. Waiting is not interruptible. If the current
+     * thread holds the lock already, it is acquired again immediately, regardless of the priority.
+     *
+     * @param priority the priority to wait with
+     */
+    void lock(Priority priority) {
+        monitor.lock();
+        try {
+            Thread current = Thread.currentThread();
+            if (owner == current) {
+                holdCount++;
+                return;
+            }
+
+            if (priority == Priority.INTERACTIVE) {
+                waitingInteractive++;
+                while (owner != null) {
+                    interactiveTurn.awaitUninterruptibly();
+                }
+                waitingInteractive--;
+            } else {
+                waitingBackground++;
+                while (owner != null || waitingInteractive > 0) {
+                    backgroundTurn.awaitUninterruptibly();
+                }
+                waitingBackground--;
+            }
+
+            owner = current;
+            holdCount = 1;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Releases the lock once. If the current thread does not hold it anymore afterwards, the next
+     * waiting writer is granted, preferring interactive writers.
+     *
+     * @throws IllegalMonitorStateException if the current thread does not hold the lock
+     */
+    void unlock() {
+        monitor.lock();
+        try {
+            if (owner != Thread.currentThread()) {
+                throw new IllegalMonitorStateException(
+                        "The write lock is not held by the current thread");
+            }
+
+            holdCount--;
+            if (holdCount > 0) {
+                return;
+            }
+
+            owner = null;
+            if (waitingInteractive > 0) {
+                interactiveTurn.signal();
+            } else if (waitingBackground > 0) {
+                backgroundTurn.signal();
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Priority of a writer waiting for the lock.
+     */
+    enum Priority {
+        /**
+         * Writes on behalf of a user waiting for a response, such as slash commands. Granted first.
+         */
+        INTERACTIVE,
+        /**
+         * Writes that nobody waits for, such as routines and batches of asynchronous writes.
+         * Granted only when no interactive writer is waiting.
+         */
+        BACKGROUND
+    }
+}
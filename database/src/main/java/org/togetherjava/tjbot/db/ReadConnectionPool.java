@@ -0,0 +1,152 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.DSLContext;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+import org.togetherjava.tjbot.db.util.CheckedFunction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed-size pool of read-only connections to a database, used by {@link Database} to let readers
+ * run concurrently to each other and to the single writer.
+ * <p>
+ * Each action borrows one connection exclusively for its duration and hands it back afterwards. If
+ * all connections are in use, callers wait until one becomes available.
+ * <p>
+ * A pool created by {@link #sharing(DSLContext)} does not own any connections but runs all actions
+ * on the given context instead. This is used for in-memory databases, which are private to the
+ * connection that created them and can hence not be opened a second time.
+ */
+final class ReadConnectionPool implements AutoCloseable {
+    private final List<Connection> connections;
+    private final BlockingQueue<DSLContext> idleContexts;
+
+    private ReadConnectionPool(List<Connection> connections,
+            BlockingQueue<DSLContext> idleContexts) {
+        this.connections = connections;
+        this.idleContexts = idleContexts;
+    }
+
+    /**
+     * Opens a pool of read-only connections to the given database.
+     *
+     * @param jdbcUrl the url to the database in the format expected by JDBC, the database must
+     *        already exist
+     * @param size the amount of connections to open, at least 1
+     * @param performanceProfile the profile to apply to each connection
+     * @param executeListenerProvider the listener to notify about statements executed on each
+     *        connection
+     * @return the created pool
+     * @throws SQLException if a connection could not be established
+     */
+    static ReadConnectionPool open(String jdbcUrl, int size, PerformanceProfile performanceProfile,
+            ExecuteListenerProvider executeListenerProvider) throws SQLException {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "The pool must consist of at least one connection, but was " + size);
+        }
+
+        SQLiteConfig sqliteConfig = new SQLiteConfig();
+        performanceProfile.applyTo(sqliteConfig);
+        sqliteConfig.setReadOnly(true);
+        SQLiteDataSource dataSource = new SQLiteDataSource(sqliteConfig);
+        dataSource.setUrl(jdbcUrl);
+
+        List<Connection> connections = new ArrayList<>(size);
+        BlockingQueue<DSLContext> idleContexts = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                idleContexts.add(DSL.using(new DefaultConfiguration().set(connection)
+                    .set(SQLDialect.SQLITE)
+                    .set(executeListenerProvider)));
+            }
+        } catch (SQLException e) {
+            closeAll(connections);
+            throw e;
+        }
+
+        return new ReadConnectionPool(connections, idleContexts);
+    }
+
+    /**
+     * Creates a pool that does not open any connections on its own but shares the given context
+     * with all readers.
+     *
+     * @param context the context to share
+     * @return the created pool
+     */
+    static ReadConnectionPool sharing(DSLContext context) {
+        BlockingQueue<DSLContext> idleContexts = new ArrayBlockingQueue<>(1);
+        idleContexts.add(context);
+        return new ReadConnectionPool(List.of(), idleContexts);
+    }
+
+    /**
+     * Applies the given action to a connection of this pool, waiting for one to become available if
+     * needed.
+     *
+     * @param action the action to apply, it has exclusive access to the connection for its duration
+     * @param <T> the type returned by the given action
+     * @param <E> the type of exception the given action might throw
+     * @return the result returned by the given action
+     * @throws E if the given action throws
+     * @throws DatabaseException if interrupted while waiting for a connection
+     */
+    <T, E extends Exception> T apply(CheckedFunction<? super DSLContext, T, E> action) throws E {
+        if (connections.isEmpty()) {
+            // Shared context, there is nothing to borrow
+            return action.accept(idleContexts.element());
+        }
+
+        DSLContext context;
+        try {
+            context = idleContexts.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(e);
+        }
+
+        try {
+            return action.accept(context);
+        } finally {
+            idleContexts.add(context);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closeAll(connections);
+    }
+
+    private static void closeAll(Collection<? extends Connection> connections) throws SQLException {
+        SQLException failure = null;
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
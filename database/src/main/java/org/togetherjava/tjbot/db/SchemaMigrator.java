@@ -0,0 +1,179 @@
+package org.togetherjava.tjbot.db;
+
+import org.flywaydb.core.Flyway;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Migrates the schema of a database with Flyway, as configured by a {@link MigrationMode}.
+ * <p>
+ * For {@link MigrationMode#IF_CHANGED}, the checksum of the migrations is stored in the
+ * {@code user_version} of the database, which is otherwise unused. The migrations are read from the
+ * class path without Flyway, supporting directories and jar files. If they are located elsewhere,
+ * Flyway is always run.
+ */
+final class SchemaMigrator {
+    /**
+     * Location of the migrations on the class path.
+     */
+    private static final String MIGRATIONS_LOCATION = "db/";
+    /**
+     * Value of {@code user_version} of databases that have never been checksummed.
+     */
+    private static final int NO_CHECKSUM = 0;
+
+    private SchemaMigrator() {
+        throw new UnsupportedOperationException("Utility class, construction not supported");
+    }
+
+    /**
+     * Migrates the schema of the given database.
+     *
+     * @param dataSource the database to migrate
+     * @param migrationMode whether to skip Flyway if the migrations did not change
+     * @throws SQLException if the checksum could not be read or written
+     */
+    static void migrate(SQLiteDataSource dataSource, MigrationMode migrationMode)
+            throws SQLException {
+        if (migrationMode == MigrationMode.ALWAYS) {
+            runFlyway(dataSource);
+            return;
+        }
+
+        OptionalInt maybeChecksum = computeChecksum();
+        if (maybeChecksum.isEmpty()) {
+            runFlyway(dataSource);
+            return;
+        }
+        int checksum = maybeChecksum.orElseThrow();
+
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            if (checksum == readChecksum(statement)) {
+                return;
+            }
+
+            runFlyway(dataSource);
+            statement.execute("PRAGMA user_version = " + checksum);
+        }
+    }
+
+    private static void runFlyway(SQLiteDataSource dataSource) {
+        Flyway.configure()
+            .dataSource(dataSource)
+            .locations("classpath:/" + MIGRATIONS_LOCATION)
+            .load()
+            .migrate();
+    }
+
+    private static int readChecksum(Statement statement) throws SQLException {
+        try (ResultSet result = statement.executeQuery("PRAGMA user_version")) {
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
+    /**
+     * Computes a checksum over the names and contents of all migrations on the class path.
+     *
+     * @return the checksum, never {@link #NO_CHECKSUM}. Empty if the migrations could not be read,
+     *         for example since they are not located in a directory or jar file.
+     */
+    private static OptionalInt computeChecksum() {
+        List<Migration> migrations = new ArrayList<>();
+        try {
+            ClassLoader classLoader = SchemaMigrator.class.getClassLoader();
+            for (URL location : Collections.list(classLoader.getResources(MIGRATIONS_LOCATION))) {
+                if (!readMigrations(location, migrations)) {
+                    return OptionalInt.empty();
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            return OptionalInt.empty();
+        }
+
+        // Sorted, as the order in which files are listed is unspecified
+        migrations.sort(Comparator.comparing(Migration::name)
+            .thenComparing(Migration::content, Arrays::compare));
+        CRC32 checksum = new CRC32();
+        for (Migration migration : migrations) {
+            checksum.update(migration.name().getBytes(StandardCharsets.UTF_8));
+            checksum.update(migration.content());
+        }
+        int value = (int) checksum.getValue();
+        return OptionalInt.of(value == NO_CHECKSUM ? 1 : value);
+    }
+
+    /**
+     * Reads all migrations at the given location, recursively.
+     *
+     * @param location the location to read the migrations from
+     * @param migrations the list to add the read migrations to
+     * @return whether the migrations could be read, false if the type of location is not supported
+     */
+    private static boolean readMigrations(URL location, Collection<? super Migration> migrations)
+            throws IOException, URISyntaxException {
+        if ("file".equals(location.getProtocol())) {
+            Path directory = Path.of(location.toURI());
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    // Separators are normalized, to get the same checksum as from a jar
+                    String name = directory.relativize(file).toString().replace('\\', '/');
+                    migrations.add(new Migration(name, Files.readAllBytes(file)));
+                }
+            }
+            return true;
+        }
+
+        URLConnection connection = location.openConnection();
+        if (!(connection instanceof JarURLConnection jarConnection)) {
+            return false;
+        }
+        String prefix = jarConnection.getEntryName();
+        // NOTE Not closed, the jar is cached and shared with the class loader that loaded it
+        JarFile jar = jarConnection.getJarFile();
+        for (JarEntry entry : Collections.list(jar.entries())) {
+            if (entry.isDirectory() || !entry.getName().startsWith(prefix)) {
+                continue;
+            }
+            try (InputStream content = jar.getInputStream(entry)) {
+                String name = entry.getName().substring(prefix.length());
+                migrations.add(new Migration(name, content.readAllBytes()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A migration read from the class path.
+     *
+     * @param name the path of the migration, relative to the location of all migrations
+     * @param content the content of the migration
+     */
+    private record Migration(String name, byte[] content) {
+    }
+}
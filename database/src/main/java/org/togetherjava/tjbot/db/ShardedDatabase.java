@@ -0,0 +1,424 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.ResultQuery;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.togetherjava.tjbot.db.util.CheckedFunction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Routes guild-scoped data, such as moderation actions, to a {@link Database}. Either all guilds
+ * share one database, see {@link #shared(Database)}, or each guild has a database of its own, a
+ * so-called shard, see {@link #perGuild(Path, CheckedFunction)}.
+ * <p>
+ * Each shard is a separate SQLite file with its own writer, so a burst of writes in one guild does
+ * not delay the writes of other guilds. Shards are created by a factory, which typically creates
+ * them with the same migrations as the main database. Migrations are hence applied per shard, when
+ * it is opened. Shards contain all tables of the schema, but only guild-scoped tables are used.
+ * <p>
+ * Data of a single guild is accessed with {@link #forGuild(long)}. Queries across all guilds are
+ * executed on each database and their results gathered, see {@link #readAll(CheckedFunction)} and
+ * {@link #readStreamAll(CheckedFunction, Comparator, Function)}. Writes across all guilds, such as
+ * purging old data, iterate {@link #getDatabases()}.
+ * <p>
+ * Deployments that kept guild-scoped data in the main database before switching to shards move it
+ * over with {@link #moveIntoShards(Database, Table, Field)}, otherwise the existing rows are not
+ * seen anymore. Switching back from shards to a shared database is not supported.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class ShardedDatabase implements AutoCloseable {
+    private static final String SHARD_FILE_NAME = "guild-%d.db";
+    private static final Pattern SHARD_FILE_NAME_PATTERN = Pattern.compile("guild-(\\d+)\\.db");
+    /**
+     * The maximal amount of shards queried in parallel by {@link #readAll(CheckedFunction)}.
+     */
+    private static final int GATHER_THREADS = 4;
+    /**
+     * The maximal amount of rows copied or deleted per transaction by
+     * {@link #moveIntoShards(Database, Table, Field)}.
+     */
+    private static final int MOVE_CHUNK_SIZE = 1_000;
+    private static final Field<Long> ROW_ID = DSL.field("rowid", Long.class);
+
+    /**
+     * The database shared by all guilds, null if each guild has its own shard.
+     */
+    private final Database sharedDatabase;
+    private final Path shardDirectory;
+    private final CheckedFunction<? super String, Database, SQLException> shardFactory;
+    private final Map<Long, Database> guildIdToShard = new ConcurrentHashMap<>();
+    private final Object openShardLock = new Object();
+    private final ExecutorService gatherService;
+
+    private ShardedDatabase(Database sharedDatabase, Path shardDirectory,
+            CheckedFunction<? super String, Database, SQLException> shardFactory) {
+        this.sharedDatabase = sharedDatabase;
+        this.shardDirectory = shardDirectory;
+        this.shardFactory = shardFactory;
+        gatherService = sharedDatabase == null
+                ? Executors.newFixedThreadPool(GATHER_THREADS, ShardedDatabase::createGatherThread)
+                : null;
+    }
+
+    /**
+     * Creates an instance that routes all guilds to the given database, that is without sharding.
+     * <p>
+     * Closing the instance does not close the given database.
+     *
+     * @param database the database shared by all guilds
+     * @return the created instance
+     */
+    public static ShardedDatabase shared(Database database) {
+        return new ShardedDatabase(database, null, null);
+    }
+
+    /**
+     * Creates an instance that routes each guild to its own shard, located in the given directory.
+     * All shards already present in the directory are opened, and thereby migrated, right away.
+     * Shards of other guilds are created once they are first accessed.
+     *
+     * @param shardDirectory the directory containing the shards, is created if not present
+     * @param shardFactory the factory to open a shard with, given its JDBC url. Must migrate the
+     *        shard to the current schema.
+     * @return the created instance
+     * @throws IOException if the directory could not be created or read
+     * @throws SQLException if a shard already present could not be opened
+     */
+    public static ShardedDatabase perGuild(Path shardDirectory,
+            CheckedFunction<? super String, Database, SQLException> shardFactory)
+            throws IOException, SQLException {
+        Files.createDirectories(shardDirectory);
+        ShardedDatabase database = new ShardedDatabase(null, shardDirectory, shardFactory);
+
+        try (Stream<Path> files = Files.list(shardDirectory)) {
+            for (Path file : files.toList()) {
+                Matcher matcher = SHARD_FILE_NAME_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    long guildId = Long.parseLong(matcher.group(1));
+                    database.guildIdToShard.put(guildId, shardFactory.accept(toJdbcUrl(file)));
+                }
+            }
+        } catch (IOException | SQLException e) {
+            database.close();
+            throw e;
+        }
+        return database;
+    }
+
+    /**
+     * Gets whether each guild has a database of its own.
+     *
+     * @return true if each guild has its own shard, false if all guilds share one database
+     */
+    public boolean isSharded() {
+        return sharedDatabase == null;
+    }
+
+    /**
+     * Gets the database containing the data of the given guild. With sharding, the shard of the
+     * guild is created if it does not exist yet.
+     *
+     * @param guildId the id of the guild
+     * @return the database of the guild
+     * @throws DatabaseException if the shard of the guild could not be created
+     */
+    public Database forGuild(long guildId) {
+        if (!isSharded()) {
+            return sharedDatabase;
+        }
+
+        Database shard = guildIdToShard.get(guildId);
+        if (shard != null) {
+            return shard;
+        }
+        // Opening a shard migrates it, which must only happen once per shard
+        synchronized (openShardLock) {
+            return guildIdToShard.computeIfAbsent(guildId, this::openShard);
+        }
+    }
+
+    /**
+     * Gets all databases that contain guild-scoped data, for example to write to all guilds.
+     *
+     * @return all databases, unmodifiable and not backed by this instance. Only the shared
+     *         database, if not sharded.
+     */
+    public Collection<Database> getDatabases() {
+        return isSharded() ? List.copyOf(guildIdToShard.values()) : List.of(sharedDatabase);
+    }
+
+    /**
+     * Executes the given read-only action on all databases and gathers the results. Shards are read
+     * in parallel.
+     *
+     * @param action the action to apply to the DSL context of each database, e.g. a query
+     * @param <T> the type returned by the given action
+     * @return the results returned by the action, one per database, in no particular order
+     * @throws DatabaseException if an error occurs in the given action
+     */
+    public <T> List<T> readAll(
+            CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
+        if (!isSharded()) {
+            return List.of(sharedDatabase.read(action));
+        }
+
+        List<CompletableFuture<T>> results = guildIdToShard.values()
+            .stream()
+            .map(shard -> CompletableFuture.supplyAsync(() -> shard.read(action), gatherService))
+            .toList();
+        List<T> gatheredResults = new ArrayList<>(results.size());
+        try {
+            for (CompletableFuture<T> result : results) {
+                gatheredResults.add(result.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return gatheredResults;
+    }
+
+    /**
+     * Executes the given query on all databases and streams the gathered results, in the given
+     * order.
+     * <p>
+     * The results are streamed lazily, see {@link Database#readStream(CheckedFunction, Function)}.
+     * With sharding, the query is executed on every shard, each holding a read connection until the
+     * handler returns, and the ordered results of the shards are merged while they are consumed.
+     * Only the current row of each shard is held in memory then.
+     *
+     * @param query the query to execute, created with the given DSL context. Must return rows in
+     *        the given order.
+     * @param order the order to merge the results of multiple databases in
+     * @param streamHandler the handler consuming the gathered results of the query
+     * @param <R> the type of the records returned by the query
+     * @param <T> the type returned by the given handler
+     * @return the result returned by the given handler
+     * @throws DatabaseException if an error occurs while executing the query or consuming its
+     *         results
+     */
+    public <R extends Record, T> T readStreamAll(
+            CheckedFunction<? super DSLContext, ? extends ResultQuery<R>, ? extends DataAccessException> query,
+            Comparator<? super R> order, Function<? super Stream<R>, T> streamHandler) {
+        if (!isSharded()) {
+            return sharedDatabase.readStream(query, streamHandler);
+        }
+
+        List<Database> shards = List.copyOf(guildIdToShard.values());
+        return readStreamsAndMerge(shards, new ArrayList<>(shards.size()), query, order,
+                streamHandler);
+    }
+
+    /**
+     * Opens the result stream of the given query on each of the remaining shards, one nested into
+     * the other, and hands their merged results to the given handler once all are open.
+     *
+     * @param shards the shards to execute the query on
+     * @param openedResults the results of the shards opened so far, in the order of the shards
+     * @param query the query to execute, must return rows in the given order
+     * @param order the order to merge the results in
+     * @param streamHandler the handler consuming the merged results
+     * @param <R> the type of the records returned by the query
+     * @param <T> the type returned by the given handler
+     * @return the result returned by the given handler
+     */
+    private static <R extends Record, T> T readStreamsAndMerge(List<Database> shards,
+            List<Iterator<R>> openedResults,
+            CheckedFunction<? super DSLContext, ? extends ResultQuery<R>, ? extends DataAccessException> query,
+            Comparator<? super R> order, Function<? super Stream<R>, T> streamHandler) {
+        if (openedResults.size() == shards.size()) {
+            Iterator<R> mergedResults = new MergingIterator<>(openedResults, order);
+            return streamHandler
+                .apply(StreamSupport.stream(Spliterators.spliteratorUnknownSize(mergedResults,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false));
+        }
+
+        return shards.get(openedResults.size()).readStream(query, results -> {
+            openedResults.add(results.iterator());
+            return readStreamsAndMerge(shards, openedResults, query, order, streamHandler);
+        });
+    }
+
+    /**
+     * Moves the rows of a guild-scoped table from the given database, typically the main database
+     * of a deployment that did not use shards before, into the shards of their guilds. Shards are
+     * created as needed.
+     * <p>
+     * Rows are copied with their primary keys, so identifiers such as case ids are kept, and rows
+     * already present in a shard are skipped. The rows of a guild are deleted from the given
+     * database once they have been copied. Hence, an interrupted move is simply continued by
+     * calling this method again, and calling it after everything has been moved only costs a single
+     * query. Copying and deleting is done in chunks with background priority.
+     *
+     * @param source the database to move the rows from, must not be a shard
+     * @param table the guild-scoped table to move the rows of
+     * @param guildIdField the column of the table containing the guild id
+     * @param <R> the type of the rows of the table
+     * @return the amount of rows moved
+     * @throws IllegalStateException if this instance is not sharded
+     * @throws DatabaseException if reading, copying or deleting rows failed
+     */
+    public <R extends Record> int moveIntoShards(Database source, Table<R> table,
+            Field<Long> guildIdField) {
+        if (!isSharded()) {
+            throw new IllegalStateException("Rows can only be moved into shards");
+        }
+
+        List<Long> guildIds = source
+            .read(context -> context.selectDistinct(guildIdField).from(table).fetch(guildIdField));
+        int movedRows = 0;
+        for (long guildId : guildIds) {
+            movedRows += moveGuildIntoShard(source, table, guildIdField, guildId);
+        }
+        return movedRows;
+    }
+
+    private <R extends Record> int moveGuildIntoShard(Database source, Table<R> table,
+            Field<Long> guildIdField, long guildId) {
+        Database shard = forGuild(guildId);
+
+        source.readStream(context -> context.selectFrom(table).where(guildIdField.eq(guildId)),
+                rows -> {
+                    List<R> chunk = new ArrayList<>(MOVE_CHUNK_SIZE);
+                    for (Iterator<R> iterator = rows.iterator(); iterator.hasNext();) {
+                        chunk.add(iterator.next());
+                        if (chunk.size() == MOVE_CHUNK_SIZE || !iterator.hasNext()) {
+                            shard.writeChunk(context -> copyRows(context, table, chunk));
+                            chunk.clear();
+                        }
+                    }
+                    // noinspection ReturnOfNull
+                    return null;
+                });
+
+        // Only deleted once copied, so that a failed copy does not lose any rows
+        return source.writeInChunks(context -> context.deleteFrom(table)
+            .where(ROW_ID.in(context.select(ROW_ID)
+                .from(table)
+                .where(guildIdField.eq(guildId))
+                .limit(MOVE_CHUNK_SIZE)))
+            .execute());
+    }
+
+    private static <R extends Record> int copyRows(DSLContext context, Table<R> table,
+            Collection<R> rows) {
+        int copiedRows = 0;
+        for (R row : rows) {
+            copiedRows += context.insertInto(table)
+                .columns(row.fields())
+                .values(row.intoArray())
+                .onDuplicateKeyIgnore()
+                .execute();
+        }
+        return copiedRows;
+    }
+
+    /**
+     * Closes all shards, see {@link Database#close()}. Does not close a shared database.
+     * <p>
+     * The instance must not be used anymore afterwards.
+     */
+    @Override
+    public void close() {
+        if (!isSharded()) {
+            return;
+        }
+
+        gatherService.shutdownNow();
+        guildIdToShard.values().forEach(Database::close);
+    }
+
+    private Database openShard(long guildId) {
+        try {
+            return shardFactory
+                .accept(toJdbcUrl(shardDirectory.resolve(SHARD_FILE_NAME.formatted(guildId))));
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    private static String toJdbcUrl(Path file) {
+        return "jdbc:sqlite:" + file.toAbsolutePath();
+    }
+
+    private static Thread createGatherThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "database-shard-gather");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Merges already ordered iterators into a single ordered one, lazily. Only the next element of
+     * each iterator is held at a time, see
+     * {@link #readStreamAll(CheckedFunction, Comparator, Function)}.
+     *
+     * @param <E> the type of the elements
+     */
+    private static final class MergingIterator<E> implements Iterator<E> {
+        /**
+         * The next element of each iterator that is not exhausted yet, the smallest first.
+         */
+        private final PriorityQueue<Head<E>> heads;
+
+        MergingIterator(Collection<? extends Iterator<E>> sources, Comparator<? super E> order) {
+            heads = new PriorityQueue<>(Math.max(sources.size(), 1),
+                    Comparator.comparing(Head::element, order));
+            sources.forEach(this::advance);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            Head<E> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.source());
+            return head.element();
+        }
+
+        private void advance(Iterator<E> source) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+
+        private record Head<E> (E element, Iterator<E> source) {
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.togetherjava.tjbot.db.util.CheckedFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of asynchronous writes for a {@link Database}, committing them in batches (group commit).
+ * <p>
+ * Writes are collected by a dedicated thread, which commits them together in a single write
+ * transaction, as configured by {@link WriteBehindSettings}. Each write runs in its own savepoint
+ * within that transaction, so a failing write is rolled back on its own without affecting the rest
+ * of its batch. Batches are committed with background priority, direct writes go first.
+ * <p>
+ * The thread is started with the first submitted write. Closing the queue commits all writes that
+ * have been submitted before.
+ */
+final class WriteBehindQueue implements AutoCloseable {
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+    /**
+     * Label the batch transactions are measured with, instead of the flushing thread.
+     */
+    private static final String BATCH_LABEL = "WriteBehindQueue#batch";
+    /**
+     * Marker put into the queue to signal the flushing thread that it should stop.
+     */
+    private static final PendingWrite<?> SHUTDOWN = new PendingWrite<>(context -> null, 0);
+
+    private final Database database;
+    private final WriteBehindSettings settings;
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService flushService =
+            Executors.newSingleThreadExecutor(WriteBehindQueue::createFlushThread);
+    private final AtomicBoolean started = new AtomicBoolean();
+    /**
+     * Lock guarding {@link #closed}, ensuring that no write is submitted after the
+     * {@link #SHUTDOWN} marker.
+     */
+    private final Object submitLock = new Object();
+    private boolean closed;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    /**
+     * Creates a new queue.
+     *
+     * @param database the database to commit the writes to
+     * @param settings the settings controlling when batches are committed
+     */
+    WriteBehindQueue(Database database, WriteBehindSettings settings) {
+        this.database = database;
+        this.settings = settings;
+    }
+
+    /**
+     * Submits the given write to the queue.
+     *
+     * @param action the write to execute
+     * @param <T> the type returned by the given write
+     * @return a future that completes with the result of the write once it has been committed, or
+     *         exceptionally if it failed
+     * @throws IllegalStateException if the queue has been closed already
+     */
+    <T> CompletableFuture<T> submit(
+            CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action) {
+        PendingWrite<T> write = new PendingWrite<>(action, System.nanoTime());
+        synchronized (submitLock) {
+            if (closed) {
+                throw new IllegalStateException("The database has been closed already");
+            }
+            queue.add(write);
+        }
+
+        if (started.compareAndSet(false, true)) {
+            flushService.execute(this::flushLoop);
+        }
+        return write.future;
+    }
+
+    /**
+     * Gets a snapshot of the current statistics of this queue.
+     *
+     * @return the current statistics
+     */
+    WriteBehindStatistics getStatistics() {
+        return new WriteBehindStatistics(queue.size(), batches.get(), writes.get(),
+                largestBatch.get(), failedWrites.get());
+    }
+
+    private void flushLoop() {
+        List<PendingWrite<?>> batch = new ArrayList<>(settings.maxBatchSize());
+        try {
+            boolean isRunning = true;
+            while (isRunning) {
+                PendingWrite<?> first = queue.take();
+                if (first == SHUTDOWN) {
+                    return;
+                }
+                batch.add(first);
+
+                // Collect further writes until the batch is full or the first write waited long
+                // enough
+                long deadline = first.enqueuedAt + settings.maxLatency().toNanos();
+                while (batch.size() < settings.maxBatchSize()) {
+                    PendingWrite<?> next =
+                            queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        isRunning = false;
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.addAll(queue);
+            batch.forEach(write -> write.future.completeExceptionally(new DatabaseException(e)));
+        }
+    }
+
+    private void commit(List<PendingWrite<?>> batch) {
+        try {
+            database.writeBackgroundTransactionLabeled(BATCH_LABEL,
+                    context -> batch.forEach(write -> write.applyIn(context)));
+        } catch (RuntimeException e) {
+            // The whole transaction failed, none of the writes made it
+            failedWrites.addAndGet(batch.size());
+            batch.forEach(write -> write.future.completeExceptionally(e));
+            return;
+        }
+
+        batches.incrementAndGet();
+        writes.addAndGet(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        batch.forEach(write -> {
+            if (write.failure != null) {
+                failedWrites.incrementAndGet();
+            }
+            write.complete();
+        });
+    }
+
+    /**
+     * Stops accepting new writes and waits until all writes that have been submitted before are
+     * committed.
+     */
+    @Override
+    public void close() {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(SHUTDOWN);
+        }
+
+        flushService.shutdown();
+        try {
+            if (!flushService.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                flushService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flushService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread createFlushThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "database-write-behind");
+        // Closing the database flushes the queue, the thread must not prevent the JVM from exiting
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A write waiting in the queue.
+     *
+     * @param <T> the type returned by the write
+     */
+    private static final class PendingWrite<T> {
+        private final CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action;
+        private final long enqueuedAt;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private RuntimeException failure;
+
+        private PendingWrite(
+                CheckedFunction<? super DSLContext, T, ? extends DataAccessException> action,
+                long enqueuedAt) {
+            this.action = action;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * Applies this write within a savepoint of the given transaction. Failures are remembered
+         * and the savepoint is rolled back, leaving the transaction intact.
+         *
+         * @param context the context of the transaction to apply the write in
+         */
+        private void applyIn(DSLContext context) {
+            try {
+                result = context.transactionResult(savepoint -> action.accept(savepoint.dsl()));
+            } catch (DataAccessException e) {
+                failure = new DatabaseException(e);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private void complete() {
+            if (failure == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+    }
+}
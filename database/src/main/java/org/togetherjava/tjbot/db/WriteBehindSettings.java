@@ -0,0 +1,45 @@
+package org.togetherjava.tjbot.db;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings of the asynchronous write queue of a {@link Database}, see
+ * {@link Database#writeAsync(org.togetherjava.tjbot.db.util.CheckedConsumer)}.
+ * <p>
+ * Queued writes are committed together in a single transaction. A batch is committed as soon as it
+ * reached the maximal size or when its oldest write waited for the maximal latency, whichever
+ * happens first.
+ *
+ * @param maxBatchSize the maximal amount of writes committed in a single transaction, at least 1
+ * @param maxLatency the maximal time a write waits for further writes to join its batch, not
+ *        negative
+ */
+public record WriteBehindSettings(int maxBatchSize, Duration maxLatency) {
+
+    /**
+     * The settings used if not specified otherwise.
+     */
+    public static final WriteBehindSettings DEFAULT =
+            new WriteBehindSettings(100, Duration.ofMillis(50));
+
+    /**
+     * Creates new settings.
+     *
+     * @param maxBatchSize the maximal amount of writes committed in a single transaction, at least
+     *        1
+     * @param maxLatency the maximal time a write waits for further writes to join its batch, not
+     *        negative
+     */
+    public WriteBehindSettings {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "The batch size must be at least 1, but was " + maxBatchSize);
+        }
+        Objects.requireNonNull(maxLatency);
+        if (maxLatency.isNegative()) {
+            throw new IllegalArgumentException(
+                    "The latency must not be negative, but was " + maxLatency);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.togetherjava.tjbot.db;
+
+/**
+ * Snapshot of statistics about the asynchronous write queue of a {@link Database}, see
+ * {@link Database#getWriteBehindStatistics()}.
+ *
+ * @param queueDepth the amount of writes currently waiting to be committed
+ * @param batches the amount of batches committed so far
+ * @param writes the amount of writes committed so far, summed over all batches
+ * @param largestBatch the amount of writes in the largest batch committed so far
+ * @param failedWrites the amount of writes that failed so far
+ */
+public record WriteBehindStatistics(int queueDepth, long batches, long writes, int largestBatch,
+        long failedWrites) {
+    /**
+     * Gets the average amount of writes committed per batch.
+     *
+     * @return the average batch size, 0 if no batch was committed yet
+     */
+    public double averageBatchSize() {
+        return batches == 0 ? 0 : (double) writes / batches;
+    }
+}
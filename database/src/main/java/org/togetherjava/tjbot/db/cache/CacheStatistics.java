@@ -0,0 +1,38 @@
+package org.togetherjava.tjbot.db.cache;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of statistics about a {@link CachedTable}, see {@link CachedTable#getStatistics()}. All
+ * values are counted since the cache was created.
+ *
+ * @param hits the amount of lookups answered from memory
+ * @param misses the amount of lookups that had to wait for the table to be loaded
+ * @param reloads the amount of times the table was loaded from the database
+ * @param invalidations the amount of times the copy in memory was discarded, since the table was
+ *        changed
+ * @param reloadTime the time spent loading the table, summed over all reloads
+ */
+public record CacheStatistics(long hits, long misses, long reloads, long invalidations,
+        Duration reloadTime) {
+    /**
+     * Gets the ratio of lookups that were answered from memory.
+     *
+     * @return the hit rate, between 0 and 1. 0 if there were no lookups yet.
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Describes the statistics in a human-readable single line.
+     *
+     * @return a human-readable description of the statistics
+     */
+    public String describe() {
+        return "hits=%d misses=%d hitRate=%.1f%% reloads=%d invalidations=%d reloadTime=%.3fms"
+            .formatted(hits, misses, hitRate() * 100, reloads, invalidations,
+                    reloadTime.toNanos() / 1_000_000.0);
+    }
+}
@@ -0,0 +1,421 @@
+package org.togetherjava.tjbot.db.cache;
+
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.changes.RowChange;
+import org.togetherjava.tjbot.db.changes.TableChangeListener;
+import org.togetherjava.tjbot.db.util.CheckedConsumer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * In-memory copy of a small table that is read much more often than it is written to, keyed by one
+ * of its columns, or by several for tables with a composite key, see
+ * {@link #withCompositeKey(Database, Table, List, Field[])}.
+ * <p>
+ * Rows can additionally be looked up by other columns that were declared as index columns on
+ * creation, see {@link #getAllBy(Field, Object)}. The indexes are kept in memory alongside the
+ * rows, so such lookups do not scan the table either.
+ * <p>
+ * The table is loaded lazily, on the first lookup. Lookups are then answered from memory without
+ * locking, until the table changes. Writes made through the cache, see {@link #put(Record)},
+ * {@link #delete(Object)} and {@link #write(CheckedConsumer)}, are visible to lookups right after
+ * they return. Changes made to the table by other means, for example using the {@link Database}
+ * directly, are observed with a {@link TableChangeListener}. They discard the copy in memory, so
+ * that the next lookup reloads the table. Since change notifications are delivered asynchronously,
+ * such changes may take a moment until they are visible. Notifications about rows written by
+ * {@link #put(Record)} and {@link #delete(Object)} are recognized by their {@code rowid} and
+ * ignored, the copy in memory already contains these changes.
+ * <p>
+ * The copy in memory is immutable and replaced as a whole on writes. Rows handed out by the cache
+ * are shared by all callers, they must hence not be modified.
+ * <p>
+ * Hits, misses and reloads are counted, see {@link #getStatistics()}.
+ * <p>
+ * Instances are thread-safe. Call {@link #close()} once the cache is not needed anymore, to stop
+ * observing changes of the table.
+ *
+ * @param <R> the type of the rows of the table
+ * @param <K> the type of the key column
+ */
+public final class CachedTable<R extends Record, K> implements AutoCloseable {
+    private static final Field<Long> ROW_ID = DSL.field("rowid", Long.class);
+
+    private final Database database;
+    private final Table<R> table;
+    private final List<Field<?>> keyFields;
+    private final Function<? super R, ? extends K> keyExtractor;
+    private final Function<? super K, ? extends Condition> keyCondition;
+    private final List<Field<?>> indexFields;
+    private final TableChangeListener changeListener = this::onChanges;
+
+    /**
+     * Guards loading the table and replacing the copy in memory.
+     */
+    private final Object loadLock = new Object();
+    /**
+     * Immutable copy of the table. Null if the table has to be loaded on the next lookup.
+     */
+    private volatile Rows<K, R> rows;
+    /**
+     * Rows written through the cache whose change notifications have not been delivered yet, by
+     * {@code rowid}, with the amount of pending notifications. Guarded by {@link #loadLock}.
+     */
+    private final Map<Long, Integer> rowIdToPendingOwnChanges = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder reloadNanos = new LongAdder();
+
+    /**
+     * Creates a cache of the given table and starts observing its changes. The table is not loaded
+     * until the first lookup.
+     *
+     * @param database the database that contains the table
+     * @param table the table to cache
+     * @param keyField the column to look up rows by, must be unique, such as the primary key
+     * @param indexFields further columns to look up rows by, see {@link #getAllBy(Field, Object)},
+     *        need not be unique
+     */
+    public CachedTable(Database database, Table<R> table, Field<K> keyField,
+            Field<?>... indexFields) {
+        this(database, table, List.of(keyField), row -> row.get(keyField), key -> keyField.eq(key),
+                indexFields);
+    }
+
+    private CachedTable(Database database, Table<R> table, List<Field<?>> keyFields,
+            Function<? super R, ? extends K> keyExtractor,
+            Function<? super K, ? extends Condition> keyCondition, Field<?>... indexFields) {
+        this.database = database;
+        this.table = table;
+        this.keyFields = keyFields;
+        this.keyExtractor = keyExtractor;
+        this.keyCondition = keyCondition;
+        this.indexFields = List.of(indexFields);
+
+        database.addChangeListener(table, changeListener);
+    }
+
+    /**
+     * Creates a cache of the given table keyed by several columns, such as a composite primary key,
+     * and starts observing its changes. The table is not loaded until the first lookup.
+     * <p>
+     * Keys are the values of the key columns, in the given order.
+     *
+     * @param database the database that contains the table
+     * @param table the table to cache
+     * @param keyFields the columns to look up rows by, unique in combination
+     * @param indexFields further columns to look up rows by, see {@link #getAllBy(Field, Object)},
+     *        need not be unique
+     * @param <R> the type of the rows of the table
+     * @return the created cache
+     */
+    public static <R extends Record> CachedTable<R, List<Object>> withCompositeKey(
+            Database database, Table<R> table, List<Field<?>> keyFields, Field<?>... indexFields) {
+        List<Field<?>> fields = List.copyOf(keyFields);
+        Function<R, List<Object>> keyExtractor =
+                row -> fields.stream().<Object>map(row::get).toList();
+        Function<List<Object>, Condition> keyCondition = key -> {
+            List<Condition> conditions = new ArrayList<>(fields.size());
+            for (int i = 0; i < fields.size(); i++) {
+                conditions.add(isEqual(fields.get(i), key.get(i)));
+            }
+            return DSL.and(conditions);
+        };
+
+        return new CachedTable<>(database, table, fields, keyExtractor, keyCondition, indexFields);
+    }
+
+    /**
+     * Gets the row with the given key.
+     *
+     * @param key the key of the row
+     * @return the row with the given key, if present
+     */
+    public Optional<R> get(K key) {
+        return Optional.ofNullable(getRows().byKey().get(key));
+    }
+
+    /**
+     * Checks whether a row with the given key is present.
+     *
+     * @param key the key of the row
+     * @return whether a row with the given key is present
+     */
+    public boolean contains(K key) {
+        return getRows().byKey().containsKey(key);
+    }
+
+    /**
+     * Gets the keys of all rows.
+     *
+     * @return the keys of all rows, unmodifiable and not backed by the cache
+     */
+    public Set<K> getKeys() {
+        return getRows().byKey().keySet();
+    }
+
+    /**
+     * Gets all rows of the table.
+     *
+     * @return all rows of the table, unmodifiable and not backed by the cache
+     */
+    public Collection<R> getAll() {
+        return getRows().byKey().values();
+    }
+
+    /**
+     * Gets all rows with the given value in the given index column, without scanning the table.
+     *
+     * @param indexField the column to look up rows by, must have been declared as index column on
+     *        creation
+     * @param value the value of the column
+     * @param <I> the type of the column
+     * @return all rows with the given value in the column, in the order of the table, unmodifiable
+     *         and not backed by the cache
+     * @throws IllegalArgumentException if the column was not declared as index column
+     */
+    public <I> List<R> getAllBy(Field<I> indexField, I value) {
+        Map<Object, List<R>> valueToRows = getRows().byIndexField().get(indexField);
+        if (valueToRows == null) {
+            throw new IllegalArgumentException(
+                    "The column '%s' is not an index column of this cache".formatted(indexField));
+        }
+        return valueToRows.getOrDefault(value, List.of());
+    }
+
+    /**
+     * Gets the amount of rows of the table.
+     *
+     * @return the amount of rows
+     */
+    public int size() {
+        return getRows().byKey().size();
+    }
+
+    /**
+     * Inserts the given row into the table, or updates the row with the same key if present.
+     * <p>
+     * The row is cached as is, it must hence not be modified afterwards.
+     *
+     * @param row the row to put, all columns that should be written must be marked as changed
+     * @throws org.togetherjava.tjbot.db.DatabaseException if writing the row failed
+     */
+    public void put(R row) {
+        K key = keyExtractor.apply(row);
+        synchronized (loadLock) {
+            long rowId = database.writeTransactionAndProvide(context -> {
+                context.insertInto(table)
+                    .set(row)
+                    .onConflict(keyFields)
+                    .doUpdate()
+                    .set(row)
+                    .execute();
+                return findRowId(context, key).orElseThrow();
+            });
+            expectOwnChange(rowId);
+            updateRows(rows -> rows.put(key, row));
+        }
+    }
+
+    /**
+     * Deletes the row with the given key from the table.
+     *
+     * @param key the key of the row to delete
+     * @return whether a row has been deleted, false if there was no row with the given key
+     * @throws org.togetherjava.tjbot.db.DatabaseException if deleting the row failed
+     */
+    public boolean delete(K key) {
+        synchronized (loadLock) {
+            Optional<Long> deletedRowId = database.writeTransactionAndProvide(context -> {
+                Optional<Long> rowId = findRowId(context, key);
+                context.deleteFrom(table).where(keyCondition.apply(key)).execute();
+                return rowId;
+            });
+            deletedRowId.ifPresent(this::expectOwnChange);
+            updateRows(rows -> rows.remove(key));
+            return deletedRowId.isPresent();
+        }
+    }
+
+    /**
+     * Executes an arbitrary write on the table in a single transaction, for changes that cannot be
+     * expressed by {@link #put(Record)} or {@link #delete(Object)}. The copy in memory is discarded
+     * afterwards, so that the next lookup reloads the table.
+     *
+     * @param handler the handler that is executed within the context of the transaction
+     * @throws org.togetherjava.tjbot.db.DatabaseException if an error occurs in the given handler
+     */
+    public void write(CheckedConsumer<? super DSLContext, ? extends DataAccessException> handler) {
+        synchronized (loadLock) {
+            database.writeTransaction(handler);
+            invalidate();
+        }
+    }
+
+    /**
+     * Discards the copy in memory, so that the next lookup reloads the table.
+     */
+    public void invalidate() {
+        synchronized (loadLock) {
+            rows = null;
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * Gets statistics about the lookups of this cache, for example to tell whether caching the
+     * table pays off.
+     *
+     * @return a snapshot of the statistics of this cache
+     */
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), reloads.sum(), invalidations.sum(),
+                Duration.ofNanos(reloadNanos.sum()));
+    }
+
+    /**
+     * Stops observing changes of the table. The cache must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        database.removeChangeListener(changeListener);
+    }
+
+    /**
+     * Gets the {@code rowid} of the row with the given key, which identifies the row in change
+     * notifications.
+     */
+    private Optional<Long> findRowId(DSLContext context, K key) {
+        return context.select(ROW_ID)
+            .from(table)
+            .where(keyCondition.apply(key))
+            .fetchOptional(ROW_ID);
+    }
+
+    /**
+     * Records that the row with the given {@code rowid} was written through the cache, so that its
+     * change notification is ignored. Must be called while holding {@link #loadLock}, which also
+     * holds back the notification until the change has been recorded.
+     *
+     * @param rowId the {@code rowid} of the written row
+     */
+    private void expectOwnChange(long rowId) {
+        rowIdToPendingOwnChanges.merge(rowId, 1, Integer::sum);
+    }
+
+    private void onChanges(List<RowChange> changes) {
+        synchronized (loadLock) {
+            boolean isChangedByOthers = false;
+            for (RowChange change : changes) {
+                Integer pendingOwnChanges = rowIdToPendingOwnChanges.remove(change.rowId());
+                if (pendingOwnChanges == null) {
+                    isChangedByOthers = true;
+                } else if (pendingOwnChanges > 1) {
+                    rowIdToPendingOwnChanges.put(change.rowId(), pendingOwnChanges - 1);
+                }
+            }
+
+            if (isChangedByOthers) {
+                invalidate();
+            }
+        }
+    }
+
+    private Rows<K, R> getRows() {
+        Rows<K, R> currentRows = rows;
+        if (currentRows != null) {
+            hits.increment();
+            return currentRows;
+        }
+
+        misses.increment();
+        synchronized (loadLock) {
+            // Another thread might have loaded the table while this one was waiting
+            if (rows == null) {
+                rows = loadRows();
+            }
+            return rows;
+        }
+    }
+
+    private Rows<K, R> loadRows() {
+        long start = System.nanoTime();
+        Map<K, R> keyToRow = new LinkedHashMap<>();
+        database.read(context -> context.selectFrom(table).fetch())
+            .forEach(row -> keyToRow.put(keyExtractor.apply(row), row));
+
+        reloads.increment();
+        reloadNanos.add(System.nanoTime() - start);
+        return Rows.of(keyToRow, indexFields);
+    }
+
+    /**
+     * Applies the given change to a copy of the rows in memory and replaces them by it. Does
+     * nothing if the table is not loaded, the next lookup loads it including the change then. Must
+     * be called while holding {@link #loadLock}.
+     *
+     * @param change the change to apply
+     */
+    private void updateRows(Consumer<? super Map<K, R>> change) {
+        Rows<K, R> currentRows = rows;
+        if (currentRows == null) {
+            return;
+        }
+
+        Map<K, R> changedRows = new LinkedHashMap<>(currentRows.byKey());
+        change.accept(changedRows);
+        rows = Rows.of(changedRows, indexFields);
+    }
+
+    private static <T> Condition isEqual(Field<T> field, Object value) {
+        return field.eq(field.getDataType().convert(value));
+    }
+
+    /**
+     * Immutable copy of the table.
+     *
+     * @param byKey the rows by key, in the order of the table
+     * @param byIndexField for each index column, the rows by the value of the column
+     * @param <K> the type of the key
+     * @param <R> the type of the rows
+     */
+    private record Rows<K, R extends Record> (Map<K, R> byKey,
+            Map<Field<?>, Map<Object, List<R>>> byIndexField) {
+        static <K, R extends Record> Rows<K, R> of(Map<K, R> keyToRow, List<Field<?>> indexFields) {
+            Map<Field<?>, Map<Object, List<R>>> indexFieldToRows = new HashMap<>();
+            for (Field<?> indexField : indexFields) {
+                Map<Object, List<R>> valueToRows = new HashMap<>();
+                keyToRow.values()
+                    .forEach(row -> valueToRows
+                        .computeIfAbsent(row.get(indexField), value -> new ArrayList<>())
+                        .add(row));
+                valueToRows.replaceAll((value, rowsWithValue) -> List.copyOf(rowsWithValue));
+                indexFieldToRows.put(indexField, valueToRows);
+            }
+
+            return new Rows<>(Collections.unmodifiableMap(keyToRow),
+                    Collections.unmodifiableMap(indexFieldToRows));
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package offers in-memory caches of database tables, for small tables that are read much more
+ * often than they are written to. See {@link org.togetherjava.tjbot.db.cache.CachedTable} to get
+ * started.
+ */
+package org.togetherjava.tjbot.db.cache;
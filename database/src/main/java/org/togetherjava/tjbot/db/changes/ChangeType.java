@@ -0,0 +1,19 @@
+package org.togetherjava.tjbot.db.changes;
+
+/**
+ * The type of change made to a row of the database.
+ */
+public enum ChangeType {
+    /**
+     * The row has been inserted.
+     */
+    INSERT,
+    /**
+     * The row has been updated.
+     */
+    UPDATE,
+    /**
+     * The row has been deleted.
+     */
+    DELETE
+}
@@ -0,0 +1,12 @@
+package org.togetherjava.tjbot.db.changes;
+
+/**
+ * A committed change of a single row of the database, see {@link TableChangeListener}.
+ *
+ * @param table the name of the table the row belongs to, as written in the schema
+ * @param type the type of the change
+ * @param rowId the {@code rowid} of the changed row. For tables with an {@code INTEGER PRIMARY KEY}
+ *        this is the primary key, otherwise an internal id of SQLite.
+ */
+public record RowChange(String table, ChangeType type, long rowId) {
+}
@@ -0,0 +1,34 @@
+package org.togetherjava.tjbot.db.changes;
+
+import java.util.List;
+
+/**
+ * Listener for rows of a table that have been changed, for example to keep an in-memory cache of
+ * the table coherent without polling. Register it using
+ * {@link org.togetherjava.tjbot.db.Database#addChangeListener(org.jooq.Table, TableChangeListener)}.
+ * <p>
+ * Changes are observed on the connection that all writes of a database are executed on. They are
+ * delivered only after the transaction that made them has been committed, so reads executed by the
+ * listener see them. Changes of rolled back transactions are not delivered. Changes rolled back to
+ * a savepoint within a committed transaction, such as a failed asynchronous write, are delivered
+ * nonetheless. Listeners should hence treat changes as hint to reload rows, not as their exact
+ * history.
+ * <p>
+ * Changes made by other connections, such as schema migrations or external tools, are not observed.
+ * Neither are rows deleted by {@code DELETE} without {@code WHERE} clause, which SQLite executes
+ * without visiting single rows. Rows replaced due to {@code ON CONFLICT REPLACE} are only reported
+ * as inserted.
+ */
+@FunctionalInterface
+public interface TableChangeListener {
+    /**
+     * Triggered after changes to the table of this listener have been committed.
+     * <p>
+     * Changes are delivered in batches, in the order they were made. A batch may span multiple
+     * transactions if they were committed in quick succession. The listener is called on a
+     * dedicated thread shared by all listeners of the database, it should hence return quickly.
+     *
+     * @param changes the committed changes of the table, not empty
+     */
+    void onChanges(List<RowChange> changes);
+}
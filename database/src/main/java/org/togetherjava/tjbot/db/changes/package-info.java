@@ -0,0 +1,6 @@
+/**
+ * This package offers notifications about rows changed in the database, for example to keep
+ * in-memory caches coherent. See {@link org.togetherjava.tjbot.db.changes.TableChangeListener} to
+ * get started.
+ */
+package org.togetherjava.tjbot.db.changes;
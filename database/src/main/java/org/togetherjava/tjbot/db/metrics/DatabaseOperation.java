@@ -0,0 +1,35 @@
+package org.togetherjava.tjbot.db.metrics;
+
+import java.util.Objects;
+
+/**
+ * Measurement of a single operation executed on a {@link org.togetherjava.tjbot.db.Database}.
+ *
+ * @param type the type of the operation
+ * @param label label identifying the caller of the operation, by default the class and method that
+ *        called the database, for example {@code "TagSystem#putTag"}
+ * @param waitNanos the time spent waiting before the operation could start, in nanoseconds. For
+ *        writes, this is the time waiting for the write lock; for reads, the time waiting for a
+ *        free connection.
+ * @param durationNanos the time spent executing the operation after it started, in nanoseconds. For
+ *        writes, this is the time the write lock was held.
+ * @param rowsAffected the amount of rows inserted, updated or deleted by the operation, 0 for reads
+ * @param failed whether the operation failed with an exception
+ */
+public record DatabaseOperation(OperationType type, String label, long waitNanos,
+        long durationNanos, int rowsAffected, boolean failed) {
+    /**
+     * Creates a new measurement.
+     *
+     * @param type the type of the operation
+     * @param label label identifying the caller of the operation
+     * @param waitNanos the time spent waiting before the operation could start, in nanoseconds
+     * @param durationNanos the time spent executing the operation after it started, in nanoseconds
+     * @param rowsAffected the amount of rows inserted, updated or deleted by the operation
+     * @param failed whether the operation failed with an exception
+     */
+    public DatabaseOperation {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(label);
+    }
+}
@@ -0,0 +1,21 @@
+package org.togetherjava.tjbot.db.metrics;
+
+/**
+ * Listener for operations executed on a {@link org.togetherjava.tjbot.db.Database}, for example to
+ * collect metrics. Register it using
+ * {@link org.togetherjava.tjbot.db.Database#addOperationListener(DatabaseOperationListener)}.
+ * <p>
+ * See {@link OperationHistograms} for an implementation aggregating latencies into histograms.
+ */
+@FunctionalInterface
+public interface DatabaseOperationListener {
+    /**
+     * Triggered after an operation finished, regardless of whether it succeeded.
+     * <p>
+     * The listener is called synchronously on the thread that executed the operation, after all
+     * locks have been released. It should return quickly and must be thread-safe.
+     *
+     * @param operation the measurement of the operation
+     */
+    void onOperation(DatabaseOperation operation);
+}
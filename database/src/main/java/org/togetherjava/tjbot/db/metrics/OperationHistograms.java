@@ -0,0 +1,99 @@
+package org.togetherjava.tjbot.db.metrics;
+
+import org.togetherjava.tjbot.metrics.Histogram;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Listener that aggregates database operations into latency histograms, one per operation type and
+ * label.
+ * <p>
+ * Register it using
+ * {@link org.togetherjava.tjbot.db.Database#addOperationListener(DatabaseOperationListener)} and
+ * use {@link #getSummaries()} or {@link #describe()} to inspect the results, for example to find
+ * out which feature holds the write lock the longest.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class OperationHistograms implements DatabaseOperationListener {
+    private final Map<OperationKey, OperationStatistics> keyToStatistics =
+            new ConcurrentHashMap<>();
+
+    @Override
+    public void onOperation(DatabaseOperation operation) {
+        keyToStatistics
+            .computeIfAbsent(new OperationKey(operation.type(), operation.label()),
+                    key -> new OperationStatistics())
+            .record(operation);
+    }
+
+    /**
+     * Gets summaries of all operations recorded so far, one per operation type and label. Sorted by
+     * the total time spent executing the operation, descending.
+     *
+     * @return summaries of all recorded operations
+     */
+    public List<OperationSummary> getSummaries() {
+        return keyToStatistics.entrySet()
+            .stream()
+            .map(keyAndStatistics -> keyAndStatistics.getValue()
+                .summarize(keyAndStatistics.getKey()))
+            .sorted(Comparator.comparing(OperationSummary::totalDuration).reversed())
+            .toList();
+    }
+
+    /**
+     * Describes all operations recorded so far in a human-readable table, one line per operation
+     * type and label. See {@link #getSummaries()}.
+     *
+     * @return a human-readable description of all recorded operations
+     */
+    public String describe() {
+        return getSummaries().stream()
+            .map(OperationSummary::describe)
+            .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /**
+     * Forgets all operations recorded so far.
+     */
+    public void reset() {
+        keyToStatistics.clear();
+    }
+
+    private record OperationKey(OperationType type, String label) {
+    }
+
+    private static final class OperationStatistics {
+        private final Histogram durations = new Histogram();
+        private final Histogram waits = new Histogram();
+        private final LongAdder rowsAffected = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        void record(DatabaseOperation operation) {
+            durations.record(operation.durationNanos());
+            waits.record(operation.waitNanos());
+            rowsAffected.add(operation.rowsAffected());
+            if (operation.failed()) {
+                failures.increment();
+            }
+        }
+
+        OperationSummary summarize(OperationKey key) {
+            return new OperationSummary(key.type(), key.label(), durations.getCount(),
+                    failures.sum(), rowsAffected.sum(), Duration.ofNanos(durations.getSum()),
+                    Duration.ofNanos(durations.getValueAtPercentile(50)),
+                    Duration.ofNanos(durations.getValueAtPercentile(99)),
+                    Duration.ofNanos(durations.getMax()),
+                    Duration.ofNanos(waits.getValueAtPercentile(50)),
+                    Duration.ofNanos(waits.getValueAtPercentile(99)),
+                    Duration.ofNanos(waits.getMax()));
+        }
+    }
+}
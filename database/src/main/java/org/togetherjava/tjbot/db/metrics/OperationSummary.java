@@ -0,0 +1,42 @@
+package org.togetherjava.tjbot.db.metrics;
+
+import java.time.Duration;
+
+/**
+ * Summary of all recorded operations of a type and label, see
+ * {@link OperationHistograms#getSummaries()}.
+ *
+ * @param type the type of the operations
+ * @param label the label of the operations, identifying their caller
+ * @param count the amount of operations
+ * @param failures the amount of operations that failed
+ * @param rowsAffected the amount of rows inserted, updated or deleted by all operations together
+ * @param totalDuration the time spent executing all operations together
+ * @param durationP50 the median time spent executing an operation
+ * @param durationP99 the 99th percentile of the time spent executing an operation
+ * @param durationMax the longest time spent executing an operation
+ * @param waitP50 the median time spent waiting before an operation could start
+ * @param waitP99 the 99th percentile of the time spent waiting before an operation could start
+ * @param waitMax the longest time spent waiting before an operation could start
+ */
+@SuppressWarnings("ConstructorWithTooManyParameters")
+public record OperationSummary(OperationType type, String label, long count, long failures,
+        long rowsAffected, Duration totalDuration, Duration durationP50, Duration durationP99,
+        Duration durationMax, Duration waitP50, Duration waitP99, Duration waitMax) {
+
+    /**
+     * Describes this summary in a single human-readable line.
+     *
+     * @return a human-readable description of this summary
+     */
+    public String describe() {
+        return "%-17s %-50s count=%d failures=%d rows=%d total=%s | duration p50=%s p99=%s max=%s | wait p50=%s p99=%s max=%s"
+            .formatted(type, label, count, failures, rowsAffected, toMillis(totalDuration),
+                    toMillis(durationP50), toMillis(durationP99), toMillis(durationMax),
+                    toMillis(waitP50), toMillis(waitP99), toMillis(waitMax));
+    }
+
+    private static String toMillis(Duration duration) {
+        return "%.3fms".formatted(duration.toNanos() / 1_000_000.0);
+    }
+}
@@ -0,0 +1,28 @@
+package org.togetherjava.tjbot.db.metrics;
+
+/**
+ * The type of operation executed on a {@link org.togetherjava.tjbot.db.Database}.
+ */
+public enum OperationType {
+    /**
+     * Read-only access, for example
+     * {@link org.togetherjava.tjbot.db.Database#read(org.togetherjava.tjbot.db.util.CheckedFunction)}.
+     */
+    READ,
+    /**
+     * Read-only transaction, for example
+     * {@link org.togetherjava.tjbot.db.Database#readTransaction(org.togetherjava.tjbot.db.util.CheckedFunction)}.
+     */
+    READ_TRANSACTION,
+    /**
+     * Read and write access, for example
+     * {@link org.togetherjava.tjbot.db.Database#writeAndProvide(org.togetherjava.tjbot.db.util.CheckedFunction)}.
+     */
+    WRITE,
+    /**
+     * Read and write transaction, for example
+     * {@link org.togetherjava.tjbot.db.Database#writeTransactionAndProvide(org.togetherjava.tjbot.db.util.CheckedFunction)}.
+     * Also used for batches of asynchronous writes.
+     */
+    WRITE_TRANSACTION
+}
@@ -0,0 +1,24 @@
+package org.togetherjava.tjbot.db.metrics;
+
+import java.util.List;
+
+/**
+ * Listener for SQL statements executed by a {@link org.togetherjava.tjbot.db.Database}, for example
+ * to inspect the query plans of the statements a feature actually issues. Register it using
+ * {@link org.togetherjava.tjbot.db.Database#addStatementListener(StatementListener)}.
+ */
+@FunctionalInterface
+public interface StatementListener {
+    /**
+     * Triggered before a statement is executed, by reads and writes alike.
+     * <p>
+     * The listener is called synchronously on the thread that executes the statement, while it
+     * holds the connection and possibly the write lock. It should return quickly, must be
+     * thread-safe and must not use the database itself.
+     *
+     * @param sql the SQL of the statement as sent to the database, with a {@code ?} placeholder for
+     *        each bind value
+     * @param bindValues the values bound to the placeholders, in order
+     */
+    void onStatement(String sql, List<Object> bindValues);
+}
@@ -0,0 +1,5 @@
+/**
+ * This package offers instrumentation of the database, such as latency histograms per operation.
+ * See {@link org.togetherjava.tjbot.db.metrics.DatabaseOperationListener} to get started.
+ */
+package org.togetherjava.tjbot.db.metrics;
@@ -0,0 +1,123 @@
+package org.togetherjava.tjbot.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of non-negative long values, for example latencies in nanoseconds.
+ * <p>
+ * Values are counted in buckets of logarithmically growing width, similar to an
+ * <a href="http://hdrhistogram.org/">HDR histogram</a>. Each power of two is split into
+ * {@value #SUB_BUCKETS} equally sized buckets, so percentiles are reported with a relative error of
+ * at most about 3%, independent of the magnitude of the values. The maximum is tracked exactly.
+ * <p>
+ * Recording a value takes constant time and does not allocate or lock.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS =
+            SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the given value.
+     *
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        long nonNegativeValue = Math.max(0, value);
+
+        counts.incrementAndGet(indexOf(nonNegativeValue));
+        totalCount.increment();
+        sum.add(nonNegativeValue);
+        max.accumulateAndGet(nonNegativeValue, Math::max);
+    }
+
+    /**
+     * Gets the amount of recorded values.
+     *
+     * @return the amount of recorded values
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Gets the sum of all recorded values.
+     *
+     * @return the sum of all recorded values
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return the largest recorded value, 0 if no values have been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the value at the given percentile, for example the median for {@code 50.0}.
+     * <p>
+     * The result is approximated by the upper bound of the bucket containing the percentile, but
+     * never exceeds {@link #getMax()}.
+     *
+     * @param percentile the percentile to get, between 0 and 100
+     * @return the approximated value at the given percentile, 0 if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException(
+                    "The percentile must be between 0 and 100, but was " + percentile);
+        }
+
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        // Values recorded concurrently while iterating, the rank is beyond what we have seen
+        return getMax();
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            // Small values are counted exactly
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package offers general building blocks for metrics, not tied to the database, such as
+ * {@link org.togetherjava.tjbot.metrics.Histogram}. They are used by the database instrumentation
+ * in {@link org.togetherjava.tjbot.db.metrics} as well as by the bot itself.
+ */
+package org.togetherjava.tjbot.metrics;
@@ -0,0 +1,638 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.togetherjava.tjbot.db.changes.ChangeType;
+import org.togetherjava.tjbot.db.changes.RowChange;
+import org.togetherjava.tjbot.db.changes.TableChangeListener;
+import org.togetherjava.tjbot.db.metrics.DatabaseOperation;
+import org.togetherjava.tjbot.db.metrics.OperationHistograms;
+import org.togetherjava.tjbot.db.metrics.OperationSummary;
+import org.togetherjava.tjbot.db.metrics.OperationType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+final class DatabaseTest {
+    private static final int READ_CONNECTIONS = 4;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final String EXPENSIVE_QUERY =
+            """
+                    WITH RECURSIVE counter(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM counter WHERE x < 300000)
+                    SELECT count(*) FROM counter""";
+
+    @TempDir
+    Path directory;
+    private Database database;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database =
+                new Database("jdbc:sqlite:" + directory.resolve("database.db"), READ_CONNECTIONS);
+        database.write(context -> context.execute(
+                "CREATE TABLE entries (id INTEGER NOT NULL PRIMARY KEY, value TEXT NOT NULL)"));
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        database.close();
+    }
+
+    @Test
+    void readsSeeCommittedWrites() {
+        database.write(context -> context.execute("INSERT INTO entries VALUES (1, 'foo')"));
+        assertEquals(1, countEntries());
+
+        database.writeTransaction(context -> {
+            context.execute("INSERT INTO entries VALUES (2, 'bar')");
+            context.execute("INSERT INTO entries VALUES (3, 'baz')");
+        });
+        assertEquals(3, countEntries());
+        assertEquals(3, (int) database.readTransaction(DatabaseTest::countEntries));
+    }
+
+    @Test
+    void memoryDatabaseSharesConnection() {
+        try (Database memoryDatabase = Database.createMemoryDatabase()) {
+            memoryDatabase.write(context -> context.execute("CREATE TABLE foo (id INTEGER)"));
+            memoryDatabase.write(context -> context.execute("INSERT INTO foo VALUES (1)"));
+
+            assertEquals(1, (int) memoryDatabase
+                .read(context -> context.fetchCount(context.selectFrom("foo"))));
+        }
+    }
+
+    @Test
+    void readsProceedConcurrentlyWhileWriterHoldsLock() throws Exception {
+        CountDownLatch writerHoldsLock = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> database.writeTransaction(context -> {
+            context.execute("INSERT INTO entries VALUES (1, 'foo')");
+            writerHoldsLock.countDown();
+            await(releaseWriter);
+        }));
+        assertTrue(writerHoldsLock.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        // Every reader only continues once all of them are reading at the same time,
+        // which requires one connection per reader and none of them waiting for the writer
+        CyclicBarrier allReading = new CyclicBarrier(READ_CONNECTIONS);
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int i = 0; i < READ_CONNECTIONS; i++) {
+            readers.add(executor.submit(() -> database.read(context -> {
+                await(allReading);
+                return countEntries(context);
+            })));
+        }
+
+        for (Future<Integer> reader : readers) {
+            // The write is not committed yet
+            assertEquals(0, reader.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        releaseWriter.countDown();
+        writer.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        assertEquals(1, countEntries());
+    }
+
+    @Test
+    void readStreamConsumesResultsLazily() {
+        database.write(context -> context.execute(
+                """
+                        WITH RECURSIVE counter(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM counter WHERE x < 10000)
+                        INSERT INTO entries SELECT x, 'foo' FROM counter"""));
+
+        long sum = database.readStream(context -> context.resultQuery("SELECT id FROM entries"),
+                records -> records.mapToLong(entry -> entry.get(0, Long.class)).sum());
+        assertEquals(10_000L * 10_001 / 2, sum);
+
+        // Only the consumed part of the results is fetched
+        List<Integer> firstIds = database.readStream(
+                context -> context.resultQuery("SELECT id FROM entries ORDER BY id"),
+                records -> records.limit(3).map(entry -> entry.get(0, Integer.class)).toList());
+        assertEquals(List.of(1, 2, 3), firstIds);
+    }
+
+    @Test
+    void readStreamReleasesConnectionOnFailure() throws SQLException {
+        try (Database singleReaderDatabase =
+                new Database("jdbc:sqlite:" + directory.resolve("database.db"), 1)) {
+            for (int i = 0; i < 3; i++) {
+                assertThrows(IllegalStateException.class,
+                        () -> singleReaderDatabase.readStream(
+                                context -> context.resultQuery("SELECT id FROM entries"),
+                                records -> {
+                                    throw new IllegalStateException();
+                                }));
+            }
+
+            // Blocks if the only connection has not been released
+            int entries = assertTimeoutPreemptively(TIMEOUT,
+                    () -> singleReaderDatabase.read(DatabaseTest::countEntries));
+            assertEquals(0, entries);
+        }
+    }
+
+    @Test
+    void asyncWritesAreCommittedInBatches() throws SQLException {
+        try (Database batchingDatabase =
+                createDatabase("batching.db", new WriteBehindSettings(3, Duration.ofSeconds(1)))) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 1; i <= 7; i++) {
+                String insert = "INSERT INTO entries VALUES (%d, 'foo')".formatted(i);
+                writes.add(batchingDatabase.writeAsync(context -> context.execute(insert)));
+            }
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+
+            assertEquals(7, (int) batchingDatabase.read(DatabaseTest::countEntries));
+            WriteBehindStatistics statistics = batchingDatabase.getWriteBehindStatistics();
+            assertEquals(0, statistics.queueDepth());
+            assertEquals(7, statistics.writes());
+            assertEquals(3, statistics.batches());
+            assertEquals(3, statistics.largestBatch());
+            assertEquals(0, statistics.failedWrites());
+        }
+    }
+
+    @Test
+    void failingAsyncWriteOnlyRollsBackItself() throws SQLException {
+        try (Database batchingDatabase =
+                createDatabase("batching.db", new WriteBehindSettings(10, Duration.ofSeconds(1)))) {
+            CompletableFuture<Integer> first = batchingDatabase.writeAsyncAndProvide(
+                    context -> context.execute("INSERT INTO entries VALUES (1, 'foo')"));
+            CompletableFuture<Integer> duplicate = batchingDatabase.writeAsyncAndProvide(
+                    context -> context.execute("INSERT INTO entries VALUES (1, 'bar')"));
+            CompletableFuture<Integer> second = batchingDatabase.writeAsyncAndProvide(
+                    context -> context.execute("INSERT INTO entries VALUES (2, 'baz')"));
+
+            assertEquals(1, first.join());
+            assertEquals(1, second.join());
+            CompletionException failure = assertThrows(CompletionException.class, duplicate::join);
+            assertInstanceOf(DatabaseException.class, failure.getCause());
+
+            assertEquals(2, (int) batchingDatabase.read(DatabaseTest::countEntries));
+            WriteBehindStatistics statistics = batchingDatabase.getWriteBehindStatistics();
+            assertEquals(1, statistics.batches());
+            assertEquals(1, statistics.failedWrites());
+        }
+    }
+
+    @Test
+    void closeCommitsQueuedAsyncWrites() throws SQLException {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        try (Database batchingDatabase = createDatabase("batching.db",
+                new WriteBehindSettings(100, Duration.ofMinutes(1)))) {
+            for (int i = 1; i <= 5; i++) {
+                String insert = "INSERT INTO entries VALUES (%d, 'foo')".formatted(i);
+                writes.add(batchingDatabase.writeAsync(context -> context.execute(insert)));
+            }
+        }
+
+        assertTrue(writes.stream().allMatch(CompletableFuture::isDone));
+        try (Database reopenedDatabase =
+                createDatabase("batching.db", WriteBehindSettings.DEFAULT)) {
+            assertEquals(5, (int) reopenedDatabase.read(DatabaseTest::countEntries));
+        }
+    }
+
+    @Test
+    void performanceProfileIsAppliedToAllConnections() throws SQLException {
+        PerformanceProfile profile = new PerformanceProfile(1_048_576, -4_000,
+                PerformanceProfile.Synchronous.NORMAL, PerformanceProfile.TempStore.MEMORY, 1_234);
+        try (Database profiledDatabase =
+                new Database("jdbc:sqlite:" + directory.resolve("profiled.db"), READ_CONNECTIONS,
+                        WriteBehindSettings.DEFAULT, profile)) {
+            // synchronous NORMAL is 1, temp_store MEMORY is 2
+            List<Long> expectedSettings = List.of(1_048_576L, -4_000L, 1L, 2L, 1_234L);
+            assertEquals(expectedSettings,
+                    profiledDatabase.writeAndProvide(DatabaseTest::fetchProfileSettings));
+            assertEquals(expectedSettings,
+                    profiledDatabase.read(DatabaseTest::fetchProfileSettings));
+        }
+    }
+
+    @Test
+    void migrationIsSkippedIfMigrationsDidNotChange() throws SQLException {
+        String jdbcUrl = "jdbc:sqlite:" + directory.resolve("migrated.db");
+        try (Database migratedDatabase = createDatabase(jdbcUrl, MigrationMode.IF_CHANGED)) {
+            assertTrue(hasSchemaHistory(migratedDatabase));
+            long checksum = migratedDatabase
+                .read(context -> (Number) context.fetchValue("PRAGMA user_version"))
+                .longValue();
+            assertNotEquals(0, checksum);
+
+            // Empties the schema, Flyway would create the schema history again
+            migratedDatabase.write(context -> {
+                context.execute("PRAGMA foreign_keys = OFF");
+                for (Object table : context.fetchValues(
+                        "SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%'")) {
+                    context.execute("DROP TABLE \"" + table + "\"");
+                }
+            });
+        }
+
+        try (Database migratedDatabase = createDatabase(jdbcUrl, MigrationMode.IF_CHANGED)) {
+            assertFalse(hasSchemaHistory(migratedDatabase));
+        }
+        try (Database migratedDatabase = createDatabase(jdbcUrl, MigrationMode.ALWAYS)) {
+            assertTrue(hasSchemaHistory(migratedDatabase));
+        }
+    }
+
+    @Test
+    void changeListenerReceivesCommittedChanges() throws InterruptedException {
+        BlockingQueue<RowChange> changes = new LinkedBlockingQueue<>();
+        database.addChangeListener(DSL.table("entries"), changes::addAll);
+        List<RowChange> otherTableChanges = new CopyOnWriteArrayList<>();
+        database.addChangeListener(DSL.table("others"), otherTableChanges::addAll);
+
+        database.writeTransaction(context -> {
+            context.execute("INSERT INTO entries VALUES (1, 'foo')");
+            context.execute("INSERT INTO entries VALUES (2, 'bar')");
+        });
+        database.write(context -> context.execute("UPDATE entries SET value = 'baz' WHERE id = 1"));
+        assertThrows(DatabaseException.class, () -> database.writeTransaction(context -> {
+            context.execute("INSERT INTO entries VALUES (3, 'foo')");
+            context.execute("INSERT INTO entries VALUES (1, 'duplicate')");
+        }));
+        database.write(context -> context.execute("DELETE FROM entries WHERE id = 2"));
+
+        List<RowChange> expectedChanges = List.of(new RowChange("entries", ChangeType.INSERT, 1),
+                new RowChange("entries", ChangeType.INSERT, 2),
+                new RowChange("entries", ChangeType.UPDATE, 1),
+                new RowChange("entries", ChangeType.DELETE, 2));
+        List<RowChange> actualChanges = new ArrayList<>();
+        for (int i = 0; i < expectedChanges.size(); i++) {
+            actualChanges.add(changes.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        }
+        assertEquals(expectedChanges, actualChanges);
+
+        // Changes of the rolled back transaction would have been delivered before
+        database.close();
+        assertTrue(changes.isEmpty());
+        assertTrue(otherTableChanges.isEmpty());
+    }
+
+    @Test
+    void removedChangeListenerIsNotNotified() throws InterruptedException {
+        List<RowChange> removedListenerChanges = new CopyOnWriteArrayList<>();
+        TableChangeListener removedListener = removedListenerChanges::addAll;
+        database.addChangeListener(DSL.table("entries"), removedListener);
+        database.removeChangeListener(removedListener);
+        CountDownLatch notified = new CountDownLatch(1);
+        database.addChangeListener(DSL.table("entries"), batch -> notified.countDown());
+
+        database.write(context -> context.execute("INSERT INTO entries VALUES (1, 'foo')"));
+
+        assertTrue(notified.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        assertTrue(removedListenerChanges.isEmpty());
+    }
+
+    @Test
+    void operationListenerMeasuresOperations() {
+        List<DatabaseOperation> operations = new CopyOnWriteArrayList<>();
+        database.addOperationListener(operations::add);
+
+        database.writeTransaction(context -> {
+            context.execute("INSERT INTO entries VALUES (1, 'foo')");
+            context.execute("INSERT INTO entries VALUES (2, 'bar')");
+        });
+        countEntries();
+        assertThrows(DatabaseException.class, () -> database
+            .write(context -> context.execute("INSERT INTO entries VALUES (1, 'baz')")));
+
+        assertEquals(3, operations.size());
+        DatabaseOperation transaction = operations.get(0);
+        assertEquals(OperationType.WRITE_TRANSACTION, transaction.type());
+        assertEquals("DatabaseTest#operationListenerMeasuresOperations", transaction.label());
+        assertEquals(2, transaction.rowsAffected());
+        assertFalse(transaction.failed());
+
+        DatabaseOperation read = operations.get(1);
+        assertEquals(OperationType.READ, read.type());
+        assertEquals("DatabaseTest#countEntries", read.label());
+
+        DatabaseOperation failedWrite = operations.get(2);
+        assertEquals(OperationType.WRITE, failedWrite.type());
+        assertTrue(failedWrite.failed());
+    }
+
+    @Test
+    void statementListenerSeesReadsAndWrites() {
+        List<String> statements = new CopyOnWriteArrayList<>();
+        List<Object> bindValues = new CopyOnWriteArrayList<>();
+        database.addStatementListener((sql, values) -> {
+            statements.add(sql);
+            bindValues.addAll(values);
+        });
+
+        database
+            .write(context -> context.insertInto(DSL.table("entries")).values(1, "foo").execute());
+        database.read(context -> context.selectFrom(DSL.table("entries"))
+            .where(DSL.field("id").eq(1))
+            .fetch());
+
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).startsWith("insert into entries"), statements.get(0));
+        assertTrue(statements.get(1).startsWith("select"), statements.get(1));
+        assertEquals(List.of(1, "foo", 1), bindValues);
+    }
+
+    @Test
+    void operationListenerMeasuresWriteLockWait() throws Exception {
+        OperationHistograms histograms = new OperationHistograms();
+        database.addOperationListener(histograms);
+
+        CountDownLatch writerHoldsLock = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> database.writeTransaction(context -> {
+            writerHoldsLock.countDown();
+            await(releaseWriter);
+            context.execute("INSERT INTO entries VALUES (1, 'foo')");
+        }));
+        assertTrue(writerHoldsLock.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        Future<?> waitingWriter = executor.submit(() -> database
+            .write(context -> context.execute("INSERT INTO entries VALUES (2, 'bar')")));
+        TimeUnit.MILLISECONDS.sleep(200);
+        releaseWriter.countDown();
+        writer.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        waitingWriter.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        OperationSummary waitingWrite = histograms.getSummaries()
+            .stream()
+            .filter(summary -> summary.type() == OperationType.WRITE)
+            .findAny()
+            .orElseThrow();
+        assertEquals(1, waitingWrite.count());
+        assertEquals(1, waitingWrite.rowsAffected());
+        // The lock was held by the other writer for most of the sleep
+        assertTrue(waitingWrite.waitMax().compareTo(Duration.ofMillis(100)) > 0,
+                () -> "Waited only " + waitingWrite.waitMax());
+
+        database.removeOperationListener(histograms);
+        countEntries();
+        assertEquals(2, histograms.getSummaries().size());
+    }
+
+    @Test
+    void interactiveWritesAreGrantedBeforeWaitingBackgroundWrites() throws Exception {
+        CountDownLatch writerHoldsLock = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> database.write(context -> {
+            writerHoldsLock.countDown();
+            await(releaseWriter);
+        }));
+        assertTrue(writerHoldsLock.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        AtomicBoolean isBackgroundDone = new AtomicBoolean();
+        Future<Integer> backgroundWriter = executor.submit(() -> database.writeInChunks(context -> {
+            if (isBackgroundDone.getAndSet(true)) {
+                return 0;
+            }
+            return context.execute("INSERT INTO entries (value) VALUES ('background')");
+        }));
+        TimeUnit.MILLISECONDS.sleep(200);
+        Future<?> interactiveWriter = executor.submit(() -> database.write(
+                context -> context.execute("INSERT INTO entries (value) VALUES ('interactive')")));
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        releaseWriter.countDown();
+        writer.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        interactiveWriter.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        assertEquals(1, backgroundWriter.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        // The background write waited longer, but the interactive one went first
+        List<?> valuesInOrder = database
+            .read(context -> context.fetchValues("SELECT value FROM entries ORDER BY id"));
+        assertEquals(List.of("interactive", "background"), valuesInOrder);
+    }
+
+    @Test
+    void interactiveWriteLatencyStaysLowDuringPurge() throws Exception {
+        int entriesToPurge = 200_000;
+        int purgeChunkSize = 1_000;
+        database.write(context -> context.execute(
+                """
+                        WITH RECURSIVE counter(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM counter WHERE x < %d)
+                        INSERT INTO entries SELECT x, 'old' FROM counter"""
+                    .formatted(entriesToPurge)));
+
+        long purgeStart = System.nanoTime();
+        Future<Integer> purge = executor
+            .submit(() -> database.writeInChunks(context -> context.execute(
+                    "DELETE FROM entries WHERE id IN (SELECT id FROM entries WHERE value = 'old' LIMIT %d)"
+                        .formatted(purgeChunkSize))));
+
+        List<Duration> latencies = new ArrayList<>();
+        int nextId = entriesToPurge + 1;
+        while (!purge.isDone()) {
+            String insert = "INSERT INTO entries VALUES (%d, 'new')".formatted(nextId);
+            nextId++;
+            long start = System.nanoTime();
+            database.write(context -> context.execute(insert));
+            latencies.add(Duration.ofNanos(System.nanoTime() - start));
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(entriesToPurge, purge.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        Duration purgeDuration = Duration.ofNanos(System.nanoTime() - purgeStart);
+
+        assertEquals(latencies.size(), countEntries());
+        // Each interactive write waits for at most one chunk, instead of the whole purge
+        Duration maxLatency = latencies.stream().max(Duration::compareTo).orElseThrow();
+        assertTrue(latencies.size() >= 5, () -> "Only %d writes during a purge of %s"
+            .formatted(latencies.size(), purgeDuration));
+        assertTrue(maxLatency.compareTo(purgeDuration.dividedBy(4)) < 0,
+                () -> "Interactive writes took up to %s during a purge of %s".formatted(maxLatency,
+                        purgeDuration));
+    }
+
+    @Test
+    void backgroundWritesCanMaintainTheDatabase() {
+        // Neither VACUUM nor checkpoints may run within a transaction
+        int vacuumed = database.writeBackgroundAndProvide(context -> context.execute("VACUUM"));
+        assertEquals(0, vacuumed);
+        int busy = database.writeBackgroundAndProvide(
+                context -> context.fetchOne("PRAGMA wal_checkpoint(TRUNCATE)")
+                    .get(0, Integer.class));
+        assertEquals(0, busy);
+        assertThrows(DatabaseException.class,
+                () -> database.writeChunk(context -> context.execute("VACUUM")));
+    }
+
+    @Test
+    void vacuumIncrementallyReturnsPagesWithSingleStatement() {
+        database.writeBackgroundAndProvide(context -> {
+            context.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            return context.execute("VACUUM");
+        });
+        database.write(context -> context.execute(
+                """
+                        INSERT INTO entries
+                        WITH RECURSIVE counter(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM counter WHERE x < 1000)
+                        SELECT x, hex(randomblob(1000)) FROM counter"""));
+        database.write(context -> context.execute("DELETE FROM entries"));
+
+        assertEquals(100, database.vacuumIncrementally(100));
+        int pagesReturned = database.vacuumIncrementally(Integer.MAX_VALUE);
+        assertTrue(pagesReturned > 100, "Only returned " + pagesReturned + " pages");
+        assertEquals(0, database.vacuumIncrementally(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void backupWritesSnapshotWithoutWaitingForWriter() throws Exception {
+        database.write(context -> context.execute("INSERT INTO entries VALUES (1, 'foo')"));
+
+        CountDownLatch writerHoldsLock = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> database.writeTransaction(context -> {
+            context.execute("INSERT INTO entries VALUES (2, 'bar')");
+            writerHoldsLock.countDown();
+            await(releaseWriter);
+        }));
+        assertTrue(writerHoldsLock.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        Path target = directory.resolve("backup.db");
+        BackupResult result = assertTimeoutPreemptively(TIMEOUT, () -> database.backup(target));
+        releaseWriter.countDown();
+        writer.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        assertEquals(target, result.target());
+        assertEquals(Files.size(target), result.size());
+        assertTrue(result.size() > 0);
+        assertFalse(Files.exists(directory.resolve("backup.db.incomplete")));
+        assertThrows(IllegalArgumentException.class, () -> database.backup(target));
+
+        // The snapshot only contains what was committed when the backup started
+        try (Database backup = new Database("jdbc:sqlite:" + target)) {
+            int backupEntries = backup.read(DatabaseTest::countEntries);
+            assertEquals(1, backupEntries);
+        }
+        assertEquals(2, countEntries());
+    }
+
+    @Test
+    void readThroughputScalesWithReaders() throws Exception {
+        assumeTrue(Runtime.getRuntime().availableProcessors() >= READ_CONNECTIONS,
+                "Not enough processors to measure concurrent reads");
+
+        CountDownLatch writerHoldsLock = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> database.write(context -> {
+            writerHoldsLock.countDown();
+            await(releaseWriter);
+        }));
+        assertTrue(writerHoldsLock.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        int readsPerReader = 5;
+        // Warm up
+        measureReads(1, readsPerReader);
+
+        double singleReaderThroughput = measureReads(1, readsPerReader);
+        double multiReaderThroughput = measureReads(READ_CONNECTIONS, readsPerReader);
+
+        releaseWriter.countDown();
+        writer.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        assertTrue(multiReaderThroughput > 1.5 * singleReaderThroughput,
+                "Expected read throughput to scale with %d readers, but was %.1f reads/s compared to %.1f reads/s with a single reader"
+                    .formatted(READ_CONNECTIONS, multiReaderThroughput, singleReaderThroughput));
+    }
+
+    /**
+     * Runs an expensive read with the given amount of readers concurrently.
+     *
+     * @param readers the amount of concurrent readers
+     * @param readsPerReader the amount of reads each reader executes
+     * @return the throughput, in reads per second
+     */
+    private double measureReads(int readers, int readsPerReader) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < readsPerReader; j++) {
+                    database.readAndConsume(context -> context.fetchOne(EXPENSIVE_QUERY));
+                }
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Future<Void> task : executor.invokeAll(tasks)) {
+            task.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        return readers * readsPerReader / seconds;
+    }
+
+    private Database createDatabase(String name, WriteBehindSettings writeBehindSettings)
+            throws SQLException {
+        Database createdDatabase = new Database("jdbc:sqlite:" + directory.resolve(name),
+                READ_CONNECTIONS, writeBehindSettings);
+        createdDatabase.write(context -> context.execute(
+                "CREATE TABLE IF NOT EXISTS entries (id INTEGER NOT NULL PRIMARY KEY, value TEXT NOT NULL)"));
+        return createdDatabase;
+    }
+
+    private static Database createDatabase(String jdbcUrl, MigrationMode migrationMode)
+            throws SQLException {
+        return new Database(jdbcUrl, READ_CONNECTIONS, WriteBehindSettings.DEFAULT,
+                PerformanceProfile.DEFAULT, migrationMode);
+    }
+
+    private static boolean hasSchemaHistory(Database database) {
+        return database.read(context -> context.fetchExists(context.selectOne()
+            .from("sqlite_master")
+            .where("type = 'table' AND name = 'flyway_schema_history'")));
+    }
+
+    private int countEntries() {
+        return database.read(DatabaseTest::countEntries);
+    }
+
+    private static int countEntries(DSLContext context) {
+        return context.fetchCount(context.selectFrom("entries"));
+    }
+
+    private static List<Long> fetchProfileSettings(DSLContext context) {
+        return Stream.of("mmap_size", "cache_size", "synchronous", "temp_store", "busy_timeout")
+            .map(pragma -> ((Number) context.fetchValue("PRAGMA " + pragma)).longValue())
+            .toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
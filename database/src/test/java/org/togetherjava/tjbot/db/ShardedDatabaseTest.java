@@ -0,0 +1,159 @@
+package org.togetherjava.tjbot.db;
+
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class ShardedDatabaseTest {
+    private static final Table<Record> ENTRIES = DSL.table("entries");
+    private static final Field<Long> GUILD_ID = DSL.field("guild_id", Long.class);
+    private static final Field<Integer> VALUE = DSL.field("value", Integer.class);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sharedDatabaseServesAllGuilds() throws SQLException {
+        try (Database database = openDatabase("jdbc:sqlite:" + directory.resolve("database.db"));
+                ShardedDatabase shardedDatabase = ShardedDatabase.shared(database)) {
+            assertFalse(shardedDatabase.isSharded());
+            assertSame(database, shardedDatabase.forGuild(1));
+            assertSame(database, shardedDatabase.forGuild(2));
+
+            insertEntry(shardedDatabase, 1, 10);
+            insertEntry(shardedDatabase, 2, 20);
+            assertEquals(List.of(2),
+                    shardedDatabase.readAll(context -> context.fetchCount(ENTRIES)));
+        }
+    }
+
+    @Test
+    void eachGuildHasItsOwnShard() throws IOException, SQLException {
+        Path shardDirectory = directory.resolve("shards");
+        try (ShardedDatabase shardedDatabase =
+                ShardedDatabase.perGuild(shardDirectory, ShardedDatabaseTest::openDatabase)) {
+            assertTrue(shardedDatabase.isSharded());
+            assertNotSame(shardedDatabase.forGuild(1), shardedDatabase.forGuild(2));
+            assertSame(shardedDatabase.forGuild(1), shardedDatabase.forGuild(1));
+
+            insertEntry(shardedDatabase, 1, 10);
+            insertEntry(shardedDatabase, 1, 30);
+            insertEntry(shardedDatabase, 2, 20);
+            assertEquals(2,
+                    (int) shardedDatabase.forGuild(1).read(context -> context.fetchCount(ENTRIES)));
+            assertEquals(1,
+                    (int) shardedDatabase.forGuild(2).read(context -> context.fetchCount(ENTRIES)));
+        }
+
+        try (Stream<Path> files = Files.list(shardDirectory)) {
+            assertTrue(files.map(file -> file.getFileName().toString())
+                .toList()
+                .containsAll(List.of("guild-1.db", "guild-2.db")));
+        }
+    }
+
+    @Test
+    void queriesAcrossGuildsGatherAllShards() throws IOException, SQLException {
+        Path shardDirectory = directory.resolve("shards");
+        try (ShardedDatabase shardedDatabase =
+                ShardedDatabase.perGuild(shardDirectory, ShardedDatabaseTest::openDatabase)) {
+            insertEntry(shardedDatabase, 1, 10);
+            insertEntry(shardedDatabase, 1, 30);
+            insertEntry(shardedDatabase, 2, 20);
+        }
+
+        // Shards already present are opened again, so that queries across guilds see them
+        try (ShardedDatabase shardedDatabase =
+                ShardedDatabase.perGuild(shardDirectory, ShardedDatabaseTest::openDatabase)) {
+            assertEquals(2, shardedDatabase.getDatabases().size());
+
+            List<Integer> counts = shardedDatabase.readAll(context -> context.fetchCount(ENTRIES));
+            assertEquals(3, counts.stream().mapToInt(Integer::intValue).sum());
+
+            List<Integer> values = shardedDatabase.readStreamAll(
+                    context -> context.selectFrom(ENTRIES).orderBy(VALUE.asc()),
+                    Comparator.comparing(entry -> entry.get(VALUE)),
+                    entries -> entries.map(entry -> entry.get(VALUE)).toList());
+            assertEquals(List.of(10, 20, 30), values);
+        }
+    }
+
+    @Test
+    void streamsAcrossGuildsAreMergedInOrder() throws IOException, SQLException {
+        try (ShardedDatabase shardedDatabase = ShardedDatabase.perGuild(directory.resolve("shards"),
+                ShardedDatabaseTest::openDatabase)) {
+            List.of(10, 40, 50).forEach(value -> insertEntry(shardedDatabase, 1, value));
+            List.of(20, 30, 60).forEach(value -> insertEntry(shardedDatabase, 2, value));
+            // A shard without any rows
+            shardedDatabase.forGuild(3);
+
+            List<Integer> values = shardedDatabase.readStreamAll(
+                    context -> context.selectFrom(ENTRIES).orderBy(VALUE.asc()),
+                    Comparator.comparing(entry -> entry.get(VALUE)),
+                    entries -> entries.map(entry -> entry.get(VALUE)).toList());
+            assertEquals(List.of(10, 20, 30, 40, 50, 60), values);
+
+            List<Integer> firstValues = shardedDatabase.readStreamAll(
+                    context -> context.selectFrom(ENTRIES).orderBy(VALUE.asc()),
+                    Comparator.comparing(entry -> entry.get(VALUE)),
+                    entries -> entries.limit(3).map(entry -> entry.get(VALUE)).toList());
+            assertEquals(List.of(10, 20, 30), firstValues);
+        }
+    }
+
+    @Test
+    void rowsOfPopulatedMainDatabaseAreMovedIntoShards() throws IOException, SQLException {
+        Path shardDirectory = directory.resolve("shards");
+        try (Database database = openDatabase("jdbc:sqlite:" + directory.resolve("database.db"));
+                ShardedDatabase shardedDatabase = ShardedDatabase.perGuild(shardDirectory,
+                        ShardedDatabaseTest::openDatabase)) {
+            // Data of a deployment that did not use shards before
+            database.write(context -> context.insertInto(ENTRIES, GUILD_ID, VALUE)
+                .values(1L, 10)
+                .values(1L, 30)
+                .values(2L, 20)
+                .execute());
+            insertEntry(shardedDatabase, 2, 40);
+
+            assertEquals(3, shardedDatabase.moveIntoShards(database, ENTRIES, GUILD_ID));
+
+            assertEquals(0, (int) database.read(context -> context.fetchCount(ENTRIES)));
+            assertEquals(List.of(10, 30), readValues(shardedDatabase.forGuild(1)));
+            assertEquals(List.of(20, 40), readValues(shardedDatabase.forGuild(2)));
+            // Nothing left to move
+            assertEquals(0, shardedDatabase.moveIntoShards(database, ENTRIES, GUILD_ID));
+        }
+    }
+
+    private static List<Integer> readValues(Database database) {
+        return database
+            .read(context -> context.select(VALUE).from(ENTRIES).orderBy(VALUE).fetch(VALUE));
+    }
+
+    private static void insertEntry(ShardedDatabase shardedDatabase, long guildId, int value) {
+        shardedDatabase.forGuild(guildId)
+            .write(context -> context.insertInto(ENTRIES, GUILD_ID, VALUE)
+                .values(guildId, value)
+                .execute());
+    }
+
+    private static Database openDatabase(String jdbcUrl) throws SQLException {
+        Database database = new Database(jdbcUrl, 1);
+        database.write(context -> context.execute(
+                "CREATE TABLE IF NOT EXISTS entries (guild_id INTEGER NOT NULL, value INTEGER NOT NULL)"));
+        return database;
+    }
+}
@@ -0,0 +1,208 @@
+package org.togetherjava.tjbot.db.cache;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.changes.TableChangeListener;
+import org.togetherjava.tjbot.db.util.CheckedConsumer;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class CachedTableTest {
+    private static final Table<Record> ENTRIES = DSL.table("entries");
+    private static final Field<Integer> ID = DSL.field("id", Integer.class);
+    private static final Field<String> VALUE = DSL.field("value", String.class);
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @TempDir
+    Path directory;
+    private Database database;
+    private CachedTable<Record, Integer> cache;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        database = new Database("jdbc:sqlite:" + directory.resolve("database.db"));
+        database.write(context -> context.execute(
+                "CREATE TABLE entries (id INTEGER NOT NULL PRIMARY KEY, value TEXT NOT NULL)"));
+        cache = new CachedTable<>(database, ENTRIES, ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+        database.close();
+    }
+
+    @Test
+    void lookupsAreAnsweredFromMemoryOnceLoaded() throws InterruptedException {
+        writeRaw(context -> context.insertInto(ENTRIES, ID, VALUE)
+            .values(1, "foo")
+            .values(2, "bar")
+            .execute());
+
+        assertEquals(Optional.of("foo"), getValue(1));
+        assertEquals(Optional.of("bar"), getValue(2));
+        assertEquals(Optional.empty(), getValue(3));
+        assertEquals(Set.of(1, 2), cache.getKeys());
+        assertEquals(2, cache.size());
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.reloads());
+        assertEquals(1, statistics.misses());
+        assertEquals(4, statistics.hits());
+    }
+
+    @Test
+    void writesThroughCacheAreVisibleImmediately() {
+        assertEquals(0, cache.size());
+
+        cache.put(createRow(1, "foo"));
+        assertEquals(Optional.of("foo"), getValue(1));
+        cache.put(createRow(1, "bar"));
+        assertEquals(Optional.of("bar"), getValue(1));
+        assertEquals(Optional.of("bar"), readValueRaw(1));
+
+        assertTrue(cache.delete(1));
+        assertFalse(cache.contains(1));
+        assertFalse(cache.delete(1));
+        assertEquals(Optional.empty(), readValueRaw(1));
+
+        cache.write(context -> context.insertInto(ENTRIES, ID, VALUE)
+            .values(2, "foo")
+            .values(3, "bar")
+            .execute());
+        assertEquals(Set.of(2, 3), cache.getKeys());
+    }
+
+    @Test
+    void writesThroughCacheDoNotReload() throws InterruptedException {
+        assertEquals(0, cache.size());
+
+        awaitObserved(() -> cache.put(createRow(1, "foo")));
+        assertEquals(Optional.of("foo"), getValue(1));
+        awaitObserved(() -> cache.put(createRow(1, "bar")));
+        assertEquals(Optional.of("bar"), getValue(1));
+        awaitObserved(() -> cache.put(createRow(2, "baz")));
+        awaitObserved(() -> assertTrue(cache.delete(1)));
+        assertEquals(Set.of(2), cache.getKeys());
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.reloads());
+        assertEquals(0, statistics.invalidations());
+    }
+
+    @Test
+    void changesBypassingCacheAreObserved() throws InterruptedException {
+        writeRaw(context -> context.insertInto(ENTRIES, ID, VALUE).values(1, "foo").execute());
+        assertEquals(Optional.of("foo"), getValue(1));
+
+        writeRaw(context -> context.update(ENTRIES).set(VALUE, "bar").where(ID.eq(1)).execute());
+        assertEquals(Optional.of("bar"), getValue(1));
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(2, statistics.invalidations());
+        assertEquals(2, statistics.reloads());
+    }
+
+    @Test
+    void indexColumnsAreKeptUpToDate() {
+        try (CachedTable<Record, Integer> indexedCache =
+                new CachedTable<>(database, ENTRIES, ID, VALUE)) {
+            indexedCache.put(createRow(1, "foo"));
+            indexedCache.put(createRow(2, "bar"));
+            indexedCache.put(createRow(3, "foo"));
+            assertEquals(List.of(1, 3), getIds(indexedCache.getAllBy(VALUE, "foo")));
+
+            indexedCache.put(createRow(1, "bar"));
+            assertEquals(List.of(3), getIds(indexedCache.getAllBy(VALUE, "foo")));
+            assertEquals(List.of(1, 2), getIds(indexedCache.getAllBy(VALUE, "bar")));
+
+            assertTrue(indexedCache.delete(3));
+            assertEquals(List.of(), indexedCache.getAllBy(VALUE, "foo"));
+            assertThrows(IllegalArgumentException.class, () -> indexedCache.getAllBy(ID, 1));
+        }
+    }
+
+    @Test
+    void rowsCanBeKeyedByCompositeKey() {
+        database.write(context -> context.execute(
+                "CREATE TABLE pairs (id INTEGER NOT NULL, value TEXT NOT NULL, PRIMARY KEY (id, value))"));
+        Table<Record> pairs = DSL.table("pairs");
+
+        try (CachedTable<Record, List<Object>> pairCache =
+                CachedTable.withCompositeKey(database, pairs, List.of(ID, VALUE), ID)) {
+            pairCache.put(createRow(1, "foo"));
+            pairCache.put(createRow(1, "bar"));
+            pairCache.put(createRow(2, "foo"));
+
+            assertTrue(pairCache.contains(List.of(1, "foo")));
+            assertEquals(2, pairCache.getAllBy(ID, 1).size());
+
+            assertTrue(pairCache.delete(List.of(1, "foo")));
+            assertFalse(pairCache.contains(List.of(1, "foo")));
+            int rowsInTable = database.read(context -> context.fetchCount(pairs));
+            assertEquals(2, rowsInTable);
+            assertEquals(List.of(List.of(1, "bar"), List.of(2, "foo")),
+                    List.copyOf(pairCache.getKeys()));
+        }
+    }
+
+    private static List<Integer> getIds(Collection<Record> rows) {
+        return rows.stream().map(row -> row.get(ID)).toList();
+    }
+
+    private Optional<String> getValue(int id) {
+        return cache.get(id).map(row -> row.get(VALUE));
+    }
+
+    /**
+     * Writes to the database bypassing the cache and waits until the cache observed the write.
+     */
+    private void writeRaw(CheckedConsumer<? super DSLContext, ? extends DataAccessException> action)
+            throws InterruptedException {
+        awaitObserved(() -> database.write(action));
+    }
+
+    /**
+     * Executes the given write and waits until the cache observed it.
+     */
+    private void awaitObserved(Runnable write) throws InterruptedException {
+        // Listeners are notified in the order they were added, so the cache has been notified once
+        // this one is notified
+        CountDownLatch notified = new CountDownLatch(1);
+        TableChangeListener listener = changes -> notified.countDown();
+        database.addChangeListener(ENTRIES, listener);
+        write.run();
+        assertTrue(notified.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        database.removeChangeListener(listener);
+    }
+
+    private Optional<String> readValueRaw(int id) {
+        return database.read(context -> context.select(VALUE)
+            .from(ENTRIES)
+            .where(ID.eq(id))
+            .fetchOptional(VALUE));
+    }
+
+    private static Record createRow(int id, String value) {
+        return DSL.using(SQLDialect.SQLITE).newRecord(ID, VALUE).values(id, value);
+    }
+}
@@ -0,0 +1,56 @@
+package org.togetherjava.tjbot.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class HistogramTest {
+    @Test
+    void emptyHistogramReportsZero() {
+        Histogram histogram = new Histogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getSum());
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void largeValuesAreApproximated() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        assertEquals(100_000_000, histogram.getMax());
+        assertWithinRelativeError(50_000_000, histogram.getValueAtPercentile(50));
+        assertWithinRelativeError(99_000_000, histogram.getValueAtPercentile(99));
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void rejectsInvalidPercentiles() {
+        Histogram histogram = new Histogram();
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(-1));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+
+    private static void assertWithinRelativeError(long expected, long actual) {
+        double relativeError = Math.abs(actual - expected) / (double) expected;
+        assertTrue(relativeError <= 0.035,
+                () -> "Expected about %d but was %d".formatted(expected, actual));
+    }
+}
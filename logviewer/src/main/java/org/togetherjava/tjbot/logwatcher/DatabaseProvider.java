@@ -9,6 +9,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 import org.togetherjava.tjbot.logwatcher.config.Config;
 import org.togetherjava.tjbot.db.Database;
+import org.togetherjava.tjbot.db.MigrationMode;
+import org.togetherjava.tjbot.db.PerformanceProfile;
+import org.togetherjava.tjbot.db.WriteBehindSettings;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -35,7 +38,9 @@ public class DatabaseProvider {
         final Path dbPath = getDBPath();
 
         try {
-            return new Database("jdbc:sqlite:%s".formatted(dbPath.toAbsolutePath()));
+            return new Database("jdbc:sqlite:%s".formatted(dbPath.toAbsolutePath()),
+                    Database.DEFAULT_READ_CONNECTIONS, WriteBehindSettings.DEFAULT,
+                    PerformanceProfile.DEFAULT, MigrationMode.IF_CHANGED);
         } catch (final SQLException e) {
             logger.error("Exception while creating Database.", e);
             throw new FatalBeanException("Could not create Database.", e);
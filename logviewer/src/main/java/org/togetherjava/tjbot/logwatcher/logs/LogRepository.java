@@ -4,6 +4,8 @@ import org.togetherjava.tjbot.db.generated.tables.pojos.Logevents;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public interface LogRepository {
 
@@ -21,6 +23,16 @@ public interface LogRepository {
      */
     List<Logevents> findAll();
 
+    /**
+     * Streams all Events from the DB, fetching them lazily instead of loading all of them into
+     * memory at once. The stream is only valid within the given handler.
+     *
+     * @param eventsHandler Handler consuming the Events
+     * @param <T> Type returned by the handler
+     * @return Result returned by the handler
+     */
+    <T> T streamAll(Function<? super Stream<Logevents>, T> eventsHandler);
+
     /**
      * Fetches all Events, which LogLevel matches the given Collection, from the DB
      *
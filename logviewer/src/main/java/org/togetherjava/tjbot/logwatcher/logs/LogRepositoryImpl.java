@@ -7,6 +7,8 @@ import org.togetherjava.tjbot.db.generated.tables.records.LogeventsRecord;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.togetherjava.tjbot.db.generated.tables.Logevents.LOGEVENTS;
 
@@ -45,7 +47,13 @@ public class LogRepositoryImpl implements LogRepository {
 
     @Override
     public List<Logevents> findAll() {
-        return this.db.read(ctx -> ctx.selectFrom(LOGEVENTS).fetch(this::recordToPojo));
+        return streamAll(Stream::toList);
+    }
+
+    @Override
+    public <T> T streamAll(Function<? super Stream<Logevents>, T> eventsHandler) {
+        return this.db.readStream(ctx -> ctx.selectFrom(LOGEVENTS),
+                records -> eventsHandler.apply(records.map(this::recordToPojo)));
     }
 
 
@@ -3,81 +3,85 @@ package org.togetherjava.tjbot.logwatcher.users;
 import org.springframework.stereotype.Component;
 import org.togetherjava.tjbot.logwatcher.accesscontrol.Role;
 import org.togetherjava.tjbot.db.Database;
-import org.togetherjava.tjbot.db.generated.tables.Userroles;
+import org.togetherjava.tjbot.db.cache.CachedTable;
 import org.togetherjava.tjbot.db.generated.tables.pojos.Users;
 import org.togetherjava.tjbot.db.generated.tables.records.UserrolesRecord;
 import org.togetherjava.tjbot.db.generated.tables.records.UsersRecord;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.togetherjava.tjbot.db.generated.tables.Userroles.USERROLES;
 import static org.togetherjava.tjbot.db.generated.tables.Users.USERS;
 
+/**
+ * Repository of the users allowed to access the logviewer. Users and their roles are looked up on
+ * every request, both tables are hence kept in memory, see {@link CachedTable}.
+ */
 @Component
 public class UserRepositoryImpl implements UserRepository {
 
-    private final Database db;
+    private final CachedTable<UsersRecord, Long> users;
+    private final CachedTable<UserrolesRecord, List<Object>> userRoles;
 
     public UserRepositoryImpl(Database db) {
-        this.db = db;
+        this.users = new CachedTable<>(db, USERS, USERS.DISCORDID, USERS.USERNAME);
+        this.userRoles = CachedTable.withCompositeKey(db, USERROLES,
+                List.of(USERROLES.USERID, USERROLES.ROLEID), USERROLES.USERID);
     }
 
     @Override
     public Users findByDiscordID(long discordID) {
-        return this.db.readTransaction(ctx -> ctx.selectFrom(USERS)
-            .where(USERS.DISCORDID.eq(discordID))
-            .fetchOne(this::recordToRole));
+        return this.users.get(discordID).map(this::recordToRole).orElse(null);
     }
 
     @Override
     public Users findByUsername(String username) {
-        return this.db.readTransaction(ctx -> ctx.selectFrom(USERS)
-            .where(USERS.USERNAME.eq(username))
-            .fetchOne(this::recordToRole));
+        return this.users.getAllBy(USERS.USERNAME, username)
+            .stream()
+            .findAny()
+            .map(this::recordToRole)
+            .orElse(null);
     }
 
     @Override
     public List<Users> findAll() {
-        return this.db.readTransaction(ctx -> ctx.selectFrom(USERS).fetch(this::recordToRole));
+        return this.users.getAll().stream().map(this::recordToRole).toList();
     }
 
     @Override
     public int count() {
-        return this.db.readTransaction(ctx -> ctx.fetchCount(USERS));
+        return this.users.size();
     }
 
     @Override
     public void save(Users user) {
-        this.db.writeTransaction(ctx -> ctx.newRecord(USERS)
-            .setDiscordid(user.getDiscordid())
-            .setUsername(user.getUsername())
-            .merge());
+        this.users.put(new UsersRecord(user.getDiscordid(), user.getUsername()));
     }
 
     @Override
     public void delete(Users user) {
-        this.db.writeTransaction(ctx -> ctx.deleteFrom(USERS)
-            .where(USERS.DISCORDID.eq(user.getDiscordid()))
-            .execute());
+        this.users.delete(user.getDiscordid());
+        // The roles of the user are deleted by the database, which the cache might observe late
+        this.userRoles.invalidate();
     }
 
     @Override
     public Set<Role> fetchRolesForUser(Users user) {
-        return new HashSet<>(this.db.readTransaction(ctx -> ctx.selectFrom(Userroles.USERROLES)
-            .where(Userroles.USERROLES.USERID.eq(user.getDiscordid()))
-            .fetch(this::recordToRole)));
+        return this.userRoles.getAllBy(USERROLES.USERID, user.getDiscordid())
+            .stream()
+            .map(this::recordToRole)
+            .collect(Collectors.toSet());
     }
 
     @Override
     public void saveRolesForUser(Users user, Set<Role> roles) {
-        this.db.writeTransaction(ctx -> {
-            ctx.deleteFrom(Userroles.USERROLES)
-                .where(Userroles.USERROLES.USERID.eq(user.getDiscordid()))
-                .execute();
+        this.userRoles.write(ctx -> {
+            ctx.deleteFrom(USERROLES).where(USERROLES.USERID.eq(user.getDiscordid())).execute();
 
             for (final Role role : roles) {
-                ctx.newRecord(Userroles.USERROLES)
+                ctx.newRecord(USERROLES)
                     .setRoleid(role.getId())
                     .setUserid(user.getDiscordid())
                     .insert();